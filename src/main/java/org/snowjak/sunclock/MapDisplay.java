@@ -1,599 +1,1763 @@
-/**
- * 
- */
-package org.snowjak.sunclock;
-
-import static java.lang.Math.PI;
-import static java.lang.Math.cos;
-import static java.lang.Math.floor;
-import static java.lang.Math.max;
-import static java.lang.Math.sin;
-import static java.lang.Math.sqrt;
-import static org.snowjak.sunclock.Util.degreesToRadians;
-import static org.snowjak.sunclock.Util.window;
-
-import java.awt.Canvas;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.time.Clock;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-
-import javax.imageio.ImageIO;
-import javax.imageio.ImageTypeSpecifier;
-import javax.imageio.ImageWriter;
-import javax.swing.JFileChooser;
-import javax.swing.JMenuItem;
-import javax.swing.JOptionPane;
-import javax.swing.JPopupMenu;
-import javax.swing.filechooser.FileNameExtensionFilter;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.snowjak.sunclock.Options.DefinedOption;
-import org.snowjak.sunclock.pool.Pool;
-import org.snowjak.sunclock.pool.Pools;
-import org.snowjak.sunclock.projection.Projection;
-
-import com.google.common.collect.Iterators;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
-
-public class MapDisplay extends Canvas {
-	
-	private static final long serialVersionUID = 378491777213729442L;
-	private static final Logger LOG = LogManager.getLogger(MapDisplay.class);
-	
-	private final ScheduledExecutorService timerExecutor = Executors.newSingleThreadScheduledExecutor();
-	private final ListeningExecutorService redrawExecutor = MoreExecutors
-			.listeningDecorator(Executors.newCachedThreadPool());
-	private ScheduledFuture<?> timerTask = null;
-	
-	private final Semaphore updateSemaphore = new Semaphore(1);
-	
-	private BufferedImage lightMap = null;
-	
-	private final JPopupMenu mapPopupMenu;
-	private final ActionListener mapPopupActionListener;
-	
-	private Projection projection;
-	private double resolution;
-	private BufferedImage mapImage;
-	private int mapWidth, mapHeight;
-	private int mapOffsetX, mapOffsetY;
-	
-	public MapDisplay() {
-		
-		super();
-		
-		setProjection(Options.getValue(DefinedOption.PROJECTION));
-		setLightMapResolution(Options.getValue(DefinedOption.LIGHT_RESOLUTION));
-		Options.addUpdateListener(DefinedOption.PROJECTION, (oldProj, newProj) -> setProjection((Projection) newProj));
-		Options.addUpdateListener(DefinedOption.LIGHT_RESOLUTION,
-				(oldRes, newRes) -> setLightMapResolution((Integer) newRes));
-		
-		mapPopupActionListener = new ActionListener() {
-			
-			@Override
-			public void actionPerformed(ActionEvent e) {
-				
-				if (e.getActionCommand().equals("save")) {
-					
-					if (mapImage == null || lightMap == null)
-						return;
-						
-					//
-					// Create the image to save.
-					//
-					
-					final BufferedImage saveImage = new BufferedImage(mapWidth, mapHeight, BufferedImage.TYPE_INT_ARGB);
-					final Graphics2D saveGfx = saveImage.createGraphics();
-					saveGfx.setColor(Color.black);
-					saveGfx.clearRect(0, 0, mapWidth, mapHeight);
-					saveGfx.drawImage(mapImage, 0, 0, mapWidth, mapHeight, null);
-					saveGfx.drawImage(lightMap, 0, 0, mapWidth, mapHeight, null);
-					
-					try {
-						saveImageWithDialog(saveImage);
-					} catch (IllegalArgumentException ex) {
-						
-						LOG.error("Cannot save the current screen", ex);
-						JOptionPane.showInternalMessageDialog(null,
-								"Cannot save this image. For whatever reason, your Java environment doesn't have any compatible image-writers.",
-								"Cannot Save Image", JOptionPane.ERROR_MESSAGE);
-						
-					} catch (IOException ex) {
-						
-						LOG.error("Cannot save the current screen", ex);
-						JOptionPane.showInternalMessageDialog(null,
-								"Cannot save this image -- the selected file could not be written. Consult the log for details.",
-								"Cannot Save Image", JOptionPane.ERROR_MESSAGE);
-						
-					} finally {
-						saveGfx.dispose();
-					}
-				}
-			}
-		};
-		
-		mapPopupMenu = new JPopupMenu();
-		final JMenuItem saveAsItem = mapPopupMenu.add("Save as...");
-		saveAsItem.setActionCommand("save");
-		saveAsItem.addActionListener(mapPopupActionListener);
-		
-		addMouseListener(new MouseAdapter() {
-			
-			@Override
-			public void mouseClicked(MouseEvent e) {
-				
-				if (projection == null)
-					return;
-				
-				final int mouseX = e.getPoint().x - mapOffsetX;
-				final int mouseY = e.getPoint().y - mapOffsetY;
-				
-				if (mouseX < 0 || mouseY < 0)
-					return;
-				if (mouseX > mapWidth || mouseY > mapHeight)
-					return;
-				
-				if (e.getButton() == MouseEvent.BUTTON1)
-					logMapLatLong((double) mouseX / (double) mapWidth, 1d - (double) mouseY / (double) mapHeight);
-				
-				else if (e.getButton() == MouseEvent.BUTTON3)
-					mapPopupMenu.show(e.getComponent(), e.getX(), e.getY());
-			}
-			
-		});
-		addComponentListener(new ComponentAdapter() {
-			
-			@Override
-			public void componentShown(ComponentEvent e) {
-				
-				startTimer();
-			}
-			
-			@Override
-			public void componentHidden(ComponentEvent e) {
-				
-				stopTimer();
-			}
-			
-			@Override
-			public void componentResized(ComponentEvent e) {
-				
-				try {
-					updateSemaphore.acquire();
-					
-					if (mapImage == null)
-						return;
-					
-					recalculateImageSize(e.getComponent().getWidth(), e.getComponent().getHeight());
-					
-					updateSemaphore.release();
-				} catch (InterruptedException exp) {
-					
-				}
-				
-				startTimer();
-				redrawLightMap();
-			}
-		});
-	}
-	
-	private void recalculateImageSize(double windowWidth, double windowHeight) {
-		
-		if (mapImage == null)
-			return;
-		
-		final double imageRatio = ((double) mapImage.getWidth()) / ((double) mapImage.getHeight());
-		
-		final double newRatio = windowWidth / windowHeight;
-		
-		if (imageRatio >= newRatio) {
-			mapWidth = (int) Math.floor(windowWidth);
-			mapHeight = (int) Math.floor(windowWidth / imageRatio);
-		} else {
-			mapHeight = (int) Math.floor(windowHeight);
-			mapWidth = (int) Math.floor(windowHeight * imageRatio);
-		}
-		
-		mapOffsetX = (int) ((windowWidth - (double) mapWidth) / 2d);
-		mapOffsetY = (int) ((windowHeight - (double) mapHeight) / 2d);
-		
-		if (mapWidth > 0 && mapHeight > 0)
-			if (lightMap == null || lightMap.getWidth() != mapWidth || lightMap.getHeight() != mapHeight)
-				lightMap = new BufferedImage(mapWidth, mapHeight, BufferedImage.TYPE_INT_ARGB);
-	}
-	
-	public void setProjection(Projection projection) {
-		
-		if (this.projection == projection)
-			return;
-		
-		this.projection = projection;
-		
-		if (projection == null) {
-			this.mapImage = null;
-			return;
-		}
-		
-		try (InputStream imageStream = MapDisplay.class.getClassLoader()
-				.getResourceAsStream(projection.getImageName())) {
-			
-			mapImage = ImageIO.read(imageStream);
-			
-		} catch (IOException e) {
-			LOG.error("Cannot open image {} associated with the Projection {}", projection.getImageName(),
-					projection.toString());
-			LOG.error("Received exception --", e);
-		}
-		
-		recalculateImageSize(getWidth(), getHeight());
-		redrawLightMap();
-		repaint();
-	}
-	
-	public void setLightMapResolution(int resolution) {
-		
-		if ((int) this.resolution == resolution)
-			return;
-		
-		this.resolution = resolution;
-		
-		redrawLightMap();
-		repaint();
-	}
-	
-	@Override
-	public void paint(Graphics g) {
-		
-		super.paint(g);
-		
-		try {
-			updateSemaphore.acquire();
-			
-			if (mapImage != null)
-				g.drawImage(mapImage, mapOffsetX, mapOffsetY, mapWidth, mapHeight, Color.BLACK, null);
-			
-			if (lightMap != null)
-				g.drawImage(lightMap, mapOffsetX, mapOffsetY, null);
-			
-			updateSemaphore.release();
-		} catch (InterruptedException e) {
-			
-		}
-	}
-	
-	public void dispose() {
-		
-		timerExecutor.shutdown();
-		redrawExecutor.shutdown();
-	}
-	
-	private void redrawLightMap() {
-		
-		if (projection == null)
-			return;
-		if (lightMap == null)
-			return;
-		
-		try {
-			updateSemaphore.acquire();
-			
-			if (projection == null)
-				return;
-			if (lightMap == null)
-				return;
-			
-			LOG.info("redrawing light-map ...");
-			
-			final Pool<DoublePair> pool = Pools.getPool(DoublePair.class);
-			
-			final ZonedDateTime now = ZonedDateTime.now();
-			
-			final int xSize = (int) max(floor((double) lightMap.getWidth() / resolution), 1d);
-			final int ySize = (int) max(floor((double) lightMap.getHeight() / resolution), 1d);
-			final int step = max(xSize, ySize);
-			
-			final List<ListenableFuture<?>> redrawFutures = new LinkedList<>();
-			final CountDownLatch redrawComplete = new CountDownLatch(1);
-			
-			for (int x = 0; x < lightMap.getWidth(); x += step) {
-				
-				final double dx = (double) x / (double) lightMap.getWidth(),
-						dx2 = (double) (x + step) / (double) lightMap.getWidth();
-				
-				for (int y = 0; y < lightMap.getHeight(); y += step) {
-					
-					final int px = x, py = y;
-					
-					redrawFutures.add(redrawExecutor.submit(() -> {
-						
-						final double dy = (double) py / (double) lightMap.getHeight(),
-								dy2 = (double) (py + step) / (double) lightMap.getHeight();
-						
-						final DoublePair xy = pool.getInstance();
-						xy.set((dx + dx2) / 2d, (dy + dy2) / 2d);
-						final DoublePair latLong = projection.transformXY_LatLong(xy);
-						
-						final double exposure = 0.9d * sqrt(calculateSunExposure(latLong, now)) + 0.1d;
-						
-						final int exp = (int) (256d * exposure);
-						final int invExp = 255 - exp;
-						final int rgba = (invExp << 24) + (0xf << 16) + (0xf << 8) + (0xf);
-						
-						for (int tx = 0; tx < step; tx++)
-							for (int ty = 0; ty < step; ty++) {
-								if (px + tx >= lightMap.getWidth() || py + ty >= lightMap.getHeight())
-									continue;
-								lightMap.setRGB(px + tx, py + ty, rgba);
-							}
-						
-						pool.retireInstance(xy);
-						pool.retireInstance(latLong);
-					}));
-				}
-			}
-			
-			Futures.whenAllComplete(redrawFutures).run(() -> redrawComplete.countDown(),
-					MoreExecutors.directExecutor());
-			redrawComplete.await();
-			
-			updateSemaphore.release();
-		} catch (InterruptedException e) {
-			
-		}
-	}
-	
-	public static double calculateSunExposure(DoublePair latLong, ZonedDateTime now) {
-		
-		//
-		// Current epoch date/time (fractional) from UTC.
-		//
-		final double SECONDS_PER_DAY = 60d * 60d * 24d;
-		final double MINUTES_PER_DAY = 60d * 24d;
-		
-		// final ZonedDateTime now = ZonedDateTime.now(Clock.systemUTC());
-		final ZonedDateTime utc = now.withZoneSameInstant(ZoneId.of("UTC"));
-		final double nowUTC = (double) utc.getLong(ChronoField.DAY_OF_YEAR)
-				+ (double) utc.getLong(ChronoField.SECOND_OF_DAY) / SECONDS_PER_DAY;
-		
-		//
-		// Local date/time, given longitude.
-		//
-		final double latitude = degreesToRadians(window(latLong.getX(), -90d, +90d));
-		final double longitude = degreesToRadians(window(latLong.getY(), -180d, +180d));
-		final double nowLocal = nowUTC + (longitude / (2d * PI));
-		final double nowLocalDay = floor(nowLocal);
-		// final double nowLocalFractional = nowLocal - nowLocalDay;
-		
-		final double longitudeCorrection = degreesToRadians((360d / 364d) * (nowLocal - 81d));
-		// (minutes)
-		final double equationOfTime = 9.87d * sin(2d * longitudeCorrection) - 7.53d * cos(longitudeCorrection)
-				- 1.5d * sin(longitudeCorrection);
-		
-		final double localSolarNoonFractional = ((MINUTES_PER_DAY / 2d) - equationOfTime) / MINUTES_PER_DAY;
-		final double localSolarNoon = nowLocalDay + localSolarNoonFractional;
-		final double localSolarTime = (nowLocal * MINUTES_PER_DAY + equationOfTime) / MINUTES_PER_DAY;
-		final double localTilSolarNoon = localSolarNoon - localSolarTime;
-		
-		//
-		//
-		//
-		
-		final double solarDeclination = degreesToRadians(23.45d)
-				* sin(degreesToRadians(360d / 365d * (nowLocalDay - 81d)));
-		// final double solarAltitudeAtNoon = (PI / 2d) - latitude + solarDeclination;
-		// final double airMassRatioAtNoon = abs(1d / sin(solarAltitudeAtNoon));
-		
-		final double solarHourAngle = 2d * PI * localTilSolarNoon;
-		final double sinSolarAltitudeNow = cos(latitude) * cos(solarDeclination) * cos(solarHourAngle)
-				+ sin(latitude) * sin(solarDeclination);
-		// final double solarAltitudeNow = asin(sinSolarAltitudeNow);
-		
-		// final double azimuth = asin(cos(solarDeclination) * sin(solarHourAngle) /
-		// cos(solarAltitudeNow));
-		// final double azimuthEN = PI - azimuth;
-		// final double azimuthWS = PI - azimuth - (2d * PI);
-		
-		// final double solarAzimuthAngle = (cos(solarAltitudeNow) >=
-		// (tan(solarDeclination) / tan(latitude))) ? (azimuth)
-		// : ((nowLocalFractional < 0.5d) ? (azimuthEN) : (azimuthWS));
-		// final double airMassRatioNow = abs(1d / sin(solarAltitudeNow));
-		
-		final double cosAngleOfIncidence = // cos(solarAltitudeNow) * cos(solarAzimuthAngle) * sin(solarAltitudeNow);
-				sinSolarAltitudeNow;
-		
-		return (cosAngleOfIncidence < 0d) ? 0d : cosAngleOfIncidence;
-	}
-	
-	private void startTimer() {
-		
-		try {
-			
-			updateSemaphore.acquire();
-			
-			if (timerTask == null || timerTask.isDone()) {
-				LOG.info("starting timer ...");
-				timerTask = timerExecutor.scheduleWithFixedDelay(() -> redrawLightMap(), 0, 1, TimeUnit.MINUTES);
-			}
-			
-			updateSemaphore.release();
-			
-		} catch (InterruptedException e) {
-			
-		}
-	}
-	
-	private void stopTimer() {
-		
-		try {
-			
-			updateSemaphore.acquire();
-			if (timerTask != null && !timerTask.isDone()) {
-				LOG.info("stopping timer ...");
-				timerTask.cancel(false);
-			}
-			updateSemaphore.release();
-			
-		} catch (InterruptedException e) {
-			
-		}
-	}
-	
-	/**
-	 * Given a point on the map, expressed as a fraction in [0,1] starting from
-	 * bottom-left (i.e., south-west in most map-projections).
-	 * 
-	 * @param x
-	 * @param y
-	 */
-	private void logMapLatLong(double x, double y) {
-		
-		final Pool<DoublePair> pool = Pools.getPool(DoublePair.class);
-		final DoublePair xy = pool.getInstance();
-		xy.set(x, y);
-		final DoublePair latLong = projection.transformXY_LatLong(xy);
-		
-		final double exposure = calculateSunExposure(latLong, ZonedDateTime.now(Clock.systemUTC()));
-		
-		LOG.info("Click [" + xy.getX() + "," + xy.getY() + "] --> [" + latLong.getX() + "," + latLong.getY()
-				+ "] -- exposure = " + exposure);
-		pool.retireInstance(xy);
-		pool.retireInstance(latLong);
-	}
-	
-	/**
-	 * Given a {@link BufferedImage}, perform the following:
-	 * 
-	 * <ul>
-	 * <li>Determine which, if any, {@link ImageIO} writers can support writing this
-	 * image</li>
-	 * <li>Present a dialog so the user can select an appropriate file-name to save
-	 * the image as</li>
-	 * <li>If the user did not provide an extension, pick one from among the list of
-	 * valid image-formats</li>
-	 * <li>Save the image</li>
-	 * </ul>
-	 * 
-	 * @param image
-	 * @throws IllegalArgumentException
-	 *             if the given image cannot be accepted by any known ImageWriters
-	 * @throws IOException
-	 *             if the image-file could not be written successfully
-	 */
-	private void saveImageWithDialog(BufferedImage image) throws IOException, IllegalArgumentException {
-		
-		//
-		// Determine which image-writers, if any, are capable of writing our image.
-		//
-		final ImageTypeSpecifier imageTypeSpecifier = new ImageTypeSpecifier(image);
-		
-		final Set<ImageWriter> validImageWriters = new LinkedHashSet<>();
-		for (String formatName : ImageIO.getWriterFormatNames())
-			Iterators.addAll(validImageWriters, ImageIO.getImageWriters(imageTypeSpecifier, formatName));
-		
-		if (validImageWriters.isEmpty())
-			throw new IllegalArgumentException("Cannot save given image: no ImageWriters can accept it.");
-			
-		//
-		// Construct our list of image-format names and extensions.
-		//
-		final Set<String> extensions = new LinkedHashSet<>();
-		final Map<String, Set<ImageWriter>> extensionsImageWriters = new HashMap<>();
-		
-		for (ImageWriter iw : validImageWriters) {
-			for (String suffix : iw.getOriginatingProvider().getFileSuffixes()) {
-				extensions.add(suffix);
-				extensionsImageWriters.computeIfAbsent(suffix, (s) -> new HashSet<>()).add(iw);
-			}
-		}
-		
-		final StringBuilder description = new StringBuilder();
-		for (String ext : extensions) {
-			if (description.length() > 1)
-				description.append(';');
-			description.append("*.").append(ext);
-		}
-		description.append(')');
-		
-		//
-		// Present the save-file picker
-		//
-		
-		final JFileChooser saveFileChooser = new JFileChooser();
-		saveFileChooser.setFileFilter(
-				new FileNameExtensionFilter("Images (" + description.toString(), extensions.toArray(len -> {
-					return new String[len];
-				})));
-		
-		//
-		// If the user did not choose "OK", then we don't need to go any further.
-		//
-		if (saveFileChooser.showSaveDialog(null) != JFileChooser.APPROVE_OPTION)
-			return;
-			
-		//
-		// Examine the selected file. See if it ends with one of our identified
-		// suffixes.
-		// At the same time, identify the format-name associated with the chosen
-		// suffix (if any).
-		//
-		File saveFile = saveFileChooser.getSelectedFile();
-		final String saveFileName = saveFile.getName();
-		
-		final String formatName;
-		
-		final String selectedExtension = extensions.stream().filter(ext -> saveFileName.toLowerCase().endsWith(ext))
-				.findFirst().orElse(null);
-		
-		if (selectedExtension == null) {
-			//
-			// Apparently the user did not include an extension.
-			// Therefore, we are free to choose any extension we please.
-			//
-			final ImageWriter anyImageWriter = validImageWriters.iterator().next();
-			final String anyExtension = anyImageWriter.getOriginatingProvider().getFileSuffixes()[0];
-			formatName = anyImageWriter.getOriginatingProvider().getFormatNames()[0];
-			
-			saveFile = new File(saveFile.getPath() + "." + anyExtension);
-			
-		} else {
-			formatName = extensionsImageWriters.get(selectedExtension).iterator().next().getOriginatingProvider()
-					.getFormatNames()[0];
-		}
-		
-		//
-		// Now all we have to do is save the image to the specified file.
-		//
-		ImageIO.write(image, formatName, saveFile);
-	}
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.snowjak.sunclock.Util.clamp;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+import static org.snowjak.sunclock.Util.window;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseMotionAdapter;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.SwingUtilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.Options.DefinedOption;
+import org.snowjak.sunclock.location.LocationIndex;
+import org.snowjak.sunclock.metrics.BaseMapLoadEvent;
+import org.snowjak.sunclock.metrics.RenderEvent;
+import org.snowjak.sunclock.metrics.RenderMetrics;
+import org.snowjak.sunclock.metrics.ResizeEvent;
+import org.snowjak.sunclock.metrics.RenderMetrics.Phase;
+import org.snowjak.sunclock.pool.Pool;
+import org.snowjak.sunclock.pool.Pools;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.BaseMapLoader;
+import org.snowjak.sunclock.render.BaseMapLoader.BaseMap;
+import org.snowjak.sunclock.render.FrameCompositor;
+import org.snowjak.sunclock.render.FrameTimer;
+import org.snowjak.sunclock.render.GlobeRenderer;
+import org.snowjak.sunclock.render.LightMapCache;
+import org.snowjak.sunclock.render.LightMapRenderer;
+import org.snowjak.sunclock.render.RenderScheduler;
+import org.snowjak.sunclock.render.VectorOverlay;
+import org.snowjak.sunclock.render.WarmStartCache;
+import org.snowjak.sunclock.render.WarmStartCache.CachedImage;
+import org.snowjak.sunclock.solar.Solar;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public class MapDisplay extends Canvas {
+	
+	private static final long serialVersionUID = 378491777213729442L;
+	private static final Logger LOG = LogManager.getLogger(MapDisplay.class);
+	
+	/**
+	 * Number of buffers requested for active rendering.
+	 */
+	private static final int BUFFER_COUNT = 2;
+	
+	/**
+	 * Each notch of the mouse-wheel zooms by this factor.
+	 */
+	private static final double ZOOM_STEP = 1.25d;
+	
+	/**
+	 * While scrubbing through time, this many time-buckets on either side of the
+	 * displayed one are rendered ahead.
+	 */
+	private static final int PRERENDER_BUCKETS = 2;
+	
+	/**
+	 * Frames are saved to the warm-start cache no more often than this (in
+	 * milliseconds) -- and otherwise only when the display is hidden or disposed.
+	 */
+	private static final long FRAME_CACHE_INTERVAL = 5L * 60L * 1000L;
+	
+	private final ListeningExecutorService redrawExecutor = MoreExecutors
+			.listeningDecorator(Executors.newCachedThreadPool());
+	private final RenderScheduler renderScheduler;
+	private final FrameCompositor frameCompositor = new FrameCompositor(this::getGraphicsConfiguration,
+			redrawExecutor, Runtime.getRuntime().availableProcessors());
+	private final FrameTimer frameTimer = new FrameTimer();
+	private final LightMapRenderer lightMapRenderer = new LightMapRenderer(redrawExecutor);
+	
+	//
+	// Light-maps around the scrubbed time are rendered ahead on otherwise-idle
+	// cores -- one light-map per thread, so as never to crowd out the light-map
+	// actually being displayed.
+	//
+	private final LightMapCache lightMapCache = new LightMapCache();
+	private final ListeningExecutorService prerenderExecutor = MoreExecutors.listeningDecorator(
+			Executors.newFixedThreadPool(max(1, Runtime.getRuntime().availableProcessors() - 1),
+					new ThreadFactoryBuilder().setNameFormat("light-map-prerender-%d").setDaemon(true)
+							.setPriority(Thread.MIN_PRIORITY).build()));
+	private final LightMapRenderer prerenderRenderer = new LightMapRenderer(
+			MoreExecutors.newDirectExecutorService());
+	private final List<Future<?>> prerenders = new LinkedList<>();
+	private volatile ZonedDateTime displayTime = null;
+	private long lastScrubBucket = 0;
+	private final Object presentLock = new Object();
+	private volatile boolean activeRendering;
+	
+	private Window window = null;
+	private final WindowAdapter windowStateListener = new WindowAdapter() {
+		
+		@Override
+		public void windowIconified(WindowEvent e) {
+			
+			renderScheduler.suspend();
+			cacheFrame(true);
+		}
+		
+		@Override
+		public void windowDeiconified(WindowEvent e) {
+			
+			if (isShowing())
+				renderScheduler.resume();
+		}
+	};
+	
+	private final Semaphore updateSemaphore = new Semaphore(1);
+	
+	private BufferedImage lightMap = null;
+	
+	private final JPopupMenu mapPopupMenu;
+	private final ActionListener mapPopupActionListener;
+	private final MapExporter exporter = new MapExporter(this);
+	
+	private final BaseMapLoader baseMapLoader = new BaseMapLoader();
+	private final AtomicInteger baseMapGeneration = new AtomicInteger();
+	private volatile BaseMap baseMap = null;
+	private volatile ListenableFuture<BaseMap> baseMapLoading = null;
+	private volatile Projection baseMapProjection = null;
+	private volatile String nightMapFile = null;
+	private volatile ListenableFuture<BufferedImage> nightMapLoading = null;
+	private volatile BufferedImage nightMap = null;
+	
+	//
+	// The vector overlay is projected and drawn into a transparent layer only
+	// when it, the projection, the viewport, or the map-size changes -- so each
+	// frame just blits that layer.
+	//
+	private volatile boolean graticule = false;
+	private volatile String coastlinesFile = null;
+	private final AtomicInteger vectorOverlayGeneration = new AtomicInteger();
+	private final Object overlayLock = new Object();
+	private volatile VectorOverlay vectorOverlay = null;
+	private volatile List<Object> overlayLayerKey = null;
+	private volatile BufferedImage overlayLayer = null;
+	private volatile ListenableFuture<BufferedImage> overlayLayerLoading = null;
+	
+	private volatile WarmStartCache warmStartCache = null;
+	private final ListeningExecutorService frameCacheExecutor = MoreExecutors.listeningDecorator(
+			Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("frame-cache-%d")
+					.setDaemon(true).setPriority(Thread.MIN_PRIORITY).build()));
+	private final AtomicBoolean frameCachePending = new AtomicBoolean();
+	private volatile long frameCachedAt = System.currentTimeMillis();
+	private volatile boolean showingCachedFrame = false;
+	private volatile boolean firstFrameDrawn = false;
+	
+	private volatile boolean globeView = false;
+	private volatile GlobeRenderer globeRenderer = null;
+	private volatile double globeLatitude = 0d, globeLongitude = 0d;
+	private final AtomicBoolean globeRedrawPending = new AtomicBoolean();
+	private Point dragPoint = null;
+	
+	private volatile Viewport viewport = Viewport.FULL;
+	private volatile ListenableFuture<BufferedImage> detailMapLoading = null;
+	
+	private Projection projection;
+	private double resolution;
+	private BufferedImage mapImage;
+	private int mapWidth, mapHeight;
+	private int mapOffsetX, mapOffsetY;
+	
+	private LocationIndex locationIndex = null;
+	private int[] locationX = new int[0], locationY = new int[0];
+	
+	public MapDisplay() {
+		
+		super();
+		
+		renderScheduler = new RenderScheduler(() -> {
+			if (globeView)
+				redrawGlobe();
+			else
+				redrawLightMap();
+			present();
+			cacheFrame(false);
+		}, () -> displayTime != null ? RenderScheduler.MAX_INTERVAL
+				: globeView ? RenderScheduler.calculateGlobeInterval(min(getWidth(), getHeight()))
+						: getLightMapInterval());
+		
+		setCacheDirectory(Options.getValue(DefinedOption.CACHE_DIRECTORY));
+		Options.addUpdateListener(DefinedOption.CACHE_DIRECTORY,
+				(oldDir, newDir) -> setCacheDirectory((String) newDir));
+		setProjection(Options.getValue(DefinedOption.PROJECTION));
+		setLightMapResolution(Options.getValue(DefinedOption.LIGHT_RESOLUTION));
+		Options.addUpdateListener(DefinedOption.PROJECTION, (oldProj, newProj) -> setProjection((Projection) newProj));
+		Options.addUpdateListener(DefinedOption.LIGHT_RESOLUTION,
+				(oldRes, newRes) -> setLightMapResolution((Integer) newRes));
+		setLocationsFile(Options.getValue(DefinedOption.LOCATIONS_FILE));
+		Options.addUpdateListener(DefinedOption.LOCATIONS_FILE, (oldFile, newFile) -> setLocationsFile((String) newFile));
+		setNightMapFile(Options.getValue(DefinedOption.NIGHT_MAP_FILE));
+		setGraticule(Options.getValue(DefinedOption.GRATICULE));
+		Options.addUpdateListener(DefinedOption.GRATICULE,
+				(oldGraticule, newGraticule) -> setGraticule((Boolean) newGraticule));
+		setCoastlinesFile(Options.getValue(DefinedOption.COASTLINES_FILE));
+		Options.addUpdateListener(DefinedOption.COASTLINES_FILE,
+				(oldFile, newFile) -> setCoastlinesFile((String) newFile));
+		Options.addUpdateListener(DefinedOption.NIGHT_MAP_FILE, (oldFile, newFile) -> setNightMapFile((String) newFile));
+		setActiveRendering(Options.getValue(DefinedOption.ACTIVE_RENDERING));
+		Options.addUpdateListener(DefinedOption.ACTIVE_RENDERING,
+				(oldActive, newActive) -> setActiveRendering((Boolean) newActive));
+		setGlobeView(Options.getValue(DefinedOption.GLOBE_VIEW));
+		Options.addUpdateListener(DefinedOption.GLOBE_VIEW, (oldGlobe, newGlobe) -> setGlobeView((Boolean) newGlobe));
+		
+		mapPopupActionListener = new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				
+				if (e.getActionCommand().equals("reset-zoom"))
+					setViewport(Viewport.FULL);
+				
+				if (e.getActionCommand().equals("export-time-lapse"))
+					exporter.exportTimeLapseWithDialog();
+				
+				if (e.getActionCommand().equals("export-poster"))
+					exporter.exportPosterWithDialog();
+				
+				if (e.getActionCommand().equals("save"))
+					exporter.saveImageWithDialog();
+			}
+		};
+		
+		mapPopupMenu = new JPopupMenu();
+		final JMenuItem saveAsItem = mapPopupMenu.add("Save as...");
+		saveAsItem.setActionCommand("save");
+		saveAsItem.addActionListener(mapPopupActionListener);
+		final JMenuItem exportPosterItem = mapPopupMenu.add("Export poster...");
+		exportPosterItem.setActionCommand("export-poster");
+		exportPosterItem.addActionListener(mapPopupActionListener);
+		final JMenuItem exportTimeLapseItem = mapPopupMenu.add("Export time-lapse...");
+		exportTimeLapseItem.setActionCommand("export-time-lapse");
+		exportTimeLapseItem.addActionListener(mapPopupActionListener);
+		final JMenuItem resetZoomItem = mapPopupMenu.add("Reset zoom");
+		resetZoomItem.setActionCommand("reset-zoom");
+		resetZoomItem.addActionListener(mapPopupActionListener);
+		
+		addMouseListener(new MouseAdapter() {
+			
+			@Override
+			public void mousePressed(MouseEvent e) {
+				
+				dragPoint = e.getPoint();
+			}
+			
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				
+				dragPoint = null;
+			}
+			
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				
+				if (globeView) {
+					if (e.getButton() == MouseEvent.BUTTON3)
+						mapPopupMenu.show(e.getComponent(), e.getX(), e.getY());
+					return;
+				}
+				
+				if (projection == null)
+					return;
+				
+				final int mouseX = e.getPoint().x - mapOffsetX;
+				final int mouseY = e.getPoint().y - mapOffsetY;
+				
+				if (mouseX < 0 || mouseY < 0)
+					return;
+				if (mouseX > mapWidth || mouseY > mapHeight)
+					return;
+				
+				final Viewport currentViewport = viewport;
+				if (e.getButton() == MouseEvent.BUTTON1)
+					logMapLatLong(currentViewport.toPlaneX((double) mouseX / (double) mapWidth),
+							currentViewport.toPlaneY(1d - (double) mouseY / (double) mapHeight));
+				
+				else if (e.getButton() == MouseEvent.BUTTON3)
+					mapPopupMenu.show(e.getComponent(), e.getX(), e.getY());
+			}
+			
+		});
+		addMouseMotionListener(new MouseMotionAdapter() {
+			
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				
+				if (dragPoint == null)
+					return;
+				
+				final double dx = e.getX() - dragPoint.x, dy = e.getY() - dragPoint.y;
+				dragPoint = e.getPoint();
+				
+				if (!globeView) {
+					//
+					// Drag the map along with the mouse.
+					//
+					if (mapWidth > 0 && mapHeight > 0 && !viewport.isFull())
+						setViewport(viewport.pan(-dx / mapWidth * viewport.getSize(),
+								dy / mapHeight * viewport.getSize()));
+					return;
+				}
+				
+				//
+				// Dragging across the globe's radius turns it by a radian.
+				//
+				final double radius = max(min(getWidth(), getHeight()) / 2d, 1d);
+				
+				globeLongitude = window(globeLongitude - radiansToDegrees(dx / radius), -180d, +180d);
+				globeLatitude = clamp(globeLatitude + radiansToDegrees(dy / radius), -90d, +90d);
+				requestGlobeRedraw();
+			}
+		});
+		addMouseWheelListener((e) -> {
+			
+			if (globeView || projection == null || mapWidth <= 0 || mapHeight <= 0)
+				return;
+			
+			//
+			// Zoom about the point under the mouse.
+			//
+			final Viewport currentViewport = viewport;
+			final double x = currentViewport.toPlaneX((double) (e.getX() - mapOffsetX) / (double) mapWidth),
+					y = currentViewport.toPlaneY(1d - (double) (e.getY() - mapOffsetY) / (double) mapHeight);
+			setViewport(currentViewport.zoomAbout(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), x, y));
+		});
+		addComponentListener(new ComponentAdapter() {
+			
+			@Override
+			public void componentShown(ComponentEvent e) {
+				
+				if (isShowing())
+					renderScheduler.resume();
+			}
+			
+			@Override
+			public void componentHidden(ComponentEvent e) {
+				
+				renderScheduler.suspend();
+			}
+			
+			@Override
+			public void componentResized(ComponentEvent e) {
+				
+				final ResizeEvent event = new ResizeEvent();
+				event.begin();
+				
+				try {
+					updateSemaphore.acquire();
+					try {
+						recalculateImageSize(e.getComponent().getWidth(), e.getComponent().getHeight());
+					} finally {
+						updateSemaphore.release();
+					}
+				} catch (InterruptedException exp) {
+					
+				}
+				
+				//
+				// If the window has grown past what we decoded (or we reprojected to
+				// another size), load again at the new size.
+				//
+				final BaseMap currentBaseMap = baseMap;
+				final boolean reloading = currentBaseMap != null && !currentBaseMap.isPlaceholder()
+						&& currentBaseMap.isUnsuitableFor(mapWidth, mapHeight);
+				if (reloading)
+					loadBaseMap();
+				loadDetailMap();
+				
+				//
+				// Likewise the night-map, if we reprojected it to another size.
+				//
+				final BufferedImage currentNightMap = nightMap;
+				final Projection currentProjection = projection;
+				if (currentNightMap != null && currentProjection != null) {
+					final Dimension targetSize = getTargetSize();
+					final Dimension nightMapSize = BaseMapLoader.fitToCanvas(currentProjection.getAspectRatio(),
+							targetSize.width, targetSize.height);
+					if (currentNightMap.getWidth() != nightMapSize.width
+							|| currentNightMap.getHeight() != nightMapSize.height)
+						loadNightMap(true);
+				}
+				
+				present();
+				renderScheduler.invalidate();
+				
+				if (event.shouldCommit()) {
+					event.width = e.getComponent().getWidth();
+					event.height = e.getComponent().getHeight();
+					event.mapWidth = mapWidth;
+					event.mapHeight = mapHeight;
+					event.reloading = reloading;
+					event.commit();
+				}
+			}
+		});
+		addHierarchyListener((e) -> {
+			
+			if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0)
+				setWindow(SwingUtilities.getWindowAncestor(this));
+			
+			if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+				if (isShowing() && (window == null || window.isShowing() && !isIconified(window)))
+					renderScheduler.resume();
+				else {
+					renderScheduler.suspend();
+					cacheFrame(true);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Track the window containing this display, so we can suspend rendering
+	 * while it's minimized.
+	 * 
+	 * @param newWindow
+	 */
+	private void setWindow(Window newWindow) {
+		
+		if (window == newWindow)
+			return;
+		
+		if (window != null)
+			window.removeWindowListener(windowStateListener);
+		window = newWindow;
+		if (window != null)
+			window.addWindowListener(windowStateListener);
+	}
+	
+	private static boolean isIconified(Window window) {
+		
+		return (window instanceof Frame)
+				&& (((Frame) window).getExtendedState() & Frame.ICONIFIED) != 0;
+	}
+	
+	private void recalculateImageSize(double windowWidth, double windowHeight) {
+		
+		if (mapImage == null)
+			return;
+		
+		//
+		// Reprojected images (and their placeholders) are sized by the
+		// projection's own aspect-ratio, so we must be too.
+		//
+		final BaseMap currentBaseMap = baseMap;
+		final double imageRatio = (currentBaseMap != null && currentBaseMap.isReprojected() && projection != null)
+				? projection.getAspectRatio()
+				: ((double) mapImage.getWidth()) / ((double) mapImage.getHeight());
+		
+		final double newRatio = windowWidth / windowHeight;
+		
+		if (imageRatio >= newRatio) {
+			mapWidth = (int) Math.floor(windowWidth);
+			mapHeight = (int) Math.floor(windowWidth / imageRatio);
+		} else {
+			mapHeight = (int) Math.floor(windowHeight);
+			mapWidth = (int) Math.floor(windowHeight * imageRatio);
+		}
+		
+		mapOffsetX = (int) ((windowWidth - (double) mapWidth) / 2d);
+		mapOffsetY = (int) ((windowHeight - (double) mapHeight) / 2d);
+		
+		if (mapWidth > 0 && mapHeight > 0)
+			if (lightMap == null || lightMap.getWidth() != mapWidth || lightMap.getHeight() != mapHeight)
+				lightMap = LightMapRenderer.createLightMap(mapWidth, mapHeight);
+		
+		recalculateLocationPositions();
+		loadOverlayLayer();
+	}
+	
+	/**
+	 * Project every indexed location onto the map as it's currently sized.
+	 */
+	private void recalculateLocationPositions() {
+		
+		final LocationIndex index = locationIndex;
+		if (index == null || projection == null) {
+			locationX = new int[0];
+			locationY = new int[0];
+			return;
+		}
+		
+		final int size = index.size();
+		final double[] latitude = new double[size], longitude = new double[size];
+		for (int i = 0; i < size; i++) {
+			latitude[i] = index.getLocation(i).getLatitude();
+			longitude[i] = index.getLocation(i).getLongitude();
+		}
+		
+		final double[] x = new double[size], y = new double[size];
+		projection.forward(latitude, longitude, x, y, 0, size);
+		
+		final Viewport currentViewport = viewport;
+		final int[] newX = new int[size], newY = new int[size];
+		for (int i = 0; i < size; i++) {
+			newX[i] = (int) (currentViewport.toViewportX(x[i]) * (double) mapWidth);
+			newY[i] = (int) ((1d - currentViewport.toViewportY(y[i])) * (double) mapHeight);
+		}
+		
+		locationX = newX;
+		locationY = newY;
+	}
+	
+	public void setProjection(Projection projection) {
+		
+		if (this.projection == projection)
+			return;
+		
+		this.projection = projection;
+		setViewport(Viewport.FULL);
+		
+		if (projection == null) {
+			baseMapGeneration.incrementAndGet();
+			setBaseMap(null);
+			loadNightMap(false);
+			return;
+		}
+		
+		loadBaseMap();
+		loadNightMap(false);
+	}
+	
+	/**
+	 * Show the night-side of the map with the lights from the given
+	 * (equirectangular) image file, or else (if {@code null}, or no such file)
+	 * from the bundled {@link BaseMapLoader#NIGHT_MAP_RESOURCE}.
+	 * 
+	 * @param fileName
+	 */
+	public void setNightMapFile(String fileName) {
+		
+		nightMapFile = fileName;
+		loadNightMap(false);
+	}
+	
+	/**
+	 * Start reprojecting the night-map for the current projection, off the
+	 * calling thread. Until it's ready, the night-side is simply darkened -- or,
+	 * if only resizing, keeps the night-map it has.
+	 * 
+	 * @param resizing
+	 *            {@code true} if only the map-size has changed
+	 */
+	private void loadNightMap(boolean resizing) {
+		
+		final ListenableFuture<BufferedImage> previousLoading = nightMapLoading;
+		if (previousLoading != null)
+			previousLoading.cancel(true);
+		nightMapLoading = null;
+		
+		//
+		// A night-map for the previous projection is no use for this one.
+		//
+		if (!resizing) {
+			nightMap = null;
+			frameCompositor.setNightMap(null);
+		}
+		
+		final Projection loadingProjection = projection;
+		if (loadingProjection == null) {
+			renderScheduler.invalidate();
+			return;
+		}
+		
+		final String requestedFile = nightMapFile;
+		final String loadingFile = getOverridingFile(requestedFile, "night-map");
+		
+		final Dimension targetSize = getTargetSize();
+		final ListenableFuture<BufferedImage> loading = baseMapLoader.loadNightMap(loadingFile, loadingProjection,
+				targetSize.width, targetSize.height);
+		
+		Futures.addCallback(loading, new FutureCallback<BufferedImage>() {
+			
+			@Override
+			public void onSuccess(BufferedImage result) {
+				
+				if (projection != loadingProjection || !Objects.equals(requestedFile, nightMapFile))
+					return;
+				
+				nightMap = result;
+				frameCompositor.setNightMap(result);
+				renderScheduler.invalidate();
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				
+				if (t instanceof CancellationException)
+					return;
+				
+				LOG.error("Cannot load the night-map from [{}]",
+						(loadingFile == null) ? BaseMapLoader.NIGHT_MAP_RESOURCE : loadingFile);
+				LOG.error("Received exception --", t);
+			}
+		}, MoreExecutors.directExecutor());
+		
+		nightMapLoading = loading;
+	}
+	
+	/**
+	 * Check that a file named to override a bundled resource exists, warning if
+	 * it doesn't.
+	 * 
+	 * @param fileName
+	 *            the file named in place of the bundled resource, or {@code null}
+	 * @param description
+	 *            what the file holds (e.g., "night-map")
+	 * @return the given file-name if it names a file, or else {@code null} -- to
+	 *         use the bundled resource instead
+	 */
+	private static String getOverridingFile(String fileName, String description) {
+		
+		if (fileName == null)
+			return null;
+		
+		if (new File(fileName).isFile())
+			return fileName;
+		
+		LOG.warn("Cannot find {} [{}] -- using the bundled {} instead", description, fileName, description);
+		return null;
+	}
+	
+	/**
+	 * @return the size of the canvas -- or, if it hasn't been laid out yet, of
+	 *         the screen (which we assume it will fill)
+	 */
+	private Dimension getTargetSize() {
+		
+		int targetWidth = getWidth(), targetHeight = getHeight();
+		if ((targetWidth <= 0 || targetHeight <= 0) && !GraphicsEnvironment.isHeadless()) {
+			final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+			targetWidth = screenSize.width;
+			targetHeight = screenSize.height;
+		}
+		
+		return new Dimension(targetWidth, targetHeight);
+	}
+			
+	/**
+	 * Start decoding the current projection's base map (at the size it will be
+	 * displayed at), off the calling thread. A placeholder is shown until it's
+	 * ready.
+	 */
+	private void loadBaseMap() {
+			
+		final Projection loadingProjection = projection;
+		if (loadingProjection == null)
+			return;
+		
+		final Dimension targetSize = getTargetSize();
+		final int targetWidth = targetSize.width, targetHeight = targetSize.height;
+		
+		showCachedFrame();
+		
+		final int generation = baseMapGeneration.incrementAndGet();
+		
+		final BaseMapLoadEvent event = new BaseMapLoadEvent();
+		event.begin();
+		final int requestedWidth = targetWidth, requestedHeight = targetHeight;
+		
+		//
+		// Any load still in progress is now moot.
+		//
+		final ListenableFuture<BaseMap> previousLoading = baseMapLoading;
+		if (previousLoading != null)
+			previousLoading.cancel(true);
+		
+		final ListenableFuture<BaseMap> loading = baseMapLoader.load(loadingProjection, targetWidth, targetHeight,
+				(placeholder) -> {
+					//
+					// Don't replace a real image with a placeholder, unless it's from
+					// another projection.
+					//
+					final BaseMap currentBaseMap = baseMap;
+					if (currentBaseMap == null || currentBaseMap.isPlaceholder()
+							|| baseMapProjection != loadingProjection)
+						setBaseMap(placeholder, loadingProjection, generation);
+				});
+		
+		Futures.addCallback(loading, new FutureCallback<BaseMap>() {
+			
+			@Override
+			public void onSuccess(BaseMap result) {
+				
+				setBaseMap(result, loadingProjection, generation);
+				
+				if (event.shouldCommit()) {
+					event.width = result.getImage().getWidth();
+					event.height = result.getImage().getHeight();
+					event.subsampling = result.getSubsampling();
+					event.reprojected = result.isReprojected();
+					commit("loaded");
+				}
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				
+				if (event.shouldCommit())
+					commit((t instanceof CancellationException) ? "cancelled" : "failed");
+				
+				if (t instanceof CancellationException)
+					return;
+				
+				LOG.error("Cannot open image {} associated with the Projection {}",
+						loadingProjection.getImageName(), loadingProjection.toString());
+				LOG.error("Received exception --", t);
+			}
+			
+			private void commit(String outcome) {
+				
+				event.projection = loadingProjection.getName();
+				event.targetWidth = requestedWidth;
+				event.targetHeight = requestedHeight;
+				event.outcome = outcome;
+				event.commit();
+			}
+		}, MoreExecutors.directExecutor());
+		
+		baseMapLoading = loading;
+	}
+	
+	/**
+	 * Display the given base map, unless a newer one has been requested since it
+	 * started loading.
+	 * 
+	 * @param newBaseMap
+	 * @param newProjection
+	 *            the projection the given base map belongs to
+	 * @param generation
+	 */
+	private void setBaseMap(BaseMap newBaseMap, Projection newProjection, int generation) {
+		
+		if (baseMapGeneration.get() != generation)
+			return;
+		
+		baseMapProjection = newProjection;
+		setBaseMap(newBaseMap);
+		loadDetailMap();
+	}
+	
+	/**
+	 * Show only the given region of the map. Only that region is sampled for
+	 * the light-map, and a detail-map is rendered for it in the background.
+	 * 
+	 * @param newViewport
+	 */
+	public void setViewport(Viewport newViewport) {
+		
+		if (viewport.equals(newViewport))
+			return;
+		
+		viewport = newViewport;
+		frameCompositor.setViewport(newViewport);
+		recalculateLocationPositions();
+		loadDetailMap();
+		loadOverlayLayer();
+		
+		renderScheduler.invalidate();
+	}
+	
+	/**
+	 * Render the current viewport from the source image, at the map's current
+	 * size. Until that's done, the viewport is simply cropped from the base
+	 * map.
+	 */
+	private void loadDetailMap() {
+		
+		//
+		// Any load still in progress is now moot.
+		//
+		final ListenableFuture<BufferedImage> previousLoading = detailMapLoading;
+		if (previousLoading != null)
+			previousLoading.cancel(true);
+		detailMapLoading = null;
+		
+		final Projection loadingProjection = projection;
+		final Viewport loadingViewport = viewport;
+		final int width = mapWidth, height = mapHeight;
+		if (loadingProjection == null || loadingViewport.isFull() || globeView || width <= 0 || height <= 0)
+			return;
+		
+		final ListenableFuture<BufferedImage> loading = baseMapLoader.loadViewport(loadingProjection,
+				loadingViewport, width, height);
+		
+		Futures.addCallback(loading, new FutureCallback<BufferedImage>() {
+			
+			@Override
+			public void onSuccess(BufferedImage result) {
+				
+				if (projection != loadingProjection || !viewport.equals(loadingViewport))
+					return;
+				
+				frameCompositor.setDetailMap(result, loadingViewport);
+				renderScheduler.invalidate();
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				
+				if (t instanceof CancellationException)
+					return;
+				
+				LOG.error("Cannot render the detail-map for {}", loadingViewport);
+				LOG.error("Received exception --", t);
+			}
+		}, MoreExecutors.directExecutor());
+		
+		detailMapLoading = loading;
+	}
+	
+	private void setBaseMap(BaseMap newBaseMap) {
+		
+		try {
+			updateSemaphore.acquire();
+			try {
+				baseMap = newBaseMap;
+				mapImage = (newBaseMap == null) ? null : newBaseMap.getImage();
+				frameCompositor.setBaseMap(mapImage);
+				recalculateImageSize(getWidth(), getHeight());
+			} finally {
+				updateSemaphore.release();
+			}
+		} catch (InterruptedException e) {
+			
+		}
+		
+		renderScheduler.invalidate();
+	}
+	
+	/**
+	 * Load the locations to overlay on the map from the given CSV file. If the
+	 * file doesn't exist, no locations are shown.
+	 * 
+	 * @param fileName
+	 * @see LocationIndex#readFromCsv(java.io.Reader)
+	 */
+	public void setLocationsFile(String fileName) {
+		
+		LocationIndex newIndex = null;
+		
+		if (fileName != null && new File(fileName).isFile()) {
+			try (Reader reader = new FileReader(fileName)) {
+				
+				newIndex = new LocationIndex(LocationIndex.readFromCsv(reader));
+				LOG.info("Loaded {} locations from [{}]", newIndex.size(), fileName);
+				
+			} catch (IOException e) {
+				LOG.error("Cannot read locations from [" + fileName + "]", e);
+			}
+		}
+		
+		try {
+			updateSemaphore.acquire();
+			try {
+				locationIndex = newIndex;
+				if (locationIndex != null)
+					locationIndex.update(getDisplayTime());
+				recalculateLocationPositions();
+			} finally {
+				updateSemaphore.release();
+			}
+		} catch (InterruptedException e) {
+			
+		}
+		
+		renderScheduler.invalidate();
+	}
+	
+	/**
+	 * Select whether to draw lines of latitude and longitude over the map.
+	 * 
+	 * @param graticule
+	 * @see DefinedOption#GRATICULE
+	 */
+	public void setGraticule(Boolean graticule) {
+		
+		this.graticule = Boolean.TRUE.equals(graticule);
+		loadVectorOverlay();
+	}
+	
+	/**
+	 * Draw the coastlines from the given file over the map, or else (if
+	 * {@code null}, or no such file) the bundled
+	 * {@link VectorOverlay#COASTLINES_RESOURCE}.
+	 * 
+	 * @param fileName
+	 * @see VectorOverlay#readCoastlines(Reader)
+	 */
+	public void setCoastlinesFile(String fileName) {
+		
+		this.coastlinesFile = fileName;
+		loadVectorOverlay();
+	}
+	
+	/**
+	 * Rebuild the vector overlay (reading its coastlines) off the
+	 * calling thread, and then its layer.
+	 */
+	private void loadVectorOverlay() {
+		
+		final int generation = vectorOverlayGeneration.incrementAndGet();
+		final boolean loadingGraticule = graticule;
+		final String loadingFile = coastlinesFile;
+		
+		redrawExecutor.submit(() -> {
+			
+			final String overridingFile = getOverridingFile(loadingFile, "coastlines");
+			final String name = (overridingFile == null) ? VectorOverlay.COASTLINES_RESOURCE : overridingFile;
+			
+			List<VectorOverlay.Line> coastlines = null;
+			try {
+				if (overridingFile == null)
+					coastlines = VectorOverlay.readBundledCoastlines();
+				else
+					try (Reader reader = new FileReader(overridingFile)) {
+						coastlines = VectorOverlay.readCoastlines(reader);
+					}
+					
+				LOG.info("Loaded {} coastlines from [{}]", coastlines.size(), name);
+					
+			} catch (IOException e) {
+				LOG.error("Cannot read coastlines from [" + name + "]", e);
+			}
+			
+			if (vectorOverlayGeneration.get() != generation)
+				return;
+			
+			final VectorOverlay overlay = new VectorOverlay(loadingGraticule, coastlines);
+			vectorOverlay = overlay.isEmpty() ? null : overlay;
+			loadOverlayLayer();
+		});
+	}
+	
+	/**
+	 * Start drawing the vector overlay for the current projection, viewport, and
+	 * map-size into a new layer, off the calling thread -- unless that's already
+	 * been done. Until it's ready, no overlay is shown.
+	 */
+	private void loadOverlayLayer() {
+		
+		final VectorOverlay overlay = vectorOverlay;
+		final Projection loadingProjection = projection;
+		final Viewport loadingViewport = viewport;
+		final int width = mapWidth, height = mapHeight;
+		
+		final List<Object> key = Arrays.asList(overlay, loadingProjection, loadingViewport, width, height);
+		synchronized (overlayLock) {
+			if (key.equals(overlayLayerKey))
+				return;
+			
+			final ListenableFuture<BufferedImage> previousLoading = overlayLayerLoading;
+			if (previousLoading != null)
+				previousLoading.cancel(true);
+			overlayLayerLoading = null;
+			overlayLayerKey = key;
+			overlayLayer = null;
+		}
+		
+		if (overlay == null || loadingProjection == null || width <= 0 || height <= 0) {
+			renderScheduler.invalidate();
+			return;
+		}
+		
+		final ListenableFuture<BufferedImage> loading = redrawExecutor.submit(() -> {
+			final long start = System.nanoTime();
+			final BufferedImage layer = overlay.render(loadingProjection, loadingViewport, width, height);
+			LOG.debug("drew overlay ({} points) at {}x{} in {} ms", overlay.getPointCount(), width, height,
+					(System.nanoTime() - start) / 1000000L);
+			return layer;
+		});
+		
+		Futures.addCallback(loading, new FutureCallback<BufferedImage>() {
+			
+			@Override
+			public void onSuccess(BufferedImage result) {
+				
+				synchronized (overlayLock) {
+					if (overlayLayerKey != key)
+						return;
+					overlayLayer = result;
+				}
+				renderScheduler.invalidate();
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				
+				if (t instanceof CancellationException)
+					return;
+				
+				LOG.error("Cannot draw the overlay for {}", loadingProjection.getName());
+				LOG.error("Received exception --", t);
+			}
+		}, MoreExecutors.directExecutor());
+		
+		synchronized (overlayLock) {
+			if (overlayLayerKey == key)
+				overlayLayerLoading = loading;
+		}
+	}
+	
+	/**
+	 * Show the world at the given time, rather than as it is now.
+	 * <p>
+	 * While the time is being adjusted (e.g., while a slider is dragged),
+	 * light-maps for neighboring times are rendered ahead, in the direction the
+	 * time is moving.
+	 * </p>
+	 * 
+	 * @param time
+	 *            the time to show, or {@code null} to show the present
+	 * @param adjusting
+	 *            {@code true} if the time is still being adjusted
+	 */
+	public void setDisplayTime(ZonedDateTime time, boolean adjusting) {
+		
+		displayTime = time;
+		
+		if (time == null || !adjusting)
+			cancelPrerenders();
+		if (time == null)
+			lightMapCache.clear();
+		
+		renderScheduler.invalidate();
+	}
+	
+	/**
+	 * @return the time being shown -- either the present, or a time selected by
+	 *         {@link #setDisplayTime(ZonedDateTime, boolean)}
+	 */
+	public ZonedDateTime getDisplayTime() {
+		
+		final ZonedDateTime time = displayTime;
+		return (time != null) ? time : ZonedDateTime.now();
+	}
+	
+	/**
+	 * @return the projection being shown, or {@code null} if none has been set
+	 *         yet
+	 */
+	Projection getProjection() {
+		
+		return projection;
+	}
+	
+	/**
+	 * @return the part of the map being shown
+	 */
+	Viewport getViewport() {
+		
+		return viewport;
+	}
+	
+	/**
+	 * @return the width (in pixels) of the map as shown
+	 */
+	int getMapWidth() {
+		
+		return mapWidth;
+	}
+	
+	/**
+	 * @return the height (in pixels) of the map as shown
+	 */
+	int getMapHeight() {
+		
+		return mapHeight;
+	}
+	
+	/**
+	 * @return {@code true} if the map is shown as a globe
+	 */
+	boolean isGlobeView() {
+		
+		return globeView;
+	}
+	
+	/**
+	 * @return the loader for this display's base map (and its reprojector)
+	 */
+	BaseMapLoader getBaseMapLoader() {
+		
+		return baseMapLoader;
+	}
+	
+	/**
+	 * Select whether to show an orthographic view of the globe, rather than the
+	 * selected projection.
+	 * 
+	 * @param globeView
+	 * @see DefinedOption#GLOBE_VIEW
+	 */
+	public void setGlobeView(Boolean globeView) {
+		
+		this.globeView = (globeView != null && globeView);
+		
+		if (this.globeView && globeRenderer == null)
+			Futures.addCallback(baseMapLoader.loadGlobe(), new FutureCallback<GlobeRenderer>() {
+			
+				@Override
+				public void onSuccess(GlobeRenderer result) {
+				
+					globeRenderer = result;
+					renderScheduler.invalidate();
+				}
+			
+				@Override
+				public void onFailure(Throwable t) {
+				
+					if (t instanceof CancellationException)
+						return;
+				
+					LOG.error("Cannot prepare the globe-view", t);
+				}
+			}, MoreExecutors.directExecutor());
+		
+		renderScheduler.invalidate();
+	}
+	
+	public void setLightMapResolution(int resolution) {
+		
+		if ((int) this.resolution == resolution)
+			return;
+		
+		this.resolution = resolution;
+		
+		renderScheduler.invalidate();
+	}
+	
+	/**
+	 * Select whether to present frames by active rendering (through a
+	 * {@link BufferStrategy}), or passively (by way of {@link #repaint()}).
+	 * 
+	 * @param activeRendering
+	 * @see DefinedOption#ACTIVE_RENDERING
+	 */
+	public void setActiveRendering(Boolean activeRendering) {
+		
+		this.activeRendering = (activeRendering != null && activeRendering);
+		present();
+	}
+	
+	/**
+	 * @return frame-time statistics for frames presented by active rendering
+	 */
+	public FrameTimer getFrameTimer() {
+		
+		return frameTimer;
+	}
+	
+	@Override
+	public void update(Graphics g) {
+		
+		//
+		// Every frame fills the whole canvas, so don't bother clearing it first.
+		//
+		paint(g);
+	}
+	
+	@Override
+	public void paint(Graphics g) {
+		
+		if (activeRendering && isDisplayable())
+			present();
+		else
+			drawFrame(g);
+	}
+	
+	/**
+	 * Present the current frame. Under active rendering, this happens
+	 * immediately, on the calling thread; otherwise a repaint is requested.
+	 */
+	private void present() {
+		
+		if (!activeRendering || !isDisplayable()) {
+			repaint();
+			return;
+		}
+		
+		synchronized (presentLock) {
+			
+			final long start = System.nanoTime();
+			
+			BufferStrategy strategy = getBufferStrategy();
+			if (strategy == null) {
+				try {
+					createBufferStrategy(BUFFER_COUNT);
+				} catch (IllegalStateException e) {
+					//
+					// We've just ceased to be displayable.
+					//
+					return;
+				}
+				strategy = getBufferStrategy();
+			}
+			
+			do {
+				do {
+					final Graphics g = strategy.getDrawGraphics();
+					try {
+						drawFrame(g);
+					} finally {
+						g.dispose();
+					}
+				} while (strategy.contentsRestored());
+				
+				strategy.show();
+			} while (strategy.contentsLost());
+			
+			Toolkit.getDefaultToolkit().sync();
+			
+			final long end = System.nanoTime();
+			frameTimer.record(start, end);
+			LOG.debug("presented frame in {} us (mean {} us, max {} us over recent frames)", (end - start) / 1000L,
+					(long) frameTimer.getMeanFrameTime() / 1000L, frameTimer.getMaxFrameTime() / 1000L);
+		}
+	}
+	
+	/**
+	 * Draw the current frame, filling the rest of the canvas with the background
+	 * color.
+	 * 
+	 * @param g
+	 */
+	private void drawFrame(Graphics g) {
+		
+		//
+		// Hold the frame while we draw it, so the compositor won't draw its next
+		// frame into it -- but needn't wait for any redraw in progress.
+		//
+		final BufferedImage frame = frameCompositor.acquireFrame();
+		try {
+			g.setColor(getBackground() != null ? getBackground() : Color.BLACK);
+			if (frame == null) {
+				g.fillRect(0, 0, getWidth(), getHeight());
+				return;
+			}
+		
+			if (!firstFrameDrawn) {
+				firstFrameDrawn = true;
+				LOG.info("first frame drawn {} ms after startup", ManagementFactory.getRuntimeMXBean().getUptime());
+			}
+			
+			//
+			// Center the frame, even if (e.g., just after a resize) it doesn't yet
+			// match the map-size.
+			//
+			final int frameX = (getWidth() - frame.getWidth()) / 2, frameY = (getHeight() - frame.getHeight()) / 2;
+			final int frameRight = frameX + frame.getWidth(), frameBottom = frameY + frame.getHeight();
+			g.fillRect(0, 0, getWidth(), frameY);
+			g.fillRect(0, frameBottom, getWidth(), getHeight() - frameBottom);
+			g.fillRect(0, frameY, frameX, frame.getHeight());
+			g.fillRect(frameRight, frameY, getWidth() - frameRight, frame.getHeight());
+			
+			g.drawImage(frame, frameX, frameY, null);
+		} finally {
+			frameCompositor.releaseFrame(frame);
+		}
+	}
+	
+	/**
+	 * Keep the warm-start cache (if any) in the given directory.
+	 * 
+	 * @param directoryName
+	 *            if {@code null} or blank, nothing is cached
+	 * @see DefinedOption#CACHE_DIRECTORY
+	 */
+	public void setCacheDirectory(String directoryName) {
+		
+		warmStartCache = (directoryName == null || directoryName.isBlank()) ? null
+				: new WarmStartCache(new File(directoryName));
+		baseMapLoader.setCache(warmStartCache);
+	}
+	
+	/**
+	 * If this display hasn't shown anything yet, show the frame last rendered
+	 * under the current projection (if cached) until a new one is ready.
+	 */
+	private void showCachedFrame() {
+		
+		final WarmStartCache cache = warmStartCache;
+		final Projection currentProjection = projection;
+		if (cache == null || currentProjection == null || globeView || frameCompositor.getFrame() != null)
+			return;
+		
+		final long start = System.nanoTime();
+		final CachedImage cached = cache.readFrame(currentProjection.getId());
+		if (cached == null)
+			return;
+		
+		frameCompositor.publishFrame(cached.getImage());
+		showingCachedFrame = true;
+		LOG.info("showing cached frame from {} (read in {} ms)", Instant.ofEpochMilli(cached.getTimestamp()),
+				(System.nanoTime() - start) / 1000000L);
+		
+		present();
+	}
+	
+	/**
+	 * Save a copy of the current frame to the warm-start cache (if any), off the
+	 * calling thread -- unless one was saved (or this display was created) within
+	 * the last {@link #FRAME_CACHE_INTERVAL}, or one is still being saved.
+	 * 
+	 * @param force
+	 *            if {@code true}, save regardless of when one was last saved
+	 */
+	private void cacheFrame(boolean force) {
+		
+		if (!force && System.currentTimeMillis() - frameCachedAt < FRAME_CACHE_INTERVAL)
+			return;
+		
+		final WarmStartCache cache = warmStartCache;
+		final Projection currentProjection = projection;
+		final BaseMap currentBaseMap = baseMap;
+		
+		//
+		// Don't bother caching a frame we'd never want to show at startup --
+		// including one scrubbed away from the present.
+		//
+		if (cache == null || currentProjection == null || currentBaseMap == null || currentBaseMap.isPlaceholder()
+				|| frameCompositor.getFrame() == null || showingCachedFrame || globeView || !viewport.isFull()
+				|| displayTime != null)
+			return;
+		
+		if (!frameCachePending.compareAndSet(false, true))
+			return;
+		
+		//
+		// The compositor draws into its old frames again, so we must save a copy
+		// -- holding the frame until we have.
+		//
+		final BufferedImage copy = copyFrame();
+		if (copy == null) {
+			frameCachePending.set(false);
+			return;
+		}
+		
+		final long timestamp = System.currentTimeMillis();
+		frameCachedAt = timestamp;
+		
+		try {
+			frameCacheExecutor.submit(() -> {
+				try {
+					final long start = System.nanoTime();
+					cache.writeFrame(currentProjection.getId(), copy, timestamp);
+					LOG.debug("cached frame in {} ms", (System.nanoTime() - start) / 1000000L);
+				} finally {
+					frameCachePending.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			frameCachePending.set(false);
+		}
+	}
+	
+	/**
+	 * @return a copy of the current frame, or {@code null} if there's none
+	 */
+	BufferedImage copyFrame() {
+		
+		final BufferedImage frame = frameCompositor.acquireFrame();
+		if (frame == null)
+			return null;
+		
+		try {
+			final BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(),
+					BufferedImage.TYPE_INT_RGB);
+			final Graphics2D g = copy.createGraphics();
+			try {
+				g.drawImage(frame, 0, 0, null);
+			} finally {
+				g.dispose();
+			}
+			return copy;
+		} finally {
+			frameCompositor.releaseFrame(frame);
+		}
+	}
+			
+	/**
+	 * Draw the vector overlay's layer (if it's ready, and the right size), and
+	 * then the location markers, over the map.
+	 * 
+	 * @param g
+	 */
+	private void drawOverlay(Graphics2D g) {
+		
+		final BufferedImage layer = overlayLayer;
+		if (layer != null && layer.getWidth() == mapWidth && layer.getHeight() == mapHeight)
+			g.drawImage(layer, 0, 0, null);
+		
+		drawLocations(g);
+	}
+	
+	/**
+	 * Draw a marker for every indexed location.
+	 * 
+	 * @param g
+	 */
+	void drawLocations(Graphics2D g) {
+			
+		if (locationIndex == null)
+			return;
+			
+		for (int i = 0; i < locationX.length; i++) {
+			g.setColor(locationIndex.isLit(i) ? Color.YELLOW : Color.GRAY);
+			g.fillRect(locationX[i] - 1, locationY[i] - 1, 3, 3);
+		}
+	}
+	
+	public void dispose() {
+		
+		renderScheduler.dispose();
+		
+		//
+		// Save the last frame, for the next start-up to show.
+		//
+		cacheFrame(true);
+		frameCacheExecutor.shutdown();
+		try {
+			frameCacheExecutor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		redrawExecutor.shutdown();
+		prerenderExecutor.shutdownNow();
+		baseMapLoader.dispose();
+		
+		synchronized (presentLock) {
+			final BufferStrategy strategy = getBufferStrategy();
+			if (strategy != null)
+				strategy.dispose();
+		}
+	}
+	
+	/**
+	 * Redraw the globe as soon as possible, off the calling thread -- unless a
+	 * redraw is already waiting to start.
+	 */
+	private void requestGlobeRedraw() {
+		
+		if (!globeRedrawPending.compareAndSet(false, true))
+			return;
+		
+		redrawExecutor.submit(() -> {
+			globeRedrawPending.set(false);
+			redrawGlobe();
+			present();
+		});
+	}
+	
+	/**
+	 * Render the globe, as currently rotated, to fill the canvas.
+	 */
+	private void redrawGlobe() {
+		
+		final GlobeRenderer renderer = globeRenderer;
+		final int width = getWidth(), height = getHeight();
+		if (renderer == null || width <= 0 || height <= 0)
+			return;
+		
+		final long start = System.nanoTime();
+		
+		final RenderEvent event = new RenderEvent();
+		event.begin();
+		
+		final DoublePair subsolarPoint = Solar
+				.calculateSubsolarPoint(Solar.getFractionalDayOfYear(getDisplayTime()));
+		try {
+			frameCompositor.publishFrame(renderer.render(width, height, globeLatitude, globeLongitude, subsolarPoint));
+			showingCachedFrame = false;
+		} catch (InterruptedException e) {
+			
+		} finally {
+			Pools.getPool(DoublePair.class).retireInstance(subsolarPoint);
+		}
+		
+		RenderMetrics.get().record(Phase.GLOBE, System.nanoTime() - start);
+		if (event.shouldCommit()) {
+			event.projection = "Globe";
+			event.width = width;
+			event.height = height;
+			event.zoom = 1d;
+			event.commit();
+		}
+		LOG.debug("rendered globe in {} us", (System.nanoTime() - start) / 1000L);
+	}
+	
+	private void redrawLightMap() {
+		
+		if (projection == null)
+			return;
+		if (lightMap == null)
+			return;
+		
+		try {
+			updateSemaphore.acquire();
+			try {
+				if (projection == null || lightMap == null)
+					return;
+			
+				//
+				// While the base map is still loading, keep showing the cached frame
+				// rather than replacing it with the placeholder.
+				//
+				final BaseMap currentBaseMap = baseMap;
+				if (showingCachedFrame && (currentBaseMap == null || currentBaseMap.isPlaceholder()))
+					return;
+				
+				LOG.debug("redrawing light-map ...");
+				
+				final long start = System.nanoTime();
+				
+				final RenderEvent event = new RenderEvent();
+				event.begin();
+				
+				//
+				// Only the viewport is sampled -- at the light-map's own resolution.
+				//
+				final Projection currentProjection = projection;
+				final Viewport currentViewport = viewport;
+				final int step = getLightMapCellSize();
+				
+				//
+				// Live, the light-map is rendered in place. While scrubbing through time,
+				// light-maps are cached (and rendered ahead) by time-bucket.
+				//
+				final ZonedDateTime scrubTime = displayTime;
+				final ZonedDateTime now;
+				final BufferedImage renderedLightMap;
+				final long samples;
+				if (scrubTime == null) {
+					now = ZonedDateTime.now();
+					samples = lightMapRenderer.render(lightMap, currentProjection, currentViewport, step, now);
+					renderedLightMap = lightMap;
+					
+				} else {
+					final long bucketMillis = getLightMapInterval();
+					final LightMapCache.Key key = new LightMapCache.Key(currentProjection, currentViewport,
+							lightMap.getWidth(), lightMap.getHeight(), step, bucketMillis,
+							LightMapCache.getBucket(scrubTime.toInstant(), bucketMillis));
+					now = key.getInstant().atZone(scrubTime.getZone());
+					
+					final boolean cached = lightMapCache.getIfPresent(key) != null;
+					try {
+						renderedLightMap = lightMapCache.get(key, () -> renderLightMap(lightMapRenderer,
+								currentProjection, currentViewport, key, scrubTime.getZone()));
+					} catch (ExecutionException e) {
+						LOG.error("Cannot render light-map for {}", now, e.getCause());
+						return;
+					}
+					samples = cached ? 0 : LightMapRenderer.getTileCount(key.getWidth(), key.getHeight(), step);
+					
+					prerenderAround(key, currentProjection, currentViewport, scrubTime.getZone());
+				}
+				
+				if (locationIndex != null) {
+					final int reclassified = locationIndex.update(now);
+					LOG.debug("reclassified {} location-buckets -- {} of {} locations are lit", reclassified,
+							locationIndex.getLitCount(), locationIndex.size());
+				}
+				
+				final long compositeStart = System.nanoTime();
+				frameCompositor.publish(renderedLightMap, this::drawOverlay);
+				showingCachedFrame = false;
+				final long end = System.nanoTime();
+				
+				RenderMetrics.get().record(Phase.COMPOSITE, end - compositeStart);
+				RenderMetrics.get().record(Phase.RENDER, end - start);
+				
+				final int tiles = LightMapRenderer.getTileCount(lightMap.getWidth(), lightMap.getHeight(), step);
+				if (event.shouldCommit()) {
+					event.projection = currentProjection.getName();
+					event.width = lightMap.getWidth();
+					event.height = lightMap.getHeight();
+					event.resolution = (int) resolution;
+					event.cellSize = step;
+					event.zoom = currentViewport.getZoom();
+					event.tiles = tiles;
+					event.samples = samples;
+					event.commit();
+				}
+				
+				LOG.info("redrew light-map ({} tiles, {} samples) for {} in {} ms", tiles, samples, now,
+						(end - start) / 1000000L);
+			} finally {
+				updateSemaphore.release();
+			}
+		} catch (InterruptedException e) {
+			
+		}
+	}
+	
+	/**
+	 * @return the interval over which the light-map doesn't visibly change
+	 * @see RenderScheduler#calculateInterval(Projection, int, int, int)
+	 */
+	private long getLightMapInterval() {
+		
+		return RenderScheduler.calculateInterval(projection, (int) (mapWidth * viewport.getZoom()),
+				(int) (mapHeight * viewport.getZoom()), getLightMapCellSize());
+	}
+	
+	private static BufferedImage renderLightMap(LightMapRenderer renderer, Projection projection, Viewport viewport,
+			LightMapCache.Key key, ZoneId zone) throws InterruptedException {
+		
+		final BufferedImage image = LightMapRenderer.createLightMap(key.getWidth(), key.getHeight());
+		renderer.render(image, projection, viewport, key.getCellSize(), key.getInstant().atZone(zone));
+		return image;
+	}
+	
+	/**
+	 * Render light-maps for the time-buckets around the given one, nearest first
+	 * -- and, at each distance, the bucket in the direction time is being
+	 * scrubbed first. Any renders still waiting from before are abandoned.
+	 * 
+	 * @param key
+	 * @param projection
+	 * @param viewport
+	 * @param zone
+	 */
+	private void prerenderAround(LightMapCache.Key key, Projection projection, Viewport viewport,
+			ZoneId zone) {
+		
+		final long direction = (key.getBucket() < lastScrubBucket) ? -1 : +1;
+		lastScrubBucket = key.getBucket();
+		
+		synchronized (prerenders) {
+			cancelPrerenders();
+			for (int distance = 1; distance <= PRERENDER_BUCKETS; distance++)
+				for (long offset : new long[] { direction * distance, -direction * distance }) {
+					final LightMapCache.Key neighbor = key.offsetBy(offset);
+					if (lightMapCache.getIfPresent(neighbor) != null)
+						continue;
+					prerenders.add(prerenderExecutor.submit(() -> lightMapCache.get(neighbor,
+							() -> renderLightMap(prerenderRenderer, projection, viewport, neighbor, zone))));
+				}
+		}
+	}
+	
+	private void cancelPrerenders() {
+		
+		synchronized (prerenders) {
+			prerenders.forEach(f -> f.cancel(false));
+			prerenders.clear();
+		}
+	}
+	
+	/**
+	 * @return the size (in pixels) of each square light-map sample-cell
+	 * @see DefinedOption#LIGHT_RESOLUTION
+	 */
+	int getLightMapCellSize() {
+		
+		final int xSize = (int) max(floor((double) mapWidth / resolution), 1d);
+		final int ySize = (int) max(floor((double) mapHeight / resolution), 1d);
+		return max(xSize, ySize);
+	}
+	
+	/**
+	 * @param latLong
+	 * @param now
+	 * @return
+	 * @see Solar#calculateSunExposure(DoublePair, ZonedDateTime)
+	 */
+	public static double calculateSunExposure(DoublePair latLong, ZonedDateTime now) {
+		
+		return Solar.calculateSunExposure(latLong, now);
+	}
+	
+	/**
+	 * Given a point on the map, expressed as a fraction in [0,1] starting from
+	 * bottom-left (i.e., south-west in most map-projections).
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	private void logMapLatLong(double x, double y) {
+		
+		final Pool<DoublePair> pool = Pools.getPool(DoublePair.class);
+		final DoublePair xy = pool.getInstance();
+		xy.set(x, y);
+		final DoublePair latLong = projection.transformXY_LatLong(xy);
+		
+		final ZonedDateTime now = (displayTime != null) ? displayTime : ZonedDateTime.now(Clock.systemUTC());
+		final double exposure = calculateSunExposure(latLong, now);
+		final double irradiance = Solar.calculateIrradiance(latLong, now);
+		
+		LOG.info("Click [" + xy.getX() + "," + xy.getY() + "] --> [" + latLong.getX() + "," + latLong.getY()
+				+ "] -- exposure = " + exposure + ", irradiance = " + irradiance + " W/m^2");
+		
+		final LocationIndex index = locationIndex;
+		if (index != null && index.size() > 0) {
+			final int nearest = index.findNearest(latLong.getX(), latLong.getY());
+			LOG.info("Nearest location: " + index.getLocation(nearest) + " -- "
+					+ (index.isLit(nearest) ? "lit" : "dark"));
+		}
+		
+		pool.retireInstance(xy);
+		pool.retireInstance(latLong);
+	}
 }
\ No newline at end of file
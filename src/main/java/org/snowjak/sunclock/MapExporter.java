@@ -0,0 +1,412 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.Graphics2D;
+import java.awt.GridLayout;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTextField;
+import javax.swing.ProgressMonitor;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.Options.DefinedOption;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.ImageFormats;
+import org.snowjak.sunclock.render.PosterExporter;
+import org.snowjak.sunclock.render.ShardedRenderer;
+import org.snowjak.sunclock.render.TimeLapseExporter;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Saves images, and exports posters and time-lapses, of what a
+ * {@link MapDisplay} shows -- asking what to export (and where to), and then
+ * exporting it in the background, showing its progress.
+ * <p>
+ * Exports run on their own (daemon) threads, so they never hold up the
+ * display's rendering. When {@link DefinedOption#EXPORT_WORKERS} is set,
+ * posters and time-lapses are split across that many worker processes (see
+ * {@link ShardedRenderer}).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class MapExporter {
+	
+	private static final Logger LOG = LogManager.getLogger(MapExporter.class);
+	
+	/**
+	 * Posters' light-maps are sampled in cells no larger than this (in pixels).
+	 */
+	private static final int MAX_POSTER_CELL_SIZE = 8;
+	
+	private final MapDisplay mapDisplay;
+	private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors
+			.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("export-%d").setDaemon(true).build()));
+	
+	public MapExporter(MapDisplay mapDisplay) {
+		
+		this.mapDisplay = mapDisplay;
+	}
+	
+	/**
+	 * Ask what time-lapse to export (and where to), and then export it in the
+	 * background -- in the current projection, at the map's current size.
+	 */
+	public void exportTimeLapseWithDialog() {
+		
+		final Projection currentProjection = mapDisplay.getProjection();
+		final int width = mapDisplay.getMapWidth(), height = mapDisplay.getMapHeight(),
+				cellSize = mapDisplay.getLightMapCellSize();
+		if (currentProjection == null || width <= 0 || height <= 0)
+			return;
+		
+		final JTextField startField = new JTextField(mapDisplay.getDisplayTime().truncatedTo(ChronoUnit.MINUTES)
+				.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+		final JSpinner hoursSpinner = new JSpinner(new SpinnerNumberModel(24, 1, 24 * 366, 1));
+		final JSpinner framesSpinner = new JSpinner(new SpinnerNumberModel(96, 1, 100000, 1));
+		final JSpinner delaySpinner = new JSpinner(new SpinnerNumberModel(100, 10, 10000, 10));
+		final JComboBox<TimeLapseExporter.Format> formatBox = new JComboBox<>(TimeLapseExporter.Format.values());
+		
+		final JPanel settings = new JPanel(new GridLayout(0, 2, 8, 4));
+		settings.add(new JLabel("Start:"));
+		settings.add(startField);
+		settings.add(new JLabel("Hours:"));
+		settings.add(hoursSpinner);
+		settings.add(new JLabel("Frames:"));
+		settings.add(framesSpinner);
+		settings.add(new JLabel("Frame delay (ms):"));
+		settings.add(delaySpinner);
+		settings.add(new JLabel("Format:"));
+		settings.add(formatBox);
+		
+		if (JOptionPane.showConfirmDialog(mapDisplay, settings, "Export Time-Lapse (" + width + "x" + height + ")",
+				JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+			return;
+		
+		final ZonedDateTime start;
+		try {
+			start = ZonedDateTime.parse(startField.getText().trim());
+		} catch (DateTimeParseException e) {
+			JOptionPane.showMessageDialog(mapDisplay,
+					"Cannot understand the start-time [" + startField.getText() + "].", "Cannot Export Time-Lapse",
+					JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		final ZonedDateTime end = start.plusHours((Integer) hoursSpinner.getValue());
+		final int frames = (Integer) framesSpinner.getValue(), delay = (Integer) delaySpinner.getValue();
+		final TimeLapseExporter.Format format = (TimeLapseExporter.Format) formatBox.getSelectedItem();
+		final String extension = (format == TimeLapseExporter.Format.GIF) ? "gif" : "png";
+		
+		final JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setFileFilter(new FileNameExtensionFilter(format + " (*." + extension + ")", extension));
+		if (fileChooser.showSaveDialog(mapDisplay) != JFileChooser.APPROVE_OPTION)
+			return;
+		
+		File file = fileChooser.getSelectedFile();
+		if (!file.getName().toLowerCase().endsWith("." + extension))
+			file = new File(file.getPath() + "." + extension);
+		final File output = file;
+		
+		final int workers = Options.getValue(DefinedOption.EXPORT_WORKERS);
+		exportInBackground("Time-Lapse", output, frames, progress -> {
+			final BufferedImage exportBaseMap = mapDisplay.getBaseMapLoader()
+					.loadViewport(currentProjection, Viewport.FULL, width, height).get();
+			
+			if (workers > 0) {
+				final ShardedRenderer.Result result = new ShardedRenderer(workers).exportTimeLapse(exportBaseMap,
+						currentProjection, cellSize, start, end, frames, format, delay, output, progress);
+				return String.format("Exported %d frames across %d workers in %.1f s (%.0f%% CPU utilization).",
+						frames, result.getWorkers(), result.getNanos() / 1e9, 100d * result.getCpuUtilization());
+			}
+			
+			final TimeLapseExporter.Result result = new TimeLapseExporter(Runtime.getRuntime().availableProcessors())
+					.export(exportBaseMap, currentProjection, cellSize, start, end, frames, format, delay, output,
+							progress);
+			return String.format("Exported %d frames in %.1f s (%.1f frames/second).", result.getFrames(),
+					result.getNanos() / 1e9, result.getFramesPerSecond());
+		});
+	}
+	
+	/**
+	 * Ask how large a poster to export (and where to), and then export it in the
+	 * background -- in the current projection, as the map is at the displayed
+	 * time. The poster is rendered and written a band of rows at a time, so it
+	 * may be far larger than could be held in memory.
+	 * 
+	 * @see PosterExporter
+	 */
+	public void exportPosterWithDialog() {
+		
+		final Projection currentProjection = mapDisplay.getProjection();
+		final int mapWidth = mapDisplay.getMapWidth(), mapHeight = mapDisplay.getMapHeight();
+		if (currentProjection == null || mapWidth <= 0 || mapHeight <= 0)
+			return;
+		
+		final JSpinner widthSpinner = new JSpinner(new SpinnerNumberModel(max(mapWidth, 8000), 16, 100000, 1000));
+		if (JOptionPane.showConfirmDialog(mapDisplay, new Object[] { "Width (pixels):", widthSpinner },
+				"Export Poster (" + currentProjection.getName() + ")", JOptionPane.OK_CANCEL_OPTION,
+				JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+			return;
+		
+		final int width = (Integer) widthSpinner.getValue();
+		final int height = max(1, (int) Math.round(width / currentProjection.getAspectRatio()));
+		
+		//
+		// Sample the light-map at least as finely as it is on screen -- though
+		// never so coarsely as to look blocky when printed.
+		//
+		final int cellSize = max(1, min(MAX_POSTER_CELL_SIZE, mapDisplay.getLightMapCellSize() * width / mapWidth));
+		final ZonedDateTime instant = mapDisplay.getDisplayTime();
+		
+		final JFileChooser fileChooser = new JFileChooser();
+		fileChooser.setFileFilter(new FileNameExtensionFilter("PNG (*.png)", "png"));
+		if (fileChooser.showSaveDialog(mapDisplay) != JFileChooser.APPROVE_OPTION)
+			return;
+		
+		File file = fileChooser.getSelectedFile();
+		if (!file.getName().toLowerCase().endsWith(".png"))
+			file = new File(file.getPath() + ".png");
+		final File output = file;
+		
+		final int workers = Options.getValue(DefinedOption.EXPORT_WORKERS);
+		exportInBackground("Poster", output, height, progress -> {
+			if (workers > 0) {
+				final ShardedRenderer.Result result = new ShardedRenderer(workers).exportPoster(currentProjection,
+						Viewport.FULL, width, height, cellSize, instant,
+						new BufferedOutputStream(new FileOutputStream(output)), progress);
+				return String.format("Exported %dx%d poster across %d workers in %.1f s (%.0f%% CPU utilization).",
+						width, height, result.getWorkers(), result.getNanos() / 1e9, 100d * result.getCpuUtilization());
+			}
+			
+			final long start = System.nanoTime();
+			final Reprojector reprojector = mapDisplay.getBaseMapLoader().loadReprojector().get();
+			new PosterExporter(executor).export(reprojector, currentProjection, Viewport.FULL, width, height,
+					cellSize, instant, new BufferedOutputStream(new FileOutputStream(output)), progress);
+			return String.format("Exported %dx%d poster in %.1f s.", width, height,
+					(System.nanoTime() - start) / 1e9);
+		});
+	}
+	
+	/**
+	 * Ask how large an image to save (and where to), and then render and save it
+	 * in the background: the map as shown -- in the current projection and
+	 * viewport, at the displayed time -- at any size up to the base map's full
+	 * resolution. (The globe-view is saved as shown.)
+	 */
+	public void saveImageWithDialog() {
+		
+		final ImageFormats formats = ImageFormats.forType(BufferedImage.TYPE_INT_RGB);
+		if (formats.isEmpty()) {
+			LOG.error("Cannot save the current screen: no image-writers are available");
+			JOptionPane.showMessageDialog(mapDisplay,
+					"Cannot save this image. For whatever reason, your Java environment doesn't have any compatible image-writers.",
+					"Cannot Save Image", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		
+		if (mapDisplay.isGlobeView()) {
+			final BufferedImage image = mapDisplay.copyFrame();
+			if (image == null)
+				return;
+			
+			final File output = chooseImageFile(formats);
+			if (output != null)
+				exportInBackground("Image", output, 100, progress -> {
+					formats.write(image, output, progress);
+					return String.format("Saved %dx%d image.", image.getWidth(), image.getHeight());
+				});
+			return;
+		}
+		
+		final Projection currentProjection = mapDisplay.getProjection();
+		final Viewport currentViewport = mapDisplay.getViewport();
+		if (currentProjection == null || mapDisplay.getMapWidth() <= 0 || mapDisplay.getMapHeight() <= 0)
+			return;
+		
+		//
+		// The reprojector knows the base map's full resolution -- and it may still
+		// need to be loaded, which mustn't hold up the UI.
+		//
+		Futures.addCallback(mapDisplay.getBaseMapLoader().loadReprojector(), new FutureCallback<Reprojector>() {
+			
+			@Override
+			public void onSuccess(Reprojector reprojector) {
+				
+				saveMapWithDialog(formats, reprojector, currentProjection, currentViewport,
+						mapDisplay.getDisplayTime());
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				
+				LOG.error("Cannot save the current screen", t);
+				JOptionPane.showMessageDialog(mapDisplay,
+						"Cannot save this image -- the base map could not be loaded. Consult the log for details.",
+						"Cannot Save Image", JOptionPane.ERROR_MESSAGE);
+			}
+		}, SwingUtilities::invokeLater);
+	}
+	
+	private void saveMapWithDialog(ImageFormats formats, Reprojector reprojector, Projection currentProjection,
+			Viewport currentViewport, ZonedDateTime instant) {
+		
+		final int screenWidth = mapDisplay.getMapWidth(), screenHeight = mapDisplay.getMapHeight();
+		final int fullWidth = max(screenWidth, (int) (reprojector.getSourceWidth() / currentViewport.getZoom()));
+		
+		final JSpinner widthSpinner = new JSpinner(new SpinnerNumberModel(screenWidth, 16, fullWidth, 100));
+		if (JOptionPane.showConfirmDialog(mapDisplay,
+				new Object[] { "Width (pixels, up to " + fullWidth + "):", widthSpinner }, "Save Image",
+				JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+			return;
+		
+		final int width = (Integer) widthSpinner.getValue();
+		final int height = max(1, (int) Math.round((double) width * screenHeight / screenWidth));
+		final int cellSize = max(1, mapDisplay.getLightMapCellSize() * width / screenWidth);
+		
+		final File output = chooseImageFile(formats);
+		if (output == null)
+			return;
+		
+		//
+		// Rendering is the first half of the progress-bar, and writing the second.
+		//
+		exportInBackground("Image", output, 200, progress -> {
+			final long start = System.nanoTime();
+			
+			final BufferedImage image = new PosterExporter(executor).render(reprojector, currentProjection,
+					currentViewport, width, height, cellSize, instant, rows -> progress.accept(100 * rows / height));
+			
+			final Graphics2D g = image.createGraphics();
+			g.scale((double) width / screenWidth, (double) height / screenHeight);
+			mapDisplay.drawLocations(g);
+			g.dispose();
+			
+			formats.write(image, output, percent -> progress.accept(100 + percent));
+			
+			return String.format("Saved %dx%d image in %.1f s.", width, height, (System.nanoTime() - start) / 1e9);
+		});
+	}
+	
+	/**
+	 * @param formats
+	 * @return the file selected to save to (with a suffix naming its format), or
+	 *         {@code null} if none was selected
+	 */
+	private File chooseImageFile(ImageFormats formats) {
+		
+		final String description = formats.getSuffixes().stream().map(suffix -> "*." + suffix)
+				.collect(Collectors.joining(";", "Images (", ")"));
+		
+		final JFileChooser saveFileChooser = new JFileChooser();
+		saveFileChooser.setFileFilter(
+				new FileNameExtensionFilter(description, formats.getSuffixes().toArray(new String[0])));
+		
+		if (saveFileChooser.showSaveDialog(mapDisplay) != JFileChooser.APPROVE_OPTION)
+			return null;
+		
+		return formats.withSuffix(saveFileChooser.getSelectedFile());
+	}
+	
+	/**
+	 * Something to export, which reports its progress as it goes.
+	 */
+	@FunctionalInterface
+	private interface Export {
+		
+		/**
+		 * @param progress
+		 *            receives progress, from 0 up to the maximum given to
+		 *            {@link MapExporter#exportInBackground(String, File, int, Export)}
+		 * @return a message describing the finished export
+		 * @throws Exception
+		 */
+		String export(IntConsumer progress) throws Exception;
+	}
+	
+	/**
+	 * Run the given export in the background, showing its progress -- and
+	 * interrupting it if canceled.
+	 * 
+	 * @param kind
+	 *            what is being exported, for dialog titles
+	 * @param output
+	 * @param maximum
+	 *            the progress reported when the export is finished
+	 * @param export
+	 */
+	private void exportInBackground(String kind, File output, int maximum, Export export) {
+		
+		final ProgressMonitor monitor = new ProgressMonitor(mapDisplay,
+				"Exporting " + kind.toLowerCase() + " to " + output.getName(), null, 0, maximum);
+		final ListenableFuture<String> exporting = executor.submit(
+				() -> export.export(progress -> SwingUtilities.invokeLater(() -> monitor.setProgress(progress))));
+		
+		final Timer cancelTimer = new Timer(250, e -> {
+			if (monitor.isCanceled())
+				exporting.cancel(true);
+		});
+		cancelTimer.start();
+		
+		Futures.addCallback(exporting, new FutureCallback<String>() {
+			
+			@Override
+			public void onSuccess(String result) {
+				
+				cancelTimer.stop();
+				monitor.close();
+				JOptionPane.showMessageDialog(mapDisplay, result, kind + " Exported",
+						JOptionPane.INFORMATION_MESSAGE);
+			}
+			
+			@Override
+			public void onFailure(Throwable t) {
+				
+				cancelTimer.stop();
+				monitor.close();
+				if (t instanceof CancellationException)
+					return;
+				
+				LOG.error("Cannot export " + kind.toLowerCase() + " to [" + output + "]", t);
+				JOptionPane.showMessageDialog(mapDisplay,
+						"Cannot export this " + kind.toLowerCase() + ". Consult the log for details.",
+						"Cannot Export " + kind, JOptionPane.ERROR_MESSAGE);
+			}
+		}, SwingUtilities::invokeLater);
+	}
+}
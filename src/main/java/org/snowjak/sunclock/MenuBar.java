@@ -1,65 +1,101 @@
-/**
- * 
- */
-package org.snowjak.sunclock;
-
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-
-import javax.swing.JMenu;
-import javax.swing.JMenuBar;
-import javax.swing.JMenuItem;
-
-import org.snowjak.sunclock.Options.DefinedOption;
-import org.snowjak.sunclock.projection.Projection;
-
-/**
- * @author snowjak88
- *
- */
-public class MenuBar extends JMenuBar {
-	
-	private static final long serialVersionUID = -3337450323034480745L;
-	
-	public MenuBar() {
-		
-		super();
-		
-		final JMenu fileMenu, projectionsMenu;
-		final ActionListener menuActionListener = new ActionListener() {
-			
-			@Override
-			public void actionPerformed(ActionEvent e) {
-				
-				if (e.getActionCommand().equals("quit"))
-					System.exit(0);
-				
-				if (e.getActionCommand().startsWith("projection-")) {
-					final String projectionName = e.getActionCommand().replaceFirst("projection-", "");
-					try {
-						final Projection selectedProjection = Projection.valueOf(projectionName);
-						Options.setValue(DefinedOption.PROJECTION, selectedProjection);
-					} catch (IllegalArgumentException ex) {
-						
-					}
-				}
-			}
-		};
-		
-		fileMenu = new JMenu("File");
-		final JMenuItem quitItem = fileMenu.add("Quit");
-		quitItem.setActionCommand("quit");
-		quitItem.addActionListener(menuActionListener);
-		
-		projectionsMenu = new JMenu("Projections");
-		for (Projection projection : Projection.values()) {
-			final JMenuItem projectionItem = projectionsMenu.add(projection.getName());
-			projectionItem.setActionCommand("projection-" + projection.name());
-			projectionItem.addActionListener(menuActionListener);
-		}
-		
-		add(fileMenu);
-		add(projectionsMenu);
-	}
-	
-}
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JMenu;
+import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
+
+import org.snowjak.sunclock.Options.DefinedOption;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Projections;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class MenuBar extends JMenuBar {
+	
+	private static final long serialVersionUID = -3337450323034480745L;
+	
+	public MenuBar() {
+		
+		super();
+		
+		final JMenu fileMenu, projectionsMenu, viewMenu;
+		final ActionListener menuActionListener = new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				
+				if (e.getActionCommand().equals("quit"))
+					System.exit(0);
+				
+				if (e.getActionCommand().startsWith("projection-")) {
+					final String projectionId = e.getActionCommand().replaceFirst("projection-", "");
+					final Projection selectedProjection = Projections.get(projectionId);
+					if (selectedProjection != null) {
+						Options.setValue(DefinedOption.PROJECTION, selectedProjection);
+						Options.setValue(DefinedOption.GLOBE_VIEW, Boolean.FALSE);
+					}
+				}
+				
+				if (e.getActionCommand().equals("globe"))
+					Options.setValue(DefinedOption.GLOBE_VIEW, ((JCheckBoxMenuItem) e.getSource()).isSelected());
+				
+				if (e.getActionCommand().equals("time-scrub"))
+					Options.setValue(DefinedOption.TIME_SCRUB, ((JCheckBoxMenuItem) e.getSource()).isSelected());
+				
+				if (e.getActionCommand().equals("graticule"))
+					Options.setValue(DefinedOption.GRATICULE, ((JCheckBoxMenuItem) e.getSource()).isSelected());
+			}
+		};
+		
+		fileMenu = new JMenu("File");
+		final JMenuItem quitItem = fileMenu.add("Quit");
+		quitItem.setActionCommand("quit");
+		quitItem.addActionListener(menuActionListener);
+		
+		projectionsMenu = new JMenu("Projections");
+		for (Projection projection : Projections.getAll()) {
+			final JMenuItem projectionItem = projectionsMenu.add(projection.getName());
+			projectionItem.setActionCommand("projection-" + projection.getId());
+			projectionItem.addActionListener(menuActionListener);
+		}
+		
+		projectionsMenu.addSeparator();
+		final JCheckBoxMenuItem globeItem = new JCheckBoxMenuItem("Globe",
+				Boolean.TRUE.equals(Options.getValue(DefinedOption.GLOBE_VIEW)));
+		globeItem.setActionCommand("globe");
+		globeItem.addActionListener(menuActionListener);
+		projectionsMenu.add(globeItem);
+		Options.addUpdateListener(DefinedOption.GLOBE_VIEW,
+				(oldGlobe, newGlobe) -> globeItem.setSelected(Boolean.TRUE.equals(newGlobe)));
+		
+		viewMenu = new JMenu("View");
+		final JCheckBoxMenuItem timeScrubItem = new JCheckBoxMenuItem("Time scrub",
+				Boolean.TRUE.equals(Options.getValue(DefinedOption.TIME_SCRUB)));
+		timeScrubItem.setActionCommand("time-scrub");
+		timeScrubItem.addActionListener(menuActionListener);
+		viewMenu.add(timeScrubItem);
+		Options.addUpdateListener(DefinedOption.TIME_SCRUB,
+				(oldScrub, newScrub) -> timeScrubItem.setSelected(Boolean.TRUE.equals(newScrub)));
+		final JCheckBoxMenuItem graticuleItem = new JCheckBoxMenuItem("Graticule",
+				Boolean.TRUE.equals(Options.getValue(DefinedOption.GRATICULE)));
+		graticuleItem.setActionCommand("graticule");
+		graticuleItem.addActionListener(menuActionListener);
+		viewMenu.add(graticuleItem);
+		Options.addUpdateListener(DefinedOption.GRATICULE,
+				(oldGraticule, newGraticule) -> graticuleItem.setSelected(Boolean.TRUE.equals(newGraticule)));
+		
+		add(fileMenu);
+		add(projectionsMenu);
+		add(viewMenu);
+	}
+	
+}
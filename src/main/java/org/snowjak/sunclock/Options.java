@@ -1,298 +1,483 @@
-/**
- * 
- */
-package org.snowjak.sunclock;
-
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.LinkedHashSet;
-import java.util.Properties;
-import java.util.Set;
-import java.util.function.BiConsumer;
-import java.util.function.Function;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import org.snowjak.sunclock.projection.Projection;
-
-/**
- * Encapsulates application options.
- * 
- * @author snowjak88
- *
- */
-public class Options {
-	
-	private static final Logger LOG = LogManager.getLogger(Options.class);
-	
-	/**
-	 * The filename of the application's properties file.
-	 */
-	public static final String PROPERTIES_FILENAME = "sun-clock.properties";
-	
-	/**
-	 * Defines those options available to the application.
-	 * 
-	 * @author snowjak88
-	 *
-	 */
-	public enum DefinedOption {
-		
-		PROJECTION(new Option<Projection>((proj, prop) -> {
-			if (proj == null)
-				prop.setProperty("projections.name", "");
-			else
-				prop.setProperty("projections.name", proj.name());
-		}, (prop) -> {
-			if (!prop.containsKey("projections.name"))
-				return null;
-			final String name = prop.getProperty("projections.name").trim();
-			if (name.isBlank() || name.equalsIgnoreCase("null"))
-				return null;
-			try {
-				return Projection.valueOf(name);
-			} catch (IllegalArgumentException e) {
-				return null;
-			}
-		}, Projection.EQUIRECTANGULAR)),
-		/**
-		 * Defines the resolution of the light-map.
-		 * <p>
-		 * The light-map is calculated as a square grid, consisting of at most N squares
-		 * on each side (with the lower bound set by the fact that each square must be
-		 * at least 1 pixel in size).
-		 * </p>
-		 */
-		LIGHT_RESOLUTION(new Option<Integer>((res, prop) -> {
-			if (res == null || res <= 0)
-				prop.setProperty("light-map.resolution", "");
-			else
-				prop.setProperty("light-map.resolution", res.toString());
-		}, (prop) -> {
-			if (!prop.containsKey("light-map.resolution"))
-				return null;
-			try {
-				final Integer val = Integer.parseInt(prop.getProperty("light-map.resolution"));
-				if (val <= 0)
-					return null;
-				return val;
-			} catch (NumberFormatException e) {
-				return null;
-			}
-		}, Integer.valueOf(128)));
-		
-		private final Option<?> option;
-		
-		private DefinedOption(Option<?> option) {
-			
-			this.option = option;
-		}
-		
-		private Option<?> getOption() {
-			
-			return option;
-		}
-	}
-	
-	/**
-	 * Get the value associated with the given {@link DefinedOption}.
-	 * 
-	 * @param <T>
-	 * @param option
-	 * @return
-	 */
-	@SuppressWarnings("unchecked")
-	public static <T> T getValue(DefinedOption option) {
-		
-		return (T) option.getOption().getValue();
-	}
-	
-	/**
-	 * Set the given {@link DefinedOption} to have the given value.
-	 * 
-	 * @param <T>
-	 * @param option
-	 * @param value
-	 */
-	@SuppressWarnings("unchecked")
-	public static <T> void setValue(DefinedOption option, T value) {
-		
-		((Option<T>) (option.getOption())).setValue(value);
-	}
-	
-	/**
-	 * Associate the given {@link OptionUpdateListener} with the given
-	 * {@link DefinedOption}.
-	 * 
-	 * @param <T>
-	 * @param option
-	 * @param listener
-	 */
-	@SuppressWarnings("unchecked")
-	public static <T> void addUpdateListener(DefinedOption option, OptionUpdateListener<T> listener) {
-		
-		((Option<T>) option.getOption()).addUpdateListener(listener);
-	}
-	
-	/**
-	 * De-aAssociate the given {@link OptionUpdateListener} with the given
-	 * {@link DefinedOption}.
-	 * 
-	 * @param <T>
-	 * @param option
-	 * @param listener
-	 */
-	@SuppressWarnings("unchecked")
-	public static <T> void removeUpdateListener(DefinedOption option, OptionUpdateListener<T> listener) {
-		
-		((Option<T>) option.getOption()).removeUpdateListener(listener);
-	}
-	
-	/**
-	 * Attempt to read in application options from the properties file (i.e.,
-	 * {@link #PROPERTIES_FILENAME}).
-	 * 
-	 * @throws FileNotFoundException
-	 *             if the given properties file doesn't exist
-	 */
-	public static void readFromProperties() throws FileNotFoundException {
-		
-		try (InputStream propertiesStream = new FileInputStream(PROPERTIES_FILENAME)) {
-			final Properties properties = new Properties();
-			properties.load(propertiesStream);
-			
-			for (DefinedOption opt : DefinedOption.values())
-				opt.getOption().populateFromProperties(properties);
-		} catch (IOException e) {
-			LOG.error("Encountered an unexpected exception while reading the properties file.", e);
-		}
-	}
-	
-	/**
-	 * Attempt to write the application options to the properties file (i.e.,
-	 * {@link #PROPERTIES_FILENAME}).
-	 */
-	public static void writeToProperties() {
-		
-		try (OutputStream propertiesStream = new FileOutputStream(PROPERTIES_FILENAME)) {
-			
-			final Properties properties = new Properties();
-			
-			for (DefinedOption opt : DefinedOption.values())
-				opt.getOption().writeToProperties(properties);
-			
-			properties.store(propertiesStream, "sun-clock application properties");
-			
-		} catch (IOException e) {
-			LOG.error("Cannot save properties to [" + PROPERTIES_FILENAME + "]", e);
-		}
-	}
-	
-	/**
-	 * This constructor is off-limites -- you're not meant to instantiate an
-	 * instance of this class.
-	 */
-	private Options() {
-		
-	}
-	
-	private static class Option<T> {
-		
-		private final BiConsumer<T, Properties> propertyWriter;
-		private final Function<Properties, T> propertyReader;
-		private final Set<OptionUpdateListener<T>> listeners = new LinkedHashSet<>();
-		
-		private T value;
-		
-		/**
-		 * Create a new Option, with no (i.e., {@code null}) initial value.
-		 * 
-		 * @param type
-		 *            the explicit type this Option is valued in
-		 * @param propertyWriter
-		 *            a method for converting an instance of this option into one or
-		 *            more values in the given {@link Properties}
-		 * @param propertyReader
-		 *            a method for converting Properties into an instance of this option
-		 */
-		@SuppressWarnings("unused")
-		public Option(BiConsumer<T, Properties> propertyWriter, Function<Properties, T> propertyReader) {
-			
-			this(propertyWriter, propertyReader, null);
-		}
-		
-		/**
-		 * Create a new Option.
-		 * 
-		 * @param type
-		 *            the explicit type this Option is valued in
-		 * @param propertyWriter
-		 *            a method for converting an instance of this option into one or
-		 *            more values in the given {@link Properties}
-		 * @param propertyReader
-		 *            a method for converting Properties into an instance of this option
-		 * @param initialValue
-		 *            the initial value of this option, or {@code null} if none
-		 */
-		public Option(BiConsumer<T, Properties> propertyWriter, Function<Properties, T> propertyReader,
-				T initialValue) {
-			
-			assert (propertyWriter != null);
-			assert (propertyReader != null);
-			
-			this.propertyWriter = propertyWriter;
-			this.propertyReader = propertyReader;
-			this.value = initialValue;
-		}
-		
-		public T getValue() {
-			
-			return value;
-		}
-		
-		public void setValue(T value) {
-			
-			final T oldValue = value;
-			this.value = value;
-			synchronized (listeners) {
-				listeners.forEach(l -> l.receiveUpdatedOption(oldValue, value));
-			}
-		}
-		
-		public void populateFromProperties(Properties properties) {
-			
-			final T readValue = propertyReader.apply(properties);
-			if (readValue != null)
-				setValue(readValue);
-		}
-		
-		public void writeToProperties(Properties properties) {
-			
-			propertyWriter.accept(value, properties);
-		}
-		
-		public void addUpdateListener(OptionUpdateListener<T> listener) {
-			
-			synchronized (listeners) {
-				listeners.add(listener);
-			}
-		}
-		
-		public void removeUpdateListener(OptionUpdateListener<T> listener) {
-			
-			synchronized (listeners) {
-				listeners.remove(listener);
-			}
-		}
-	}
-	
-	@FunctionalInterface
-	public interface OptionUpdateListener<T> {
-		
-		public void receiveUpdatedOption(T oldValue, T newValue);
-	}
-}
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.metrics.OptionChangeEvent;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Projections;
+import org.snowjak.sunclock.projection.StandardProjection;
+
+/**
+ * Encapsulates application options.
+ * 
+ * @author snowjak88
+ *
+ */
+public class Options {
+	
+	private static final Logger LOG = LogManager.getLogger(Options.class);
+	
+	/**
+	 * The filename of the application's properties file.
+	 */
+	public static final String PROPERTIES_FILENAME = "sun-clock.properties";
+	
+	/**
+	 * Defines those options available to the application.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public enum DefinedOption {
+		
+		PROJECTION(new Option<Projection>((proj, prop) -> {
+			if (proj == null)
+				prop.setProperty("projections.name", "");
+			else
+				prop.setProperty("projections.name", proj.getId());
+		}, (prop) -> {
+			if (!prop.containsKey("projections.name"))
+				return null;
+			final String name = prop.getProperty("projections.name").trim();
+			if (name.isBlank() || name.equalsIgnoreCase("null"))
+				return null;
+			return Projections.get(name);
+		}, StandardProjection.EQUIRECTANGULAR)),
+		/**
+		 * Defines the resolution of the light-map.
+		 * <p>
+		 * The light-map is calculated as a square grid, consisting of at most N squares
+		 * on each side (with the lower bound set by the fact that each square must be
+		 * at least 1 pixel in size).
+		 * </p>
+		 */
+		LIGHT_RESOLUTION(new Option<Integer>((res, prop) -> {
+			if (res == null || res <= 0)
+				prop.setProperty("light-map.resolution", "");
+			else
+				prop.setProperty("light-map.resolution", res.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("light-map.resolution"))
+				return null;
+			try {
+				final Integer val = Integer.parseInt(prop.getProperty("light-map.resolution"));
+				if (val <= 0)
+					return null;
+				return val;
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}, Integer.valueOf(128))),
+		/**
+		 * Names a CSV file of locations (as {@code name,latitude,longitude}) to
+		 * overlay on the map.
+		 */
+		LOCATIONS_FILE(new Option<String>((file, prop) -> {
+			if (file == null)
+				prop.setProperty("locations.file", "");
+			else
+				prop.setProperty("locations.file", file);
+		}, (prop) -> {
+			if (!prop.containsKey("locations.file"))
+				return null;
+			final String file = prop.getProperty("locations.file").trim();
+			if (file.isBlank())
+				return null;
+			return file;
+		}, "locations.csv")),
+		/**
+		 * Names an image of the Earth's lights at night (in the equirectangular
+		 * projection) to show across the night side of the map, in place of the
+		 * bundled one. If not set (or the file doesn't exist), the bundled image is
+		 * shown.
+		 */
+		NIGHT_MAP_FILE(new Option<String>((file, prop) -> {
+			if (file == null)
+				prop.setProperty("night-map.file", "");
+			else
+				prop.setProperty("night-map.file", file);
+		}, (prop) -> {
+			if (!prop.containsKey("night-map.file"))
+				return null;
+			final String file = prop.getProperty("night-map.file").trim();
+			if (file.isBlank())
+				return null;
+			return file;
+		}, null)),
+		/**
+		 * Names a file of coastlines (see
+		 * {@link org.snowjak.sunclock.render.VectorOverlay#readCoastlines(java.io.Reader)})
+		 * to draw over the map, in place of the bundled ones. If not set (or the
+		 * file doesn't exist), the bundled coastlines are drawn.
+		 */
+		COASTLINES_FILE(new Option<String>((file, prop) -> {
+			if (file == null)
+				prop.setProperty("overlay.coastlines.file", "");
+			else
+				prop.setProperty("overlay.coastlines.file", file);
+		}, (prop) -> {
+			if (!prop.containsKey("overlay.coastlines.file"))
+				return null;
+			final String file = prop.getProperty("overlay.coastlines.file").trim();
+			if (file.isBlank())
+				return null;
+			return file;
+		}, null)),
+		/**
+		 * If {@code true}, lines of latitude and longitude are drawn over the map.
+		 */
+		GRATICULE(new Option<Boolean>((graticule, prop) -> {
+			if (graticule == null)
+				prop.setProperty("overlay.graticule", "");
+			else
+				prop.setProperty("overlay.graticule", graticule.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("overlay.graticule"))
+				return null;
+			final String graticule = prop.getProperty("overlay.graticule").trim();
+			if (graticule.isBlank())
+				return null;
+			return Boolean.parseBoolean(graticule);
+		}, Boolean.FALSE)),
+		/**
+		 * If {@code true}, the map is presented by active rendering (through a
+		 * {@link java.awt.image.BufferStrategy}) as soon as each frame is ready;
+		 * otherwise, it is painted passively when AWT gets around to it.
+		 */
+		ACTIVE_RENDERING(new Option<Boolean>((active, prop) -> {
+			if (active == null)
+				prop.setProperty("display.active-rendering", "");
+			else
+				prop.setProperty("display.active-rendering", active.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("display.active-rendering"))
+				return null;
+			final String active = prop.getProperty("display.active-rendering").trim();
+			if (active.isBlank())
+				return null;
+			return Boolean.parseBoolean(active);
+		}, Boolean.TRUE)),
+		/**
+		 * If {@code true}, the map is shown as an orthographic view of the globe
+		 * (which may be dragged to rotate it), rather than in the selected
+		 * projection.
+		 */
+		GLOBE_VIEW(new Option<Boolean>((globe, prop) -> {
+			if (globe == null)
+				prop.setProperty("display.globe", "");
+			else
+				prop.setProperty("display.globe", globe.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("display.globe"))
+				return null;
+			final String globe = prop.getProperty("display.globe").trim();
+			if (globe.isBlank())
+				return null;
+			return Boolean.parseBoolean(globe);
+		}, Boolean.FALSE)),
+		/**
+		 * If {@code true}, a slider is shown beneath the map, for scrubbing the
+		 * displayed time through the week on either side of the present.
+		 */
+		TIME_SCRUB(new Option<Boolean>((scrub, prop) -> {
+			if (scrub == null)
+				prop.setProperty("display.time-scrub", "");
+			else
+				prop.setProperty("display.time-scrub", scrub.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("display.time-scrub"))
+				return null;
+			final String scrub = prop.getProperty("display.time-scrub").trim();
+			if (scrub.isBlank())
+				return null;
+			return Boolean.parseBoolean(scrub);
+		}, Boolean.FALSE)),
+		/**
+		 * Names the directory to keep the warm-start cache in (decoded base maps
+		 * and the last rendered frames). If blank, nothing is cached.
+		 */
+		CACHE_DIRECTORY(new Option<String>((dir, prop) -> {
+			if (dir == null)
+				prop.setProperty("cache.directory", "");
+			else
+				prop.setProperty("cache.directory", dir);
+		}, (prop) -> {
+			if (!prop.containsKey("cache.directory"))
+				return null;
+			return prop.getProperty("cache.directory").trim();
+		}, "sun-clock-cache")),
+		/**
+		 * If positive, render metrics are logged every this-many seconds. (They're
+		 * always available through JMX.)
+		 */
+		METRICS_LOG_INTERVAL(new Option<Integer>((interval, prop) -> {
+			if (interval == null)
+				prop.setProperty("metrics.log-interval", "");
+			else
+				prop.setProperty("metrics.log-interval", interval.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("metrics.log-interval"))
+				return null;
+			try {
+				return Integer.parseInt(prop.getProperty("metrics.log-interval").trim());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}, Integer.valueOf(0))),
+		/**
+		 * If positive, posters and time-lapses are exported by this-many worker
+		 * processes, each rendering a share of the export. Otherwise, they're
+		 * exported in this process.
+		 */
+		EXPORT_WORKERS(new Option<Integer>((workers, prop) -> {
+			if (workers == null)
+				prop.setProperty("export.workers", "");
+			else
+				prop.setProperty("export.workers", workers.toString());
+		}, (prop) -> {
+			if (!prop.containsKey("export.workers"))
+				return null;
+			try {
+				return Integer.parseInt(prop.getProperty("export.workers").trim());
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}, Integer.valueOf(0)));
+		
+		private final Option<?> option;
+		
+		private DefinedOption(Option<?> option) {
+			
+			this.option = option;
+		}
+		
+		private Option<?> getOption() {
+			
+			return option;
+		}
+	}
+	
+	/**
+	 * Get the value associated with the given {@link DefinedOption}.
+	 * 
+	 * @param <T>
+	 * @param option
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T getValue(DefinedOption option) {
+		
+		return (T) option.getOption().getValue();
+	}
+	
+	/**
+	 * Set the given {@link DefinedOption} to have the given value.
+	 * 
+	 * @param <T>
+	 * @param option
+	 * @param value
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> void setValue(DefinedOption option, T value) {
+		
+		final OptionChangeEvent event = new OptionChangeEvent();
+		event.begin();
+		
+		final T oldValue = ((Option<T>) (option.getOption())).getValue();
+		((Option<T>) (option.getOption())).setValue(value);
+		
+		if (event.shouldCommit()) {
+			event.option = option.name();
+			event.oldValue = String.valueOf(oldValue);
+			event.newValue = String.valueOf(value);
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Associate the given {@link OptionUpdateListener} with the given
+	 * {@link DefinedOption}.
+	 * 
+	 * @param <T>
+	 * @param option
+	 * @param listener
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> void addUpdateListener(DefinedOption option, OptionUpdateListener<T> listener) {
+		
+		((Option<T>) option.getOption()).addUpdateListener(listener);
+	}
+	
+	/**
+	 * De-aAssociate the given {@link OptionUpdateListener} with the given
+	 * {@link DefinedOption}.
+	 * 
+	 * @param <T>
+	 * @param option
+	 * @param listener
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> void removeUpdateListener(DefinedOption option, OptionUpdateListener<T> listener) {
+		
+		((Option<T>) option.getOption()).removeUpdateListener(listener);
+	}
+	
+	/**
+	 * Attempt to read in application options from the properties file (i.e.,
+	 * {@link #PROPERTIES_FILENAME}).
+	 * 
+	 * @throws FileNotFoundException
+	 *             if the given properties file doesn't exist
+	 */
+	public static void readFromProperties() throws FileNotFoundException {
+		
+		try (InputStream propertiesStream = new FileInputStream(PROPERTIES_FILENAME)) {
+			final Properties properties = new Properties();
+			properties.load(propertiesStream);
+			
+			for (DefinedOption opt : DefinedOption.values())
+				opt.getOption().populateFromProperties(properties);
+		} catch (IOException e) {
+			LOG.error("Encountered an unexpected exception while reading the properties file.", e);
+		}
+	}
+	
+	/**
+	 * Attempt to write the application options to the properties file (i.e.,
+	 * {@link #PROPERTIES_FILENAME}).
+	 */
+	public static void writeToProperties() {
+		
+		try (OutputStream propertiesStream = new FileOutputStream(PROPERTIES_FILENAME)) {
+			
+			final Properties properties = new Properties();
+			
+			for (DefinedOption opt : DefinedOption.values())
+				opt.getOption().writeToProperties(properties);
+			
+			properties.store(propertiesStream, "sun-clock application properties");
+			
+		} catch (IOException e) {
+			LOG.error("Cannot save properties to [" + PROPERTIES_FILENAME + "]", e);
+		}
+	}
+	
+	/**
+	 * This constructor is off-limites -- you're not meant to instantiate an
+	 * instance of this class.
+	 */
+	private Options() {
+		
+	}
+	
+	private static class Option<T> {
+		
+		private final BiConsumer<T, Properties> propertyWriter;
+		private final Function<Properties, T> propertyReader;
+		private final Set<OptionUpdateListener<T>> listeners = new LinkedHashSet<>();
+		
+		private T value;
+		
+		/**
+		 * Create a new Option, with no (i.e., {@code null}) initial value.
+		 * 
+		 * @param type
+		 *            the explicit type this Option is valued in
+		 * @param propertyWriter
+		 *            a method for converting an instance of this option into one or
+		 *            more values in the given {@link Properties}
+		 * @param propertyReader
+		 *            a method for converting Properties into an instance of this option
+		 */
+		@SuppressWarnings("unused")
+		public Option(BiConsumer<T, Properties> propertyWriter, Function<Properties, T> propertyReader) {
+			
+			this(propertyWriter, propertyReader, null);
+		}
+		
+		/**
+		 * Create a new Option.
+		 * 
+		 * @param type
+		 *            the explicit type this Option is valued in
+		 * @param propertyWriter
+		 *            a method for converting an instance of this option into one or
+		 *            more values in the given {@link Properties}
+		 * @param propertyReader
+		 *            a method for converting Properties into an instance of this option
+		 * @param initialValue
+		 *            the initial value of this option, or {@code null} if none
+		 */
+		public Option(BiConsumer<T, Properties> propertyWriter, Function<Properties, T> propertyReader,
+				T initialValue) {
+			
+			assert (propertyWriter != null);
+			assert (propertyReader != null);
+			
+			this.propertyWriter = propertyWriter;
+			this.propertyReader = propertyReader;
+			this.value = initialValue;
+		}
+		
+		public T getValue() {
+			
+			return value;
+		}
+		
+		public void setValue(T value) {
+			
+			final T oldValue = value;
+			this.value = value;
+			synchronized (listeners) {
+				listeners.forEach(l -> l.receiveUpdatedOption(oldValue, value));
+			}
+		}
+		
+		public void populateFromProperties(Properties properties) {
+			
+			final T readValue = propertyReader.apply(properties);
+			if (readValue != null)
+				setValue(readValue);
+		}
+		
+		public void writeToProperties(Properties properties) {
+			
+			propertyWriter.accept(value, properties);
+		}
+		
+		public void addUpdateListener(OptionUpdateListener<T> listener) {
+			
+			synchronized (listeners) {
+				listeners.add(listener);
+			}
+		}
+		
+		public void removeUpdateListener(OptionUpdateListener<T> listener) {
+			
+			synchronized (listeners) {
+				listeners.remove(listener);
+			}
+		}
+	}
+	
+	@FunctionalInterface
+	public interface OptionUpdateListener<T> {
+		
+		public void receiveUpdatedOption(T oldValue, T newValue);
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import java.awt.BorderLayout;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+
+import org.snowjak.sunclock.Options.DefinedOption;
+
+/**
+ * A slider for scrubbing the time shown on a {@link MapDisplay} through the
+ * week on either side of the present. Shown only while
+ * {@link DefinedOption#TIME_SCRUB} is set.
+ * <p>
+ * The slider is centered on the time it was last shown (or "Now" was
+ * pressed). Centered, the map shows the present, updating as usual.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class TimeScrubBar extends JPanel {
+	
+	private static final long serialVersionUID = -1482337095640563214L;
+	
+	/**
+	 * The slider reaches this many minutes on either side of the present.
+	 */
+	private static final int RANGE_MINUTES = 7 * 24 * 60;
+	
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("EEE d MMM yyyy, HH:mm z");
+	
+	private final MapDisplay mapDisplay;
+	private final JSlider slider;
+	private final JLabel timeLabel;
+	private ZonedDateTime base = ZonedDateTime.now();
+	
+	public TimeScrubBar(MapDisplay mapDisplay) {
+		
+		super(new BorderLayout(8, 0));
+		
+		this.mapDisplay = mapDisplay;
+		
+		slider = new JSlider(-RANGE_MINUTES, +RANGE_MINUTES, 0);
+		slider.setMajorTickSpacing(24 * 60);
+		slider.setPaintTicks(true);
+		slider.addChangeListener(e -> updateDisplayTime());
+		
+		timeLabel = new JLabel();
+		
+		final JButton nowButton = new JButton("Now");
+		nowButton.addActionListener(e -> reset());
+		
+		setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+		add(timeLabel, BorderLayout.WEST);
+		add(slider, BorderLayout.CENTER);
+		add(nowButton, BorderLayout.EAST);
+		
+		setScrubbing(Options.getValue(DefinedOption.TIME_SCRUB));
+		Options.addUpdateListener(DefinedOption.TIME_SCRUB,
+				(oldScrub, newScrub) -> setScrubbing((Boolean) newScrub));
+	}
+	
+	private void setScrubbing(Boolean scrubbing) {
+		
+		final boolean visible = (scrubbing != null && scrubbing);
+		if (visible)
+			reset();
+		else
+			mapDisplay.setDisplayTime(null, false);
+		
+		setVisible(visible);
+		if (getParent() != null)
+			getParent().revalidate();
+	}
+	
+	/**
+	 * Re-center the slider on the present.
+	 */
+	private void reset() {
+		
+		base = ZonedDateTime.now();
+		if (slider.getValue() == 0)
+			updateDisplayTime();
+		else
+			slider.setValue(0);
+	}
+	
+	private void updateDisplayTime() {
+		
+		final int minutes = slider.getValue();
+		final boolean adjusting = slider.getValueIsAdjusting();
+		
+		if (minutes == 0 && !adjusting) {
+			timeLabel.setText("Now");
+			mapDisplay.setDisplayTime(null, false);
+			return;
+		}
+		
+		final ZonedDateTime time = base.plusMinutes(minutes);
+		timeLabel.setText(TIME_FORMAT.format(time));
+		mapDisplay.setDisplayTime(time, adjusting);
+	}
+}
@@ -0,0 +1,30 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.event;
+
+/**
+ * Receives events fired by a {@link SolarEventScheduler}.
+ * <p>
+ * Listeners are invoked on the scheduler's timer thread, while the scheduler
+ * is locked, and so should hand off any lengthy work.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+@FunctionalInterface
+public interface SolarEventListener {
+	
+	/**
+	 * @param subscription
+	 *            the subscription-ID (as returned by
+	 *            {@link SolarEventScheduler#subscribe(double, double, java.util.Set)})
+	 * @param type
+	 * @param scheduledTime
+	 *            the instant the event actually occurs, in epoch milliseconds
+	 * @param firedTime
+	 *            the instant the event was fired, in epoch milliseconds
+	 */
+	public void onSolarEvent(int subscription, SolarEventType type, long scheduledTime, long firedTime);
+}
@@ -0,0 +1,336 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.event;
+
+import static org.snowjak.sunclock.Util.degreesToRadians;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.solar.Solar;
+
+/**
+ * Fires {@link SolarEventType solar events} (sunrise, sunset, and the twilight
+ * boundaries) for a large number of subscribed locations.
+ * <p>
+ * Each subscription's next event is computed from the solar model and queued
+ * in a {@link TimingWheel}. When it fires, the subscription is set aside and
+ * its following event computed only after the whole batch of due events has
+ * been delivered. Events fire no later than one tick (plus scheduling latency)
+ * after they occur.
+ * </p>
+ * <p>
+ * Subscriptions are held in primitive arrays (see
+ * {@link #estimateMemoryUsage()}), at a cost of 26 bytes each (plus
+ * spare capacity as the arrays grow).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class SolarEventScheduler {
+	
+	private static final Logger LOG = LogManager.getLogger(SolarEventScheduler.class);
+	
+	/**
+	 * Default resolution of the scheduler, in milliseconds.
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 1000L;
+	
+	/**
+	 * If a subscription has no events within the next year (e.g., it lies above
+	 * the polar circle and only subscribes to twilight), check again after this
+	 * long.
+	 */
+	private static final long RECHECK_MILLIS = 30L * 24L * 60L * 60L * 1000L;
+	
+	private static final byte NO_EVENT = -1;
+	private static final SolarEventType[] TYPES = SolarEventType.values();
+	
+	private final SolarEventListener listener;
+	private final TimingWheel wheel;
+	private final ScheduledExecutorService timerExecutor = Executors.newSingleThreadScheduledExecutor();
+	private ScheduledFuture<?> timerTask = null;
+	
+	private float[] latitude = new float[0], longitude = new float[0];
+	private byte[] eventMask = new byte[0], nextEventType = new byte[0];
+	private long[] nextEventTime = new long[0];
+	private int subscriptionCount = 0, allocatedIds = 0, capacity = 0;
+	
+	private int[] freeIds = new int[16];
+	private int freeCount = 0;
+	
+	private int[] fired = new int[256];
+	private int firedCount = 0;
+	
+	private long totalFired = 0, maxJitter = 0, totalJitter = 0;
+	
+	/**
+	 * @param listener
+	 */
+	public SolarEventScheduler(SolarEventListener listener) {
+		
+		this(listener, DEFAULT_TICK_MILLIS, System.currentTimeMillis());
+	}
+	
+	/**
+	 * @param listener
+	 * @param tickMillis
+	 *            scheduler resolution, in milliseconds
+	 * @param now
+	 *            the current time, in epoch milliseconds
+	 */
+	public SolarEventScheduler(SolarEventListener listener, long tickMillis, long now) {
+		
+		this.listener = listener;
+		this.wheel = new TimingWheel(now, tickMillis, 1024);
+	}
+	
+	/**
+	 * Subscribe to the given solar events at the given location.
+	 * 
+	 * @param latitude
+	 *            in degrees
+	 * @param longitude
+	 *            in degrees
+	 * @param types
+	 * @return this subscription's ID
+	 * @throws IllegalArgumentException
+	 *             if no event-types are given
+	 */
+	public synchronized int subscribe(double latitude, double longitude, Set<SolarEventType> types) {
+		
+		if (types == null || types.isEmpty())
+			throw new IllegalArgumentException("Must subscribe to at least one event-type.");
+		
+		final int id;
+		if (freeCount > 0)
+			id = freeIds[--freeCount];
+		else {
+			id = allocatedIds++;
+			ensureCapacity(allocatedIds);
+		}
+		
+		byte mask = 0;
+		for (SolarEventType type : types)
+			mask |= type.getMask();
+		
+		this.latitude[id] = (float) latitude;
+		this.longitude[id] = (float) longitude;
+		this.eventMask[id] = mask;
+		subscriptionCount++;
+		
+		scheduleNext(id, wheel.getCurrentTime());
+		return id;
+	}
+	
+	/**
+	 * Cancel the given subscription. Its ID may be reused by a later
+	 * subscription.
+	 * 
+	 * @param id
+	 */
+	public synchronized void unsubscribe(int id) {
+		
+		if (id < 0 || id >= capacity || eventMask[id] == 0)
+			return;
+		
+		//
+		// The ID is still queued in the wheel -- it's released when its next event
+		// comes due.
+		//
+		eventMask[id] = 0;
+		subscriptionCount--;
+	}
+	
+	/**
+	 * @return the number of active subscriptions
+	 */
+	public synchronized int size() {
+		
+		return subscriptionCount;
+	}
+	
+	/**
+	 * @param id
+	 * @return the (epoch-millisecond) time of the given subscription's next event
+	 */
+	public synchronized long getNextEventTime(int id) {
+		
+		return nextEventTime[id];
+	}
+	
+	/**
+	 * @param id
+	 * @return the type of the given subscription's next event, or {@code null}
+	 *         if it has none within the next year
+	 */
+	public synchronized SolarEventType getNextEventType(int id) {
+		
+		return (nextEventType[id] == NO_EVENT) ? null : TYPES[nextEventType[id]];
+	}
+	
+	/**
+	 * Begin firing events in real-time.
+	 */
+	public synchronized void start() {
+		
+		if (timerTask != null && !timerTask.isDone())
+			return;
+		
+		LOG.info("starting solar-event scheduler ...");
+		timerTask = timerExecutor.scheduleAtFixedRate(() -> advance(System.currentTimeMillis()), 0,
+				wheel.getTickMillis(), TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stop firing events.
+	 */
+	public synchronized void stop() {
+		
+		if (timerTask != null && !timerTask.isDone()) {
+			LOG.info("stopping solar-event scheduler ...");
+			timerTask.cancel(false);
+		}
+	}
+	
+	public void dispose() {
+		
+		stop();
+		timerExecutor.shutdown();
+	}
+	
+	/**
+	 * Fire all events falling due up to the given time.
+	 * 
+	 * @param now
+	 *            epoch milliseconds
+	 * @return the number of events fired
+	 */
+	public synchronized int advance(long now) {
+		
+		firedCount = 0;
+		wheel.advance(now, this::collectFired);
+		
+		int count = 0;
+		for (int i = 0; i < firedCount; i++) {
+			final int id = fired[i];
+			if (eventMask[id] == 0 || nextEventType[id] == NO_EVENT)
+				continue;
+			
+			final long jitter = now - nextEventTime[id];
+			totalFired++;
+			totalJitter += jitter;
+			maxJitter = Math.max(maxJitter, jitter);
+			count++;
+			
+			listener.onSolarEvent(id, TYPES[nextEventType[id]], nextEventTime[id], now);
+		}
+		
+		//
+		// Now that the batch has been delivered, compute each subscription's next
+		// event.
+		//
+		for (int i = 0; i < firedCount; i++) {
+			final int id = fired[i];
+			if (eventMask[id] == 0)
+				releaseId(id);
+			else
+				scheduleNext(id, (nextEventType[id] == NO_EVENT) ? now : nextEventTime[id]);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return the number of events fired so far
+	 */
+	public synchronized long getFiredCount() {
+		
+		return totalFired;
+	}
+	
+	/**
+	 * @return the greatest delay (in milliseconds) between an event occurring and
+	 *         its being fired
+	 */
+	public synchronized long getMaxJitter() {
+		
+		return maxJitter;
+	}
+	
+	/**
+	 * @return the average delay (in milliseconds) between an event occurring and
+	 *         its being fired
+	 */
+	public synchronized double getMeanJitter() {
+		
+		return (totalFired == 0) ? 0d : (double) totalJitter / (double) totalFired;
+	}
+	
+	/**
+	 * @return the approximate number of bytes used to hold all subscriptions
+	 */
+	public synchronized long estimateMemoryUsage() {
+		
+		return (long) capacity * (Float.BYTES + Float.BYTES + Byte.BYTES + Byte.BYTES + Long.BYTES)
+				+ (long) (freeIds.length + fired.length) * Integer.BYTES + wheel.estimateMemoryUsage();
+	}
+	
+	private void collectFired(int id) {
+		
+		if (firedCount == fired.length)
+			fired = Arrays.copyOf(fired, fired.length * 2);
+		fired[firedCount++] = id;
+	}
+	
+	private void scheduleNext(int id, long after) {
+		
+		final double phi = degreesToRadians(latitude[id]), lambda = degreesToRadians(longitude[id]);
+		
+		long nextTime = Long.MAX_VALUE;
+		byte nextType = NO_EVENT;
+		for (SolarEventType type : TYPES) {
+			if ((eventMask[id] & type.getMask()) == 0)
+				continue;
+			
+			final long time = Solar.calculateNextCrossing(phi, lambda, type.getAltitude(), type.isRising(), after);
+			if (time < nextTime) {
+				nextTime = time;
+				nextType = (byte) type.ordinal();
+			}
+		}
+		
+		nextEventType[id] = nextType;
+		nextEventTime[id] = (nextType == NO_EVENT) ? after + RECHECK_MILLIS : nextTime;
+		wheel.schedule(id, nextEventTime[id]);
+	}
+	
+	private void releaseId(int id) {
+		
+		if (freeCount == freeIds.length)
+			freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+		freeIds[freeCount++] = id;
+	}
+	
+	private void ensureCapacity(int required) {
+		
+		if (required <= capacity)
+			return;
+		
+		final int newCapacity = Math.max(required, Math.max(16, capacity + (capacity >> 1)));
+		latitude = Arrays.copyOf(latitude, newCapacity);
+		longitude = Arrays.copyOf(longitude, newCapacity);
+		eventMask = Arrays.copyOf(eventMask, newCapacity);
+		nextEventType = Arrays.copyOf(nextEventType, newCapacity);
+		nextEventTime = Arrays.copyOf(nextEventTime, newCapacity);
+		capacity = newCapacity;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.event;
+
+import static org.snowjak.sunclock.Util.degreesToRadians;
+
+/**
+ * Enumerates those solar events to which a {@link SolarEventScheduler} can
+ * subscribe -- i.e., the sun crossing a given altitude, either rising or
+ * setting.
+ * 
+ * @author snowjak88
+ *
+ */
+public enum SolarEventType {
+	
+	ASTRONOMICAL_DAWN("Astronomical dawn", -18, true),
+	NAUTICAL_DAWN("Nautical dawn", -12, true),
+	CIVIL_DAWN("Civil dawn", -6, true),
+	SUNRISE("Sunrise", 0, true),
+	SUNSET("Sunset", 0, false),
+	CIVIL_DUSK("Civil dusk", -6, false),
+	NAUTICAL_DUSK("Nautical dusk", -12, false),
+	ASTRONOMICAL_DUSK("Astronomical dusk", -18, false);
+	
+	private final String name;
+	private final double altitude;
+	private final boolean rising;
+	
+	SolarEventType(String name, double altitudeDegrees, boolean rising) {
+		
+		this.name = name;
+		this.altitude = degreesToRadians(altitudeDegrees);
+		this.rising = rising;
+	}
+	
+	public String getName() {
+		
+		return name;
+	}
+	
+	/**
+	 * @return the solar altitude marking this event, in radians
+	 */
+	public double getAltitude() {
+		
+		return altitude;
+	}
+	
+	/**
+	 * @return {@code true} if this event occurs as the sun rises through
+	 *         {@link #getAltitude() its altitude}, {@code false} if as it sets
+	 */
+	public boolean isRising() {
+		
+		return rising;
+	}
+	
+	/**
+	 * @return this event-type's bit in a subscription's event-mask
+	 */
+	int getMask() {
+		
+		return 1 << ordinal();
+	}
+}
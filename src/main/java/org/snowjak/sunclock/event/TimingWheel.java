@@ -0,0 +1,200 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.event;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A hierarchical timing-wheel, holding integer IDs until their due-times
+ * arrive.
+ * <p>
+ * The wheel is made up of {@value #LEVELS} levels of {@value #SLOTS} slots
+ * each. Level 0 has one slot per tick; each level above it has one slot per
+ * full rotation of the level below. An entry is placed in the lowest level
+ * that can hold its due-time, and is cascaded down into lower levels as the
+ * wheel turns. Scheduling and expiring an entry are therefore both O(1)
+ * (amortized).
+ * </p>
+ * <p>
+ * Entries are stored as intrusive linked-lists in primitive arrays, indexed by
+ * ID, so each scheduled entry costs 8 bytes. An ID may be scheduled at most
+ * once at a time. This class is not thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class TimingWheel {
+	
+	private static final int LEVELS = 4;
+	private static final int SLOT_BITS = 8;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int NONE = -1;
+	
+	private final long origin, tickMillis;
+	private final int[][] heads = new int[LEVELS][SLOTS];
+	
+	private int[] next, due;
+	private long currentTick = 0;
+	private int size = 0;
+	
+	/**
+	 * @param origin
+	 *            epoch milliseconds at which the wheel begins turning
+	 * @param tickMillis
+	 *            the duration of each tick, in milliseconds -- i.e., the wheel's
+	 *            resolution
+	 * @param initialCapacity
+	 *            the number of IDs to make room for initially
+	 */
+	public TimingWheel(long origin, long tickMillis, int initialCapacity) {
+		
+		if (tickMillis < 1)
+			throw new IllegalArgumentException("Tick must be at least 1 millisecond.");
+		
+		this.origin = origin;
+		this.tickMillis = tickMillis;
+		this.next = new int[Math.max(initialCapacity, 16)];
+		this.due = new int[next.length];
+		
+		for (int[] level : heads)
+			Arrays.fill(level, NONE);
+	}
+	
+	public long getTickMillis() {
+		
+		return tickMillis;
+	}
+	
+	/**
+	 * @return the number of IDs currently scheduled
+	 */
+	public int size() {
+		
+		return size;
+	}
+	
+	/**
+	 * @return the (epoch-millisecond) time up to which this wheel has advanced
+	 */
+	public long getCurrentTime() {
+		
+		return origin + currentTick * tickMillis;
+	}
+	
+	/**
+	 * Schedule the given ID to expire at (or up to one tick after) the given time.
+	 * If that time has already passed, the ID will expire on the next tick.
+	 * 
+	 * @param id
+	 *            a non-negative ID, not currently scheduled
+	 * @param dueTime
+	 *            epoch milliseconds
+	 */
+	public void schedule(int id, long dueTime) {
+		
+		ensureCapacity(id + 1);
+		
+		final long dueTick = Math.max(Math.floorDiv(dueTime - origin + tickMillis - 1, tickMillis), currentTick + 1);
+		due[id] = (int) Math.min(dueTick, Integer.MAX_VALUE);
+		
+		insert(id);
+		size++;
+	}
+	
+	/**
+	 * Advance this wheel up to the given time, expiring every ID that falls due
+	 * along the way. IDs expire in due-order (to within one tick). The given
+	 * consumer may safely schedule further IDs.
+	 * 
+	 * @param now
+	 *            epoch milliseconds
+	 * @param expired
+	 *            receives each expiring ID
+	 * @return the number of IDs expired
+	 */
+	public int advance(long now, IntConsumer expired) {
+		
+		final long targetTick = Math.floorDiv(now - origin, tickMillis);
+		int count = 0;
+		
+		while (currentTick < targetTick) {
+			currentTick++;
+			
+			//
+			// When a level wraps around, cascade the next slot from the level above --
+			// highest levels first, so that cascaded entries are themselves cascaded in
+			// turn if necessary.
+			//
+			int wrapped = 0;
+			while (wrapped < LEVELS - 1 && ((currentTick >>> (SLOT_BITS * wrapped)) & SLOT_MASK) == 0)
+				wrapped++;
+			for (int level = wrapped; level > 0; level--)
+				cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+			
+			final int slot = (int) (currentTick & SLOT_MASK);
+			int id = heads[0][slot];
+			heads[0][slot] = NONE;
+			
+			while (id != NONE) {
+				final int nextId = next[id];
+				if (due[id] > currentTick)
+					insert(id);
+				else {
+					size--;
+					count++;
+					expired.accept(id);
+				}
+				id = nextId;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return the approximate number of bytes used by this wheel
+	 */
+	public long estimateMemoryUsage() {
+		
+		return (long) LEVELS * SLOTS * Integer.BYTES + (long) (next.length + due.length) * Integer.BYTES;
+	}
+	
+	private void cascade(int level, int slot) {
+		
+		int id = heads[level][slot];
+		heads[level][slot] = NONE;
+		
+		while (id != NONE) {
+			final int nextId = next[id];
+			insert(id);
+			id = nextId;
+		}
+	}
+	
+	private void insert(int id) {
+		
+		final long delta = (long) due[id] - currentTick;
+		
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1))))
+			level++;
+		
+		final int slot = (int) (((long) due[id] >>> (SLOT_BITS * level)) & SLOT_MASK);
+		next[id] = heads[level][slot];
+		heads[level][slot] = id;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		
+		if (capacity <= next.length)
+			return;
+		
+		final int newCapacity = Math.max(capacity, next.length + (next.length >> 1));
+		next = Arrays.copyOf(next, newCapacity);
+		due = Arrays.copyOf(due, newCapacity);
+	}
+}
@@ -0,0 +1,51 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.location;
+
+/**
+ * A named point on the globe.
+ * 
+ * @author snowjak88
+ *
+ */
+public class Location {
+	
+	private final String name;
+	private final double latitude, longitude;
+	
+	/**
+	 * @param name
+	 * @param latitude
+	 *            in degrees, [-90,+90]
+	 * @param longitude
+	 *            in degrees, [-180,+180]
+	 */
+	public Location(String name, double latitude, double longitude) {
+		
+		this.name = name;
+		this.latitude = latitude;
+		this.longitude = longitude;
+	}
+	
+	public String getName() {
+		
+		return name;
+	}
+	
+	public double getLatitude() {
+		
+		return latitude;
+	}
+	
+	public double getLongitude() {
+		
+		return longitude;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return name + " [" + latitude + "," + longitude + "]";
+	}
+}
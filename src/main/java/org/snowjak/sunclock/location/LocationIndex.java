@@ -0,0 +1,421 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.location;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.acos;
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sin;
+import static org.snowjak.sunclock.Util.clamp;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.snowjak.sunclock.DoublePair;
+import org.snowjak.sunclock.pool.Pool;
+import org.snowjak.sunclock.pool.Pools;
+import org.snowjak.sunclock.solar.Solar;
+
+/**
+ * A spatial index over a (potentially large) set of {@link Location}s, which
+ * keeps track of which of them are currently in daylight.
+ * <p>
+ * Locations are bucketed into a latitude/longitude grid. Each bucket is
+ * summarized by the unit-vector at its center and its angular radius, so that
+ * a whole bucket can usually be classified against the terminator's
+ * great-circle with a single dot-product. Only buckets straddling the
+ * terminator need their locations classified individually, and only
+ * locations very near the terminator are checked against the full
+ * {@link Solar} model.
+ * </p>
+ * <p>
+ * Since the terminator sweeps across the globe at a bounded angular speed,
+ * each bucket's classification remains valid until the terminator could have
+ * moved far enough to reach it. Each {@link #update(double)} only reclassifies
+ * those buckets whose classification has expired.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class LocationIndex {
+	
+	/**
+	 * Size of each grid-bucket, in degrees.
+	 */
+	private static final double BUCKET_SIZE = 5d;
+	private static final int BUCKET_COLUMNS = (int) (360d / BUCKET_SIZE), BUCKET_ROWS = (int) (180d / BUCKET_SIZE);
+	
+	/**
+	 * Locations within this angle of the approximate terminator are checked
+	 * against the full solar model. This covers the error of treating the sun as
+	 * a single point (see {@link Solar#calculateSubsolarPoint(double)}).
+	 */
+	private static final double MARGIN = degreesToRadians(0.5d);
+	
+	/**
+	 * Upper bound on the terminator's angular speed, in radians per day.
+	 */
+	private static final double TERMINATOR_SPEED = 2d * PI * 1.01d;
+	
+	private static final byte STATE_UNKNOWN = 0, STATE_LIT = 1, STATE_DARK = 2, STATE_MIXED = 3;
+	
+	private final Location[] locations;
+	private final double[] x, y, z;
+	private final boolean[] lit;
+	private int litCount = 0;
+	
+	private final int bucketCount;
+	private final int[] bucketStart;
+	private final double[] bucketX, bucketY, bucketZ, bucketRadius;
+	private final byte[] bucketState;
+	private final double[] bucketValidUntil;
+	private final PriorityQueue<Integer> expiryQueue;
+	
+	private double lastUpdate = Double.NaN;
+	
+	/**
+	 * Build a new index over the given locations.
+	 * 
+	 * @param locations
+	 */
+	public LocationIndex(Collection<Location> locations) {
+		
+		//
+		// Sort locations by bucket.
+		//
+		final List<List<Location>> buckets = new ArrayList<>(BUCKET_COLUMNS * BUCKET_ROWS);
+		for (int i = 0; i < BUCKET_COLUMNS * BUCKET_ROWS; i++)
+			buckets.add(null);
+		
+		for (Location location : locations) {
+			final int b = getBucket(location.getLatitude(), location.getLongitude());
+			if (buckets.get(b) == null)
+				buckets.set(b, new ArrayList<>());
+			buckets.get(b).add(location);
+		}
+		
+		final int nonEmptyBuckets = (int) buckets.stream().filter(b -> b != null).count();
+		
+		this.locations = new Location[locations.size()];
+		this.x = new double[locations.size()];
+		this.y = new double[locations.size()];
+		this.z = new double[locations.size()];
+		this.lit = new boolean[locations.size()];
+		
+		this.bucketCount = nonEmptyBuckets;
+		this.bucketStart = new int[nonEmptyBuckets + 1];
+		this.bucketX = new double[nonEmptyBuckets];
+		this.bucketY = new double[nonEmptyBuckets];
+		this.bucketZ = new double[nonEmptyBuckets];
+		this.bucketRadius = new double[nonEmptyBuckets];
+		this.bucketState = new byte[nonEmptyBuckets];
+		this.bucketValidUntil = new double[nonEmptyBuckets];
+		this.expiryQueue = new PriorityQueue<>(max(nonEmptyBuckets, 1),
+				(b1, b2) -> Double.compare(bucketValidUntil[b1], bucketValidUntil[b2]));
+		
+		int i = 0, b = 0;
+		for (List<Location> bucket : buckets) {
+			if (bucket == null)
+				continue;
+			
+			bucketStart[b] = i;
+			double cx = 0, cy = 0, cz = 0;
+			for (Location location : bucket) {
+				final double phi = degreesToRadians(location.getLatitude()),
+						lambda = degreesToRadians(location.getLongitude());
+				this.locations[i] = location;
+				x[i] = cos(phi) * cos(lambda);
+				y[i] = cos(phi) * sin(lambda);
+				z[i] = sin(phi);
+				cx += x[i];
+				cy += y[i];
+				cz += z[i];
+				i++;
+			}
+			
+			final double norm = Math.sqrt(cx * cx + cy * cy + cz * cz);
+			bucketX[b] = cx / norm;
+			bucketY[b] = cy / norm;
+			bucketZ[b] = cz / norm;
+			
+			double radius = 0;
+			for (int j = bucketStart[b]; j < i; j++)
+				radius = max(radius, acos(clamp(x[j] * bucketX[b] + y[j] * bucketY[b] + z[j] * bucketZ[b], -1, 1)));
+			bucketRadius[b] = radius;
+			
+			b++;
+		}
+		bucketStart[nonEmptyBuckets] = i;
+	}
+	
+	/**
+	 * @return the number of locations in this index
+	 */
+	public int size() {
+		
+		return locations.length;
+	}
+	
+	public Location getLocation(int index) {
+		
+		return locations[index];
+	}
+	
+	/**
+	 * @param index
+	 * @return {@code true} if the given location was in daylight as of the last
+	 *         {@link #update(double)}
+	 */
+	public boolean isLit(int index) {
+		
+		return lit[index];
+	}
+	
+	/**
+	 * @return the number of locations in daylight as of the last
+	 *         {@link #update(double)}
+	 */
+	public int getLitCount() {
+		
+		return litCount;
+	}
+	
+	/**
+	 * @return all locations in daylight as of the last {@link #update(double)}
+	 */
+	public List<Location> getLitLocations() {
+		
+		final List<Location> result = new ArrayList<>(litCount);
+		for (int b = 0; b < bucketCount; b++) {
+			if (bucketState[b] == STATE_DARK)
+				continue;
+			for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++)
+				if (lit[i])
+					result.add(locations[i]);
+		}
+		return result;
+	}
+	
+	/**
+	 * @param now
+	 * @return the number of grid-buckets that had to be reclassified
+	 * @see #update(double)
+	 */
+	public int update(ZonedDateTime now) {
+		
+		return update(Solar.getFractionalDayOfYear(now));
+	}
+	
+	/**
+	 * Bring this index up-to-date with the given time, reclassifying only those
+	 * grid-buckets which the terminator could have reached since they were last
+	 * classified. Moving backward in time reclassifies everything.
+	 * 
+	 * @param nowUTC
+	 *            fractional day-of-year, in UTC
+	 * @return the number of grid-buckets that had to be reclassified
+	 */
+	public int update(double nowUTC) {
+		
+		final Pool<DoublePair> pool = Pools.getPool(DoublePair.class);
+		final DoublePair subsolarPoint = Solar.calculateSubsolarPoint(nowUTC);
+		final double phi = degreesToRadians(subsolarPoint.getX()), lambda = degreesToRadians(subsolarPoint.getY());
+		pool.retireInstance(subsolarPoint);
+		
+		final double sunX = cos(phi) * cos(lambda), sunY = cos(phi) * sin(lambda), sunZ = sin(phi);
+		
+		int reclassified = 0;
+		
+		if (Double.isNaN(lastUpdate) || nowUTC < lastUpdate) {
+			expiryQueue.clear();
+			for (int b = 0; b < bucketCount; b++) {
+				classify(b, nowUTC, sunX, sunY, sunZ);
+				expiryQueue.add(b);
+				reclassified++;
+			}
+		} else {
+			final List<Integer> expired = new ArrayList<>();
+			while (!expiryQueue.isEmpty() && bucketValidUntil[expiryQueue.peek()] <= nowUTC)
+				expired.add(expiryQueue.poll());
+			
+			for (int b : expired) {
+				classify(b, nowUTC, sunX, sunY, sunZ);
+				expiryQueue.add(b);
+				reclassified++;
+			}
+		}
+		
+		lastUpdate = nowUTC;
+		return reclassified;
+	}
+	
+	/**
+	 * Find the location nearest the given point.
+	 * 
+	 * @param latitude
+	 *            in degrees
+	 * @param longitude
+	 *            in degrees
+	 * @return the index of the nearest location, or {@code -1} if this index is
+	 *         empty
+	 */
+	public int findNearest(double latitude, double longitude) {
+		
+		final double phi = degreesToRadians(latitude), lambda = degreesToRadians(longitude);
+		final double px = cos(phi) * cos(lambda), py = cos(phi) * sin(lambda), pz = sin(phi);
+		
+		//
+		// Visit buckets nearest-first, and stop once no bucket could contain anything
+		// nearer than our best candidate.
+		//
+		final Integer[] order = new Integer[bucketCount];
+		final double[] bucketDistance = new double[bucketCount];
+		for (int b = 0; b < bucketCount; b++) {
+			order[b] = b;
+			bucketDistance[b] = max(0d,
+					acos(clamp(px * bucketX[b] + py * bucketY[b] + pz * bucketZ[b], -1, 1)) - bucketRadius[b]);
+		}
+		Arrays.sort(order, (b1, b2) -> Double.compare(bucketDistance[b1], bucketDistance[b2]));
+		
+		int nearest = -1;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+		for (int b : order) {
+			if (bucketDistance[b] > nearestDistance)
+				break;
+			for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+				final double distance = acos(clamp(px * x[i] + py * y[i] + pz * z[i], -1, 1));
+				if (distance < nearestDistance) {
+					nearest = i;
+					nearestDistance = distance;
+				}
+			}
+		}
+		
+		return nearest;
+	}
+	
+	private void classify(int b, double nowUTC, double sunX, double sunY, double sunZ) {
+		
+		//
+		// Angular elevation of the bucket's center above the terminator's plane.
+		//
+		final double elevation = asin(clamp(bucketX[b] * sunX + bucketY[b] * sunY + bucketZ[b] * sunZ, -1, 1));
+		final double radius = bucketRadius[b];
+		
+		final double clearance;
+		
+		if (elevation - radius > MARGIN) {
+			setBucketState(b, STATE_LIT);
+			clearance = elevation - radius - MARGIN;
+			
+		} else if (elevation + radius < -MARGIN) {
+			setBucketState(b, STATE_DARK);
+			clearance = -(elevation + radius) - MARGIN;
+			
+		} else {
+			bucketState[b] = STATE_MIXED;
+			
+			double minClearance = Double.POSITIVE_INFINITY;
+			for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+				final double e = asin(clamp(x[i] * sunX + y[i] * sunY + z[i] * sunZ, -1, 1));
+				final boolean isLit;
+				if (abs(e) <= MARGIN) {
+					isLit = Solar.calculateSinSolarAltitudeUTC(degreesToRadians(locations[i].getLatitude()),
+							degreesToRadians(locations[i].getLongitude()), nowUTC) > 0d;
+					minClearance = 0d;
+				} else {
+					isLit = (e > 0d);
+					minClearance = min(minClearance, abs(e) - MARGIN);
+				}
+				setLit(i, isLit);
+			}
+			clearance = minClearance;
+		}
+		
+		bucketValidUntil[b] = nowUTC + clearance / TERMINATOR_SPEED;
+	}
+	
+	private void setBucketState(int b, byte state) {
+		
+		if (bucketState[b] == state)
+			return;
+		
+		bucketState[b] = state;
+		for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++)
+			setLit(i, state == STATE_LIT);
+	}
+	
+	private void setLit(int i, boolean isLit) {
+		
+		if (lit[i] == isLit)
+			return;
+		
+		lit[i] = isLit;
+		litCount += isLit ? 1 : -1;
+	}
+	
+	private static int getBucket(double latitude, double longitude) {
+		
+		final int row = (int) clamp(floor((90d - latitude) / BUCKET_SIZE), 0, BUCKET_ROWS - 1);
+		final int column = (int) clamp(floor((longitude + 180d) / BUCKET_SIZE), 0, BUCKET_COLUMNS - 1);
+		return row * BUCKET_COLUMNS + column;
+	}
+	
+	/**
+	 * Read locations from a simple CSV-formatted source. Each line must be of the
+	 * form {@code name,latitude,longitude}. Blank lines, lines starting with
+	 * {@code #}, and lines that can't be parsed are skipped.
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<Location> readFromCsv(Reader reader) throws IOException {
+		
+		final List<Location> result = new ArrayList<>();
+		final BufferedReader lines = new BufferedReader(reader);
+		
+		String line;
+		while ((line = lines.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			
+			final int lastComma = line.lastIndexOf(','),
+					secondLastComma = (lastComma < 1) ? -1 : line.lastIndexOf(',', lastComma - 1);
+			if (secondLastComma < 0)
+				continue;
+			
+			try {
+				final double latitude = Double.parseDouble(line.substring(secondLastComma + 1, lastComma).trim());
+				final double longitude = Double.parseDouble(line.substring(lastComma + 1).trim());
+				if (latitude < -90d || latitude > 90d || longitude < -180d || longitude > 180d)
+					continue;
+				
+				result.add(new Location(line.substring(0, secondLastComma).trim(), latitude, longitude));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the loading of a base map (e.g., after the
+ * projection is switched), from request to completion. Disabled unless enabled
+ * by a recording.
+ * 
+ * @author snowjak88
+ *
+ */
+@Name("org.snowjak.sunclock.BaseMapLoad")
+@Label("Base-Map Load")
+@Category({ "Sun Clock", "Loading" })
+@Description("Loading (decoding or reprojecting) a base map")
+@Enabled(false)
+@StackTrace(false)
+public class BaseMapLoadEvent extends Event {
+	
+	@Label("Projection")
+	public String projection;
+	
+	@Label("Target Width")
+	@Description("Width of the canvas the base map is loaded for, in pixels")
+	public int targetWidth;
+	
+	@Label("Target Height")
+	@Description("Height of the canvas the base map is loaded for, in pixels")
+	public int targetHeight;
+	
+	@Label("Width")
+	@Description("Width of the loaded image, in pixels")
+	public int width;
+	
+	@Label("Height")
+	@Description("Height of the loaded image, in pixels")
+	public int height;
+	
+	@Label("Subsampling")
+	public int subsampling;
+	
+	@Label("Reprojected")
+	public boolean reprojected;
+	
+	@Label("Outcome")
+	@Description("\"loaded\", \"cancelled\" or \"failed\"")
+	public String outcome;
+}
@@ -0,0 +1,168 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies (in nanoseconds), in the style of HdrHistogram:
+ * bucket-widths grow with the value recorded, so that every value is kept to
+ * within a fixed relative precision (here, better than 1%) across a range of
+ * 1 ns to about 18 minutes.
+ * <p>
+ * Values below {@code 2^7} each have their own bucket. Above that, every
+ * power-of-2 range is split into 64 equal sub-buckets. Recording is lock-free,
+ * and costs only a few bit-operations and an atomic increment.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+	
+	/**
+	 * Values are capped at {@code 2^MAX_EXPONENT - 1} nanoseconds.
+	 */
+	private static final int MAX_EXPONENT = 40;
+	public static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1L;
+	
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+			+ (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator minimum = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator maximum = new LongAccumulator(Math::max, 0L);
+	
+	/**
+	 * Record a single value.
+	 * 
+	 * @param nanos
+	 *            negative values are recorded as 0; values above
+	 *            {@link #MAX_VALUE} as {@link #MAX_VALUE}
+	 */
+	public void record(long nanos) {
+		
+		final long value = max(0L, min(MAX_VALUE, nanos));
+		
+		counts.incrementAndGet(getIndex(value));
+		count.increment();
+		total.add(value);
+		minimum.accumulate(value);
+		maximum.accumulate(value);
+	}
+	
+	public long getCount() {
+		
+		return count.sum();
+	}
+	
+	/**
+	 * @return the mean recorded value, in nanoseconds
+	 */
+	public double getMean() {
+		
+		final long n = count.sum();
+		return (n == 0) ? 0d : (double) total.sum() / (double) n;
+	}
+	
+	/**
+	 * @return the smallest recorded value, in nanoseconds
+	 */
+	public long getMin() {
+		
+		final long min = minimum.get();
+		return (min == Long.MAX_VALUE) ? 0L : min;
+	}
+	
+	/**
+	 * @return the largest recorded value, in nanoseconds
+	 */
+	public long getMax() {
+		
+		return maximum.get();
+	}
+	
+	/**
+	 * @param percentile
+	 *            in [0,100]
+	 * @return the value (in nanoseconds) at or below which the given percentage
+	 *         of recorded values fall -- rounded up to the top of its bucket
+	 */
+	public long getValueAtPercentile(double percentile) {
+		
+		final long[] snapshot = new long[BUCKET_COUNT];
+		long n = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			n += snapshot[i];
+		}
+		
+		if (n == 0)
+			return 0L;
+		
+		final long target = max(1L, (long) Math.ceil(min(100d, max(0d, percentile)) / 100d * n));
+		
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= target)
+				return min(getMax(), getHighestEquivalentValue(i));
+		}
+		
+		return getMax();
+	}
+	
+	/**
+	 * @return a summary of this histogram, in milliseconds
+	 */
+	public LatencySnapshot getSnapshot() {
+		
+		return new LatencySnapshot(getCount(), getMean() / 1e6, getMin() / 1e6, getMax() / 1e6,
+				getValueAtPercentile(50d) / 1e6, getValueAtPercentile(90d) / 1e6, getValueAtPercentile(99d) / 1e6,
+				getValueAtPercentile(99.9d) / 1e6);
+	}
+	
+	public void reset() {
+		
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			counts.set(i, 0L);
+		count.reset();
+		total.reset();
+		minimum.reset();
+		maximum.reset();
+	}
+	
+	static int getIndex(long value) {
+		
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+		
+		//
+		// Shift the value down until it fits in the upper half of the sub-buckets.
+		//
+		final int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (value >>> shift) - SUB_BUCKET_HALF;
+	}
+	
+	static long getHighestEquivalentValue(int index) {
+		
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+		
+		final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+		final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return ((subBucket + 1L) << shift) - 1L;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A summary of a {@link LatencyHistogram}, in milliseconds -- as exposed (as
+ * composite data) through {@link RenderMetricsMXBean}.
+ * 
+ * @author snowjak88
+ *
+ */
+public class LatencySnapshot {
+	
+	private final long count;
+	private final double mean, min, max;
+	private final double p50, p90, p99, p999;
+	
+	@ConstructorProperties({ "count", "mean", "min", "max", "p50", "p90", "p99", "p999" })
+	public LatencySnapshot(long count, double mean, double min, double max, double p50, double p90, double p99,
+			double p999) {
+		
+		this.count = count;
+		this.mean = mean;
+		this.min = min;
+		this.max = max;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+	}
+	
+	public long getCount() {
+		
+		return count;
+	}
+	
+	public double getMean() {
+		
+		return mean;
+	}
+	
+	public double getMin() {
+		
+		return min;
+	}
+	
+	public double getMax() {
+		
+		return max;
+	}
+	
+	public double getP50() {
+		
+		return p50;
+	}
+	
+	public double getP90() {
+		
+		return p90;
+	}
+	
+	public double getP99() {
+		
+		return p99;
+	}
+	
+	public double getP999() {
+		
+		return p999;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format("n=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f ms", count, mean, p50,
+				p90, p99, p999, max);
+	}
+}
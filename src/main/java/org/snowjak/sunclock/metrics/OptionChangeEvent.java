@@ -0,0 +1,35 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering an option-change, and its dispatch to every
+ * listener. Disabled unless enabled by a recording.
+ * 
+ * @author snowjak88
+ *
+ */
+@Name("org.snowjak.sunclock.OptionChange")
+@Label("Option Change")
+@Category({ "Sun Clock", "Options" })
+@Description("Setting an option, and notifying its listeners")
+@Enabled(false)
+public class OptionChangeEvent extends Event {
+	
+	@Label("Option")
+	public String option;
+	
+	@Label("Old Value")
+	public String oldValue;
+	
+	@Label("New Value")
+	public String newValue;
+}
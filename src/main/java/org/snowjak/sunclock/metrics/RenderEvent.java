@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering a single render (of the light-map, or of the
+ * globe). Disabled unless enabled by a recording (e.g., with
+ * {@code sun-clock.jfc}).
+ * 
+ * @author snowjak88
+ *
+ */
+@Name("org.snowjak.sunclock.Render")
+@Label("Render")
+@Category({ "Sun Clock", "Rendering" })
+@Description("A single render of the light-map, or of the globe")
+@Enabled(false)
+@StackTrace(false)
+public class RenderEvent extends Event {
+	
+	@Label("Projection")
+	@Description("The projection rendered, or \"Globe\"")
+	public String projection;
+	
+	@Label("Width")
+	@Description("Rendered width, in pixels")
+	public int width;
+	
+	@Label("Height")
+	@Description("Rendered height, in pixels")
+	public int height;
+	
+	@Label("Resolution")
+	@Description("Configured light-map resolution, in cells along the longer side")
+	public int resolution;
+	
+	@Label("Cell Size")
+	@Description("Size of each light-map cell, in pixels")
+	public int cellSize;
+	
+	@Label("Zoom")
+	public double zoom;
+	
+	@Label("Tiles")
+	@Description("Light-map cells rendered")
+	public int tiles;
+	
+	@Label("Samples")
+	@Description("Sun-exposure samples evaluated")
+	public long samples;
+}
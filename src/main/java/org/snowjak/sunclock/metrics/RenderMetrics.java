@@ -0,0 +1,303 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.pool.Pool;
+import org.snowjak.sunclock.pool.Pools;
+
+/**
+ * Collects rendering metrics: latency histograms for each render
+ * {@link Phase}, counts of tiles and samples evaluated, and counts of renders
+ * queued and cancelled by the render scheduler.
+ * <p>
+ * Metrics are exposed through JMX (once {@link #register() registered}), under
+ * {@link #OBJECT_NAME}, and may also be {@link #startLogging(long) logged}
+ * periodically.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class RenderMetrics implements RenderMetricsMXBean {
+	
+	private static final Logger LOG = LogManager.getLogger(RenderMetrics.class);
+	
+	public static final String OBJECT_NAME = "org.snowjak.sunclock:type=RenderMetrics";
+	
+	private static final RenderMetrics INSTANCE = new RenderMetrics();
+	
+	/**
+	 * The phases of rendering that are timed.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public enum Phase {
+		/**
+		 * A complete light-map render, from start to publication.
+		 */
+		RENDER,
+		/**
+		 * Transforming sample points to latitude/longitude.
+		 */
+		PROJECTION,
+		/**
+		 * Calculating sun exposure.
+		 */
+		EXPOSURE,
+		/**
+		 * Writing the light-map.
+		 */
+		RASTER,
+		/**
+		 * Compositing the light-map over the base map.
+		 */
+		COMPOSITE,
+		/**
+		 * A complete globe render.
+		 */
+		GLOBE
+	}
+	
+	private final EnumMap<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+	private final LongAdder tiles = new LongAdder(), samples = new LongAdder();
+	private final LongAdder scheduledRenders = new LongAdder(), cancelledRenders = new LongAdder(),
+			supersededRenders = new LongAdder(), failedRenders = new LongAdder();
+	
+	private ScheduledExecutorService loggingExecutor = null;
+	private ScheduledFuture<?> logging = null;
+	
+	/**
+	 * @return the application's metrics
+	 */
+	public static RenderMetrics get() {
+		
+		return INSTANCE;
+	}
+	
+	RenderMetrics() {
+		
+		for (Phase phase : Phase.values())
+			latencies.put(phase, new LatencyHistogram());
+	}
+	
+	/**
+	 * Record the time taken by one instance of the given phase.
+	 * 
+	 * @param phase
+	 * @param nanos
+	 */
+	public void record(Phase phase, long nanos) {
+		
+		latencies.get(phase).record(nanos);
+	}
+	
+	public LatencyHistogram getHistogram(Phase phase) {
+		
+		return latencies.get(phase);
+	}
+	
+	public void addTiles(long count) {
+		
+		tiles.add(count);
+	}
+	
+	public void addSamples(long count) {
+		
+		samples.add(count);
+	}
+	
+	public void recordScheduledRender() {
+		
+		scheduledRenders.increment();
+	}
+	
+	public void recordCancelledRender() {
+		
+		cancelledRenders.increment();
+	}
+	
+	public void recordSupersededRender() {
+		
+		supersededRenders.increment();
+	}
+	
+	public void recordFailedRender() {
+		
+		failedRenders.increment();
+	}
+	
+	/**
+	 * Register these metrics with the platform MBean server, if not already
+	 * registered.
+	 */
+	public void register() {
+		
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name))
+				server.registerMBean(this, name);
+		} catch (JMException e) {
+			LOG.warn("Cannot register render metrics with JMX", e);
+		}
+	}
+	
+	/**
+	 * Log a summary of these metrics every given number of seconds (replacing
+	 * any earlier schedule).
+	 * 
+	 * @param intervalSeconds
+	 *            if not positive, stop logging
+	 */
+	public synchronized void startLogging(long intervalSeconds) {
+		
+		if (logging != null)
+			logging.cancel(false);
+		logging = null;
+		
+		if (intervalSeconds <= 0)
+			return;
+		
+		if (loggingExecutor == null)
+			loggingExecutor = Executors.newSingleThreadScheduledExecutor((r) -> {
+				final Thread thread = new Thread(r, "render-metrics");
+				thread.setDaemon(true);
+				return thread;
+			});
+		
+		logging = loggingExecutor.scheduleAtFixedRate(() -> LOG.info("{}", this), intervalSeconds, intervalSeconds,
+				TimeUnit.SECONDS);
+	}
+	
+	@Override
+	public LatencySnapshot getRenderLatency() {
+		
+		return latencies.get(Phase.RENDER).getSnapshot();
+	}
+	
+	@Override
+	public LatencySnapshot getProjectionLatency() {
+		
+		return latencies.get(Phase.PROJECTION).getSnapshot();
+	}
+	
+	@Override
+	public LatencySnapshot getExposureLatency() {
+		
+		return latencies.get(Phase.EXPOSURE).getSnapshot();
+	}
+	
+	@Override
+	public LatencySnapshot getRasterLatency() {
+		
+		return latencies.get(Phase.RASTER).getSnapshot();
+	}
+	
+	@Override
+	public LatencySnapshot getCompositeLatency() {
+		
+		return latencies.get(Phase.COMPOSITE).getSnapshot();
+	}
+	
+	@Override
+	public LatencySnapshot getGlobeLatency() {
+		
+		return latencies.get(Phase.GLOBE).getSnapshot();
+	}
+	
+	@Override
+	public long getTiles() {
+		
+		return tiles.sum();
+	}
+	
+	@Override
+	public long getSamples() {
+		
+		return samples.sum();
+	}
+	
+	@Override
+	public long getScheduledRenders() {
+		
+		return scheduledRenders.sum();
+	}
+	
+	@Override
+	public long getCancelledRenders() {
+		
+		return cancelledRenders.sum();
+	}
+	
+	@Override
+	public long getSupersededRenders() {
+		
+		return supersededRenders.sum();
+	}
+	
+	@Override
+	public long getFailedRenders() {
+		
+		return failedRenders.sum();
+	}
+	
+	@Override
+	public long getPoolHits() {
+		
+		return Pools.getAll().values().stream().mapToLong(Pool::getHits).sum();
+	}
+	
+	@Override
+	public long getPoolMisses() {
+		
+		return Pools.getAll().values().stream().mapToLong(Pool::getMisses).sum();
+	}
+	
+	@Override
+	public void reset() {
+		
+		latencies.values().forEach(LatencyHistogram::reset);
+		tiles.reset();
+		samples.reset();
+		scheduledRenders.reset();
+		cancelledRenders.reset();
+		supersededRenders.reset();
+		failedRenders.reset();
+	}
+	
+	@Override
+	public String toString() {
+		
+		final StringBuilder result = new StringBuilder("render metrics --");
+		for (Phase phase : Phase.values())
+			if (latencies.get(phase).getCount() > 0)
+				result.append(System.lineSeparator()).append("  ").append(phase).append(": ")
+						.append(latencies.get(phase).getSnapshot());
+		
+		result.append(System.lineSeparator()).append("  tiles=").append(getTiles()).append(" samples=")
+				.append(getSamples());
+		result.append(System.lineSeparator()).append("  renders: scheduled=").append(getScheduledRenders())
+				.append(" cancelled=").append(getCancelledRenders()).append(" superseded=")
+				.append(getSupersededRenders()).append(" failed=").append(getFailedRenders());
+		result.append(System.lineSeparator()).append("  pools: hits=").append(getPoolHits()).append(" misses=")
+				.append(getPoolMisses());
+		
+		return result.toString();
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+/**
+ * The management interface of {@link RenderMetrics}. All latencies are in
+ * milliseconds.
+ * 
+ * @author snowjak88
+ *
+ */
+public interface RenderMetricsMXBean {
+	
+	/**
+	 * @return wall-time of each complete light-map render
+	 */
+	public LatencySnapshot getRenderLatency();
+	
+	/**
+	 * @return time (summed across worker threads) spent transforming sample
+	 *         points to latitude/longitude, per render
+	 */
+	public LatencySnapshot getProjectionLatency();
+	
+	/**
+	 * @return time (summed across worker threads) spent calculating sun
+	 *         exposure, per render
+	 */
+	public LatencySnapshot getExposureLatency();
+	
+	/**
+	 * @return time (summed across worker threads) spent writing the light-map,
+	 *         per render
+	 */
+	public LatencySnapshot getRasterLatency();
+	
+	/**
+	 * @return time spent compositing the frame, per render
+	 */
+	public LatencySnapshot getCompositeLatency();
+	
+	/**
+	 * @return wall-time of each globe render
+	 */
+	public LatencySnapshot getGlobeLatency();
+	
+	/**
+	 * @return the number of light-map tiles (i.e., sample-cells) rendered
+	 */
+	public long getTiles();
+	
+	/**
+	 * @return the number of sun-exposure samples evaluated
+	 */
+	public long getSamples();
+	
+	/**
+	 * @return the number of renders queued by the render scheduler
+	 */
+	public long getScheduledRenders();
+	
+	/**
+	 * @return the number of queued renders cancelled (by a newer one) before
+	 *         they started
+	 */
+	public long getCancelledRenders();
+	
+	/**
+	 * @return the number of renders that started, but were found to have been
+	 *         superseded
+	 */
+	public long getSupersededRenders();
+	
+	/**
+	 * @return the number of renders that failed
+	 */
+	public long getFailedRenders();
+	
+	/**
+	 * @return the number of pooled instances handed out, over all pools
+	 */
+	public long getPoolHits();
+	
+	/**
+	 * @return the number of instances constructed because their pool was empty,
+	 *         over all pools
+	 */
+	public long getPoolMisses();
+	
+	/**
+	 * Clear all latencies and counts (except pool statistics, which belong to
+	 * the pools themselves).
+	 */
+	public void reset();
+}
@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the handling of a resize of the map display.
+ * Disabled unless enabled by a recording.
+ * 
+ * @author snowjak88
+ *
+ */
+@Name("org.snowjak.sunclock.Resize")
+@Label("Resize")
+@Category({ "Sun Clock", "Rendering" })
+@Description("Handling a resize of the map display")
+@Enabled(false)
+@StackTrace(false)
+public class ResizeEvent extends Event {
+	
+	@Label("Width")
+	@Description("New width of the display, in pixels")
+	public int width;
+	
+	@Label("Height")
+	@Description("New height of the display, in pixels")
+	public int height;
+	
+	@Label("Map Width")
+	@Description("New width of the map, in pixels")
+	public int mapWidth;
+	
+	@Label("Map Height")
+	@Description("New height of the map, in pixels")
+	public int mapHeight;
+	
+	@Label("Reloading")
+	@Description("Whether the base map must be loaded again at the new size")
+	public boolean reloading;
+}
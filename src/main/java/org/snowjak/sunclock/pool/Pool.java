@@ -1,59 +1,92 @@
-/**
- * 
- */
-package org.snowjak.sunclock.pool;
-
-import java.util.LinkedList;
-import java.util.function.Supplier;
-
-/**
- * @author snowjak88
- *
- */
-public class Pool<T extends Poolable> {
-	
-	private final Supplier<T> constructor;
-	private final LinkedList<T> availableInstances = new LinkedList<>();
-	
-	/**
-	 * Construct a new Pool, which will use the given constructor to create new
-	 * object-instances on demand.
-	 * 
-	 * @param constructor
-	 */
-	public Pool(Supplier<T> constructor) {
-		
-		this.constructor = constructor;
-	}
-	
-	/**
-	 * Attempt to get an instance from the Pool. If the Pool has no instances ready,
-	 * then the constructor (specified at construction-time) is used to create a new
-	 * instance.
-	 * 
-	 * @return
-	 */
-	public T getInstance() {
-		
-		synchronized (availableInstances) {
-			if (!availableInstances.isEmpty())
-				return availableInstances.removeFirst();
-		}
-		
-		return constructor.get();
-	}
-	
-	/**
-	 * Retire the given instance to the Pool. {@link Poolable#reset() reset()} is
-	 * invoked on the instance automatically.
-	 * 
-	 * @param instance
-	 */
-	public void retireInstance(T instance) {
-		
-		instance.reset();
-		synchronized (availableInstances) {
-			availableInstances.add(instance);
-		}
-	}
-}
+/**
+ * 
+ */
+package org.snowjak.sunclock.pool;
+
+import java.util.LinkedList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class Pool<T extends Poolable> {
+	
+	private final Supplier<T> constructor;
+	private final LinkedList<T> availableInstances = new LinkedList<>();
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	
+	/**
+	 * Construct a new Pool, which will use the given constructor to create new
+	 * object-instances on demand.
+	 * 
+	 * @param constructor
+	 */
+	public Pool(Supplier<T> constructor) {
+		
+		this.constructor = constructor;
+	}
+	
+	/**
+	 * Attempt to get an instance from the Pool. If the Pool has no instances ready,
+	 * then the constructor (specified at construction-time) is used to create a new
+	 * instance.
+	 * 
+	 * @return
+	 */
+	public T getInstance() {
+		
+		synchronized (availableInstances) {
+			if (!availableInstances.isEmpty()) {
+				hits.increment();
+				return availableInstances.removeFirst();
+			}
+		}
+		
+		misses.increment();
+		return constructor.get();
+	}
+	
+	/**
+	 * Retire the given instance to the Pool. {@link Poolable#reset() reset()} is
+	 * invoked on the instance automatically.
+	 * 
+	 * @param instance
+	 */
+	public void retireInstance(T instance) {
+		
+		instance.reset();
+		synchronized (availableInstances) {
+			availableInstances.add(instance);
+		}
+	}
+	
+	/**
+	 * @return the number of times {@link #getInstance()} was satisfied from the
+	 *         Pool
+	 */
+	public long getHits() {
+		
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of times {@link #getInstance()} had to construct a new
+	 *         instance
+	 */
+	public long getMisses() {
+		
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the number of instances currently available in the Pool
+	 */
+	public int getAvailable() {
+		
+		synchronized (availableInstances) {
+			return availableInstances.size();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+/**
+ * Base class for {@link Projection}s with no closed-form solution in one
+ * direction, which must instead be solved iteratively (by Newton's method).
+ * <p>
+ * Solvers should warm-start each point from the solution of the previous point
+ * in the same batch -- neighbouring samples along a scanline usually have very
+ * nearly the same solution -- and must stop after at most
+ * {@link #getMaxIterations()} iterations. Their work is tallied in
+ * {@link #getStatistics()}.
+ * </p>
+ * <p>
+ * Such projections are never illustrated by an image of their own, and so have
+ * theirs {@link Reprojector derived}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public abstract class IterativeProjection implements Projection {
+	
+	public static final int DEFAULT_MAX_ITERATIONS = 20;
+	
+	/**
+	 * Default convergence tolerance, in radians.
+	 */
+	public static final double DEFAULT_TOLERANCE = 1e-10;
+	
+	private final String id, name;
+	private final double aspectRatio;
+	private final int maxIterations;
+	private final double tolerance;
+	private final SolverStatistics statistics = new SolverStatistics();
+	
+	/**
+	 * @param id
+	 * @param name
+	 * @param aspectRatio
+	 * @param maxIterations
+	 *            iteration-cap for each point solved
+	 * @param tolerance
+	 *            convergence tolerance, in radians
+	 */
+	protected IterativeProjection(String id, String name, double aspectRatio, int maxIterations, double tolerance) {
+		
+		if (maxIterations < 1)
+			throw new IllegalArgumentException("Must allow at least 1 iteration.");
+		if (tolerance <= 0d)
+			throw new IllegalArgumentException("Tolerance must be positive.");
+		
+		this.id = id;
+		this.name = name;
+		this.aspectRatio = aspectRatio;
+		this.maxIterations = maxIterations;
+		this.tolerance = tolerance;
+	}
+	
+	@Override
+	public String getId() {
+		
+		return id;
+	}
+	
+	@Override
+	public String getName() {
+		
+		return name;
+	}
+	
+	@Override
+	public String getImageName() {
+		
+		return null;
+	}
+	
+	@Override
+	public double getAspectRatio() {
+		
+		return aspectRatio;
+	}
+	
+	@Override
+	public double getMinLatitude() {
+		
+		return -90d;
+	}
+	
+	@Override
+	public double getMaxLatitude() {
+		
+		return +90d;
+	}
+	
+	public int getMaxIterations() {
+		
+		return maxIterations;
+	}
+	
+	public double getTolerance() {
+		
+		return tolerance;
+	}
+	
+	public SolverStatistics getStatistics() {
+		
+		return statistics;
+	}
+}
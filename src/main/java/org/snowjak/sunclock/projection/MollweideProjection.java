@@ -0,0 +1,140 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.asin;
+import static java.lang.Math.copySign;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static org.snowjak.sunclock.Util.clamp;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+import static org.snowjak.sunclock.Util.window;
+
+/**
+ * The Mollweide equal-area projection.
+ * <p>
+ * The inverse transform is closed-form (and, as every point along a scanline
+ * shares the same latitude, only computes that latitude once per scanline).
+ * The forward transform must solve
+ * {@code 2*theta + sin(2*theta) = PI*sin(latitude)} for the auxiliary angle
+ * theta, by Newton's method (falling back to bisection whenever a step would
+ * leave the bracketing interval, as it tends to near the poles).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class MollweideProjection extends IterativeProjection {
+	
+	public MollweideProjection() {
+		
+		this(DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+	}
+	
+	public MollweideProjection(int maxIterations, double tolerance) {
+		
+		super("MOLLWEIDE", "Mollweide", 2d, maxIterations, tolerance);
+	}
+	
+	@Override
+	public void forward(double[] latitude, double[] longitude, double[] x, double[] y, int offset, int length) {
+		
+		final int maxIterations = getMaxIterations();
+		final double tolerance = getTolerance();
+		
+		long iterations = 0;
+		int unconverged = 0;
+		
+		double theta = Double.NaN;
+		for (int i = offset; i < offset + length; i++) {
+			final double lat = degreesToRadians(window(latitude[i], -90, +90)),
+					lng = degreesToRadians(window(longitude[i], -180, 180));
+			final double target = PI * sin(lat);
+			
+			if (abs(target) >= PI) {
+				theta = copySign(PI / 2d, lat);
+				
+			} else {
+				//
+				// Warm-start from the previous point's solution.
+				//
+				if (Double.isNaN(theta))
+					theta = lat;
+				
+				double low = -PI / 2d, high = PI / 2d;
+				int n = 0;
+				boolean converged = false;
+				while (n < maxIterations && !converged) {
+					n++;
+					
+					final double f = 2d * theta + sin(2d * theta) - target, df = 2d + 2d * cos(2d * theta);
+					if (f > 0d)
+						high = theta;
+					else
+						low = theta;
+					
+					//
+					// Take the Newton step -- unless it would leave the bracket, in
+					// which case bisect instead.
+					//
+					final double step = f / df;
+					if (abs(step) < tolerance) {
+						theta -= step;
+						converged = true;
+					} else if (theta - step >= low && theta - step <= high)
+						theta -= step;
+					else
+						theta = (low + high) / 2d;
+				}
+				
+				iterations += n;
+				if (!converged)
+					unconverged++;
+			}
+			
+			x[i] = lng * cos(theta) / (2d * PI) + 0.5d;
+			y[i] = sin(theta) / 2d + 0.5d;
+		}
+		
+		getStatistics().record(length, iterations, unconverged);
+	}
+	
+	@Override
+	public void inverse(double[] x, double[] y, double[] latitude, double[] longitude, int offset, int length) {
+		
+		//
+		// Every point along a scanline shares the same latitude -- only compute it
+		// when Y changes.
+		//
+		double lastY = Double.NaN, lat = Double.NaN, cosTheta = Double.NaN;
+		for (int i = offset; i < offset + length; i++) {
+			final double sinTheta = (y[i] - 0.5d) * 2d;
+			if (abs(sinTheta) > 1d) {
+				latitude[i] = Double.NaN;
+				longitude[i] = Double.NaN;
+				continue;
+			}
+			
+			if (y[i] != lastY) {
+				final double theta = asin(sinTheta);
+				cosTheta = cos(theta);
+				lat = radiansToDegrees(asin(clamp((2d * theta + 2d * sinTheta * cosTheta) / PI, -1d, 1d)));
+				lastY = y[i];
+			}
+			
+			final double lng = (x[i] - 0.5d) * 2d * PI / cosTheta;
+			if (!(abs(lng) <= PI)) {
+				latitude[i] = Double.NaN;
+				longitude[i] = Double.NaN;
+				continue;
+			}
+			
+			latitude[i] = lat;
+			longitude[i] = radiansToDegrees(lng);
+		}
+	}
+}
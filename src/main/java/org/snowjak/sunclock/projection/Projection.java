@@ -1,160 +1,151 @@
-/**
- * 
- */
-package org.snowjak.sunclock.projection;
-
-import static java.lang.Math.*;
-import static java.lang.Math.atan;
-import static java.lang.Math.exp;
-import static java.lang.Math.log;
-import static java.lang.Math.tan;
-import static org.snowjak.sunclock.Util.clamp;
-import static org.snowjak.sunclock.Util.degreesToRadians;
-import static org.snowjak.sunclock.Util.radiansToDegrees;
-import static org.snowjak.sunclock.Util.window;
-
-import java.util.function.Function;
-
-import org.snowjak.sunclock.DoublePair;
-import org.snowjak.sunclock.pool.Pools;
-
-/**
- * Encapsulates a projection of the globe onto a 2D plane. Provides:
- * <ul>
- * <li>Translation to/from X/Y and lat./long.</li>
- * <li>Name of the JPG (housed in /src/main/resources/) used to illustrate this
- * projection</li>
- * </ul>
- * 
- * @author snowjak88
- *
- */
-public enum Projection {
-	
-	EQUIRECTANGULAR("projections/equirectangular.jpg", "Equirectangular", -90, +90, (latlng) -> {
-		//
-		// lat/long in [-90,+90] and [-180,180]
-		// yields x/y in [0,1] and [0,1]
-		//
-		final double lat = degreesToRadians(window(latlng.getX(), -90, +90)),
-				lng = degreesToRadians(window(latlng.getY(), -180, 180));
-		final double x = lng, y = lat / PI;
-		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
-		result.set(x / (2d * PI) + 0.5d, y + 0.5d);
-		return result;
-	}, (xy) -> {
-		//
-		// x/y in [0,1] and [0,1]
-		// yields lat/long in [-90,+90] and [-180,180]
-		//
-		final double x = (xy.getX() - 0.5d) * 2d * Math.PI, y = xy.getY() - 0.5d;
-		final double lng = x, lat = y * PI;
-		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
-		result.set(window(radiansToDegrees(lat), -90, +90), window(radiansToDegrees(lng), -180, 180));
-		return result;
-	}),
-	WEB_MERCATOR("projections/web-mercator.jpg", "Web Mercator", -85.051129, +85.051129, (latlng) -> {
-		//
-		// lat/long in [-85.051129,+85.051129] and [-180,180]
-		// yields x/y in [0,1] and [0,1]
-		//
-		final double lat = degreesToRadians(clamp(window(latlng.getX(), -90, +90), -85.051129, +85.051129)),
-				lng = degreesToRadians(window(latlng.getY(), -180, 180));
-		
-		final double x = lng, y = log(tan(PI / 4d + lat / 2d)) / (PI * 2d);
-		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
-		result.set(x / (2d * PI) + 0.5d, y + 0.5d);
-		return result;
-	}, (xy) -> {
-		//
-		// x/y in [0,1] and [0,1]
-		// yields lat/long in [-85.051129,+85.051129] and [-180,180]
-		//
-		final double x = (xy.getX() - 0.5d) * 2d * Math.PI, y = xy.getY() - 0.5d;
-		final double lng = x, lat = 2d * (atan(exp(PI * y * 2d)) - PI / 4d);
-		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
-		result.set(window(radiansToDegrees(lat), -90, +90), window(radiansToDegrees(lng), -180, 180));
-		return result;
-	}),
-	CASSINI("projections/cassini.jpg", "Cassini", -90, +90, (latlng) -> {
-		//
-		// lat/long in [-90,+90] and [-180,180]
-		// yields x/y in [0,1] and [0,1]
-		//
-		final double lat = degreesToRadians(window(latlng.getX(), -90, +90)),
-				lng = degreesToRadians(window(latlng.getY(), -180, +180));
-		final double x = asin(cos(lat) * sin(lng)), y = atan(tan(lat) / cos(lng));
-		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
-		result.set(x / (PI) + 0.5d, y / (2d * PI) + 0.5d);
-		return result;
-	}, (xy) -> {
-		//
-		// x/y in [0,1] and [0,1]
-		// yields lat/long in [-90,+90] and [-180,180]
-		//
-		final double x = (xy.getX() - 0.5d) * Math.PI, y = (xy.getY() - 0.5d) * 2d * PI;
-		final double lng = atan2(tan(x), cos(y)), lat = asin(sin(y) * cos(x));
-		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
-		result.set(window(radiansToDegrees(lat), -90, +90), window(radiansToDegrees(lng), -180, 180));
-		return result;
-	});
-	
-	private final String imageName, name;
-	private final double minLatitude, maxLatitude;
-	private final Function<DoublePair, DoublePair> toXyTransform, toLatLongTransform;
-	
-	Projection(String imageName, String name, double minLatitude, double maxLatitude,
-			Function<DoublePair, DoublePair> toXyTransform, Function<DoublePair, DoublePair> toLatLongTransform) {
-		
-		this.imageName = imageName;
-		this.name = name;
-		this.minLatitude = minLatitude;
-		this.maxLatitude = maxLatitude;
-		this.toXyTransform = toXyTransform;
-		this.toLatLongTransform = toLatLongTransform;
-	}
-	
-	public String getImageName() {
-		
-		return imageName;
-	}
-	
-	public String getName() {
-		
-		return name;
-	}
-	
-	public double getMinLatitude() {
-		
-		return minLatitude;
-	}
-	
-	public double getMaxLatitude() {
-		
-		return maxLatitude;
-	}
-	
-	/**
-	 * Given a pair of X/Y coordinates in [0,1], [0,1], transform these coordinates
-	 * into latitude/longitude in [-90,+90], [0,360)
-	 * 
-	 * @param xy
-	 * @return
-	 */
-	public DoublePair transformXY_LatLong(DoublePair xy) {
-		
-		return toLatLongTransform.apply(xy);
-	}
-	
-	/**
-	 * Given a pair of latitude/longitude coordinates in [-90,+90], [0,360),
-	 * transform these coordinates into X/Y in [0,1], [0,1]
-	 * 
-	 * @param latLong
-	 * @return
-	 */
-	public DoublePair transformLatLong_XY(DoublePair latLong) {
-		
-		return toXyTransform.apply(latLong);
-	}
-}
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import org.snowjak.sunclock.DoublePair;
+import org.snowjak.sunclock.pool.Pools;
+
+/**
+ * Encapsulates a projection of the globe onto a 2D plane. Provides:
+ * <ul>
+ * <li>Translation to/from X/Y and lat./long., both point-by-point and in
+ * batches</li>
+ * <li>The bounds of the lat./long. domain this projection covers</li>
+ * <li>Name of the JPG (housed in /src/main/resources/) used to illustrate this
+ * projection -- if any. Projections without their own image have one
+ * {@link Reprojector derived} from the {@link StandardProjection#EQUIRECTANGULAR}
+ * image.</li>
+ * </ul>
+ * <p>
+ * Projections are made available to the application by
+ * {@link ProjectionProvider}s, and enumerated through {@link Projections}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public interface Projection {
+	
+	/**
+	 * @return an identifier for this projection, unique among all available
+	 *         projections and stable across releases (it's saved in the
+	 *         application's properties)
+	 */
+	public String getId();
+		
+	/**
+	 * @return this projection's human-readable name
+	 */
+	public String getName();
+	
+	/**
+	 * @return the name of the image resource illustrating this projection, or
+	 *         {@code null} if this projection's image must be
+	 *         {@link Reprojector derived}
+	 */
+	public String getImageName();
+	
+	/**
+	 * @return the ratio of width to height of the area this projection maps onto
+	 *         [0,1], [0,1]
+	 */
+	public double getAspectRatio();
+		
+	public double getMinLatitude();
+	
+	public double getMaxLatitude();
+	
+	public default double getMinLongitude() {
+		
+		return -180d;
+	}
+	
+	public default double getMaxLongitude() {
+		
+		return +180d;
+	}
+	
+	/**
+	 * @param latitude
+	 * @param longitude
+	 * @return {@code true} if the given point (as produced by
+	 *         {@link #inverse(double[], double[], double[], double[], int, int)})
+	 *         lies within this projection's domain
+	 */
+	public default boolean isInDomain(double latitude, double longitude) {
+		
+		return latitude >= getMinLatitude() && latitude <= getMaxLatitude() && longitude >= getMinLongitude()
+				&& longitude <= getMaxLongitude();
+	}
+	
+	/**
+	 * Transform a batch of latitude/longitude coordinates (in [-90,+90],
+	 * [-180,+180]) into X/Y (in [0,1], [0,1]).
+	 * 
+	 * @param latitude
+	 * @param longitude
+	 * @param x
+	 *            receives X coordinates
+	 * @param y
+	 *            receives Y coordinates
+	 * @param offset
+	 *            index of the first coordinate (in all four arrays) to transform
+	 * @param length
+	 *            number of coordinates to transform
+	 */
+	public void forward(double[] latitude, double[] longitude, double[] x, double[] y, int offset, int length);
+	
+	/**
+	 * Transform a batch of X/Y coordinates (in [0,1], [0,1]) into
+	 * latitude/longitude (in [-90,+90], [-180,+180]). Points on the plane that
+	 * don't correspond to any point on the globe are given latitude and
+	 * longitude {@link Double#NaN}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param latitude
+	 *            receives latitudes
+	 * @param longitude
+	 *            receives longitudes
+	 * @param offset
+	 *            index of the first coordinate (in all four arrays) to transform
+	 * @param length
+	 *            number of coordinates to transform
+	 */
+	public void inverse(double[] x, double[] y, double[] latitude, double[] longitude, int offset, int length);
+	
+	/**
+	 * Given a pair of X/Y coordinates in [0,1], [0,1], transform these coordinates
+	 * into latitude/longitude in [-90,+90], [-180,+180]
+	 * 
+	 * @param xy
+	 * @return a pooled {@link DoublePair}
+	 */
+	public default DoublePair transformXY_LatLong(DoublePair xy) {
+		
+		final double[] latitude = new double[1], longitude = new double[1];
+		inverse(new double[] { xy.getX() }, new double[] { xy.getY() }, latitude, longitude, 0, 1);
+		
+		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
+		result.set(latitude[0], longitude[0]);
+		return result;
+	}
+	
+	/**
+	 * Given a pair of latitude/longitude coordinates in [-90,+90], [-180,+180],
+	 * transform these coordinates into X/Y in [0,1], [0,1]
+	 * 
+	 * @param latLong
+	 * @return a pooled {@link DoublePair}
+	 */
+	public default DoublePair transformLatLong_XY(DoublePair latLong) {
+		
+		final double[] x = new double[1], y = new double[1];
+		forward(new double[] { latLong.getX() }, new double[] { latLong.getY() }, x, y, 0, 1);
+		
+		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
+		result.set(x[0], y[0]);
+		return result;
+	}
+}
@@ -0,0 +1,27 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import java.util.List;
+
+/**
+ * Service-provider interface for {@link Projection}s.
+ * <p>
+ * Implementations are discovered by {@link java.util.ServiceLoader}: list
+ * them, by fully-qualified class-name, in a resource named
+ * {@code META-INF/services/org.snowjak.sunclock.projection.ProjectionProvider}.
+ * Each must have a public no-argument constructor.
+ * </p>
+ * 
+ * @author snowjak88
+ * @see Projections
+ */
+public interface ProjectionProvider {
+	
+	/**
+	 * @return the projections this provider supplies, in the order they should
+	 *         be presented
+	 */
+	public List<Projection> getProjections();
+}
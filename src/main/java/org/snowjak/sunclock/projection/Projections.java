@@ -0,0 +1,93 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Registry of every available {@link Projection}, as supplied by the
+ * {@link ProjectionProvider}s found by {@link ServiceLoader}.
+ * 
+ * @author snowjak88
+ *
+ */
+public class Projections {
+	
+	private static final Logger LOG = LogManager.getLogger(Projections.class);
+	
+	private static Map<String, Projection> projections = null;
+	
+	/**
+	 * @return every available projection, in the order their providers supply
+	 *         them
+	 */
+	public static List<Projection> getAll() {
+		
+		return new ArrayList<>(getProjections().values());
+	}
+	
+	/**
+	 * @param id
+	 * @return the projection with the given {@link Projection#getId() ID}, or
+	 *         {@code null} if there is none
+	 */
+	public static Projection get(String id) {
+		
+		return getProjections().get(id);
+	}
+	
+	private static synchronized Map<String, Projection> getProjections() {
+		
+		if (projections == null) {
+			
+			final Map<String, Projection> found = new LinkedHashMap<>();
+			
+			//
+			// Always start with the standard projections, even if (e.g., when
+			// repackaged) the service-configuration has gone missing.
+			//
+			new StandardProjectionProvider().getProjections().forEach(p -> found.put(p.getId(), p));
+			
+			try {
+				for (ProjectionProvider provider : ServiceLoader.load(ProjectionProvider.class)) {
+					if (provider instanceof StandardProjectionProvider)
+						continue;
+					
+					for (Projection projection : provider.getProjections()) {
+						if (found.containsKey(projection.getId())) {
+							LOG.warn("Ignoring projection [{}] from {} -- that ID is already taken.",
+									projection.getId(), provider.getClass().getName());
+							continue;
+						}
+						found.put(projection.getId(), projection);
+					}
+				}
+			} catch (ServiceConfigurationError e) {
+				LOG.error("Cannot load projection-providers.", e);
+			}
+			
+			LOG.info("Found {} projections: {}", found.size(), found.keySet());
+			projections = Collections.unmodifiableMap(found);
+		}
+		
+		return projections;
+	}
+	
+	/**
+	 * This constructor is off-limits -- you're not meant to instantiate an
+	 * instance of this class.
+	 */
+	private Projections() {
+		
+	}
+}
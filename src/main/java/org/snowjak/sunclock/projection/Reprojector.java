@@ -0,0 +1,343 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Generates a base-map image for any {@link Projection}, at any size, from a
+ * single equirectangular source image.
+ * <p>
+ * Every output pixel is mapped back to latitude/longitude through the
+ * projection's {@link Projection#inverse(double[], double[], double[], double[], int, int)
+ * inverse kernel}, one row at a time, and the source sampled there
+ * (bilinearly, wrapping around the antimeridian). Pixels outside the
+ * projection's {@link Projection#isInDomain(double, double) domain} are
+ * skipped, and left black. Output rows are processed in parallel bands.
+ * </p>
+ * <p>
+ * Images may cover the whole projection, or only a {@link Viewport} onto it
+ * (sampled at the image's resolution). Results are cached, keyed by
+ * projection, viewport and size, up to a fixed total size.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class Reprojector {
+	
+	private static final Logger LOG = LogManager.getLogger(Reprojector.class);
+	
+	/**
+	 * Default limit on the total size of cached images, in bytes.
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 64L * 1024L * 1024L;
+	
+	/**
+	 * Each worker thread is given (approximately) this many bands, so that
+	 * uneven bands (e.g., around the poles) don't leave threads idle.
+	 */
+	private static final int BANDS_PER_THREAD = 4;
+	
+	private final int sourceWidth, sourceHeight;
+	private final int sourceInset, contentWidth, contentHeight;
+	private final int[] source;
+	private final ListeningExecutorService executor;
+	private final int threads;
+	
+	private final Cache<Key, BufferedImage> cache;
+	
+	/**
+	 * @param equirectangularSource
+	 *            covers latitudes [+90,-90] top-to-bottom and longitudes
+	 *            [-180,+180] left-to-right
+	 * @param sourceInset
+	 *            width (in pixels) of any frame drawn around the edges of the
+	 *            source, which is not to be sampled
+	 * @param executor
+	 *            used to process row-bands in parallel
+	 * @param threads
+	 *            the number of threads available to the executor
+	 */
+	public Reprojector(BufferedImage equirectangularSource, int sourceInset, ListeningExecutorService executor,
+			int threads) {
+		
+		this(equirectangularSource, sourceInset, executor, threads, DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * @param equirectangularSource
+	 *            covers latitudes [+90,-90] top-to-bottom and longitudes
+	 *            [-180,+180] left-to-right
+	 * @param sourceInset
+	 *            width (in pixels) of any frame drawn around the edges of the
+	 *            source, which is not to be sampled
+	 * @param executor
+	 *            used to process row-bands in parallel
+	 * @param threads
+	 *            the number of threads available to the executor
+	 * @param cacheSize
+	 *            limit on the total size of cached images, in bytes
+	 */
+	public Reprojector(BufferedImage equirectangularSource, int sourceInset, ListeningExecutorService executor,
+			int threads, long cacheSize) {
+		
+		this.sourceWidth = equirectangularSource.getWidth();
+		this.sourceHeight = equirectangularSource.getHeight();
+		if (sourceInset < 0 || 2 * sourceInset >= min(sourceWidth, sourceHeight))
+			throw new IllegalArgumentException("Source inset must leave some of the source to sample.");
+		this.sourceInset = sourceInset;
+		this.contentWidth = sourceWidth - 2 * sourceInset;
+		this.contentHeight = sourceHeight - 2 * sourceInset;
+		this.source = new int[sourceWidth * sourceHeight];
+		equirectangularSource.getRGB(0, 0, sourceWidth, sourceHeight, source, 0, sourceWidth);
+		
+		this.executor = executor;
+		this.threads = max(1, threads);
+		
+		this.cache = CacheBuilder.newBuilder().maximumWeight(cacheSize)
+				.weigher((Key key, BufferedImage image) -> 4 * image.getWidth() * image.getHeight()).build();
+	}
+	
+	/**
+	 * @return the width (in pixels) of the source image, not counting its inset
+	 *         -- i.e., the width at which a reprojected equirectangular image
+	 *         would have the source's full resolution
+	 */
+	public int getSourceWidth() {
+		
+		return contentWidth;
+	}
+	
+	/**
+	 * Get the base-map image for the given projection, at the given size.
+	 * 
+	 * @param projection
+	 * @param width
+	 * @param height
+	 * @return an image of type {@link BufferedImage#TYPE_INT_RGB}, which may be
+	 *         shared with other callers and so must not be modified
+	 * @throws InterruptedException
+	 */
+	public BufferedImage reproject(Projection projection, int width, int height) throws InterruptedException {
+		
+		return reproject(projection, Viewport.FULL, width, height);
+	}
+	
+	/**
+	 * Get the base-map image for the given region of the given projection, at the
+	 * given size. Only that region is sampled, at the given size's resolution.
+	 * 
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 * @return an image of type {@link BufferedImage#TYPE_INT_RGB}, which may be
+	 *         shared with other callers and so must not be modified
+	 * @throws InterruptedException
+	 */
+	public BufferedImage reproject(Projection projection, Viewport viewport, int width, int height)
+			throws InterruptedException {
+		
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Cannot reproject to an empty image.");
+		
+		final Key key = new Key(projection, viewport, width, height);
+		final BufferedImage cached = cache.getIfPresent(key);
+		if (cached != null)
+			return cached;
+		
+		final long start = System.nanoTime();
+		
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		
+		final int bandHeight = max(1, (height + threads * BANDS_PER_THREAD - 1) / (threads * BANDS_PER_THREAD));
+		final List<ListenableFuture<?>> bands = new ArrayList<>();
+		for (int y = 0; y < height; y += bandHeight) {
+			final int startRow = y, endRow = min(height, y + bandHeight);
+			bands.add(executor.submit(
+					() -> reprojectRows(projection, viewport, pixels, width, height, startRow, endRow, 0)));
+		}
+		
+		try {
+			Futures.allAsList(bands).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not reproject to " + projection.getName() + ".", e.getCause());
+		} catch (InterruptedException e) {
+			bands.forEach(f -> f.cancel(true));
+			throw e;
+		}
+		
+		LOG.info("reprojected {}x{} source to {} ({}) at {}x{} in {} ms", sourceWidth, sourceHeight,
+				projection.getName(), viewport, width, height, (System.nanoTime() - start) / 1000000L);
+		
+		cache.put(key, image);
+		return image;
+	}
+	
+	/**
+	 * Reproject only the given band of rows of the base-map image for the given
+	 * region of the given projection, into the given array (as RGB, starting with
+	 * the band's first row). Nothing is cached.
+	 * 
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 *            the width of the whole image
+	 * @param height
+	 *            the height of the whole image
+	 * @param startRow
+	 *            the first row of the band
+	 * @param endRow
+	 *            the row after the last row of the band
+	 * @param pixels
+	 *            receives the band's pixels
+	 * @throws InterruptedException
+	 */
+	public void reproject(Projection projection, Viewport viewport, int width, int height, int startRow, int endRow,
+			int[] pixels) throws InterruptedException {
+		
+		if (startRow < 0 || endRow > height || startRow >= endRow)
+			throw new IllegalArgumentException("Band must lie within the image.");
+		
+		Arrays.fill(pixels, 0, (endRow - startRow) * width, 0);
+		
+		final int bandHeight = max(1, (endRow - startRow + threads - 1) / threads);
+		final List<ListenableFuture<?>> bands = new ArrayList<>();
+		for (int y = startRow; y < endRow; y += bandHeight) {
+			final int first = y, last = min(endRow, y + bandHeight);
+			bands.add(executor.submit(
+					() -> reprojectRows(projection, viewport, pixels, width, height, first, last, startRow)));
+		}
+		
+		try {
+			Futures.allAsList(bands).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not reproject to " + projection.getName() + ".", e.getCause());
+		} catch (InterruptedException e) {
+			bands.forEach(f -> f.cancel(true));
+			throw e;
+		}
+	}
+	
+	/**
+	 * @param pixels
+	 *            the rows to fill, beginning with {@code firstRow}
+	 */
+	private void reprojectRows(Projection projection, Viewport viewport, int[] pixels, int width, int height,
+			int startRow, int endRow, int firstRow) {
+		
+		final double[] x = new double[width], y = new double[width];
+		final double[] latitude = new double[width], longitude = new double[width];
+		
+		for (int column = 0; column < width; column++)
+			x[column] = viewport.toPlaneX(((double) column + 0.5d) / (double) width);
+		
+		for (int row = startRow; row < endRow; row++) {
+			//
+			// Image rows run top-to-bottom, but projected Y runs bottom-to-top.
+			//
+			Arrays.fill(y, viewport.toPlaneY(1d - ((double) row + 0.5d) / (double) height));
+			projection.inverse(x, y, latitude, longitude, 0, width);
+			
+			final int offset = (row - firstRow) * width;
+			for (int column = 0; column < width; column++)
+				if (projection.isInDomain(latitude[column], longitude[column]))
+					pixels[offset + column] = sample(latitude[column], longitude[column]);
+		}
+	}
+	
+	/**
+	 * Bilinearly sample the source image at the given point.
+	 * 
+	 * @param latitude
+	 *            in degrees
+	 * @param longitude
+	 *            in degrees
+	 * @return
+	 */
+	int sample(double latitude, double longitude) {
+		
+		final double u = (longitude + 180d) / 360d * contentWidth - 0.5d;
+		final double v = (90d - latitude) / 180d * contentHeight - 0.5d;
+		
+		final double u0 = floor(u), v0 = floor(v);
+		final double fu = u - u0, fv = v - v0;
+		
+		//
+		// Wrap around the antimeridian, but clamp at the poles.
+		//
+		final int x0 = sourceInset + Math.floorMod((int) u0, contentWidth),
+				x1 = sourceInset + Math.floorMod((int) u0 + 1, contentWidth);
+		final int y0 = sourceInset + max(0, min(contentHeight - 1, (int) v0)),
+				y1 = sourceInset + max(0, min(contentHeight - 1, (int) v0 + 1));
+		
+		final int p00 = source[y0 * sourceWidth + x0], p10 = source[y0 * sourceWidth + x1],
+				p01 = source[y1 * sourceWidth + x0], p11 = source[y1 * sourceWidth + x1];
+		
+		final double w00 = (1d - fu) * (1d - fv), w10 = fu * (1d - fv), w01 = (1d - fu) * fv, w11 = fu * fv;
+		
+		final int r = (int) (((p00 >> 16) & 0xff) * w00 + ((p10 >> 16) & 0xff) * w10 + ((p01 >> 16) & 0xff) * w01
+				+ ((p11 >> 16) & 0xff) * w11 + 0.5d);
+		final int g = (int) (((p00 >> 8) & 0xff) * w00 + ((p10 >> 8) & 0xff) * w10 + ((p01 >> 8) & 0xff) * w01
+				+ ((p11 >> 8) & 0xff) * w11 + 0.5d);
+		final int b = (int) ((p00 & 0xff) * w00 + (p10 & 0xff) * w10 + (p01 & 0xff) * w01 + (p11 & 0xff) * w11
+				+ 0.5d);
+		
+		return (r << 16) | (g << 8) | b;
+	}
+	
+	private static class Key {
+		
+		private final Projection projection;
+		private final Viewport viewport;
+		private final int width, height;
+		
+		public Key(Projection projection, Viewport viewport, int width, int height) {
+			
+			this.projection = projection;
+			this.viewport = viewport;
+			this.width = width;
+			this.height = height;
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			return Objects.hash(projection, viewport, width, height);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return projection.equals(other.projection) && viewport.equals(other.viewport) && width == other.width
+					&& height == other.height;
+		}
+	}
+}
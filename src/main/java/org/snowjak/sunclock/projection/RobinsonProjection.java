@@ -0,0 +1,205 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.copySign;
+import static java.lang.Math.min;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+import static org.snowjak.sunclock.Util.window;
+
+/**
+ * The Robinson projection.
+ * <p>
+ * Robinson is defined by a table of parallel-lengths and -distances (every 5
+ * degrees of latitude), here interpolated by cubic Hermite splines. The
+ * forward transform is a direct table-lookup. The inverse transform must solve
+ * the parallel-distance spline for latitude, by Newton's method (falling back
+ * to bisection whenever a step would leave the bracketing interval).
+ * </p>
+ * <p>
+ * Every point along a scanline shares the same latitude, so the inverse
+ * transform re-uses the previous point's solution outright whenever its Y
+ * coordinate is unchanged.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class RobinsonProjection extends IterativeProjection {
+	
+	/**
+	 * Length of each parallel, relative to the equator.
+	 */
+	private static final double[] PARALLEL_LENGTH = { 1.0000, 0.9986, 0.9954, 0.9900, 0.9822, 0.9730, 0.9600, 0.9427,
+			0.9216, 0.8962, 0.8679, 0.8350, 0.7986, 0.7597, 0.7186, 0.6732, 0.6213, 0.5722, 0.5322 };
+	
+	/**
+	 * Distance of each parallel from the equator, relative to the pole's.
+	 */
+	private static final double[] PARALLEL_DISTANCE = { 0.0000, 0.0620, 0.1240, 0.1860, 0.2480, 0.3100, 0.3720,
+			0.4340, 0.4958, 0.5571, 0.6176, 0.6769, 0.7346, 0.7903, 0.8435, 0.8936, 0.9394, 0.9761, 1.0000 };
+	
+	private static final double STEP = degreesToRadians(5d);
+	
+	/**
+	 * Spline tangents (per table-step) at each table entry. Parallel-lengths are
+	 * symmetric about the equator and parallel-distances anti-symmetric, which
+	 * fixes their tangents at the equator.
+	 */
+	private static final double[] LENGTH_TANGENT = tangents(PARALLEL_LENGTH, 0d),
+			DISTANCE_TANGENT = tangents(PARALLEL_DISTANCE, PARALLEL_DISTANCE[1]);
+	
+	/**
+	 * Ratio of the map's width (0.8487 * 2 * PI) to its height (1.3523 * 2).
+	 */
+	private static final double ASPECT_RATIO = 0.8487d * PI / 1.3523d;
+	
+	public RobinsonProjection() {
+		
+		this(DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+	}
+	
+	public RobinsonProjection(int maxIterations, double tolerance) {
+		
+		super("ROBINSON", "Robinson", ASPECT_RATIO, maxIterations, tolerance);
+	}
+	
+	@Override
+	public void forward(double[] latitude, double[] longitude, double[] x, double[] y, int offset, int length) {
+		
+		for (int i = offset; i < offset + length; i++) {
+			final double lat = degreesToRadians(window(latitude[i], -90, +90)),
+					lng = degreesToRadians(window(longitude[i], -180, 180));
+			final double absLat = abs(lat);
+			
+			x[i] = interpolate(PARALLEL_LENGTH, LENGTH_TANGENT, absLat) * lng / (2d * PI) + 0.5d;
+			y[i] = copySign(interpolate(PARALLEL_DISTANCE, DISTANCE_TANGENT, absLat), lat) / 2d + 0.5d;
+		}
+	}
+	
+	@Override
+	public void inverse(double[] x, double[] y, double[] latitude, double[] longitude, int offset, int length) {
+		
+		final int maxIterations = getMaxIterations();
+		final double tolerance = getTolerance();
+		
+		long solves = 0, iterations = 0;
+		int unconverged = 0;
+		
+		double lastTarget = Double.NaN, absLat = Double.NaN, parallelLength = Double.NaN;
+		for (int i = offset; i < offset + length; i++) {
+			final double target = abs(y[i] - 0.5d) * 2d;
+			if (!(target <= 1d)) {
+				latitude[i] = Double.NaN;
+				longitude[i] = Double.NaN;
+				continue;
+			}
+			
+			if (target != lastTarget) {
+				//
+				// Warm-start from the previous point's solution.
+				//
+				if (Double.isNaN(absLat))
+					absLat = target * PI / 2d;
+				
+				double low = 0d, high = PI / 2d;
+				int n = 0;
+				boolean converged = false;
+				while (n < maxIterations && !converged) {
+					n++;
+					
+					final double f = interpolate(PARALLEL_DISTANCE, DISTANCE_TANGENT, absLat) - target,
+							df = derivative(PARALLEL_DISTANCE, DISTANCE_TANGENT, absLat);
+					if (f > 0d)
+						high = absLat;
+					else
+						low = absLat;
+					
+					//
+					// Take the Newton step -- unless it would leave the bracket, in
+					// which case bisect instead.
+					//
+					final double step = f / df;
+					if (abs(step) < tolerance) {
+						absLat -= step;
+						converged = true;
+					} else if (absLat - step >= low && absLat - step <= high)
+						absLat -= step;
+					else
+						absLat = (low + high) / 2d;
+				}
+				
+				solves++;
+				iterations += n;
+				if (!converged)
+					unconverged++;
+				
+				lastTarget = target;
+				parallelLength = interpolate(PARALLEL_LENGTH, LENGTH_TANGENT, absLat);
+			}
+			
+			final double lng = (x[i] - 0.5d) * 2d * PI / parallelLength;
+			if (!(abs(lng) <= PI)) {
+				latitude[i] = Double.NaN;
+				longitude[i] = Double.NaN;
+				continue;
+			}
+			
+			latitude[i] = copySign(radiansToDegrees(absLat), y[i] - 0.5d);
+			longitude[i] = radiansToDegrees(lng);
+		}
+		
+		getStatistics().record(solves, iterations, unconverged);
+	}
+	
+	/**
+	 * @param values
+	 * @param tangents
+	 * @param absLatitude
+	 *            in radians, in [0,PI/2]
+	 * @return the cubic Hermite interpolation of the given table at the given
+	 *         latitude
+	 */
+	private static double interpolate(double[] values, double[] tangents, double absLatitude) {
+		
+		final double s = absLatitude / STEP;
+		final int k = min((int) s, values.length - 2);
+		final double t = s - k, t2 = t * t, t3 = t2 * t;
+		
+		return (2d * t3 - 3d * t2 + 1d) * values[k] + (t3 - 2d * t2 + t) * tangents[k]
+				+ (-2d * t3 + 3d * t2) * values[k + 1] + (t3 - t2) * tangents[k + 1];
+	}
+	
+	/**
+	 * @param values
+	 * @param tangents
+	 * @param absLatitude
+	 *            in radians, in [0,PI/2]
+	 * @return the derivative (with respect to latitude, in radians) of
+	 *         {@link #interpolate(double[], double[], double)}
+	 */
+	private static double derivative(double[] values, double[] tangents, double absLatitude) {
+		
+		final double s = absLatitude / STEP;
+		final int k = min((int) s, values.length - 2);
+		final double t = s - k, t2 = t * t;
+		
+		return ((6d * t2 - 6d * t) * values[k] + (3d * t2 - 4d * t + 1d) * tangents[k]
+				+ (-6d * t2 + 6d * t) * values[k + 1] + (3d * t2 - 2d * t) * tangents[k + 1]) / STEP;
+	}
+	
+	private static double[] tangents(double[] values, double firstTangent) {
+		
+		final double[] tangents = new double[values.length];
+		tangents[0] = firstTangent;
+		for (int k = 1; k < values.length - 1; k++)
+			tangents[k] = (values[k + 1] - values[k - 1]) / 2d;
+		tangents[values.length - 1] = values[values.length - 1] - values[values.length - 2];
+		
+		return tangents;
+	}
+}
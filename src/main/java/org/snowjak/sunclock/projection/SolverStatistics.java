@@ -0,0 +1,77 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running convergence statistics for an {@link IterativeProjection}'s solver.
+ * <p>
+ * Solvers are expected to tally their work locally and {@link #record(long,
+ * long, long) record} it once per batch, so that keeping statistics doesn't
+ * cost anything per-point.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class SolverStatistics {
+	
+	private final LongAdder solves = new LongAdder(), iterations = new LongAdder(), unconverged = new LongAdder();
+	
+	/**
+	 * @param solves
+	 *            number of points solved
+	 * @param iterations
+	 *            total number of iterations taken to solve them
+	 * @param unconverged
+	 *            number of points whose solution hit the iteration-cap before
+	 *            converging
+	 */
+	public void record(long solves, long iterations, long unconverged) {
+		
+		this.solves.add(solves);
+		this.iterations.add(iterations);
+		this.unconverged.add(unconverged);
+	}
+	
+	public long getSolves() {
+		
+		return solves.sum();
+	}
+	
+	public long getIterations() {
+		
+		return iterations.sum();
+	}
+	
+	public long getUnconverged() {
+		
+		return unconverged.sum();
+	}
+	
+	/**
+	 * @return the mean number of iterations per point solved, or 0 if nothing
+	 *         has been solved yet
+	 */
+	public double getMeanIterations() {
+		
+		final long s = getSolves();
+		return (s == 0) ? 0d : (double) getIterations() / (double) s;
+	}
+	
+	public void reset() {
+		
+		solves.reset();
+		iterations.reset();
+		unconverged.reset();
+	}
+	
+	@Override
+	public String toString() {
+		
+		return String.format("%d solves, %.3f iterations/solve, %d unconverged", getSolves(), getMeanIterations(),
+				getUnconverged());
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.asin;
+import static java.lang.Math.atan;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.sin;
+import static java.lang.Math.tan;
+import static org.snowjak.sunclock.Util.clamp;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+import static org.snowjak.sunclock.Util.window;
+
+/**
+ * The {@link Projection}s built into the application.
+ * 
+ * @author snowjak88
+ * @see StandardProjectionProvider
+ */
+public enum StandardProjection implements Projection {
+	
+	EQUIRECTANGULAR("projections/equirectangular.jpg", "Equirectangular", 2d, -90, +90) {
+		
+		@Override
+		public void forward(double[] latitude, double[] longitude, double[] x, double[] y, int offset, int length) {
+			
+			//
+			// lat/long in [-90,+90] and [-180,180]
+			// yields x/y in [0,1] and [0,1]
+			//
+			for (int i = offset; i < offset + length; i++) {
+				final double lat = degreesToRadians(window(latitude[i], -90, +90)),
+						lng = degreesToRadians(window(longitude[i], -180, 180));
+				x[i] = lng / (2d * PI) + 0.5d;
+				y[i] = lat / PI + 0.5d;
+			}
+		}
+		
+		@Override
+		public void inverse(double[] x, double[] y, double[] latitude, double[] longitude, int offset, int length) {
+			
+			//
+			// x/y in [0,1] and [0,1]
+			// yields lat/long in [-90,+90] and [-180,180]
+			//
+			for (int i = offset; i < offset + length; i++) {
+				final double lng = (x[i] - 0.5d) * 2d * PI, lat = (y[i] - 0.5d) * PI;
+				latitude[i] = window(radiansToDegrees(lat), -90, +90);
+				longitude[i] = window(radiansToDegrees(lng), -180, 180);
+			}
+		}
+	},
+	WEB_MERCATOR(null, "Web Mercator", 1d, -85.051129, +85.051129) {
+		
+		@Override
+		public void forward(double[] latitude, double[] longitude, double[] x, double[] y, int offset, int length) {
+			
+			//
+			// lat/long in [-85.051129,+85.051129] and [-180,180]
+			// yields x/y in [0,1] and [0,1]
+			//
+			for (int i = offset; i < offset + length; i++) {
+				final double lat = degreesToRadians(clamp(window(latitude[i], -90, +90), -85.051129, +85.051129)),
+						lng = degreesToRadians(window(longitude[i], -180, 180));
+				x[i] = lng / (2d * PI) + 0.5d;
+				y[i] = log(tan(PI / 4d + lat / 2d)) / (PI * 2d) + 0.5d;
+			}
+		}
+		
+		@Override
+		public void inverse(double[] x, double[] y, double[] latitude, double[] longitude, int offset, int length) {
+			
+			//
+			// x/y in [0,1] and [0,1]
+			// yields lat/long in [-85.051129,+85.051129] and [-180,180]
+			//
+			for (int i = offset; i < offset + length; i++) {
+				final double lng = (x[i] - 0.5d) * 2d * PI,
+						lat = 2d * (atan(exp(PI * (y[i] - 0.5d) * 2d)) - PI / 4d);
+				latitude[i] = window(radiansToDegrees(lat), -90, +90);
+				longitude[i] = window(radiansToDegrees(lng), -180, 180);
+			}
+		}
+	},
+	CASSINI(null, "Cassini", 0.5d, -90, +90) {
+		
+		@Override
+		public void forward(double[] latitude, double[] longitude, double[] x, double[] y, int offset, int length) {
+			
+			//
+			// lat/long in [-90,+90] and [-180,180]
+			// yields x/y in [0,1] and [0,1]
+			//
+			for (int i = offset; i < offset + length; i++) {
+				final double lat = degreesToRadians(window(latitude[i], -90, +90)),
+						lng = degreesToRadians(window(longitude[i], -180, +180));
+				x[i] = asin(cos(lat) * sin(lng)) / PI + 0.5d;
+				y[i] = atan2(tan(lat), cos(lng)) / (2d * PI) + 0.5d;
+			}
+		}
+		
+		@Override
+		public void inverse(double[] x, double[] y, double[] latitude, double[] longitude, int offset, int length) {
+			
+			//
+			// x/y in [0,1] and [0,1]
+			// yields lat/long in [-90,+90] and [-180,180]
+			//
+			for (int i = offset; i < offset + length; i++) {
+				final double px = (x[i] - 0.5d) * PI, py = (y[i] - 0.5d) * 2d * PI;
+				final double lng = atan2(tan(px), cos(py)), lat = asin(sin(py) * cos(px));
+				latitude[i] = window(radiansToDegrees(lat), -90, +90);
+				longitude[i] = window(radiansToDegrees(lng), -180, 180);
+			}
+		}
+	};
+	
+	private final String imageName, name;
+	private final double aspectRatio;
+	private final double minLatitude, maxLatitude;
+	
+	StandardProjection(String imageName, String name, double aspectRatio, double minLatitude, double maxLatitude) {
+		
+		this.imageName = imageName;
+		this.name = name;
+		this.aspectRatio = aspectRatio;
+		this.minLatitude = minLatitude;
+		this.maxLatitude = maxLatitude;
+	}
+	
+	@Override
+	public String getId() {
+		
+		return name();
+	}
+	
+	@Override
+	public String getImageName() {
+		
+		return imageName;
+	}
+	
+	@Override
+	public String getName() {
+		
+		return name;
+	}
+	
+	@Override
+	public double getAspectRatio() {
+		
+		return aspectRatio;
+	}
+	
+	@Override
+	public double getMinLatitude() {
+		
+		return minLatitude;
+	}
+	
+	@Override
+	public double getMaxLatitude() {
+		
+		return maxLatitude;
+	}
+}
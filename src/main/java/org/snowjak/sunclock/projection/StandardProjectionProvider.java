@@ -0,0 +1,28 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provides the {@link StandardProjection}s, followed by the
+ * {@link IterativeProjection iteratively-solved} {@link MollweideProjection
+ * Mollweide} and {@link RobinsonProjection Robinson} projections.
+ * 
+ * @author snowjak88
+ *
+ */
+public class StandardProjectionProvider implements ProjectionProvider {
+	
+	@Override
+	public List<Projection> getProjections() {
+		
+		final List<Projection> projections = new ArrayList<>(Arrays.asList(StandardProjection.values()));
+		projections.add(new MollweideProjection());
+		projections.add(new RobinsonProjection());
+		return projections;
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.projection;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.Objects;
+
+/**
+ * A square region of a {@link Projection}'s X/Y plane ([0,1], [0,1]) -- i.e.,
+ * the part of the map currently in view -- described by a zoom factor and a
+ * center point.
+ * <p>
+ * Viewports are immutable. They always lie entirely within the plane: zooming
+ * is limited to [1,{@link #MAX_ZOOM}], and the center is constrained
+ * accordingly.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public final class Viewport {
+	
+	public static final double MAX_ZOOM = 64d;
+	
+	/**
+	 * The whole plane.
+	 */
+	public static final Viewport FULL = new Viewport(1d, 0.5d, 0.5d);
+	
+	private final double zoom, centerX, centerY;
+	
+	/**
+	 * @param zoom
+	 *            clamped to [1,{@link #MAX_ZOOM}]
+	 * @param centerX
+	 *            in [0,1] (adjusted to keep the viewport within the plane)
+	 * @param centerY
+	 *            in [0,1], from the bottom (adjusted to keep the viewport within
+	 *            the plane)
+	 */
+	public Viewport(double zoom, double centerX, double centerY) {
+		
+		this.zoom = max(1d, min(MAX_ZOOM, zoom));
+		
+		final double halfSize = 0.5d / this.zoom;
+		this.centerX = max(halfSize, min(1d - halfSize, centerX));
+		this.centerY = max(halfSize, min(1d - halfSize, centerY));
+	}
+	
+	public double getZoom() {
+		
+		return zoom;
+	}
+	
+	public double getCenterX() {
+		
+		return centerX;
+	}
+	
+	public double getCenterY() {
+		
+		return centerY;
+	}
+	
+	/**
+	 * @return the width (and height) of this viewport, as a fraction of the
+	 *         plane's
+	 */
+	public double getSize() {
+		
+		return 1d / zoom;
+	}
+	
+	public double getMinX() {
+		
+		return centerX - 0.5d / zoom;
+	}
+	
+	public double getMinY() {
+		
+		return centerY - 0.5d / zoom;
+	}
+	
+	public double getMaxX() {
+		
+		return centerX + 0.5d / zoom;
+	}
+	
+	public double getMaxY() {
+		
+		return centerY + 0.5d / zoom;
+	}
+	
+	public boolean isFull() {
+		
+		return zoom == 1d;
+	}
+	
+	/**
+	 * @param fraction
+	 *            in [0,1], from this viewport's left edge
+	 * @return the corresponding X coordinate on the plane
+	 */
+	public double toPlaneX(double fraction) {
+		
+		return getMinX() + fraction * getSize();
+	}
+	
+	/**
+	 * @param fraction
+	 *            in [0,1], from this viewport's bottom edge
+	 * @return the corresponding Y coordinate on the plane
+	 */
+	public double toPlaneY(double fraction) {
+		
+		return getMinY() + fraction * getSize();
+	}
+	
+	/**
+	 * @param x
+	 *            on the plane
+	 * @return the corresponding fraction of this viewport, from its left edge
+	 *         (outside [0,1] if not in view)
+	 */
+	public double toViewportX(double x) {
+		
+		return (x - getMinX()) * zoom;
+	}
+	
+	/**
+	 * @param y
+	 *            on the plane
+	 * @return the corresponding fraction of this viewport, from its bottom edge
+	 *         (outside [0,1] if not in view)
+	 */
+	public double toViewportY(double y) {
+		
+		return (y - getMinY()) * zoom;
+	}
+	
+	/**
+	 * Zoom by the given factor, keeping the given point (as nearly as the
+	 * plane's edges allow) where it is in the viewport.
+	 * 
+	 * @param factor
+	 *            greater than 1 to zoom in, less than 1 to zoom out
+	 * @param x
+	 *            on the plane
+	 * @param y
+	 *            on the plane
+	 * @return
+	 */
+	public Viewport zoomAbout(double factor, double x, double y) {
+		
+		final double newZoom = max(1d, min(MAX_ZOOM, zoom * factor));
+		final double fractionX = toViewportX(x), fractionY = toViewportY(y);
+		
+		return new Viewport(newZoom, x + (0.5d - fractionX) / newZoom, y + (0.5d - fractionY) / newZoom);
+	}
+	
+	/**
+	 * @param dx
+	 *            on the plane
+	 * @param dy
+	 *            on the plane
+	 * @return this viewport, moved by the given distance (as nearly as the
+	 *         plane's edges allow)
+	 */
+	public Viewport pan(double dx, double dy) {
+		
+		return new Viewport(zoom, centerX + dx, centerY + dy);
+	}
+	
+	@Override
+	public int hashCode() {
+		
+		return Objects.hash(zoom, centerX, centerY);
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Viewport))
+			return false;
+		final Viewport other = (Viewport) obj;
+		return zoom == other.zoom && centerX == other.centerX && centerY == other.centerY;
+	}
+	
+	@Override
+	public String toString() {
+		
+		return "Viewport [zoom=" + zoom + ", center=" + centerX + "," + centerY + "]";
+	}
+}
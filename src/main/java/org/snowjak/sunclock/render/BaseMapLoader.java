@@ -0,0 +1,583 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Decodes base-map images off the calling thread, decoding only as many
+ * pixels as are needed.
+ * <p>
+ * Only the image header is read before a {@link BaseMap#isPlaceholder()
+ * placeholder} (of the right aspect-ratio) is handed back, so the map can be
+ * laid out and the light-map drawn while the image itself is still decoding.
+ * The image is then decoded with {@link ImageReadParam#setSourceSubsampling(int,
+ * int, int, int) source subsampling}, skipping every source pixel that would
+ * be lost anyway when the image is scaled down to its target size.
+ * </p>
+ * <p>
+ * Projections without an image of their own have theirs
+ * {@link Reprojector reprojected} from the
+ * {@link StandardProjection#EQUIRECTANGULAR} image, at exactly the size they'll be displayed at.
+ * </p>
+ * <p>
+ * If a {@link WarmStartCache} is {@link #setCache(WarmStartCache) given},
+ * decoded images are kept there, and read back in place of decoding whenever
+ * possible.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class BaseMapLoader {
+	
+	private static final Logger LOG = LogManager.getLogger(BaseMapLoader.class);
+	
+	/**
+	 * Width (in pixels) of placeholder images.
+	 */
+	private static final int PLACEHOLDER_WIDTH = 64;
+	private static final Color PLACEHOLDER_COLOR = new Color(0x1a2633);
+	
+	/**
+	 * Width (in pixels) of the frame drawn around the edges of the
+	 * {@link StandardProjection#EQUIRECTANGULAR} image.
+	 */
+	public static final int EQUIRECTANGULAR_IMAGE_INSET = 7;
+	
+	/**
+	 * The bundled night-map -- derived from the
+	 * {@link StandardProjection#EQUIRECTANGULAR} image, and so framed the same
+	 * way.
+	 */
+	public static final String NIGHT_MAP_RESOURCE = "projections/night-lights.jpg";
+	
+	private final ListeningExecutorService executor = MoreExecutors
+			.listeningDecorator(Executors.newSingleThreadExecutor());
+	private final int reprojectionThreads = Runtime.getRuntime().availableProcessors();
+	private final ListeningExecutorService reprojectionExecutor = MoreExecutors
+			.listeningDecorator(Executors.newFixedThreadPool(reprojectionThreads));
+	private BufferedImage equirectangularSource = null;
+	private Reprojector reprojector = null;
+	private String nightMapName = null;
+	private BaseMap nightMapSource = null;
+	private Reprojector nightMapReprojector = null;
+	private GlobeRenderer globeRenderer = null;
+	
+	private volatile WarmStartCache cache = null;
+	
+	/**
+	 * @param cache
+	 *            the cache to keep decoded images in, or {@code null} to always
+	 *            decode
+	 */
+	public void setCache(WarmStartCache cache) {
+		
+		this.cache = cache;
+	}
+	
+	/**
+	 * Get the base-map image for the given projection -- decoding its own image,
+	 * if it has one, or reprojecting it otherwise.
+	 * 
+	 * @param projection
+	 * @param targetWidth
+	 *            the width (in pixels) of the canvas the image will be displayed
+	 *            in, or 0 if not known
+	 * @param targetHeight
+	 *            the height (in pixels) of the canvas the image will be displayed
+	 *            in, or 0 if not known
+	 * @param placeholderConsumer
+	 *            receives a placeholder as soon as the image's size is known
+	 * @return the decoded image
+	 */
+	public ListenableFuture<BaseMap> load(Projection projection, int targetWidth, int targetHeight,
+			Consumer<BaseMap> placeholderConsumer) {
+		
+		if (projection.getImageName() != null)
+			return load(projection.getImageName(), targetWidth, targetHeight, placeholderConsumer);
+		
+		return executor.submit(() -> {
+			
+			final Dimension size = fitToCanvas(projection.getAspectRatio(), targetWidth, targetHeight);
+			final String cacheKey = "reprojected/" + projection.getId();
+			
+			final WarmStartCache currentCache = cache;
+			if (currentCache != null) {
+				final BaseMap cached = currentCache.readBaseMap(cacheKey, size.width, size.height);
+				if (cached != null && cached.getImage().getWidth() == size.width
+						&& cached.getImage().getHeight() == size.height) {
+					LOG.info("read cached {}x{} image for {}", size.width, size.height, projection.getName());
+					return new BaseMap(cached.getImage(), size.width, size.height, 1, true);
+				}
+			}
+			
+			if (placeholderConsumer != null)
+				placeholderConsumer.accept(new BaseMap(createPlaceholder(size.width, size.height), size.width,
+						size.height, 0, true));
+			
+			final BaseMap reprojected = new BaseMap(getReprojector().reproject(projection, size.width, size.height),
+					size.width, size.height, 1, true);
+			
+			if (currentCache != null)
+				currentCache.writeBaseMap(cacheKey, reprojected);
+			
+			return reprojected;
+		});
+	}
+	
+	/**
+	 * Decode the named image resource.
+	 * 
+	 * @param resourceName
+	 *            names an image resource on the classpath
+	 * @param targetWidth
+	 *            the width (in pixels) the image will be displayed at, or 0 to
+	 *            decode at full resolution
+	 * @param targetHeight
+	 *            the height (in pixels) the image will be displayed at, or 0 to
+	 *            decode at full resolution
+	 * @param placeholderConsumer
+	 *            receives a placeholder as soon as the image's size is known
+	 * @return the decoded image
+	 */
+	public ListenableFuture<BaseMap> load(String resourceName, int targetWidth, int targetHeight,
+			Consumer<BaseMap> placeholderConsumer) {
+		
+		return executor.submit(() -> {
+			
+			final WarmStartCache currentCache = cache;
+			if (currentCache != null) {
+				final long start = System.nanoTime();
+				final BaseMap cached = currentCache.readBaseMap(resourceName, targetWidth, targetHeight);
+				if (cached != null) {
+					LOG.info("read cached {}x{} image for [{}] in {} ms", cached.getImage().getWidth(),
+							cached.getImage().getHeight(), resourceName, (System.nanoTime() - start) / 1000000L);
+					return cached;
+				}
+			}
+			
+			final BaseMap decoded;
+			try (InputStream stream = BaseMapLoader.class.getClassLoader().getResourceAsStream(resourceName)) {
+				
+				if (stream == null)
+					throw new IOException("Cannot find image resource [" + resourceName + "]");
+				
+				decoded = decode(stream, targetWidth, targetHeight, placeholderConsumer);
+			}
+			
+			if (currentCache != null)
+				currentCache.writeBaseMap(resourceName, decoded);
+			
+			return decoded;
+		});
+	}
+	
+	/**
+	 * Get the base-map image for only the given region of the given projection,
+	 * {@link Reprojector reprojected} at the given size (i.e., at the viewport's
+	 * effective resolution).
+	 * 
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public ListenableFuture<BufferedImage> loadViewport(Projection projection, Viewport viewport, int width,
+			int height) {
+		
+		return executor.submit(() -> {
+			
+			return getReprojector().reproject(projection, viewport, width, height);
+		});
+	}
+	
+	/**
+	 * Get the night map -- the Earth's lights at night -- for the given
+	 * projection, reprojected from the given (equirectangular) image file at the
+	 * size it will be displayed at. The file is decoded only once -- until
+	 * another is named, or (like the base map) it's
+	 * {@link BaseMap#isTooSmallFor(int, int) too small} for the canvas.
+	 * 
+	 * @param fileName
+	 *            the image file, or {@code null} to use the bundled
+	 *            {@link #NIGHT_MAP_RESOURCE}
+	 * @param projection
+	 * @param targetWidth
+	 *            the width (in pixels) of the canvas the image will be displayed
+	 *            in, or 0 if not known
+	 * @param targetHeight
+	 *            the height (in pixels) of the canvas the image will be displayed
+	 *            in, or 0 if not known
+	 * @return
+	 */
+	public ListenableFuture<BufferedImage> loadNightMap(String fileName, Projection projection, int targetWidth,
+			int targetHeight) {
+		
+		return executor.submit(() -> {
+			
+			final long start = System.nanoTime();
+			
+			final String name = (fileName == null) ? NIGHT_MAP_RESOURCE : fileName;
+			final Dimension sourceSize = fitToCanvas(2d, targetWidth, targetHeight);
+			if (!name.equals(nightMapName) || nightMapSource.isTooSmallFor(sourceSize.width, sourceSize.height)) {
+				nightMapName = null;
+				nightMapSource = null;
+				nightMapReprojector = null;
+				
+				final int inset;
+				if (fileName == null) {
+					//
+					// The bundled image is small -- but framed, so we can't subsample
+					// it without losing track of its edges.
+					//
+					try (InputStream stream = BaseMapLoader.class.getClassLoader()
+							.getResourceAsStream(NIGHT_MAP_RESOURCE)) {
+						if (stream == null)
+							throw new IOException("Cannot find image resource [" + NIGHT_MAP_RESOURCE + "]");
+					
+						nightMapSource = decode(stream, 0, 0, null);
+					}
+					inset = EQUIRECTANGULAR_IMAGE_INSET;
+				
+				} else {
+					try (InputStream stream = new FileInputStream(fileName)) {
+						nightMapSource = decode(stream, sourceSize.width, sourceSize.height, null);
+					}
+					inset = 0;
+				}
+				
+				LOG.info("decoded {}x{} night map from [{}]", nightMapSource.getImage().getWidth(),
+						nightMapSource.getImage().getHeight(), name);
+				nightMapReprojector = new Reprojector(nightMapSource.getImage(), inset, reprojectionExecutor,
+						reprojectionThreads);
+				nightMapName = name;
+			}
+			
+			final Dimension size = fitToCanvas(projection.getAspectRatio(), targetWidth, targetHeight);
+			final BufferedImage nightMap = nightMapReprojector.reproject(projection, size.width, size.height);
+			
+			LOG.info("loaded {}x{} night map for {} from [{}] in {} ms", size.width, size.height,
+					projection.getName(), name, (System.nanoTime() - start) / 1000000L);
+			return nightMap;
+		});
+	}
+	
+	/**
+	 * Get the {@link Reprojector} every reprojected base-map is drawn from -- to
+	 * reproject parts of images too large to hold all at once.
+	 * 
+	 * @return
+	 */
+	public ListenableFuture<Reprojector> loadReprojector() {
+		
+		return executor.submit(this::getReprojector);
+	}
+	
+	/**
+	 * Get a renderer for the orthographic globe-view, built from the
+	 * {@link StandardProjection#EQUIRECTANGULAR} image at full resolution.
+	 * 
+	 * @return
+	 */
+	public ListenableFuture<GlobeRenderer> loadGlobe() {
+		
+		return executor.submit(() -> {
+			
+			if (globeRenderer == null)
+				globeRenderer = new GlobeRenderer(getEquirectangularSource(), EQUIRECTANGULAR_IMAGE_INSET,
+						reprojectionExecutor, reprojectionThreads);
+			
+			return globeRenderer;
+		});
+	}
+	
+	/**
+	 * Must be called on {@link #executor}.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private Reprojector getReprojector() throws IOException {
+		
+		if (reprojector == null)
+			reprojector = new Reprojector(getEquirectangularSource(), EQUIRECTANGULAR_IMAGE_INSET,
+					reprojectionExecutor, reprojectionThreads);
+		
+		return reprojector;
+	}
+	
+	/**
+	 * Decode the {@link StandardProjection#EQUIRECTANGULAR} image at full
+	 * resolution, if it hasn't been already. Must be called on
+	 * {@link #executor}.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private BufferedImage getEquirectangularSource() throws IOException {
+		
+		if (equirectangularSource == null) {
+			final String sourceName = StandardProjection.EQUIRECTANGULAR.getImageName();
+			try (InputStream stream = BaseMapLoader.class.getClassLoader().getResourceAsStream(sourceName)) {
+				if (stream == null)
+					throw new IOException("Cannot find image resource [" + sourceName + "]");
+				
+				equirectangularSource = decode(stream, 0, 0, null).getImage();
+			}
+		}
+		
+		return equirectangularSource;
+	}
+	
+	public void dispose() {
+		
+		executor.shutdownNow();
+		reprojectionExecutor.shutdownNow();
+	}
+	
+	/**
+	 * Compute the largest size, with the given aspect-ratio, that fits within the
+	 * given canvas.
+	 * 
+	 * @param aspectRatio
+	 *            width / height
+	 * @param canvasWidth
+	 *            if 0, the screen-size is assumed (or, if headless, a width of
+	 *            1024 pixels)
+	 * @param canvasHeight
+	 * @return
+	 */
+	public static Dimension fitToCanvas(double aspectRatio, int canvasWidth, int canvasHeight) {
+		
+		if (canvasWidth <= 0 || canvasHeight <= 0) {
+			if (GraphicsEnvironment.isHeadless()) {
+				canvasWidth = 1024;
+				canvasHeight = (int) (1024d / aspectRatio);
+			} else {
+				final Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+				canvasWidth = screenSize.width;
+				canvasHeight = screenSize.height;
+			}
+		}
+		
+		if (aspectRatio >= (double) canvasWidth / (double) canvasHeight)
+			return new Dimension(canvasWidth, max(1, (int) Math.floor(canvasWidth / aspectRatio)));
+		
+		return new Dimension(max(1, (int) Math.floor(canvasHeight * aspectRatio)), canvasHeight);
+	}
+	
+	/**
+	 * Decode an image from the given stream.
+	 * 
+	 * @param stream
+	 * @param targetWidth
+	 *            the width (in pixels) the image will be displayed at, or 0 to
+	 *            decode at full resolution
+	 * @param targetHeight
+	 *            the height (in pixels) the image will be displayed at, or 0 to
+	 *            decode at full resolution
+	 * @param placeholderConsumer
+	 *            if not {@code null}, receives a placeholder as soon as the
+	 *            image's size is known
+	 * @return
+	 * @throws IOException
+	 *             if the stream cannot be read, or does not hold an image
+	 */
+	public static BaseMap decode(InputStream stream, int targetWidth, int targetHeight,
+			Consumer<BaseMap> placeholderConsumer) throws IOException {
+		
+		try (ImageInputStream imageStream = ImageIO.createImageInputStream(stream)) {
+			
+			final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageStream);
+			if (!readers.hasNext())
+				throw new IOException("No ImageReader can read this image.");
+			
+			final ImageReader reader = readers.next();
+			try {
+				reader.setInput(imageStream, true, true);
+				
+				final int sourceWidth = reader.getWidth(0), sourceHeight = reader.getHeight(0);
+				
+				if (placeholderConsumer != null)
+					placeholderConsumer.accept(new BaseMap(createPlaceholder(sourceWidth, sourceHeight), sourceWidth,
+							sourceHeight, 0));
+				
+				final int subsampling = calculateSubsampling(sourceWidth, sourceHeight, targetWidth, targetHeight);
+				
+				final ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				
+				final long start = System.nanoTime();
+				final BufferedImage image = reader.read(0, param);
+				LOG.info("decoded {}x{} image (1:{} subsampling) to {}x{} in {} ms", sourceWidth, sourceHeight,
+						subsampling, image.getWidth(), image.getHeight(), (System.nanoTime() - start) / 1000000L);
+				
+				return new BaseMap(image, sourceWidth, sourceHeight, subsampling);
+				
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Compute the largest subsampling factor that still leaves at least as many
+	 * pixels as the target size in both dimensions.
+	 * 
+	 * @param sourceWidth
+	 * @param sourceHeight
+	 * @param targetWidth
+	 * @param targetHeight
+	 * @return
+	 */
+	public static int calculateSubsampling(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+		
+		if (targetWidth <= 0 || targetHeight <= 0)
+			return 1;
+		
+		return max(1, min(sourceWidth / targetWidth, sourceHeight / targetHeight));
+	}
+	
+	private static BufferedImage createPlaceholder(int sourceWidth, int sourceHeight) {
+		
+		final int width = min(PLACEHOLDER_WIDTH, sourceWidth);
+		final int height = max(1, (int) ((long) width * sourceHeight / sourceWidth));
+		
+		final BufferedImage placeholder = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = placeholder.createGraphics();
+		try {
+			g.setColor(PLACEHOLDER_COLOR);
+			g.fillRect(0, 0, width, height);
+		} finally {
+			g.dispose();
+		}
+		
+		return placeholder;
+	}
+	
+	/**
+	 * A decoded base-map image.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class BaseMap {
+		
+		private final BufferedImage image;
+		private final int sourceWidth, sourceHeight;
+		private final int subsampling;
+		private final boolean reprojected;
+		
+		public BaseMap(BufferedImage image, int sourceWidth, int sourceHeight, int subsampling) {
+			
+			this(image, sourceWidth, sourceHeight, subsampling, false);
+		}
+		
+		public BaseMap(BufferedImage image, int sourceWidth, int sourceHeight, int subsampling,
+				boolean reprojected) {
+			
+			this.image = image;
+			this.sourceWidth = sourceWidth;
+			this.sourceHeight = sourceHeight;
+			this.subsampling = subsampling;
+			this.reprojected = reprojected;
+		}
+		
+		public BufferedImage getImage() {
+			
+			return image;
+		}
+		
+		public int getSourceWidth() {
+			
+			return sourceWidth;
+		}
+		
+		public int getSourceHeight() {
+			
+			return sourceHeight;
+		}
+		
+		/**
+		 * @return the subsampling factor this image was decoded with, or 0 if this
+		 *         is a placeholder
+		 */
+		public int getSubsampling() {
+			
+			return subsampling;
+		}
+		
+		public boolean isPlaceholder() {
+			
+			return subsampling == 0;
+		}
+		
+		/**
+		 * @return {@code true} if this image was reprojected (at exactly the size
+		 *         it's to be displayed), rather than decoded
+		 */
+		public boolean isReprojected() {
+			
+			return reprojected;
+		}
+		
+		/**
+		 * @param width
+		 * @param height
+		 * @return {@code true} if this image should be loaded again to be displayed
+		 *         at the given size
+		 */
+		public boolean isUnsuitableFor(int width, int height) {
+			
+			if (reprojected)
+				return image.getWidth() != width || image.getHeight() != height;
+			return isTooSmallFor(width, height);
+		}
+		
+		/**
+		 * @param width
+		 * @param height
+		 * @return {@code true} if this image holds fewer pixels than are needed to
+		 *         display it at the given size, and fewer than its source holds
+		 */
+		public boolean isTooSmallFor(int width, int height) {
+			
+			if (subsampling == 1)
+				return false;
+			return image.getWidth() < width || image.getHeight() < height;
+		}
+	}
+}
@@ -0,0 +1,494 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Maintains the fully-composited map frame, so that painting the map is a
+ * single unscaled blit.
+ * <p>
+ * Two images are cached, both in a format compatible with the display (so
+ * Java2D can keep accelerated copies of them):
+ * <ul>
+ * <li>the base map, scaled to the current map-size -- rebuilt only when the
+ * base map, the map-size, or the {@link #setViewport(Viewport) viewport}
+ * changes</li>
+ * <li>the frame -- the scaled base map with the light-map (and any overlay)
+ * drawn over it, rebuilt only when a new light-map is
+ * {@link #publish(BufferedImage, Consumer) published}</li>
+ * </ul>
+ * Frames are double-buffered: a new frame is composited off-screen, and only
+ * then replaces the frame returned by {@link #getFrame()}. Old frames are drawn
+ * into again -- so anything reading a frame (rather than only checking for
+ * one) should {@link #acquireFrame() acquire} it, and
+ * {@link #releaseFrame(BufferedImage) release} it when done. A frame is never
+ * re-used while it's still held.
+ * </p>
+ * <p>
+ * When zoomed in, the visible region is cropped from the base map -- unless a
+ * {@link #setDetailMap(BufferedImage, Viewport) detail-map}, rendered for just
+ * that region, is available.
+ * </p>
+ * <p>
+ * If a {@link #setNightMap(BufferedImage) night-map} is set, it is scaled
+ * alongside the base map, and each frame blends the two by the light-map (see
+ * {@link NightMapBlender}) instead of shading the base map. The blend is redone
+ * only on each {@link #publish(BufferedImage, Consumer) publish}, never on
+ * paint.
+ * </p>
+ * <p>
+ * The base map is never scaled directly, but from the nearest level of its
+ * {@link MipmapPyramid}. Pyramids are kept (for as long as their base maps are
+ * in use) up to a fixed total size.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class FrameCompositor {
+	
+	private static final Logger LOG = LogManager.getLogger(FrameCompositor.class);
+	
+	/**
+	 * Limit on the total size of cached mipmap levels, in bytes.
+	 */
+	public static final long PYRAMID_CACHE_SIZE = 64L * 1024L * 1024L;
+	
+	private final Supplier<GraphicsConfiguration> graphicsConfiguration;
+	private final ListeningExecutorService executor;
+	private final int threads;
+	private final Cache<BufferedImage, MipmapPyramid> pyramids = CacheBuilder.newBuilder().weakKeys()
+			.maximumWeight(PYRAMID_CACHE_SIZE)
+			.weigher((BufferedImage image, MipmapPyramid pyramid) -> (int) Math.min(Integer.MAX_VALUE,
+					pyramid.getEstimatedSize()))
+			.build();
+	
+	private BufferedImage baseMap = null;
+	private BufferedImage detailMap = null;
+	private Viewport detailViewport = null;
+	private Viewport viewport = Viewport.FULL;
+	private BufferedImage scaledBaseMap = null;
+	private BufferedImage nightMap = null;
+	private BufferedImage scaledNightMap = null;
+	private BufferedImage blended = null;
+	
+	private final Object frameLock = new Object();
+	private final Map<BufferedImage, Integer> frameLeases = new IdentityHashMap<>();
+	private BufferedImage backFrame = null;
+	private BufferedImage retiredFrame = null;
+	private volatile BufferedImage frame = null;
+	private boolean frameIsOwn = false;
+	
+	/**
+	 * @param graphicsConfiguration
+	 *            supplies the configuration of the display we render to (may
+	 *            supply {@code null}, e.g. before that display is shown)
+	 */
+	public FrameCompositor(Supplier<GraphicsConfiguration> graphicsConfiguration) {
+		
+		this(graphicsConfiguration, MoreExecutors.newDirectExecutorService(), 1);
+	}
+	
+	/**
+	 * @param graphicsConfiguration
+	 *            supplies the configuration of the display we render to (may
+	 *            supply {@code null}, e.g. before that display is shown)
+	 * @param executor
+	 *            used to build mipmap levels, and blend night-maps, in parallel
+	 * @param threads
+	 *            the number of threads available to the executor
+	 */
+	public FrameCompositor(Supplier<GraphicsConfiguration> graphicsConfiguration, ListeningExecutorService executor,
+			int threads) {
+		
+		this.graphicsConfiguration = graphicsConfiguration;
+		this.executor = executor;
+		this.threads = threads;
+	}
+	
+	/**
+	 * Set the (unscaled) base map. The scaled copy will be rebuilt on the next
+	 * {@link #publish(BufferedImage, Consumer) publish}.
+	 * 
+	 * @param baseMap
+	 */
+	public synchronized void setBaseMap(BufferedImage baseMap) {
+		
+		if (this.baseMap == baseMap)
+			return;
+		
+		this.baseMap = baseMap;
+		this.detailMap = null;
+		this.detailViewport = null;
+		this.scaledBaseMap = null;
+	}
+	
+	/**
+	 * Set the region of the base map to be shown.
+	 * 
+	 * @param viewport
+	 */
+	public synchronized void setViewport(Viewport viewport) {
+		
+		if (this.viewport.equals(viewport))
+			return;
+		
+		this.viewport = viewport;
+		this.scaledBaseMap = null;
+		this.scaledNightMap = null;
+	}
+	
+	/**
+	 * Set the (unscaled) night-map -- the Earth's lights at night -- to be shown
+	 * instead of the light-map's shadow, or {@code null} to shade the base map as
+	 * usual.
+	 * 
+	 * @param nightMap
+	 *            must cover the same region as the base map
+	 */
+	public synchronized void setNightMap(BufferedImage nightMap) {
+		
+		if (this.nightMap == nightMap)
+			return;
+		
+		//
+		// Blending reads the scaled maps' pixels directly -- so while we have a
+		// night-map, the scaled base map must be a plain RGB image, too.
+		//
+		if ((this.nightMap == null) != (nightMap == null)) {
+			this.scaledBaseMap = null;
+			this.blended = null;
+		}
+		
+		this.nightMap = nightMap;
+		this.scaledNightMap = null;
+	}
+	
+	/**
+	 * Set an image covering only the given region of the base map (at a higher
+	 * resolution), to be shown instead whenever that region is the
+	 * {@link #setViewport(Viewport) viewport}.
+	 * 
+	 * @param detailMap
+	 * @param detailViewport
+	 */
+	public synchronized void setDetailMap(BufferedImage detailMap, Viewport detailViewport) {
+		
+		this.detailMap = detailMap;
+		this.detailViewport = detailViewport;
+		if (viewport.equals(detailViewport))
+			this.scaledBaseMap = null;
+	}
+	
+	/**
+	 * Composite a new frame from the scaled base map and the given light-map,
+	 * and make it the current {@link #getFrame() frame}. The frame is sized to
+	 * match the light-map.
+	 * 
+	 * @param lightMap
+	 *            preferably {@link LightMapRenderer#createLightMap(int, int)
+	 *            alpha-only}, which is drawn by the {@link LightMapComposite}
+	 * @param overlay
+	 *            if not {@code null}, draws anything else on top of the frame
+	 */
+	public synchronized void publish(BufferedImage lightMap, Consumer<Graphics2D> overlay) {
+		
+		final int width = lightMap.getWidth(), height = lightMap.getHeight();
+		
+		final BufferedImage scaled = getScaledBaseMap(width, height);
+		
+		final BufferedImage target = takeBackFrame(width, height);
+		
+		final Graphics2D g = target.createGraphics();
+		try {
+			g.setComposite(AlphaComposite.Src);
+			if (scaled != null && nightMap != null)
+				g.drawImage(blendNightMap(scaled, lightMap), 0, 0, null);
+			
+			else {
+				if (scaled != null)
+					g.drawImage(scaled, 0, 0, null);
+				else {
+					g.setColor(Color.BLACK);
+					g.fillRect(0, 0, width, height);
+				}
+				
+				g.setComposite(LightMapComposite.INSTANCE);
+				g.drawImage(lightMap, 0, 0, null);
+			}
+			
+			g.setComposite(AlphaComposite.SrcOver);
+			if (overlay != null)
+				overlay.accept(g);
+		} finally {
+			g.dispose();
+		}
+		
+		synchronized (frameLock) {
+			//
+			// Re-use the previous frame as our next back-buffer -- but only if it's
+			// one of ours, and only once nothing holds it any longer.
+			//
+			final BufferedImage previous = frame;
+			frame = target;
+			if (frameIsOwn && previous != null) {
+				if (frameLeases.containsKey(previous))
+					retiredFrame = previous;
+				else
+					backFrame = previous;
+			}
+			frameIsOwn = true;
+		}
+	}
+	
+	/**
+	 * @param width
+	 * @param height
+	 * @return an image of the given size to composite the next frame into --
+	 *         either our back-buffer, or else a new image
+	 */
+	private BufferedImage takeBackFrame(int width, int height) {
+		
+		synchronized (frameLock) {
+			final BufferedImage spare = backFrame;
+			backFrame = null;
+			if (spare != null && spare.getWidth() == width && spare.getHeight() == height)
+				return spare;
+		}
+		
+		return createCompatibleImage(width, height);
+	}
+	
+	/**
+	 * Make the given, already-composited, image the current {@link #getFrame()
+	 * frame} (e.g., a frame restored from a {@link WarmStartCache}, or rendered
+	 * by a {@link GlobeRenderer}). The given image is never drawn into.
+	 * 
+	 * @param restoredFrame
+	 */
+	public synchronized void publishFrame(BufferedImage restoredFrame) {
+		
+		synchronized (frameLock) {
+			frame = restoredFrame;
+			frameIsOwn = false;
+		}
+	}
+	
+	/**
+	 * @return the most-recently published frame, or {@code null} if none has been
+	 *         published yet -- which may be drawn into again by a later
+	 *         {@link #publish(BufferedImage, Consumer) publish}, unless
+	 *         {@link #acquireFrame() acquired}
+	 */
+	public BufferedImage getFrame() {
+		
+		return frame;
+	}
+	
+	/**
+	 * Get the most-recently published frame, and hold it until
+	 * {@link #releaseFrame(BufferedImage) released}: until then, it won't be
+	 * drawn into again.
+	 * 
+	 * @return the most-recently published frame, or {@code null} if none has been
+	 *         published yet
+	 */
+	public BufferedImage acquireFrame() {
+		
+		synchronized (frameLock) {
+			final BufferedImage current = frame;
+			if (current != null)
+				frameLeases.merge(current, 1, Integer::sum);
+			return current;
+		}
+	}
+	
+	/**
+	 * Release a frame got from {@link #acquireFrame()}, so that it may be re-used.
+	 * 
+	 * @param acquired
+	 *            may be {@code null}
+	 */
+	public void releaseFrame(BufferedImage acquired) {
+		
+		if (acquired == null)
+			return;
+		
+		synchronized (frameLock) {
+			final Integer leases = frameLeases.get(acquired);
+			if (leases == null)
+				return;
+			
+			if (leases > 1) {
+				frameLeases.put(acquired, leases - 1);
+				return;
+			}
+			
+			frameLeases.remove(acquired);
+			if (acquired == retiredFrame) {
+				retiredFrame = null;
+				if (backFrame == null)
+					backFrame = acquired;
+			}
+		}
+	}
+	
+	/**
+	 * Blend the scaled base map and night-map by the given light-map, into an
+	 * image we keep for the purpose.
+	 * 
+	 * @param scaled
+	 * @param lightMap
+	 * @return the blended image
+	 */
+	private BufferedImage blendNightMap(BufferedImage scaled, BufferedImage lightMap) {
+		
+		final int width = scaled.getWidth(), height = scaled.getHeight();
+		
+		if (scaledNightMap == null || scaledNightMap.getWidth() != width || scaledNightMap.getHeight() != height)
+			scaledNightMap = scale(nightMap, null, width, height);
+		
+		if (blended == null || blended.getWidth() != width || blended.getHeight() != height)
+			blended = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		
+		final long start = System.nanoTime();
+		try {
+			NightMapBlender.blend(scaled, scaledNightMap, lightMap, blended, executor, threads);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		LOG.trace("blended night-map at {}x{} in {} us", width, height, (System.nanoTime() - start) / 1000L);
+		
+		return blended;
+	}
+	
+	private BufferedImage getScaledBaseMap(int width, int height) {
+		
+		if (baseMap == null)
+			return null;
+		
+		if (scaledBaseMap != null && scaledBaseMap.getWidth() == width && scaledBaseMap.getHeight() == height)
+			return scaledBaseMap;
+		
+		scaledBaseMap = scale(baseMap, (detailMap != null && viewport.equals(detailViewport)) ? detailMap : null,
+				width, height);
+		return scaledBaseMap;
+	}
+	
+	/**
+	 * Scale the viewport's region of the given map to the given size.
+	 * 
+	 * @param map
+	 * @param detail
+	 *            if not {@code null}, an image of the viewport's region alone,
+	 *            used instead
+	 * @param width
+	 * @param height
+	 * @return the scaled image
+	 */
+	private BufferedImage scale(BufferedImage map, BufferedImage detail, int width, int height) {
+		
+		final long start = System.nanoTime();
+		
+		final BufferedImage scaled = (nightMap != null)
+				? new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+				: createCompatibleImage(width, height);
+		final Graphics2D g = scaled.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			if (detail != null)
+				g.drawImage(detail, 0, 0, width, height, Color.BLACK, null);
+			
+			else {
+				//
+				// Start from the smallest mipmap that's at least as big as the whole
+				// map would be at this zoom.
+				//
+				final BufferedImage level = getMipmapLevel(map, width * viewport.getZoom(),
+						height * viewport.getZoom());
+				
+				if (viewport.isFull())
+					g.drawImage(level, 0, 0, width, height, Color.BLACK, null);
+				
+				else {
+					//
+					// Crop the viewport out of the base map. (Image rows run
+					// top-to-bottom, but the viewport's Y runs bottom-to-top.)
+					//
+					final double scaleX = width / (viewport.getSize() * level.getWidth()),
+							scaleY = height / (viewport.getSize() * level.getHeight());
+					final double cropX = viewport.getMinX() * level.getWidth(),
+							cropY = (1d - viewport.getMaxY()) * level.getHeight();
+					
+					g.setColor(Color.BLACK);
+					g.fillRect(0, 0, width, height);
+					g.drawImage(level, new AffineTransform(scaleX, 0d, 0d, scaleY, -cropX * scaleX, -cropY * scaleY),
+							null);
+				}
+			}
+		} finally {
+			g.dispose();
+		}
+		
+		LOG.debug("scaled {} to {}x{} in {} ms", (map == nightMap) ? "night-map" : "base map", width, height,
+				(System.nanoTime() - start) / 1000000L);
+		
+		return scaled;
+	}
+	
+	/**
+	 * Get the smallest level of the given map's mipmap pyramid that's at least
+	 * the given size.
+	 * 
+	 * @param base
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	private BufferedImage getMipmapLevel(BufferedImage base, double width, double height) {
+		
+		try {
+			return pyramids.get(base, () -> new MipmapPyramid(base, executor, threads)).getLevelFor(width, height);
+			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOG.error("Cannot build the map's mipmap pyramid.", e.getCause());
+		}
+		
+		return base;
+	}
+	
+	private BufferedImage createCompatibleImage(int width, int height) {
+		
+		final GraphicsConfiguration configuration = graphicsConfiguration.get();
+		if (configuration != null)
+			return configuration.createCompatibleImage(width, height, Transparency.OPAQUE);
+		
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+/**
+ * Measures frame-times (i.e., how long each frame takes to present) over a
+ * sliding window of recent frames.
+ * 
+ * @author snowjak88
+ *
+ */
+public class FrameTimer {
+	
+	/**
+	 * Default number of recent frames over which statistics are kept.
+	 */
+	public static final int DEFAULT_WINDOW = 120;
+	
+	private final long[] frameTimes;
+	private long frameCount = 0;
+	private long lastFrameStart = 0, lastFrameInterval = 0;
+	
+	public FrameTimer() {
+		
+		this(DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * @param window
+	 *            number of recent frames over which statistics are kept
+	 */
+	public FrameTimer(int window) {
+		
+		if (window < 1)
+			throw new IllegalArgumentException("Window must hold at least 1 frame.");
+		
+		this.frameTimes = new long[window];
+	}
+	
+	/**
+	 * Record one frame.
+	 * 
+	 * @param start
+	 *            when the frame started (as given by {@link System#nanoTime()})
+	 * @param end
+	 *            when the frame was presented (as given by
+	 *            {@link System#nanoTime()})
+	 */
+	public synchronized void record(long start, long end) {
+		
+		frameTimes[(int) (frameCount % frameTimes.length)] = end - start;
+		
+		if (frameCount > 0)
+			lastFrameInterval = start - lastFrameStart;
+		lastFrameStart = start;
+		
+		frameCount++;
+	}
+	
+	/**
+	 * @return the total number of frames recorded
+	 */
+	public synchronized long getFrameCount() {
+		
+		return frameCount;
+	}
+	
+	/**
+	 * @return the time taken by the most recent frame, in nanoseconds
+	 */
+	public synchronized long getLastFrameTime() {
+		
+		if (frameCount == 0)
+			return 0;
+		return frameTimes[(int) ((frameCount - 1) % frameTimes.length)];
+	}
+	
+	/**
+	 * @return the time between the starts of the two most recent frames, in
+	 *         nanoseconds
+	 */
+	public synchronized long getLastFrameInterval() {
+		
+		return lastFrameInterval;
+	}
+	
+	/**
+	 * @return the mean frame-time over the window, in nanoseconds
+	 */
+	public synchronized double getMeanFrameTime() {
+		
+		final int count = (int) Math.min(frameCount, frameTimes.length);
+		if (count == 0)
+			return 0d;
+		
+		long total = 0;
+		for (int i = 0; i < count; i++)
+			total += frameTimes[i];
+		return (double) total / (double) count;
+	}
+	
+	/**
+	 * @return the longest frame-time over the window, in nanoseconds
+	 */
+	public synchronized long getMaxFrameTime() {
+		
+		final int count = (int) Math.min(frameCount, frameTimes.length);
+		
+		long max = 0;
+		for (int i = 0; i < count; i++)
+			max = Math.max(max, frameTimes[i]);
+		return max;
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.asin;
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.snowjak.sunclock.DoublePair;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Renders the globe in orthographic view, centered on any latitude/longitude,
+ * from a single equirectangular source image -- shaded by the sun's position.
+ * <p>
+ * The view-space surface-normal of every pixel within the globe's disc depends
+ * only on the canvas-size, and so is computed only when that changes. Each
+ * frame then needs only a single rotation (from view- to world-space) to find
+ * each pixel's latitude/longitude, for its source-lookup. Sun-exposure is the
+ * dot-product of that normal with the direction to the sun -- which is the same
+ * in either space, so the sun is rotated into view-space once per frame
+ * instead.
+ * </p>
+ * <p>
+ * World-space has X pointing to 0N 0E, Y to 0N 90E, and Z to the north pole.
+ * View-space has X pointing right, Y up, and Z toward the viewer.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class GlobeRenderer {
+	
+	/**
+	 * Each worker thread is given (approximately) this many bands.
+	 */
+	private static final int BANDS_PER_THREAD = 4;
+	
+	/**
+	 * Sun-exposure is quantized to this many levels, over [-1,+1].
+	 */
+	private static final int SHADE_LEVELS = 2048;
+	
+	/**
+	 * The color darkness shades toward (as in the light-map).
+	 */
+	private static final int SHADOW = 0x0f;
+	
+	/**
+	 * Source-rows are looked up by world-space Z, quantized to this many levels
+	 * over [-1,+1].
+	 */
+	private static final int ROW_LEVELS = 1 << 16;
+	
+	private final int sourceWidth, sourceInset, contentWidth, contentHeight;
+	private final int[] source;
+	
+	private final ListeningExecutorService executor;
+	private final int threads;
+	
+	/**
+	 * Brightness (in [0,256]) for each sun-exposure level.
+	 */
+	private final int[] shades = new int[SHADE_LEVELS + 1];
+	
+	/**
+	 * Offset (into {@link #source}) of the source-row for each world-space Z
+	 * level.
+	 */
+	private final int[] rowOffsets = new int[ROW_LEVELS + 1];
+	
+	private int width = 0, height = 0;
+	private int[] discPixels = new int[0];
+	private float[] normalX = new float[0], normalY = new float[0], normalZ = new float[0];
+	private int[] discRowStart = new int[0];
+	
+	private BufferedImage frontFrame = null, backFrame = null;
+	
+	/**
+	 * @param equirectangularSource
+	 *            covers latitudes [+90,-90] top-to-bottom and longitudes
+	 *            [-180,+180] left-to-right
+	 * @param sourceInset
+	 *            width (in pixels) of any frame drawn around the edges of the
+	 *            source, which is not to be sampled
+	 * @param executor
+	 *            used to render row-bands in parallel
+	 * @param threads
+	 *            the number of threads available to the executor
+	 */
+	public GlobeRenderer(BufferedImage equirectangularSource, int sourceInset, ListeningExecutorService executor,
+			int threads) {
+		
+		this.sourceWidth = equirectangularSource.getWidth();
+		final int sourceHeight = equirectangularSource.getHeight();
+		if (sourceInset < 0 || 2 * sourceInset >= min(sourceWidth, sourceHeight))
+			throw new IllegalArgumentException("Source inset must leave some of the source to sample.");
+		this.sourceInset = sourceInset;
+		this.contentWidth = sourceWidth - 2 * sourceInset;
+		this.contentHeight = sourceHeight - 2 * sourceInset;
+		this.source = new int[sourceWidth * sourceHeight];
+		equirectangularSource.getRGB(0, 0, sourceWidth, sourceHeight, source, 0, sourceWidth);
+		
+		this.executor = executor;
+		this.threads = max(1, threads);
+		
+		//
+		// As in the light-map: brightness rises from 0.1 (at and beyond the
+		// terminator) with the square-root of the sun's exposure.
+		//
+		for (int i = 0; i <= SHADE_LEVELS; i++) {
+			final double exposure = max(0d, 2d * i / SHADE_LEVELS - 1d);
+			shades[i] = (int) (256d * (0.9d * sqrt(exposure) + 0.1d));
+		}
+		
+		for (int i = 0; i <= ROW_LEVELS; i++) {
+			final double z = 2d * i / ROW_LEVELS - 1d;
+			final int row = min((int) ((PI / 2d - asin(z)) / PI * contentHeight), contentHeight - 1);
+			rowOffsets[i] = (sourceInset + row) * sourceWidth + sourceInset;
+		}
+	}
+	
+	/**
+	 * Render the globe, centered on the given point, into an image of the given
+	 * size. The globe fills the largest disc that fits; the rest of the image is
+	 * black.
+	 * 
+	 * @param width
+	 * @param height
+	 * @param centerLatitude
+	 *            in degrees
+	 * @param centerLongitude
+	 *            in degrees
+	 * @param subsolarPoint
+	 *            latitude/longitude (in degrees) of the point the sun is directly
+	 *            over, or {@code null} to leave the globe unshaded
+	 * @return an image of type {@link BufferedImage#TYPE_INT_RGB}, which remains
+	 *         valid only until the next-but-one call to this method
+	 * @throws InterruptedException
+	 */
+	public synchronized BufferedImage render(int width, int height, double centerLatitude, double centerLongitude,
+			DoublePair subsolarPoint) throws InterruptedException {
+		
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Cannot render to an empty image.");
+		
+		if (width != this.width || height != this.height)
+			prepare(width, height);
+		
+		if (backFrame == null || backFrame.getWidth() != width || backFrame.getHeight() != height)
+			backFrame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) backFrame.getRaster().getDataBuffer()).getData();
+		
+		//
+		// The view-to-world rotation's columns are the world-space directions of
+		// view-space's X (east, at the center), Y (north, at the center), and Z
+		// (the center's own surface-normal).
+		//
+		final double lat = degreesToRadians(centerLatitude), lng = degreesToRadians(centerLongitude);
+		final double[] rotation = { -sin(lng), -sin(lat) * cos(lng), cos(lat) * cos(lng), //
+				cos(lng), -sin(lat) * sin(lng), cos(lat) * sin(lng), //
+				0d, cos(lat), sin(lat) };
+		
+		//
+		// The sun, rotated into view-space (i.e., by the transpose).
+		//
+		final double[] sun;
+		if (subsolarPoint == null)
+			sun = null;
+		else {
+			final double sunLat = degreesToRadians(subsolarPoint.getX()),
+					sunLng = degreesToRadians(subsolarPoint.getY());
+			final double sx = cos(sunLat) * cos(sunLng), sy = cos(sunLat) * sin(sunLng), sz = sin(sunLat);
+			sun = new double[] { rotation[0] * sx + rotation[3] * sy + rotation[6] * sz,
+					rotation[1] * sx + rotation[4] * sy + rotation[7] * sz,
+					rotation[2] * sx + rotation[5] * sy + rotation[8] * sz };
+		}
+		
+		final int bandHeight = max(1, (height + threads * BANDS_PER_THREAD - 1) / (threads * BANDS_PER_THREAD));
+		final List<ListenableFuture<?>> bands = new ArrayList<>();
+		for (int y = 0; y < height; y += bandHeight) {
+			final int startRow = y, endRow = min(height, y + bandHeight);
+			bands.add(executor.submit(() -> renderRows(pixels, rotation, sun, startRow, endRow)));
+		}
+		
+		try {
+			Futures.allAsList(bands).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not render the globe.", e.getCause());
+		} catch (InterruptedException e) {
+			bands.forEach(f -> f.cancel(true));
+			throw e;
+		}
+		
+		final BufferedImage rendered = backFrame;
+		backFrame = frontFrame;
+		frontFrame = rendered;
+		return rendered;
+	}
+	
+	/**
+	 * Compute the view-space normal of every pixel within the globe's disc.
+	 * 
+	 * @param width
+	 * @param height
+	 */
+	private void prepare(int width, int height) {
+		
+		final double radius = min(width, height) / 2d;
+		final double centerX = width / 2d, centerY = height / 2d;
+		
+		final int[] pixels = new int[width * height];
+		final float[] nx = new float[width * height], ny = new float[width * height], nz = new float[width * height];
+		final int[] rowStart = new int[height + 1];
+		
+		int count = 0;
+		for (int row = 0; row < height; row++) {
+			rowStart[row] = count;
+			final double vy = (centerY - (row + 0.5d)) / radius;
+			for (int column = 0; column < width; column++) {
+				final double vx = ((column + 0.5d) - centerX) / radius;
+				final double vz2 = 1d - vx * vx - vy * vy;
+				if (vz2 < 0d)
+					continue;
+				
+				pixels[count] = row * width + column;
+				nx[count] = (float) vx;
+				ny[count] = (float) vy;
+				nz[count] = (float) sqrt(vz2);
+				count++;
+			}
+		}
+		rowStart[height] = count;
+		
+		this.discPixels = Arrays.copyOf(pixels, count);
+		this.normalX = Arrays.copyOf(nx, count);
+		this.normalY = Arrays.copyOf(ny, count);
+		this.normalZ = Arrays.copyOf(nz, count);
+		this.discRowStart = rowStart;
+		this.width = width;
+		this.height = height;
+	}
+	
+	private void renderRows(int[] pixels, double[] rotation, double[] sun, int startRow, int endRow) {
+		
+		final int[] discPixels = this.discPixels;
+		final float[] normalX = this.normalX, normalY = this.normalY, normalZ = this.normalZ;
+		
+		final double r0 = rotation[0], r1 = rotation[1], r2 = rotation[2], r3 = rotation[3], r4 = rotation[4],
+				r5 = rotation[5], r7 = rotation[7], r8 = rotation[8];
+		final double uScale = contentWidth / (2d * PI);
+		
+		//
+		// Everything outside the disc is background.
+		//
+		Arrays.fill(pixels, startRow * width, endRow * width, 0);
+		
+		for (int i = discRowStart[startRow]; i < discRowStart[endRow]; i++) {
+			final double vx = normalX[i], vy = normalY[i], vz = normalZ[i];
+			
+			final double wx = r0 * vx + r1 * vy + r2 * vz, wy = r3 * vx + r4 * vy + r5 * vz,
+					wz = r7 * vy + r8 * vz;
+			
+			final int u = min((int) ((atan2(wy, wx) + PI) * uScale), contentWidth - 1);
+			final int texel = source[rowOffsets[max(0, min(ROW_LEVELS, (int) ((wz + 1d) / 2d * ROW_LEVELS)))] + u];
+			
+			if (sun == null) {
+				pixels[discPixels[i]] = texel;
+				continue;
+			}
+			
+			final double exposure = sun[0] * vx + sun[1] * vy + sun[2] * vz;
+			final int shade = shades[max(0, min(SHADE_LEVELS, (int) ((exposure + 1d) / 2d * SHADE_LEVELS)))],
+					dark = (256 - shade) * SHADOW;
+			
+			pixels[discPixels[i]] = ((((texel >> 16) & 0xff) * shade + dark) >> 8) << 16
+					| ((((texel >> 8) & 0xff) * shade + dark) >> 8) << 8 | (((texel & 0xff) * shade + dark) >> 8);
+		}
+	}
+	
+	/**
+	 * Approximate {@link Math#atan2(double, double)}, to within about 1e-5
+	 * radians -- far less than a source-pixel.
+	 * 
+	 * @param y
+	 * @param x
+	 * @return
+	 */
+	static double atan2(double y, double x) {
+		
+		final double ax = abs(x), ay = abs(y);
+		if (ax == 0d && ay == 0d)
+			return 0d;
+		
+		final double a = min(ax, ay) / max(ax, ay), s = a * a;
+		double r = ((-0.0464964749d * s + 0.15931422d) * s - 0.327622764d) * s * a + a;
+		
+		if (ay > ax)
+			r = PI / 2d - r;
+		if (x < 0d)
+			r = PI - r;
+		if (y < 0d)
+			r = -r;
+		
+		return r;
+	}
+}
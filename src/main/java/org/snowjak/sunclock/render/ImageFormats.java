@@ -0,0 +1,240 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The image formats that images of a given type can be written as -- and the
+ * means to write them, reporting progress.
+ * <p>
+ * Discovering which {@link ImageWriter}s can write an image means asking every
+ * registered format, and so is done only once for each type of image.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public final class ImageFormats {
+	
+	private static final Logger LOG = LogManager.getLogger(ImageFormats.class);
+	
+	private static final Map<Integer, ImageFormats> FORMATS = new ConcurrentHashMap<>();
+	
+	private final int imageType;
+	
+	/**
+	 * Maps each file-suffix to the name of the format written for it.
+	 */
+	private final Map<String, String> formatNames;
+	
+	private ImageFormats(int imageType, Map<String, String> formatNames) {
+		
+		this.imageType = imageType;
+		this.formatNames = Collections.unmodifiableMap(formatNames);
+	}
+	
+	/**
+	 * @param imageType
+	 *            a {@link BufferedImage} type
+	 * @return the formats images of the given type can be written as
+	 */
+	public static ImageFormats forType(int imageType) {
+		
+		return FORMATS.computeIfAbsent(imageType, ImageFormats::discover);
+	}
+	
+	private static ImageFormats discover(int imageType) {
+		
+		final long start = System.nanoTime();
+		
+		final ImageTypeSpecifier type = ImageTypeSpecifier.createFromBufferedImageType(imageType);
+		final Map<String, String> formatNames = new LinkedHashMap<>();
+		for (String formatName : ImageIO.getWriterFormatNames()) {
+			final Iterator<ImageWriter> writers = ImageIO.getImageWriters(type, formatName);
+			while (writers.hasNext()) {
+				final ImageWriter writer = writers.next();
+				for (String suffix : writer.getOriginatingProvider().getFileSuffixes())
+					if (!suffix.isEmpty())
+						formatNames.putIfAbsent(suffix.toLowerCase(),
+								writer.getOriginatingProvider().getFormatNames()[0]);
+				writer.dispose();
+			}
+		}
+		
+		LOG.info("discovered {} image-writer file-suffixes for image-type {} in {} ms", formatNames.size(), imageType,
+				(System.nanoTime() - start) / 1000000L);
+		return new ImageFormats(imageType, formatNames);
+	}
+	
+	/**
+	 * @return {@code true} if images of this type can't be written at all
+	 */
+	public boolean isEmpty() {
+		
+		return formatNames.isEmpty();
+	}
+	
+	/**
+	 * @return every file-suffix an image of this type can be written with
+	 */
+	public Set<String> getSuffixes() {
+		
+		return formatNames.keySet();
+	}
+	
+	/**
+	 * @param file
+	 * @return the given file -- with a suffix appended, if it doesn't already end
+	 *         with one of {@link #getSuffixes()}
+	 */
+	public File withSuffix(File file) {
+		
+		if (getSuffix(file) != null || isEmpty())
+			return file;
+		
+		final String suffix = formatNames.containsKey("png") ? "png" : formatNames.keySet().iterator().next();
+		return new File(file.getPath() + "." + suffix);
+	}
+	
+	private String getSuffix(File file) {
+		
+		final String name = file.getName().toLowerCase();
+		final int dot = name.lastIndexOf('.');
+		if (dot < 0)
+			return null;
+		
+		final String suffix = name.substring(dot + 1);
+		return formatNames.containsKey(suffix) ? suffix : null;
+	}
+	
+	/**
+	 * Write the given image, in the format its file's suffix calls for.
+	 * 
+	 * @param image
+	 *            of this type
+	 * @param file
+	 *            ending with one of {@link #getSuffixes()}
+	 * @param progress
+	 *            receives the percentage written so far, or {@code null}
+	 * @throws IOException
+	 * @throws InterruptedException
+	 *             if interrupted -- in which case the file is deleted
+	 */
+	public void write(BufferedImage image, File file, IntConsumer progress) throws IOException, InterruptedException {
+		
+		if (image.getType() != imageType)
+			throw new IllegalArgumentException("Image is not of type " + imageType + ".");
+		
+		final String suffix = getSuffix(file);
+		if (suffix == null)
+			throw new IOException("Cannot write [" + file + "]: no image-writer for its suffix.");
+		
+		final Iterator<ImageWriter> writers = ImageIO.getImageWriters(new ImageTypeSpecifier(image),
+				formatNames.get(suffix));
+		if (!writers.hasNext())
+			throw new IOException("Cannot write [" + file + "]: no image-writer for its suffix.");
+		
+		final ImageWriter writer = writers.next();
+		final WriteProgress listener = new WriteProgress(writer, progress);
+		writer.addIIOWriteProgressListener(listener);
+		
+		Files.deleteIfExists(file.toPath());
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(file)) {
+			if (stream == null)
+				throw new IOException("Cannot write to [" + file + "]");
+			
+			writer.setOutput(stream);
+			writer.write(image);
+			
+		} finally {
+			writer.dispose();
+		}
+		
+		if (listener.aborted) {
+			Files.deleteIfExists(file.toPath());
+			throw new InterruptedException("Writing [" + file + "] was interrupted.");
+		}
+	}
+	
+	/**
+	 * Passes progress along -- and aborts writing if the writing thread is
+	 * interrupted.
+	 */
+	private static class WriteProgress implements IIOWriteProgressListener {
+		
+		private final ImageWriter writer;
+		private final IntConsumer progress;
+		private boolean aborted = false;
+		
+		WriteProgress(ImageWriter writer, IntConsumer progress) {
+			
+			this.writer = writer;
+			this.progress = progress;
+		}
+		
+		@Override
+		public void imageProgress(ImageWriter source, float percentageDone) {
+			
+			if (Thread.currentThread().isInterrupted()) {
+				aborted = true;
+				writer.abort();
+				return;
+			}
+			
+			if (progress != null)
+				progress.accept((int) percentageDone);
+		}
+		
+		@Override
+		public void writeAborted(ImageWriter source) {
+			
+			aborted = true;
+		}
+		
+		@Override
+		public void imageStarted(ImageWriter source, int imageIndex) {
+			
+		}
+		
+		@Override
+		public void imageComplete(ImageWriter source) {
+			
+		}
+		
+		@Override
+		public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) {
+			
+		}
+		
+		@Override
+		public void thumbnailProgress(ImageWriter source, float percentageDone) {
+			
+		}
+		
+		@Override
+		public void thumbnailComplete(ImageWriter source) {
+			
+		}
+	}
+}
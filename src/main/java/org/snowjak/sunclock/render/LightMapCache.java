@@ -0,0 +1,224 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps rendered light-maps, keyed by everything that determines them:
+ * projection, viewport, size, cell-size -- and time, in buckets.
+ * <p>
+ * A time-bucket is the span over which the light-map doesn't visibly change
+ * (i.e., over which the terminator moves by less than one sample-cell -- see
+ * {@link RenderScheduler#calculateInterval(Projection, int, int, int)}). Every
+ * instant within a bucket is rendered as the bucket's
+ * {@link #getBucketMidpoint(long, long) midpoint}.
+ * </p>
+ * <p>
+ * The least-recently-used light-maps are evicted once their total size
+ * exceeds a fixed limit. Concurrent requests for the same light-map render it
+ * only once.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class LightMapCache {
+	
+	/**
+	 * Default limit on the total size of cached light-maps, in bytes.
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 96L * 1024L * 1024L;
+	
+	private final Cache<Key, BufferedImage> cache;
+	
+	public LightMapCache() {
+		
+		this(DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * @param cacheSize
+	 *            limit on the total size of cached light-maps, in bytes
+	 */
+	public LightMapCache(long cacheSize) {
+		
+		//
+		// Guava splits the weight-limit evenly among the cache's segments -- and a
+		// single light-map can easily be a sizable fraction of the whole. So: only
+		// one segment.
+		//
+		this.cache = CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(cacheSize)
+				.weigher((Key key, BufferedImage image) -> getSize(image)).build();
+	}
+	
+	/**
+	 * @param image
+	 * @return the (approximate) size of the given light-map, in bytes
+	 */
+	static int getSize(BufferedImage image) {
+		
+		return (image.getColorModel().getPixelSize() + 7) / 8 * image.getWidth() * image.getHeight();
+	}
+	
+	/**
+	 * @param key
+	 * @return the cached light-map, or {@code null} if it isn't cached
+	 */
+	public BufferedImage getIfPresent(Key key) {
+		
+		return cache.getIfPresent(key);
+	}
+	
+	/**
+	 * Get the given light-map, rendering it (once) if it isn't cached.
+	 * 
+	 * @param key
+	 * @param renderer
+	 * @return
+	 * @throws ExecutionException
+	 *             if the light-map could not be rendered
+	 */
+	public BufferedImage get(Key key, Callable<BufferedImage> renderer) throws ExecutionException {
+		
+		return cache.get(key, renderer);
+	}
+	
+	public long size() {
+		
+		return cache.size();
+	}
+	
+	public void clear() {
+		
+		cache.invalidateAll();
+	}
+	
+	/**
+	 * @param instant
+	 * @param bucketMillis
+	 *            the width of each time-bucket, in milliseconds
+	 * @return the time-bucket holding the given instant
+	 */
+	public static long getBucket(Instant instant, long bucketMillis) {
+		
+		return Math.floorDiv(instant.toEpochMilli(), bucketMillis);
+	}
+	
+	/**
+	 * @param bucket
+	 * @param bucketMillis
+	 *            the width of each time-bucket, in milliseconds
+	 * @return the instant every instant within the given time-bucket is rendered
+	 *         as
+	 */
+	public static Instant getBucketMidpoint(long bucket, long bucketMillis) {
+		
+		return Instant.ofEpochMilli(bucket * bucketMillis + bucketMillis / 2L);
+	}
+	
+	/**
+	 * Identifies a single light-map.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static final class Key {
+		
+		private final String projectionId;
+		private final Viewport viewport;
+		private final int width, height, cellSize;
+		private final long bucketMillis, bucket;
+		
+		public Key(Projection projection, Viewport viewport, int width, int height, int cellSize,
+				long bucketMillis, long bucket) {
+			
+			this.projectionId = projection.getId();
+			this.viewport = viewport;
+			this.width = width;
+			this.height = height;
+			this.cellSize = cellSize;
+			this.bucketMillis = bucketMillis;
+			this.bucket = bucket;
+		}
+		
+		/**
+		 * @param offset
+		 * @return the key for the same light-map, the given number of time-buckets
+		 *         later (or earlier, if negative)
+		 */
+		public Key offsetBy(long offset) {
+			
+			return new Key(this, bucket + offset);
+		}
+		
+		private Key(Key key, long bucket) {
+			
+			this.projectionId = key.projectionId;
+			this.viewport = key.viewport;
+			this.width = key.width;
+			this.height = key.height;
+			this.cellSize = key.cellSize;
+			this.bucketMillis = key.bucketMillis;
+			this.bucket = bucket;
+		}
+		
+		public int getWidth() {
+			
+			return width;
+		}
+		
+		public int getHeight() {
+			
+			return height;
+		}
+		
+		public int getCellSize() {
+			
+			return cellSize;
+		}
+		
+		public long getBucket() {
+			
+			return bucket;
+		}
+		
+		/**
+		 * @return the instant this light-map is rendered for
+		 */
+		public Instant getInstant() {
+			
+			return getBucketMidpoint(bucket, bucketMillis);
+		}
+		
+		@Override
+		public int hashCode() {
+			
+			return Objects.hash(projectionId, viewport, width, height, cellSize, bucketMillis, bucket);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			final Key other = (Key) obj;
+			return projectionId.equals(other.projectionId) && viewport.equals(other.viewport)
+					&& width == other.width && height == other.height && cellSize == other.cellSize
+					&& bucketMillis == other.bucketMillis && bucket == other.bucket;
+		}
+	}
+}
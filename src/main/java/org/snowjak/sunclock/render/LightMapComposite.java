@@ -0,0 +1,144 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.min;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.CompositeContext;
+import java.awt.RenderingHints;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Draws an alpha-only light-map (see {@link LightMapRenderer#createLightMap(int,
+ * int)}) over an opaque RGB image, tinting toward the light-map's shadow-color
+ * as it goes -- reading a single byte per light-map pixel, and looking up each
+ * blended channel in a table rather than dividing.
+ * <p>
+ * Anything else -- other images, or other destinations -- is drawn exactly as
+ * with {@link AlphaComposite#SrcOver}.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public final class LightMapComposite implements Composite {
+	
+	public static final LightMapComposite INSTANCE = new LightMapComposite();
+	
+	/**
+	 * Indexed by (alpha &lt;&lt; 8 | channel): the channel, blended toward the
+	 * shadow-color's by the given alpha.
+	 */
+	private static final byte[] BLEND = new byte[256 * 256];
+	static {
+		for (int alpha = 0; alpha < 256; alpha++) {
+			final int over = LightMapRenderer.getShadowChannel() * alpha + 127;
+			for (int under = 0; under < 256; under++)
+				BLEND[alpha << 8 | under] = (byte) ((under * (255 - alpha) + over) / 255);
+		}
+	}
+	
+	private LightMapComposite() {
+		
+	}
+	
+	/**
+	 * @param rgb
+	 *            an opaque color
+	 * @param alpha
+	 *            a light-map pixel
+	 * @return the given color, shaded by the given light-map pixel
+	 */
+	public static int shade(int rgb, int alpha) {
+		
+		final int row = alpha << 8;
+		return (BLEND[row | (rgb >> 16) & 0xff] & 0xff) << 16 | (BLEND[row | (rgb >> 8) & 0xff] & 0xff) << 8
+				| (BLEND[row | rgb & 0xff] & 0xff);
+	}
+	
+	@Override
+	public CompositeContext createContext(ColorModel srcColorModel, ColorModel dstColorModel, RenderingHints hints) {
+		
+		final CompositeContext fallback = AlphaComposite.SrcOver.createContext(srcColorModel, dstColorModel, hints);
+		if (srcColorModel != LightMapRenderer.getShades() || !isOpaqueIntRGB(dstColorModel))
+			return fallback;
+		
+		return new Context(fallback);
+	}
+	
+	private static boolean isOpaqueIntRGB(ColorModel colorModel) {
+		
+		if (!(colorModel instanceof DirectColorModel) || colorModel.hasAlpha()
+				|| colorModel.getTransferType() != DataBuffer.TYPE_INT)
+			return false;
+		
+		final DirectColorModel direct = (DirectColorModel) colorModel;
+		return direct.getRedMask() == 0xff0000 && direct.getGreenMask() == 0xff00 && direct.getBlueMask() == 0xff;
+	}
+	
+	private static class Context implements CompositeContext {
+		
+		private final CompositeContext fallback;
+		
+		Context(CompositeContext fallback) {
+			
+			this.fallback = fallback;
+		}
+		
+		@Override
+		public void compose(Raster src, Raster dstIn, WritableRaster dstOut) {
+			
+			if (dstIn != dstOut || !(src.getDataBuffer() instanceof DataBufferByte)
+					|| !(src.getSampleModel() instanceof ComponentSampleModel)
+					|| !(dstOut.getDataBuffer() instanceof DataBufferInt)
+					|| !(dstOut.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+				fallback.compose(src, dstIn, dstOut);
+				return;
+			}
+			
+			final ComponentSampleModel srcModel = (ComponentSampleModel) src.getSampleModel();
+			final SinglePixelPackedSampleModel dstModel = (SinglePixelPackedSampleModel) dstOut.getSampleModel();
+			final byte[] alphas = ((DataBufferByte) src.getDataBuffer()).getData();
+			final int[] pixels = ((DataBufferInt) dstOut.getDataBuffer()).getData();
+			
+			final int width = min(src.getWidth(), dstOut.getWidth()), height = min(src.getHeight(),
+					dstOut.getHeight());
+			final int srcX = src.getMinX() - src.getSampleModelTranslateX(),
+					srcY = src.getMinY() - src.getSampleModelTranslateY();
+			final int dstX = dstOut.getMinX() - dstOut.getSampleModelTranslateX(),
+					dstY = dstOut.getMinY() - dstOut.getSampleModelTranslateY();
+			final int srcOffset = srcModel.getOffset(srcX, srcY) + ((DataBufferByte) src.getDataBuffer()).getOffset(),
+					dstOffset = dstModel.getOffset(dstX, dstY) + ((DataBufferInt) dstOut.getDataBuffer()).getOffset();
+			
+			for (int y = 0; y < height; y++) {
+				final int s = srcOffset + y * srcModel.getScanlineStride(),
+						d = dstOffset + y * dstModel.getScanlineStride();
+				for (int x = 0; x < width; x++) {
+					//
+					// Fully-lit pixels -- often most of them -- are left alone.
+					//
+					final int alpha = alphas[s + x] & 0xff;
+					if (alpha != 0)
+						pixels[d + x] = shade(pixels[d + x], alpha);
+				}
+			}
+		}
+		
+		@Override
+		public void dispose() {
+			
+			fallback.dispose();
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.snowjak.sunclock.DoublePair;
+import org.snowjak.sunclock.metrics.RenderMetrics;
+import org.snowjak.sunclock.metrics.RenderMetrics.Phase;
+import org.snowjak.sunclock.pool.Pool;
+import org.snowjak.sunclock.pool.Pools;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.solar.Solar;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Renders the light-map -- the shadow cast over the base map by the night --
+ * for any projection, viewport and instant.
+ * <p>
+ * The light-map is a grid of square sample-cells, each filled with the shade
+ * computed at its center. Each row of cells is one task: its centers are
+ * transformed to latitude/longitude through the projection's
+ * {@link Projection#inverse(double[], double[], double[], double[], int, int)
+ * inverse kernel} all at once, before sun-exposure is calculated for each. Cells
+ * outside the projection's domain are left transparent.
+ * </p>
+ * <p>
+ * Only the light-map's alpha ever varies -- its color is always the same
+ * shadow-color -- so light-maps are best {@link #createLightMap(int, int)
+ * created} alpha-only, at one byte per pixel, and drawn with the
+ * {@link LightMapComposite}. (Light-maps of type
+ * {@link BufferedImage#TYPE_INT_ARGB} may still be rendered, too.)
+ * </p>
+ * <p>
+ * Time spent in each {@link Phase} is recorded in {@link RenderMetrics}
+ * (summed across threads).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class LightMapRenderer {
+	
+	/**
+	 * The color darkness shades toward.
+	 */
+	private static final int SHADOW = 0x0f0f0f;
+	
+	/**
+	 * Maps each alpha-only light-map pixel to the shadow-color at that alpha.
+	 */
+	private static final IndexColorModel SHADES;
+	static {
+		final byte[] channel = new byte[256], alpha = new byte[256];
+		for (int i = 0; i < 256; i++) {
+			channel[i] = (byte) SHADOW;
+			alpha[i] = (byte) i;
+		}
+		SHADES = new IndexColorModel(8, 256, channel, channel, channel, alpha);
+	}
+	
+	private final ListeningExecutorService executor;
+	
+	/**
+	 * @param executor
+	 *            used to render rows of cells in parallel
+	 */
+	public LightMapRenderer(ListeningExecutorService executor) {
+		
+		this.executor = executor;
+	}
+	
+	/**
+	 * @param width
+	 * @param height
+	 * @return a new, alpha-only, light-map
+	 */
+	public static BufferedImage createLightMap(int width, int height) {
+		
+		return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, SHADES);
+	}
+	
+	/**
+	 * Render the light-map into the given image, replacing its contents.
+	 * 
+	 * @param lightMap
+	 *            {@link #createLightMap(int, int) alpha-only}, or else of type
+	 *            {@link BufferedImage#TYPE_INT_ARGB}
+	 * @param projection
+	 * @param viewport
+	 *            the region of the projection the light-map covers
+	 * @param cellSize
+	 *            size of each (square) sample-cell, in pixels
+	 * @param instant
+	 *            the moment to render the light-map for
+	 * @return the number of sun-exposure samples evaluated
+	 * @throws InterruptedException
+	 */
+	public long render(BufferedImage lightMap, Projection projection, Viewport viewport, int cellSize,
+			ZonedDateTime instant) throws InterruptedException {
+		
+		if (lightMap.getColorModel() == SHADES)
+			return render(null, ((DataBufferByte) lightMap.getRaster().getDataBuffer()).getData(),
+					lightMap.getWidth(), lightMap.getHeight(), 0, lightMap.getHeight(), projection, viewport,
+					cellSize, instant);
+		
+		if (lightMap.getType() == BufferedImage.TYPE_INT_ARGB)
+			return render(((DataBufferInt) lightMap.getRaster().getDataBuffer()).getData(), null,
+					lightMap.getWidth(), lightMap.getHeight(), 0, lightMap.getHeight(), projection, viewport,
+					cellSize, instant);
+		
+		throw new IllegalArgumentException("Cannot render a light-map of image-type " + lightMap.getType() + ".");
+	}
+	
+	/**
+	 * Render only the given band of rows of a light-map, into the given array
+	 * (as ARGB, starting with the band's first row). Cells are laid out as for
+	 * the whole light-map, so bands may be rendered separately and fit together
+	 * seamlessly.
+	 * 
+	 * @param pixels
+	 *            receives the band's pixels
+	 * @param width
+	 *            the width of the whole light-map
+	 * @param height
+	 *            the height of the whole light-map
+	 * @param startRow
+	 *            the first row of the band
+	 * @param endRow
+	 *            the row after the last row of the band
+	 * @param projection
+	 * @param viewport
+	 * @param cellSize
+	 * @param instant
+	 * @return the number of sun-exposure samples evaluated
+	 * @throws InterruptedException
+	 */
+	public long render(int[] pixels, int width, int height, int startRow, int endRow, Projection projection,
+			Viewport viewport, int cellSize, ZonedDateTime instant) throws InterruptedException {
+		
+		return render(pixels, null, width, height, startRow, endRow, projection, viewport, cellSize, instant);
+	}
+	
+	/**
+	 * Render only the given band of rows of an alpha-only light-map, into the
+	 * given array (starting with the band's first row).
+	 * 
+	 * @param alphas
+	 *            receives the band's pixels, as the alpha of the shadow-color
+	 *            over each
+	 * @param width
+	 * @param height
+	 * @param startRow
+	 * @param endRow
+	 * @param projection
+	 * @param viewport
+	 * @param cellSize
+	 * @param instant
+	 * @return the number of sun-exposure samples evaluated
+	 * @throws InterruptedException
+	 * @see #render(int[], int, int, int, int, Projection, Viewport, int,
+	 *      ZonedDateTime)
+	 */
+	public long render(byte[] alphas, int width, int height, int startRow, int endRow, Projection projection,
+			Viewport viewport, int cellSize, ZonedDateTime instant) throws InterruptedException {
+		
+		return render(null, alphas, width, height, startRow, endRow, projection, viewport, cellSize, instant);
+	}
+	
+	/**
+	 * Render into either ARGB pixels or alphas, whichever is given.
+	 */
+	private long render(int[] pixels, byte[] alphas, int width, int height, int startRow, int endRow,
+			Projection projection, Viewport viewport, int cellSize, ZonedDateTime instant)
+			throws InterruptedException {
+		
+		if (cellSize < 1)
+			throw new IllegalArgumentException("Cells must be at least 1 pixel in size.");
+		if (startRow < 0 || endRow > height || startRow >= endRow)
+			throw new IllegalArgumentException("Band must lie within the light-map.");
+		
+		final LongAdder projectionNanos = new LongAdder(), exposureNanos = new LongAdder(),
+				rasterNanos = new LongAdder(), samples = new LongAdder();
+		
+		final List<ListenableFuture<?>> rows = new ArrayList<>();
+		for (int y = startRow / cellSize * cellSize; y < endRow; y += cellSize) {
+			final int top = y;
+			rows.add(executor.submit(() -> {
+				final long rowStart = System.nanoTime();
+				
+				//
+				// Image rows run top-to-bottom, but projected Y runs bottom-to-top.
+				//
+				final int columns = (width + cellSize - 1) / cellSize;
+				final double[] x = new double[columns], yy = new double[columns];
+				final double[] latitude = new double[columns], longitude = new double[columns];
+				
+				for (int column = 0; column < columns; column++) {
+					final int left = column * cellSize;
+					x[column] = viewport.toPlaneX(((double) left + (double) (left + cellSize)) / 2d / (double) width);
+				}
+				Arrays.fill(yy, viewport
+						.toPlaneY(1d - ((double) top + (double) (top + cellSize)) / 2d / (double) height));
+				projection.inverse(x, yy, latitude, longitude, 0, columns);
+				
+				final long projected = System.nanoTime();
+				
+				final int[] shades = new int[columns];
+				int sampled = 0;
+				final Pool<DoublePair> pool = Pools.getPool(DoublePair.class);
+				final DoublePair latLong = pool.getInstance();
+				for (int column = 0; column < columns; column++) {
+					if (!projection.isInDomain(latitude[column], longitude[column])) {
+						shades[column] = 0;
+						continue;
+					}
+					
+					latLong.set(latitude[column], longitude[column]);
+					shades[column] = getShade(Solar.calculateSunExposure(latLong, instant));
+					sampled++;
+				}
+				pool.retireInstance(latLong);
+				
+				final long exposed = System.nanoTime();
+				
+				//
+				// Only the part of this row of cells within the band is written.
+				//
+				final int first = max(top, startRow) - startRow, last = min(top + cellSize, endRow) - startRow;
+				for (int column = 0; column < columns; column++) {
+					final int left = column * cellSize, right = min(width, left + cellSize);
+					if (alphas != null)
+						Arrays.fill(alphas, first * width + left, first * width + right,
+								(byte) (shades[column] >>> 24));
+					else
+						Arrays.fill(pixels, first * width + left, first * width + right, shades[column]);
+				}
+				final Object raster = (alphas != null) ? alphas : pixels;
+				for (int row = first + 1; row < last; row++)
+					System.arraycopy(raster, first * width, raster, row * width, width);
+				
+				final long written = System.nanoTime();
+				projectionNanos.add(projected - rowStart);
+				exposureNanos.add(exposed - projected);
+				rasterNanos.add(written - exposed);
+				samples.add(sampled);
+			}));
+		}
+		
+		try {
+			Futures.allAsList(rows).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not render light-map.", e.getCause());
+		} catch (InterruptedException e) {
+			rows.forEach(f -> f.cancel(true));
+			throw e;
+		}
+		
+		final RenderMetrics metrics = RenderMetrics.get();
+		metrics.record(Phase.PROJECTION, projectionNanos.sum());
+		metrics.record(Phase.EXPOSURE, exposureNanos.sum());
+		metrics.record(Phase.RASTER, rasterNanos.sum());
+		metrics.addTiles(rows.size() * ((width + cellSize - 1) / cellSize));
+		metrics.addSamples(samples.sum());
+		
+		return samples.sum();
+	}
+	
+	/**
+	 * @param width
+	 * @param height
+	 * @param cellSize
+	 * @return the number of sample-cells covering a light-map of the given size
+	 */
+	public static int getTileCount(int width, int height, int cellSize) {
+		
+		return ((width + cellSize - 1) / cellSize) * ((height + cellSize - 1) / cellSize);
+	}
+	
+	/**
+	 * @return the color model of {@link #createLightMap(int, int) alpha-only}
+	 *         light-maps
+	 */
+	static IndexColorModel getShades() {
+		
+		return SHADES;
+	}
+	
+	/**
+	 * @return each channel of the (gray) shadow-color
+	 */
+	static int getShadowChannel() {
+		
+		return SHADOW & 0xff;
+	}
+	
+	/**
+	 * @param exposure
+	 *            in [0,1]
+	 * @return the light-map color (as ARGB) for the given sun-exposure
+	 */
+	public static int getShade(double exposure) {
+		
+		final int exp = (int) (256d * (0.9d * sqrt(max(0d, exposure)) + 0.1d));
+		final int invExp = max(0, min(255, 255 - exp));
+		return (invExp << 24) | SHADOW;
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * A base-map image, together with successively halved copies of it (its
+ * "mipmaps").
+ * <p>
+ * Level 0 is the base image itself; each further level is half the width and
+ * height of the one before, each of its pixels the average of 4 pixels from the
+ * level before. Levels are only built when first asked for, and each is built
+ * in parallel row-bands.
+ * </p>
+ * <p>
+ * Scaling a base map to any size should start from the
+ * {@link #getLevelFor(double, double) smallest level that's still big enough}
+ * -- leaving only a small final rescale, which bilinear interpolation can
+ * handle without aliasing.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class MipmapPyramid {
+	
+	private static final Logger LOG = LogManager.getLogger(MipmapPyramid.class);
+	
+	/**
+	 * Each worker thread is given (approximately) this many bands.
+	 */
+	private static final int BANDS_PER_THREAD = 4;
+	
+	private final List<BufferedImage> levels = new ArrayList<>();
+	private final int levelCount;
+	private final ListeningExecutorService executor;
+	private final int threads;
+	
+	/**
+	 * @param base
+	 *            level 0 of the pyramid
+	 * @param executor
+	 *            used to build levels in parallel row-bands
+	 * @param threads
+	 *            the number of threads available to the executor
+	 */
+	public MipmapPyramid(BufferedImage base, ListeningExecutorService executor, int threads) {
+		
+		levels.add(base);
+		
+		int count = 1;
+		for (int w = base.getWidth(), h = base.getHeight(); w > 1 && h > 1; w /= 2, h /= 2)
+			count++;
+		this.levelCount = count;
+		
+		this.executor = executor;
+		this.threads = max(1, threads);
+	}
+	
+	/**
+	 * @return the base image (i.e., level 0)
+	 */
+	public BufferedImage getBase() {
+		
+		return levels.get(0);
+	}
+	
+	/**
+	 * @return the number of levels this pyramid can have (whether built yet or
+	 *         not)
+	 */
+	public int getLevelCount() {
+		
+		return levelCount;
+	}
+	
+	/**
+	 * @param level
+	 * @return the width of the given level
+	 */
+	public int getWidth(int level) {
+		
+		return max(1, getBase().getWidth() >> level);
+	}
+	
+	/**
+	 * @param level
+	 * @return the height of the given level
+	 */
+	public int getHeight(int level) {
+		
+		return max(1, getBase().getHeight() >> level);
+	}
+	
+	/**
+	 * Get the smallest level that's at least as big as the given size in both
+	 * dimensions (or level 0, if none is).
+	 * 
+	 * @param width
+	 * @param height
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public BufferedImage getLevelFor(double width, double height) throws InterruptedException {
+		
+		int level = 0;
+		while (level + 1 < levelCount && getWidth(level + 1) >= width && getHeight(level + 1) >= height)
+			level++;
+		
+		return getLevel(level);
+	}
+	
+	/**
+	 * Get the given level, building it (and any smaller-numbered levels it
+	 * depends on) if necessary.
+	 * 
+	 * @param level
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public synchronized BufferedImage getLevel(int level) throws InterruptedException {
+		
+		if (level < 0 || level >= levelCount)
+			throw new IllegalArgumentException("This pyramid has no level " + level + ".");
+		
+		while (levels.size() <= level)
+			levels.add(downsample(levels.get(levels.size() - 1)));
+		
+		return levels.get(level);
+	}
+	
+	/**
+	 * @return the total size of every level built so far (excluding the base
+	 *         image), in bytes
+	 */
+	public synchronized long getBuiltSize() {
+		
+		long size = 0;
+		for (int i = 1; i < levels.size(); i++)
+			size += 4L * levels.get(i).getWidth() * levels.get(i).getHeight();
+		return size;
+	}
+	
+	/**
+	 * @return an estimate of the total size of every level (excluding the base
+	 *         image), once built, in bytes
+	 */
+	public long getEstimatedSize() {
+		
+		//
+		// Each level is a quarter the size of the one before.
+		//
+		return 4L * getBase().getWidth() * getBase().getHeight() / 3L;
+	}
+	
+	private BufferedImage downsample(BufferedImage source) throws InterruptedException {
+		
+		final long start = System.nanoTime();
+		
+		final int width = max(1, source.getWidth() / 2), height = max(1, source.getHeight() / 2);
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		
+		final int bandHeight = max(1, (height + threads * BANDS_PER_THREAD - 1) / (threads * BANDS_PER_THREAD));
+		final List<ListenableFuture<?>> bands = new ArrayList<>();
+		for (int y = 0; y < height; y += bandHeight) {
+			final int startRow = y, endRow = min(height, y + bandHeight);
+			bands.add(executor.submit(() -> downsampleRows(source, pixels, width, startRow, endRow)));
+		}
+		
+		try {
+			Futures.allAsList(bands).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not build mipmap level.", e.getCause());
+		} catch (InterruptedException e) {
+			bands.forEach(f -> f.cancel(true));
+			throw e;
+		}
+		
+		LOG.debug("built {}x{} mipmap level in {} ms", width, height, (System.nanoTime() - start) / 1000000L);
+		
+		return image;
+	}
+	
+	private static void downsampleRows(BufferedImage source, int[] pixels, int width, int startRow, int endRow) {
+		
+		final int sourceWidth = source.getWidth(), sourceHeight = source.getHeight();
+		
+		//
+		// Read source pixels directly, if we can.
+		//
+		final int[] sourcePixels = (source.getType() == BufferedImage.TYPE_INT_RGB)
+				? ((DataBufferInt) source.getRaster().getDataBuffer()).getData()
+				: null;
+		final int[] rows = (sourcePixels == null) ? new int[2 * sourceWidth] : sourcePixels;
+		
+		for (int row = startRow; row < endRow; row++) {
+			
+			//
+			// An odd row out (if the source is only 1 pixel high) is paired with
+			// itself.
+			//
+			final int sourceRow = min(2 * row, sourceHeight - 1), nextRow = min(2 * row + 1, sourceHeight - 1);
+			
+			final int top, bottom;
+			if (sourcePixels == null) {
+				source.getRGB(0, sourceRow, sourceWidth, 1, rows, 0, sourceWidth);
+				source.getRGB(0, nextRow, sourceWidth, 1, rows, sourceWidth, sourceWidth);
+				top = 0;
+				bottom = sourceWidth;
+			} else {
+				top = sourceRow * sourceWidth;
+				bottom = nextRow * sourceWidth;
+			}
+			
+			final int offset = row * width;
+			for (int column = 0; column < width; column++) {
+				final int left = min(2 * column, sourceWidth - 1), right = min(2 * column + 1, sourceWidth - 1);
+				pixels[offset + column] = average(rows[top + left], rows[top + right], rows[bottom + left],
+						rows[bottom + right]);
+			}
+		}
+	}
+	
+	/**
+	 * @return the (rounded) average of 4 RGB colors
+	 */
+	static int average(int a, int b, int c, int d) {
+		
+		//
+		// Red and blue can be summed side-by-side without overflowing into each
+		// other.
+		//
+		final int redBlue = (a & 0xff00ff) + (b & 0xff00ff) + (c & 0xff00ff) + (d & 0xff00ff) + 0x020002;
+		final int green = (a & 0x00ff00) + (b & 0x00ff00) + (c & 0x00ff00) + (d & 0x00ff00) + 0x000200;
+		
+		return ((redBlue >> 2) & 0xff00ff) | ((green >> 2) & 0x00ff00);
+	}
+}
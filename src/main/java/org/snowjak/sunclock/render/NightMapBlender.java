@@ -0,0 +1,155 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Blends the day-side base map with the night map -- the Earth's lights at
+ * night -- as {@code day * exposure + night * (1 - exposure)}, taking each
+ * pixel's exposure from the light-map.
+ * <p>
+ * The light-map's alpha is scaled so that full night (the light-map's darkest
+ * shade) shows only the night map, and full sun only the day map; twilight
+ * falls between, along the light-map's own curve. Rows are blended in bands,
+ * in parallel, directly between {@link BufferedImage#TYPE_INT_RGB} rasters,
+ * two channels at a time, in fixed-point.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public final class NightMapBlender {
+	
+	/**
+	 * Maps each light-map alpha to the night map's weight, in [0,256].
+	 */
+	private static final int[] WEIGHTS = new int[256];
+	static {
+		final int darkest = max(1, LightMapRenderer.getShade(0d) >>> 24);
+		for (int alpha = 0; alpha < 256; alpha++)
+			WEIGHTS[alpha] = min(256, (alpha * 256 + darkest / 2) / darkest);
+	}
+	
+	private NightMapBlender() {
+		
+	}
+	
+	/**
+	 * Blend the given day and night maps by the given light-map.
+	 * 
+	 * @param day
+	 *            of type {@link BufferedImage#TYPE_INT_RGB}
+	 * @param night
+	 *            of type {@link BufferedImage#TYPE_INT_RGB}
+	 * @param lightMap
+	 *            {@link LightMapRenderer#createLightMap(int, int) alpha-only}, or
+	 *            else of any type with alpha
+	 * @param blended
+	 *            of type {@link BufferedImage#TYPE_INT_RGB}, receives the result
+	 * @param executor
+	 *            used to blend bands of rows in parallel
+	 * @param threads
+	 *            the number of threads available to the executor
+	 * @throws InterruptedException
+	 */
+	public static void blend(BufferedImage day, BufferedImage night, BufferedImage lightMap, BufferedImage blended,
+			ListeningExecutorService executor, int threads) throws InterruptedException {
+		
+		final int width = blended.getWidth(), height = blended.getHeight();
+		if (day.getWidth() != width || night.getWidth() != width || lightMap.getWidth() != width
+				|| day.getHeight() != height || night.getHeight() != height || lightMap.getHeight() != height)
+			throw new IllegalArgumentException("Cannot blend images of different sizes.");
+		
+		final int[] dayPixels = getPixels(day), nightPixels = getPixels(night), pixels = getPixels(blended);
+		final byte[] alphas = (lightMap.getColorModel() == LightMapRenderer.getShades())
+				? ((DataBufferByte) lightMap.getRaster().getDataBuffer()).getData()
+				: null;
+		final int[] argb = (alphas == null && lightMap.getType() == BufferedImage.TYPE_INT_ARGB)
+				? ((DataBufferInt) lightMap.getRaster().getDataBuffer()).getData()
+				: null;
+		
+		if (threads <= 1) {
+			blendRows(dayPixels, nightPixels, alphas, argb, lightMap, pixels, width, 0, height);
+			return;
+		}
+		
+		final int bandHeight = (height + threads - 1) / threads;
+		final List<ListenableFuture<?>> bands = new ArrayList<>(threads);
+		for (int y = 0; y < height; y += bandHeight) {
+			final int startRow = y, endRow = min(height, y + bandHeight);
+			bands.add(executor.submit(() -> blendRows(dayPixels, nightPixels, alphas, argb, lightMap, pixels, width,
+					startRow, endRow)));
+		}
+		
+		try {
+			Futures.allAsList(bands).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not blend night map.", e.getCause());
+		} catch (InterruptedException e) {
+			bands.forEach(f -> f.cancel(true));
+			throw e;
+		}
+	}
+	
+	private static void blendRows(int[] day, int[] night, byte[] alphas, int[] argb, BufferedImage lightMap,
+			int[] pixels, int width, int startRow, int endRow) {
+		
+		for (int row = startRow; row < endRow; row++)
+			for (int i = row * width, end = i + width; i < end; i++) {
+				final int alpha;
+				if (alphas != null)
+					alpha = alphas[i] & 0xff;
+				else if (argb != null)
+					alpha = argb[i] >>> 24;
+				else
+					alpha = lightMap.getRGB(i - row * width, row) >>> 24;
+			
+				pixels[i] = blend(day[i], night[i], WEIGHTS[alpha]);
+			}
+	}
+	
+	/**
+	 * @param day
+	 * @param night
+	 * @param weight
+	 *            the night color's weight, in [0,256]
+	 * @return the given colors, blended
+	 */
+	static int blend(int day, int night, int weight) {
+		
+		if (weight == 0)
+			return day & 0xffffff;
+		if (weight == 256)
+			return night & 0xffffff;
+		
+		//
+		// Red and blue are blended together, in the upper and lower halves of
+		// one int. (Weights sum to 256, so neither overflows into the other.)
+		//
+		final int dayWeight = 256 - weight;
+		final int redBlue = ((day & 0xff00ff) * dayWeight + (night & 0xff00ff) * weight) >>> 8;
+		final int green = ((day & 0xff00) * dayWeight + (night & 0xff00) * weight) >>> 8;
+		return (redBlue & 0xff00ff) | (green & 0xff00);
+	}
+	
+	private static int[] getPixels(BufferedImage image) {
+		
+		if (image.getType() != BufferedImage.TYPE_INT_RGB)
+			throw new IllegalArgumentException("Can only blend images of type TYPE_INT_RGB.");
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+}
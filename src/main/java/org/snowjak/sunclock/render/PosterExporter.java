@@ -0,0 +1,279 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Exports the map -- base map and light-map -- as a PNG of any size, without
+ * ever holding the whole image. (Or, for smaller images, renders the whole
+ * image at once, for writing in any format.)
+ * <p>
+ * The image is rendered a band of rows at a time, and each band is encoded by
+ * a {@link StreamingPngWriter} while the next is rendered. Only two bands are
+ * held at once, so memory depends on the band's size (about
+ * {@link #BAND_PIXELS} pixels) rather than the image's.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class PosterExporter {
+	
+	private static final Logger LOG = LogManager.getLogger(PosterExporter.class);
+	
+	/**
+	 * Each band holds about this many pixels.
+	 */
+	public static final int BAND_PIXELS = 2 * 1024 * 1024;
+	
+	private final LightMapRenderer lightMapRenderer;
+	
+	/**
+	 * @param executor
+	 *            used to render each band's light-map in parallel
+	 */
+	public PosterExporter(ListeningExecutorService executor) {
+		
+		this.lightMapRenderer = new LightMapRenderer(executor);
+	}
+	
+	/**
+	 * Export the given region of the map, as it is at the given instant.
+	 * 
+	 * @param reprojector
+	 *            supplies the base map
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 * @param cellSize
+	 *            size of each (square) light-map sample-cell, in pixels
+	 * @param instant
+	 * @param out
+	 *            receives the PNG, and is closed once it's written
+	 * @param progress
+	 *            receives the number of rows written so far, as each band is
+	 *            written, or {@code null}
+	 * @throws IOException
+	 *             if the image could not be written
+	 * @throws InterruptedException
+	 *             if interrupted -- in which case the image is left incomplete
+	 */
+	public void export(Reprojector reprojector, Projection projection, Viewport viewport, int width, int height,
+			int cellSize, ZonedDateTime instant, OutputStream out, IntConsumer progress)
+			throws IOException, InterruptedException {
+		
+		final long start = System.nanoTime();
+		
+		final int bandHeight = getBandHeight(width, height);
+		final Band[] bands = { new Band(width, bandHeight), new Band(width, bandHeight) };
+		
+		final ListeningExecutorService bandExecutor = MoreExecutors.listeningDecorator(Executors
+				.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("poster-band").setDaemon(true)
+						.build()));
+		
+		try (StreamingPngWriter writer = new StreamingPngWriter(out, width, height, Deflater.DEFAULT_COMPRESSION)) {
+			
+			ListenableFuture<Band> next = bandExecutor
+					.submit(() -> render(bands[0], reprojector, projection, viewport, width, height, 0, cellSize,
+							instant));
+			
+			for (int i = 0; next != null; i++) {
+				final Band band = next.get();
+				
+				//
+				// Render the next band while this one is encoded.
+				//
+				final int nextRow = band.startRow + band.rows;
+				final Band nextBand = bands[(i + 1) % 2];
+				next = (nextRow >= height) ? null
+						: bandExecutor.submit(() -> render(nextBand, reprojector, projection, viewport, width,
+								height, nextRow, cellSize, instant));
+				
+				writer.writeRows(band.base, 0, band.rows);
+				if (progress != null)
+					progress.accept(writer.getRowsWritten());
+			}
+			
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof InterruptedException)
+				throw (InterruptedException) e.getCause();
+			throw new IOException("Could not render the map.", e.getCause());
+			
+		} finally {
+			bandExecutor.shutdownNow();
+		}
+		
+		LOG.info("exported {}x{} {} in {} ms ({} rows per band)", width, height, projection.getName(),
+				(System.nanoTime() - start) / 1000000L, bandHeight);
+	}
+	
+	/**
+	 * Render the given region of the map, as it is at the given instant, into a
+	 * single image -- a band at a time, so that rendering may be interrupted
+	 * between bands.
+	 * 
+	 * @param reprojector
+	 *            supplies the base map
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 * @param cellSize
+	 *            size of each (square) light-map sample-cell, in pixels
+	 * @param instant
+	 * @param progress
+	 *            receives the number of rows rendered so far, as each band is
+	 *            rendered, or {@code null}
+	 * @return an image of type {@link BufferedImage#TYPE_INT_RGB}
+	 * @throws InterruptedException
+	 */
+	public BufferedImage render(Reprojector reprojector, Projection projection, Viewport viewport, int width,
+			int height, int cellSize, ZonedDateTime instant, IntConsumer progress) throws InterruptedException {
+		
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		
+		try {
+			render(reprojector, projection, viewport, width, height, 0, height, cellSize, instant,
+					(band, startRow, rows) -> {
+						System.arraycopy(band, 0, pixels, startRow * width, rows * width);
+						if (progress != null)
+							progress.accept(startRow + rows);
+					});
+		} catch (IOException e) {
+			// Copying into the image can't fail.
+			throw new IllegalStateException(e);
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Render only the given rows of the map, a band at a time, handing each band
+	 * to the given sink in turn.
+	 * 
+	 * @param reprojector
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 *            of the whole image
+	 * @param startRow
+	 *            the first row to render
+	 * @param endRow
+	 *            the row after the last to render
+	 * @param cellSize
+	 * @param instant
+	 * @param sink
+	 * @throws InterruptedException
+	 * @throws IOException
+	 *             if the sink could not accept a band
+	 */
+	void render(Reprojector reprojector, Projection projection, Viewport viewport, int width, int height,
+			int startRow, int endRow, int cellSize, ZonedDateTime instant, BandSink sink)
+			throws InterruptedException, IOException {
+		
+		final Band band = new Band(width, getBandHeight(width, endRow - startRow));
+		for (int row = startRow; row < endRow; row += band.rows) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			
+			render(band, reprojector, projection, viewport, width, height, row, endRow, cellSize, instant);
+			sink.accept(band.base, band.startRow, band.rows);
+		}
+	}
+	
+	private Band render(Band band, Reprojector reprojector, Projection projection, Viewport viewport, int width,
+			int height, int startRow, int cellSize, ZonedDateTime instant) throws InterruptedException {
+		
+		return render(band, reprojector, projection, viewport, width, height, startRow, height, cellSize, instant);
+	}
+	
+	private Band render(Band band, Reprojector reprojector, Projection projection, Viewport viewport, int width,
+			int height, int startRow, int lastRow, int cellSize, ZonedDateTime instant) throws InterruptedException {
+		
+		final int endRow = min(lastRow, startRow + band.capacity);
+		band.startRow = startRow;
+		band.rows = endRow - startRow;
+		
+		reprojector.reproject(projection, viewport, width, height, startRow, endRow, band.base);
+		lightMapRenderer.render(band.light, width, height, startRow, endRow, projection, viewport, cellSize,
+				instant);
+		
+		final int length = band.rows * width;
+		for (int i = 0; i < length; i++)
+			band.base[i] = LightMapComposite.shade(band.base[i], band.light[i] & 0xff);
+		
+		return band;
+	}
+	
+	/**
+	 * @param width
+	 * @param height
+	 * @return the number of rows rendered (and encoded) at once, when exporting
+	 *         an image of the given size
+	 */
+	public static int getBandHeight(int width, int height) {
+		
+		return max(1, min(height, BAND_PIXELS / max(1, width)));
+	}
+	
+	/**
+	 * Receives each band of rows as it's rendered.
+	 */
+	@FunctionalInterface
+	interface BandSink {
+		
+		/**
+		 * @param pixels
+		 *            the band's pixels, as RGB -- only valid until this method
+		 *            returns
+		 * @param startRow
+		 *            the band's first row
+		 * @param rows
+		 *            the number of rows in the band
+		 * @throws IOException
+		 */
+		void accept(int[] pixels, int startRow, int rows) throws IOException;
+	}
+	
+	private static class Band {
+		
+		final int capacity;
+		final int[] base;
+		final byte[] light;
+		int startRow, rows;
+		
+		Band(int width, int capacity) {
+			
+			this.capacity = capacity;
+			this.base = new int[width * capacity];
+			this.light = new byte[width * capacity];
+		}
+	}
+}
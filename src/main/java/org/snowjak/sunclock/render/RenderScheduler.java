@@ -0,0 +1,273 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.metrics.RenderMetrics;
+import org.snowjak.sunclock.projection.Projection;
+
+/**
+ * Schedules re-rendering of the light-map only when it would actually change.
+ * <p>
+ * After each render, the next render is scheduled for the moment the
+ * terminator will have moved by one light-map sample-cell (see
+ * {@link #calculateInterval(Projection, int, int, int)}), rather than on a
+ * fixed timer. A render may be requested early (e.g., on resize or projection
+ * change) via {@link #invalidate()}, and rendering stops entirely while
+ * {@link #suspend() suspended} (e.g., while the display is hidden or
+ * minimized).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class RenderScheduler {
+	
+	private static final Logger LOG = LogManager.getLogger(RenderScheduler.class);
+	
+	/**
+	 * Renders are never scheduled closer together than this (in milliseconds).
+	 */
+	public static final long MIN_INTERVAL = 1000L;
+	/**
+	 * Renders are never scheduled further apart than this (in milliseconds).
+	 */
+	public static final long MAX_INTERVAL = 15L * 60L * 1000L;
+	
+	/**
+	 * The terminator sweeps through 360 degrees of longitude every day.
+	 */
+	private static final double MILLIS_PER_DEGREE = 24d * 60d * 60d * 1000d / 360d;
+	
+	/**
+	 * Number of sample-cells (along each axis) examined when estimating the
+	 * smallest cell.
+	 */
+	private static final int INTERVAL_SAMPLES = 32;
+	
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final Runnable renderTask;
+	private final LongSupplier intervalSupplier;
+	
+	private ScheduledFuture<?> nextRender = null;
+	private long generation = 0;
+	private boolean suspended = true;
+	
+	/**
+	 * Create a new, initially {@link #suspend() suspended}, scheduler.
+	 * 
+	 * @param renderTask
+	 *            performs a single render
+	 * @param intervalSupplier
+	 *            supplies the delay (in milliseconds) between the end of one
+	 *            render and the start of the next; consulted after every render
+	 */
+	public RenderScheduler(Runnable renderTask, LongSupplier intervalSupplier) {
+		
+		this.renderTask = renderTask;
+		this.intervalSupplier = intervalSupplier;
+	}
+	
+	/**
+	 * Start rendering (immediately), if not already started.
+	 */
+	public synchronized void resume() {
+		
+		if (!suspended)
+			return;
+		
+		LOG.info("resuming rendering ...");
+		suspended = false;
+		schedule(0L);
+	}
+	
+	/**
+	 * Stop rendering until {@link #resume() resumed}. Any render in progress is
+	 * allowed to finish.
+	 */
+	public synchronized void suspend() {
+		
+		if (suspended)
+			return;
+		
+		LOG.info("suspending rendering ...");
+		suspended = true;
+		generation++;
+		if (nextRender != null)
+			nextRender.cancel(false);
+		nextRender = null;
+	}
+	
+	public synchronized boolean isSuspended() {
+		
+		return suspended;
+	}
+	
+	/**
+	 * Render again as soon as possible (unless suspended), and recompute the
+	 * interval to the render following it.
+	 */
+	public synchronized void invalidate() {
+		
+		if (suspended)
+			return;
+		
+		schedule(0L);
+	}
+	
+	public void dispose() {
+		
+		suspend();
+		executor.shutdown();
+	}
+	
+	private synchronized void schedule(long delay) {
+		
+		if (nextRender != null && nextRender.cancel(false))
+			RenderMetrics.get().recordCancelledRender();
+		
+		RenderMetrics.get().recordScheduledRender();
+		final long scheduledGeneration = ++generation;
+		nextRender = executor.schedule(() -> render(scheduledGeneration), delay, TimeUnit.MILLISECONDS);
+	}
+	
+	private void render(long scheduledGeneration) {
+		
+		synchronized (this) {
+			if (suspended || scheduledGeneration != generation) {
+				RenderMetrics.get().recordSupersededRender();
+				return;
+			}
+		}
+		
+		try {
+			renderTask.run();
+		} catch (RuntimeException e) {
+			RenderMetrics.get().recordFailedRender();
+			LOG.error("Render failed", e);
+		}
+		
+		final long interval = intervalSupplier.getAsLong();
+		
+		synchronized (this) {
+			//
+			// If we were invalidated while rendering, another render has already been
+			// scheduled.
+			//
+			if (suspended || scheduledGeneration != generation)
+				return;
+			
+			LOG.debug("next render in {} ms", interval);
+			schedule(interval);
+		}
+	}
+	
+	/**
+	 * Estimate how long (in milliseconds) it will take the terminator to move by
+	 * one light-map sample-cell, for the given projection and map-size.
+	 * <p>
+	 * The terminator sweeps westward through longitude at a constant rate, so
+	 * this is governed by the cell spanning the fewest degrees of longitude. Cell
+	 * extents are sampled across the whole map, since (depending on the
+	 * projection) they may vary from place to place.
+	 * </p>
+	 * 
+	 * @param projection
+	 * @param mapWidth
+	 *            in pixels
+	 * @param mapHeight
+	 *            in pixels
+	 * @param cellSize
+	 *            size of each (square) sample-cell, in pixels
+	 * @return the interval, in [{@link #MIN_INTERVAL}, {@link #MAX_INTERVAL}]
+	 */
+	public static long calculateInterval(Projection projection, int mapWidth, int mapHeight, int cellSize) {
+		
+		if (projection == null || mapWidth <= 0 || mapHeight <= 0 || cellSize <= 0)
+			return MAX_INTERVAL;
+		
+		final double dx = min((double) cellSize / (double) mapWidth, 1d),
+				dy = min((double) cellSize / (double) mapHeight, 1d);
+		
+		//
+		// Each sample is a point, the point one cell across from it, and the point
+		// one cell up from it -- all transformed in one batch.
+		//
+		final int samples = INTERVAL_SAMPLES * INTERVAL_SAMPLES;
+		final double[] x = new double[3 * samples], y = new double[3 * samples];
+		for (int i = 0; i < INTERVAL_SAMPLES; i++) {
+			final double sampleX = ((double) i + 0.5d) / (double) INTERVAL_SAMPLES * (1d - dx);
+			
+			for (int j = 0; j < INTERVAL_SAMPLES; j++) {
+				final double sampleY = ((double) j + 0.5d) / (double) INTERVAL_SAMPLES * (1d - dy);
+				
+				final int k = i * INTERVAL_SAMPLES + j;
+				x[k] = sampleX;
+				y[k] = sampleY;
+				x[samples + k] = sampleX + dx;
+				y[samples + k] = sampleY;
+				x[2 * samples + k] = sampleX;
+				y[2 * samples + k] = sampleY + dy;
+			}
+		}
+		
+		final double[] latitude = new double[3 * samples], longitude = new double[3 * samples];
+		projection.inverse(x, y, latitude, longitude, 0, 3 * samples);
+		
+		double smallestExtent = Double.MAX_VALUE;
+		for (int k = 0; k < samples; k++) {
+			final double extent = abs(wrapLongitude(longitude[samples + k] - longitude[k]))
+					+ abs(wrapLongitude(longitude[2 * samples + k] - longitude[k]));
+			if (extent > 0d)
+				smallestExtent = min(smallestExtent, extent);
+		}
+		
+		if (smallestExtent == Double.MAX_VALUE)
+			return MAX_INTERVAL;
+		
+		return max(MIN_INTERVAL, min(MAX_INTERVAL, (long) (smallestExtent * MILLIS_PER_DEGREE)));
+	}
+	
+	/**
+	 * Estimate how long (in milliseconds) it will take the terminator to move by
+	 * one pixel, on an orthographic globe of the given diameter.
+	 * <p>
+	 * Pixels span the fewest degrees of longitude at the middle of the globe,
+	 * where each spans {@code 2 / diameter} radians.
+	 * </p>
+	 * 
+	 * @param diameter
+	 *            in pixels
+	 * @return the interval, in [{@link #MIN_INTERVAL}, {@link #MAX_INTERVAL}]
+	 */
+	public static long calculateGlobeInterval(int diameter) {
+		
+		if (diameter <= 0)
+			return MAX_INTERVAL;
+		
+		final double extent = radiansToDegrees(2d / (double) diameter);
+		return max(MIN_INTERVAL, min(MAX_INTERVAL, (long) (extent * MILLIS_PER_DEGREE)));
+	}
+	
+	private static double wrapLongitude(double degrees) {
+		
+		if (degrees > 180d)
+			return degrees - 360d;
+		if (degrees < -180d)
+			return degrees + 360d;
+		return degrees;
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Projections;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The headless renderer run in each worker process launched by a
+ * {@link ShardedRenderer}. Renders one shard -- a range of a poster's rows, or
+ * a range of a time-lapse's frames -- into a memory-mapped file, as RGB pixels
+ * in native byte-order, followed by the processor-time this process took (in
+ * nanoseconds); and then exits: with 0 if the shard was rendered, or 1 if it
+ * wasn't.
+ * <p>
+ * Usage:
+ * </p>
+ * 
+ * <pre>
+ * ShardWorker poster &lt;projection&gt; &lt;zoom&gt; &lt;center-x&gt; &lt;center-y&gt; &lt;width&gt; &lt;height&gt; &lt;cell-size&gt; &lt;instant&gt; &lt;start-row&gt; &lt;end-row&gt; &lt;file&gt;
+ * ShardWorker frames &lt;projection&gt; &lt;width&gt; &lt;height&gt; &lt;cell-size&gt; &lt;start&gt; &lt;end&gt; &lt;frame-count&gt; &lt;start-frame&gt; &lt;end-frame&gt; &lt;file&gt;
+ * </pre>
+ * 
+ * @author snowjak88
+ *
+ */
+public class ShardWorker {
+	
+	private static final Logger LOG = LogManager.getLogger(ShardWorker.class);
+	
+	public static void main(String[] args) {
+		
+		int status = 1;
+		try {
+			final long start = System.nanoTime();
+			
+			if (args.length == 12 && args[0].equals("poster"))
+				renderPoster(args);
+			else if (args.length == 11 && args[0].equals("frames"))
+				renderFrames(args);
+			else
+				throw new IllegalArgumentException("Unrecognized arguments: " + String.join(" ", args));
+			
+			LOG.info("rendered {} shard in {} ms", args[0], (System.nanoTime() - start) / 1000000L);
+			status = 0;
+			
+		} catch (Throwable t) {
+			LOG.error("Could not render shard.", t);
+		}
+		
+		//
+		// The base-map loader's threads would otherwise keep this process alive.
+		//
+		System.exit(status);
+	}
+	
+	private static void renderPoster(String[] args) throws Exception {
+		
+		final Projection projection = getProjection(args[1]);
+		final Viewport viewport = new Viewport(Double.parseDouble(args[2]), Double.parseDouble(args[3]),
+				Double.parseDouble(args[4]));
+		final int width = Integer.parseInt(args[5]), height = Integer.parseInt(args[6]);
+		final int cellSize = Integer.parseInt(args[7]);
+		final ZonedDateTime instant = ZonedDateTime.parse(args[8]);
+		final int startRow = Integer.parseInt(args[9]), endRow = Integer.parseInt(args[10]);
+		
+		final Reprojector reprojector = new BaseMapLoader().loadReprojector().get();
+		final ListeningExecutorService executor = newExecutor("shard-light-map-%d");
+		
+		try (FileChannel channel = FileChannel.open(Paths.get(args[11]), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			
+			new PosterExporter(executor).render(reprojector, projection, viewport, width, height, startRow, endRow,
+					cellSize, instant, (pixels, row, rows) -> ShardedRenderer.write(channel,
+							(long) (row - startRow) * width, pixels, rows * width));
+			
+			writeCpuTime(channel, (long) (endRow - startRow) * width);
+			
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static void renderFrames(String[] args) throws Exception {
+		
+		final Projection projection = getProjection(args[1]);
+		final int width = Integer.parseInt(args[2]), height = Integer.parseInt(args[3]);
+		final int cellSize = Integer.parseInt(args[4]);
+		final ZonedDateTime start = ZonedDateTime.parse(args[5]), end = ZonedDateTime.parse(args[6]);
+		final int frameCount = Integer.parseInt(args[7]);
+		final int startFrame = Integer.parseInt(args[8]), endFrame = Integer.parseInt(args[9]);
+		
+		final Reprojector reprojector = new BaseMapLoader().loadReprojector().get();
+		final int[] base = TimeLapseExporter.toRGB(reprojector.reproject(projection, width, height));
+		final ListeningExecutorService executor = newExecutor("shard-frame-%d");
+		
+		try (FileChannel channel = FileChannel.open(Paths.get(args[10]), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			
+			final List<ListenableFuture<?>> frames = new ArrayList<>();
+			for (int frame = startFrame; frame < endFrame; frame++) {
+				final int index = frame;
+				frames.add(executor.submit(() -> {
+					final int[] pixels = TimeLapseExporter.renderFrame(base, width, height, projection, cellSize,
+							TimeLapseExporter.getInstant(start, end, frameCount, index));
+					ShardedRenderer.write(channel, (long) (index - startFrame) * width * height, pixels,
+							pixels.length);
+					return null;
+				}));
+			}
+			
+			for (ListenableFuture<?> frame : frames)
+				frame.get();
+			
+			writeCpuTime(channel, (long) (endFrame - startFrame) * width * height);
+			
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Write the processor-time this process has taken so far -- in all its
+	 * threads, and including its start-up -- after the given number of pixels.
+	 */
+	private static void writeCpuTime(FileChannel channel, long pixels) throws IOException {
+		
+		final long nanos = ProcessHandle.current().info().totalCpuDuration().map(Duration::toNanos).orElse(-1L);
+		channel.map(MapMode.READ_WRITE, 4L * pixels, Long.BYTES).putLong(nanos);
+	}
+	
+	private static Projection getProjection(String id) {
+		
+		final Projection projection = Projections.get(id);
+		if (projection == null)
+			throw new IllegalArgumentException("No such projection [" + id + "]");
+		return projection;
+	}
+	
+	/**
+	 * @return an executor with a thread for each processor this process may use
+	 *         (as limited by its coordinator)
+	 */
+	private static ListeningExecutorService newExecutor(String nameFormat) {
+		
+		return MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors(),
+				new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build()));
+	}
+}
@@ -0,0 +1,465 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Viewport;
+
+/**
+ * Renders very large posters and time-lapses across several worker processes
+ * -- each its own JVM, with its own heap -- rather than in this one.
+ * <p>
+ * The job is split into one shard per worker: a range of a poster's rows, or a
+ * range of a time-lapse's frames. Each worker (a {@link ShardWorker}) renders
+ * its shard into a memory-mapped file, which this process then reads back --
+ * in order, and as soon as each shard is finished -- to stitch the poster or
+ * assemble the time-lapse.
+ * </p>
+ * <p>
+ * Each export reports its workers' CPU utilization: the processor-time they
+ * took altogether, against the processor-time they were given. (That's not
+ * their speedup over a single worker -- it counts each worker's start-up and
+ * compilation, and a single worker is never timed.)
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class ShardedRenderer {
+	
+	private static final Logger LOG = LogManager.getLogger(ShardedRenderer.class);
+	
+	private final int workers;
+	
+	/**
+	 * @param workers
+	 *            the number of worker processes to split each export across
+	 */
+	public ShardedRenderer(int workers) {
+		
+		this.workers = max(1, workers);
+	}
+	
+	/**
+	 * Export the given region of the map, as it is at the given instant, as a
+	 * PNG -- each worker rendering a range of its rows.
+	 * 
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 * @param cellSize
+	 *            size of each (square) light-map sample-cell, in pixels
+	 * @param instant
+	 * @param out
+	 *            receives the PNG, and is closed once it's written
+	 * @param progress
+	 *            receives the number of rows written so far, as each band is
+	 *            written, or {@code null}
+	 * @return
+	 * @throws IOException
+	 *             if a worker failed, or the image could not be written
+	 * @throws InterruptedException
+	 *             if interrupted -- in which case every worker is stopped
+	 * @see PosterExporter
+	 */
+	public Result exportPoster(Projection projection, Viewport viewport, int width, int height, int cellSize,
+			ZonedDateTime instant, OutputStream out, IntConsumer progress) throws IOException, InterruptedException {
+		
+		final long start = System.nanoTime();
+		
+		final int[] bounds = split(height, workers);
+		final List<String[]> shards = new ArrayList<>();
+		for (int i = 0; i < bounds.length - 1; i++)
+			shards.add(new String[] { "poster", projection.getId(), Double.toString(viewport.getZoom()),
+					Double.toString(viewport.getCenterX()), Double.toString(viewport.getCenterY()),
+					Integer.toString(width), Integer.toString(height), Integer.toString(cellSize),
+					instant.toString(), Integer.toString(bounds[i]), Integer.toString(bounds[i + 1]) });
+		
+		final int bandHeight = PosterExporter.getBandHeight(width, height);
+		final int[] band = new int[width * bandHeight];
+		
+		try (Shards running = new Shards(shards);
+				StreamingPngWriter writer = new StreamingPngWriter(out, width, height,
+						Deflater.DEFAULT_COMPRESSION)) {
+			
+			for (int i = 0; i < running.size(); i++) {
+				final FileChannel channel = running.await(i);
+				for (int row = bounds[i]; row < bounds[i + 1]; row += bandHeight) {
+					final int rows = min(bandHeight, bounds[i + 1] - row);
+					read(channel, (long) (row - bounds[i]) * width, band, rows * width);
+					writer.writeRows(band, 0, rows);
+					if (progress != null)
+						progress.accept(writer.getRowsWritten());
+				}
+			}
+			
+			final Result result = running.getResult(System.nanoTime() - start);
+			LOG.info("exported {}x{} {} across {} worker(s) in {} ms (CPU utilization {}%)", width, height,
+					projection.getName(), result.getWorkers(), result.getNanos() / 1000000L,
+					Math.round(100d * result.getCpuUtilization()));
+			return result;
+		}
+	}
+	
+	/**
+	 * Export a time-lapse -- each worker rendering a range of its frames.
+	 * 
+	 * @param baseMap
+	 *            the base map for the given projection, at the size to export
+	 *            (from which to build a GIF's palette -- each worker reprojects
+	 *            its own)
+	 * @param projection
+	 * @param cellSize
+	 * @param start
+	 * @param end
+	 * @param frameCount
+	 * @param format
+	 * @param frameDelay
+	 * @param output
+	 * @param progress
+	 *            receives the number of frames written so far, or {@code null}
+	 * @return
+	 * @throws IOException
+	 *             if a worker failed, or the time-lapse could not be written
+	 * @throws InterruptedException
+	 *             if interrupted -- in which case every worker is stopped
+	 * @see TimeLapseExporter#export(BufferedImage, Projection, int,
+	 *      ZonedDateTime, ZonedDateTime, int, TimeLapseExporter.Format, int,
+	 *      File, IntConsumer)
+	 */
+	public Result exportTimeLapse(BufferedImage baseMap, Projection projection, int cellSize, ZonedDateTime start,
+			ZonedDateTime end, int frameCount, TimeLapseExporter.Format format, int frameDelay, File output,
+			IntConsumer progress) throws IOException, InterruptedException {
+		
+		final long startTime = System.nanoTime();
+		
+		final int width = baseMap.getWidth(), height = baseMap.getHeight();
+		final int[] bounds = split(frameCount, workers);
+		final List<String[]> shards = new ArrayList<>();
+		for (int i = 0; i < bounds.length - 1; i++)
+			shards.add(new String[] { "frames", projection.getId(), Integer.toString(width),
+					Integer.toString(height), Integer.toString(cellSize), start.toString(), end.toString(),
+					Integer.toString(frameCount), Integer.toString(bounds[i]), Integer.toString(bounds[i + 1]) });
+		
+		try (Shards running = new Shards(shards)) {
+			
+			//
+			// Frames are encoded here, in parallel -- each waiting only on its own
+			// shard.
+			//
+			final int[] base = TimeLapseExporter.toRGB(baseMap);
+			new TimeLapseExporter(Runtime.getRuntime().availableProcessors()).export(base, width, height, frameCount,
+					format, frameDelay, output, progress, frame -> {
+						int shard = 0;
+						while (frame >= bounds[shard + 1])
+							shard++;
+						final int[] pixels = new int[width * height];
+						read(running.await(shard), (long) (frame - bounds[shard]) * pixels.length, pixels,
+								pixels.length);
+						return pixels;
+					});
+			
+			final Result result = running.getResult(System.nanoTime() - startTime);
+			LOG.info("exported {} {}x{} frames across {} worker(s) in {} ms (CPU utilization {}%)", frameCount,
+					width, height, result.getWorkers(), result.getNanos() / 1000000L,
+					Math.round(100d * result.getCpuUtilization()));
+			return result;
+		}
+	}
+	
+	/**
+	 * @param count
+	 * @param parts
+	 * @return the bounds of (at most) the given number of near-equal, non-empty
+	 *         parts of [0,count): part <em>i</em> is [bounds[i],bounds[i+1])
+	 */
+	static int[] split(int count, int parts) {
+		
+		parts = max(1, min(count, parts));
+		final int[] bounds = new int[parts + 1];
+		for (int i = 0; i <= parts; i++)
+			bounds[i] = (int) ((long) count * i / parts);
+		return bounds;
+	}
+	
+	/**
+	 * Write pixels into a shard's file.
+	 * 
+	 * @param channel
+	 * @param position
+	 *            index of the pixel to start at
+	 * @param pixels
+	 * @param length
+	 *            the number of pixels to write
+	 * @throws IOException
+	 */
+	static void write(FileChannel channel, long position, int[] pixels, int length) throws IOException {
+		
+		final MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 4L * position, 4L * length);
+		buffer.order(ByteOrder.nativeOrder()).asIntBuffer().put(pixels, 0, length);
+	}
+	
+	/**
+	 * Read pixels from a shard's file.
+	 * 
+	 * @param channel
+	 * @param position
+	 *            index of the pixel to start at
+	 * @param pixels
+	 * @param length
+	 *            the number of pixels to read
+	 * @throws IOException
+	 */
+	static void read(FileChannel channel, long position, int[] pixels, int length) throws IOException {
+		
+		final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 4L * position, 4L * length);
+		buffer.order(ByteOrder.nativeOrder()).asIntBuffer().get(pixels, 0, length);
+	}
+	
+	/**
+	 * The worker processes rendering an export's shards -- each into its own
+	 * file. Closing stops every worker still running, and deletes every file.
+	 */
+	private static class Shards implements AutoCloseable {
+		
+		private final List<Process> processes = new ArrayList<>();
+		private final List<Path> files = new ArrayList<>();
+		private final FileChannel[] channels;
+		private final int threads;
+		private final long launched;
+		private final AtomicLongArray finished;
+		private final long[] cpuNanos;
+		
+		Shards(List<String[]> shards) throws IOException {
+			
+			this.channels = new FileChannel[shards.size()];
+			this.finished = new AtomicLongArray(shards.size());
+			this.cpuNanos = new long[shards.size()];
+			
+			//
+			// Leave every other worker a fair share of the processors.
+			//
+			this.threads = max(1, Runtime.getRuntime().availableProcessors() / shards.size());
+			
+			this.launched = System.nanoTime();
+			try {
+				for (int i = 0; i < shards.size(); i++) {
+					final Path file = Files.createTempFile("sun-clock-shard-", ".raw");
+					files.add(file);
+					
+					final List<String> command = new ArrayList<>();
+					command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+					command.add("-XX:ActiveProcessorCount=" + threads);
+					command.add("-Djava.awt.headless=true");
+					command.add("-cp");
+					command.add(System.getProperty("java.class.path"));
+					command.add(ShardWorker.class.getName());
+					command.addAll(Arrays.asList(shards.get(i)));
+					command.add(file.toString());
+					
+					final int index = i;
+					final Process process = new ProcessBuilder(command).inheritIO().start();
+					processes.add(process);
+					process.onExit().thenRun(() -> finished.set(index, System.nanoTime()));
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+			
+			LOG.info("launched {} worker(s), with {} thread(s) each", shards.size(), threads);
+		}
+		
+		int size() {
+			
+			return processes.size();
+		}
+		
+		/**
+		 * Wait for the given shard to be rendered.
+		 * 
+		 * @param shard
+		 * @return the shard's file, open for reading
+		 * @throws IOException
+		 *             if the shard's worker failed
+		 * @throws InterruptedException
+		 */
+		FileChannel await(int shard) throws IOException, InterruptedException {
+			
+			final int status = processes.get(shard).waitFor();
+			if (status != 0)
+				throw new IOException("Worker " + shard + " failed (exit status " + status + ").");
+			
+			synchronized (channels) {
+				if (channels[shard] == null) {
+					final FileChannel channel = FileChannel.open(files.get(shard), StandardOpenOption.READ);
+					channels[shard] = channel;
+					
+					//
+					// The worker's processor-time follows its pixels.
+					//
+					if (channel.size() < Long.BYTES)
+						throw new IOException("Worker " + shard + " wrote nothing.");
+					cpuNanos[shard] = channel.map(MapMode.READ_ONLY, channel.size() - Long.BYTES, Long.BYTES)
+							.getLong();
+				}
+				return channels[shard];
+			}
+		}
+		
+		/**
+		 * @param nanos
+		 *            the whole export's time
+		 * @return
+		 */
+		Result getResult(long nanos) {
+			
+			final long[] shardNanos = new long[size()];
+			for (int i = 0; i < shardNanos.length; i++)
+				shardNanos[i] = finished.get(i) - launched;
+			synchronized (channels) {
+				return new Result(shardNanos, cpuNanos, threads, nanos);
+			}
+		}
+		
+		@Override
+		public void close() {
+			
+			processes.forEach(Process::destroyForcibly);
+			for (Process process : processes)
+				try {
+					process.waitFor();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			
+			for (FileChannel channel : channels)
+				if (channel != null)
+					try {
+						channel.close();
+					} catch (IOException e) {
+						LOG.warn("Could not close shard file.", e);
+					}
+			
+			for (Path file : files)
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					//
+					// (Some platforms won't delete a file while it's still mapped.)
+					//
+					file.toFile().deleteOnExit();
+				}
+		}
+	}
+	
+	/**
+	 * How long a sharded export took, and how busy its workers were.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class Result {
+		
+		private final long[] shardNanos, shardCpuNanos;
+		private final int threads;
+		private final long nanos;
+		
+		/**
+		 * @param shardNanos
+		 *            the time each shard's worker took, from launch to exit
+		 * @param shardCpuNanos
+		 *            the processor-time each shard's worker took, or a negative
+		 *            value if not known
+		 * @param threads
+		 *            the number of processors each worker was given
+		 * @param nanos
+		 *            the whole export's time
+		 */
+		public Result(long[] shardNanos, long[] shardCpuNanos, int threads, long nanos) {
+			
+			this.shardNanos = shardNanos.clone();
+			this.shardCpuNanos = shardCpuNanos.clone();
+			this.threads = max(1, threads);
+			this.nanos = nanos;
+		}
+		
+		public int getWorkers() {
+			
+			return shardNanos.length;
+		}
+		
+		/**
+		 * @return the time taken, start to finish, in nanoseconds
+		 */
+		public long getNanos() {
+			
+			return nanos;
+		}
+		
+		/**
+		 * @param shard
+		 * @return the time the given shard's worker took, from launch to exit, in
+		 *         nanoseconds
+		 */
+		public long getShardNanos(int shard) {
+			
+			return shardNanos[shard];
+		}
+		
+		/**
+		 * @param shard
+		 * @return the processor-time the given shard's worker took, in all its
+		 *         threads, in nanoseconds -- or its {@link #getShardNanos(int)
+		 *         elapsed time}, if that's not known
+		 */
+		public long getShardCpuNanos(int shard) {
+			
+			return (shardCpuNanos[shard] < 0) ? shardNanos[shard] : shardCpuNanos[shard];
+		}
+		
+		/**
+		 * @return the processor-time the workers took altogether, over the
+		 *         processor-time they were given (each worker's processors, for as
+		 *         long as the slowest worker ran), in [0,1]
+		 */
+		public double getCpuUtilization() {
+			
+			final long longest = Arrays.stream(shardNanos).max().orElse(0L);
+			if (longest <= 0)
+				return 1d;
+			
+			long cpu = 0;
+			for (int i = 0; i < getWorkers(); i++)
+				cpu += getShardCpuNanos(i);
+			return min(1d, (double) cpu / ((double) longest * getWorkers() * threads));
+		}
+	}
+}
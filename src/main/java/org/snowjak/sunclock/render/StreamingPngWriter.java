@@ -0,0 +1,220 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.abs;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an (opaque, 8-bit RGB) PNG a band of rows at a time, deflating each
+ * row as it's written -- so only the current and previous rows need be held,
+ * however large the image.
+ * <p>
+ * Every row is Paeth-filtered. The compressed data is split into IDAT chunks of
+ * at most {@link #CHUNK_SIZE} bytes.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class StreamingPngWriter implements AutoCloseable {
+	
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+	
+	/**
+	 * The largest IDAT chunk written, in bytes.
+	 */
+	public static final int CHUNK_SIZE = 64 * 1024;
+	
+	private static final int FILTER_PAETH = 4;
+	
+	private final DataOutputStream out;
+	private final int width, height;
+	private final Deflater deflater;
+	private final DeflaterOutputStream compressed;
+	
+	private byte[] previous, current;
+	private final byte[] filtered;
+	private int rowsWritten = 0;
+	private boolean closed = false;
+	
+	/**
+	 * Write the PNG header to the given stream.
+	 * 
+	 * @param out
+	 *            closed when this writer is
+	 * @param width
+	 * @param height
+	 * @param compressionLevel
+	 *            in [0,9] -- see {@link Deflater#setLevel(int)}
+	 * @throws IOException
+	 */
+	public StreamingPngWriter(OutputStream out, int width, int height, int compressionLevel) throws IOException {
+		
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("Cannot write an empty image.");
+		
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		
+		this.previous = new byte[3 * width];
+		this.current = new byte[3 * width];
+		this.filtered = new byte[3 * width + 1];
+		
+		this.out.write(SIGNATURE);
+		
+		final byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; // bit depth
+		header[9] = 2; // color type: RGB
+		header[10] = 0; // compression: deflate
+		header[11] = 0; // filter method: adaptive
+		header[12] = 0; // interlace: none
+		writeChunk("IHDR", header, 0, header.length);
+		
+		this.deflater = new Deflater(compressionLevel);
+		this.compressed = new DeflaterOutputStream(new ChunkOutputStream(), deflater, CHUNK_SIZE);
+	}
+	
+	/**
+	 * Write the next rows of the image.
+	 * 
+	 * @param pixels
+	 *            as RGB
+	 * @param offset
+	 *            index of the first row's first pixel
+	 * @param rows
+	 *            the number of rows to write
+	 * @throws IOException
+	 */
+	public void writeRows(int[] pixels, int offset, int rows) throws IOException {
+		
+		if (closed)
+			throw new IllegalStateException("Cannot write to a closed writer.");
+		if (rowsWritten + rows > height)
+			throw new IllegalArgumentException("Cannot write more rows than the image has.");
+		
+		for (int row = 0; row < rows; row++) {
+			final int start = offset + row * width;
+			for (int column = 0, i = 0; column < width; column++) {
+				final int rgb = pixels[start + column];
+				current[i++] = (byte) (rgb >> 16);
+				current[i++] = (byte) (rgb >> 8);
+				current[i++] = (byte) rgb;
+			}
+			
+			filtered[0] = FILTER_PAETH;
+			for (int i = 0; i < current.length; i++) {
+				final int a = (i < 3) ? 0 : current[i - 3] & 0xff;
+				final int b = previous[i] & 0xff;
+				final int c = (i < 3) ? 0 : previous[i - 3] & 0xff;
+				filtered[i + 1] = (byte) (current[i] - paeth(a, b, c));
+			}
+			compressed.write(filtered);
+			
+			final byte[] swap = previous;
+			previous = current;
+			current = swap;
+			rowsWritten++;
+		}
+	}
+	
+	/**
+	 * @return the number of rows written so far
+	 */
+	public int getRowsWritten() {
+		
+		return rowsWritten;
+	}
+	
+	/**
+	 * Finish the image and close the underlying stream.
+	 * 
+	 * @throws IOException
+	 *             if not every row was written, or the image could not be
+	 *             finished
+	 */
+	@Override
+	public void close() throws IOException {
+		
+		if (closed)
+			return;
+		closed = true;
+		
+		try {
+			if (rowsWritten < height)
+				throw new IOException("Image incomplete: only " + rowsWritten + " of " + height + " rows written.");
+			
+			compressed.finish();
+			writeChunk("IEND", new byte[0], 0, 0);
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+	
+	static int paeth(int a, int b, int c) {
+		
+		final int p = a + b - c;
+		final int pa = abs(p - a), pb = abs(p - b), pc = abs(p - c);
+		if (pa <= pb && pa <= pc)
+			return a;
+		if (pb <= pc)
+			return b;
+		return c;
+	}
+	
+	private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+		
+		final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, offset, length);
+		
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, offset, length);
+		out.writeInt((int) crc.getValue());
+	}
+	
+	private static void putInt(byte[] bytes, int offset, int value) {
+		
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+	
+	/**
+	 * Receives compressed data, and writes it out in IDAT chunks.
+	 */
+	private class ChunkOutputStream extends OutputStream {
+		
+		@Override
+		public void write(int b) throws IOException {
+			
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			
+			while (len > 0) {
+				final int chunk = Math.min(len, CHUNK_SIZE);
+				writeChunk("IDAT", b, off, chunk);
+				off += chunk;
+				len -= chunk;
+			}
+		}
+	}
+}
@@ -0,0 +1,548 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.max;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Exports a time-lapse -- a sequence of frames, evenly spaced across a span of
+ * time -- as an animated GIF or a numbered sequence of PNGs.
+ * <p>
+ * Frames are rendered (and, as far as possible, encoded) in parallel, one
+ * frame per thread, and handed in order to a single writer through a bounded
+ * queue. Rendering runs at most a few frames ahead of writing, so memory stays
+ * flat however many frames are exported.
+ * </p>
+ * <p>
+ * GIF frames share one palette, built from the base map under every shade of
+ * the light-map -- so colors don't flicker from frame to frame.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class TimeLapseExporter {
+	
+	private static final Logger LOG = LogManager.getLogger(TimeLapseExporter.class);
+	
+	public enum Format {
+		/**
+		 * A single animated GIF, looping forever.
+		 */
+		GIF,
+		/**
+		 * A sequence of PNGs, numbered from 0.
+		 */
+		PNG_SEQUENCE
+	}
+	
+	private final int threads;
+	
+	/**
+	 * @param threads
+	 *            the number of frames to render at once
+	 */
+	public TimeLapseExporter(int threads) {
+		
+		this.threads = max(1, threads);
+	}
+	
+	/**
+	 * Export a time-lapse.
+	 * 
+	 * @param baseMap
+	 *            the base map for the given projection, at the size to export
+	 * @param projection
+	 * @param cellSize
+	 *            size of each (square) light-map sample-cell, in pixels
+	 * @param start
+	 *            the time shown in the first frame
+	 * @param end
+	 *            the time shown in the last frame
+	 * @param frameCount
+	 * @param format
+	 * @param frameDelay
+	 *            for {@link Format#GIF}, how long each frame is shown, in
+	 *            milliseconds
+	 * @param output
+	 *            the file to write -- or, for {@link Format#PNG_SEQUENCE}, the
+	 *            pattern to name each file by (e.g., "day.png" is written as
+	 *            "day-0000.png", "day-0001.png", ...)
+	 * @param progress
+	 *            receives the number of frames written so far, as each is written
+	 *            (on the writer's thread), or {@code null}
+	 * @return
+	 * @throws IOException
+	 *             if the time-lapse could not be written
+	 * @throws InterruptedException
+	 *             if interrupted -- in which case the export is abandoned
+	 */
+	public Result export(BufferedImage baseMap, Projection projection, int cellSize, ZonedDateTime start,
+			ZonedDateTime end, int frameCount, Format format, int frameDelay, File output, IntConsumer progress)
+			throws IOException, InterruptedException {
+		
+		final int width = baseMap.getWidth(), height = baseMap.getHeight();
+		final int[] base = toRGB(baseMap);
+		
+		return export(base, width, height, frameCount, format, frameDelay, output, progress,
+				frame -> renderFrame(base, width, height, projection, cellSize,
+						getInstant(start, end, frameCount, frame)));
+	}
+	
+	/**
+	 * Export a time-lapse of frames rendered elsewhere.
+	 * 
+	 * @param base
+	 *            the base map (as RGB), from which to build a GIF's palette
+	 * @param width
+	 * @param height
+	 * @param frameCount
+	 * @param format
+	 * @param frameDelay
+	 * @param output
+	 * @param progress
+	 * @param frames
+	 *            supplies each frame -- called from several threads at once
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @see #export(BufferedImage, Projection, int, ZonedDateTime, ZonedDateTime,
+	 *      int, Format, int, File, IntConsumer)
+	 */
+	Result export(int[] base, int width, int height, int frameCount, Format format, int frameDelay, File output,
+			IntConsumer progress, FrameSource frames) throws IOException, InterruptedException {
+		
+		if (frameCount < 1)
+			throw new IllegalArgumentException("A time-lapse must have at least 1 frame.");
+		
+		final long startTime = System.nanoTime();
+		
+		final Palette palette = (format == Format.GIF) ? Palette.build(base) : null;
+		
+		final ListeningExecutorService renderExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+				threads, new ThreadFactoryBuilder().setNameFormat("time-lapse-render-%d").setDaemon(true).build()));
+		final ListeningExecutorService writeExecutor = MoreExecutors.listeningDecorator(Executors
+				.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("time-lapse-write").setDaemon(true)
+						.build()));
+		
+		//
+		// The writer takes each frame, in order, as soon as it's done. Rendering
+		// stalls whenever the queue is full.
+		//
+		final BlockingQueue<ListenableFuture<Object>> encoded = new ArrayBlockingQueue<>(2 * threads);
+		
+		try (FrameWriter writer = (format == Format.GIF) ? new GifWriter(output, palette, frameDelay)
+				: new PngSequenceWriter(output, frameCount)) {
+			try {
+				
+				final ListenableFuture<?> writing = writeExecutor.submit(() -> {
+					for (int i = 0; i < frameCount; i++) {
+						writer.write(encoded.take().get());
+						if (progress != null)
+							progress.accept(i + 1);
+					}
+					return null;
+				});
+				
+				for (int i = 0; i < frameCount && !writing.isDone(); i++) {
+					final int index = i;
+					final ListenableFuture<Object> frame = renderExecutor
+							.submit(() -> encode(frames.getFrame(index), width, height, palette));
+					while (!encoded.offer(frame, 100, TimeUnit.MILLISECONDS))
+						if (writing.isDone())
+							break;
+				}
+				
+				try {
+					writing.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					throw new IOException("Could not export time-lapse.", e.getCause());
+				}
+				
+			} finally {
+				//
+				// The writer must be finished with before it's closed.
+				//
+				renderExecutor.shutdownNow();
+				writeExecutor.shutdownNow();
+				encoded.forEach(f -> f.cancel(true));
+				writeExecutor.awaitTermination(10, TimeUnit.SECONDS);
+			}
+		}
+		
+		final Result result = new Result(frameCount, System.nanoTime() - startTime);
+		LOG.info("exported {} {}x{} frames as {} to [{}] in {} ms ({} frames/second)", frameCount, width, height,
+				format, output, result.getNanos() / 1000000L, String.format("%.1f", result.getFramesPerSecond()));
+		return result;
+	}
+	
+	/**
+	 * @param start
+	 * @param end
+	 * @param frameCount
+	 * @param frame
+	 * @return the time shown in the given frame of a time-lapse
+	 */
+	static ZonedDateTime getInstant(ZonedDateTime start, ZonedDateTime end, int frameCount, int frame) {
+		
+		if (frameCount < 2)
+			return start;
+		return start.plus(Duration.between(start, end).dividedBy(frameCount - 1).multipliedBy(frame));
+	}
+	
+	/**
+	 * Render one frame: the base map, shaded by the light-map at the given
+	 * instant.
+	 * 
+	 * @return the frame's pixels, as RGB
+	 */
+	static int[] renderFrame(int[] base, int width, int height, Projection projection, int cellSize,
+			ZonedDateTime instant) throws InterruptedException {
+		
+		final byte[] light = new byte[width * height];
+		new LightMapRenderer(MoreExecutors.newDirectExecutorService()).render(light, width, height, 0, height,
+				projection, Viewport.FULL, cellSize, instant);
+		
+		final int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = LightMapComposite.shade(base[i], light[i] & 0xff);
+		return pixels;
+	}
+	
+	/**
+	 * Ready a frame for writing -- on this thread, so as not to hold up the
+	 * writer -- either indexing it through the given palette, or else encoding it
+	 * as a PNG.
+	 */
+	private static Object encode(int[] pixels, int width, int height, Palette palette) throws IOException {
+		
+		if (palette != null) {
+			final BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED,
+					palette.getColorModel());
+			final byte[] indices = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+			for (int i = 0; i < indices.length; i++)
+				indices[i] = palette.indexOf(pixels[i]);
+			return frame;
+		}
+		
+		final BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		System.arraycopy(pixels, 0, ((DataBufferInt) frame.getRaster().getDataBuffer()).getData(), 0,
+				pixels.length);
+		
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream(pixels.length);
+		ImageIO.write(frame, "png", encoded);
+		return encoded.toByteArray();
+	}
+	
+	/**
+	 * Supplies the frames of a time-lapse.
+	 */
+	@FunctionalInterface
+	interface FrameSource {
+		
+		/**
+		 * @param frame
+		 * @return the given frame's pixels, as RGB
+		 * @throws Exception
+		 */
+		int[] getFrame(int frame) throws Exception;
+	}
+	
+	static int[] toRGB(BufferedImage image) {
+		
+		if (image.getType() == BufferedImage.TYPE_INT_RGB)
+			return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		
+		final BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		converted.createGraphics().drawImage(image, 0, 0, null);
+		return ((DataBufferInt) converted.getRaster().getDataBuffer()).getData();
+	}
+	
+	/**
+	 * Up to 256 colors, chosen by popularity among a base map's colors (at 5 bits
+	 * per channel) under every shade of the light-map, along with a table mapping
+	 * every 5-bit-per-channel color to the nearest of them.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	static class Palette {
+		
+		private static final int SIZE = 256;
+		
+		/**
+		 * Sample every this-many pixels of the base map.
+		 */
+		private static final int SAMPLE_STRIDE = 7;
+		
+		private final IndexColorModel colorModel;
+		private final byte[] table = new byte[1 << 15];
+		
+		private Palette(int[] colors, int count) {
+			
+			final byte[] r = new byte[count], g = new byte[count], b = new byte[count];
+			for (int i = 0; i < count; i++) {
+				r[i] = (byte) (colors[i] >> 16);
+				g[i] = (byte) (colors[i] >> 8);
+				b[i] = (byte) colors[i];
+			}
+			colorModel = new IndexColorModel(8, count, r, g, b);
+			
+			for (int color = 0; color < table.length; color++) {
+				final int cr = expand(color >> 10), cg = expand(color >> 5), cb = expand(color);
+				int nearest = 0, nearestDistance = Integer.MAX_VALUE;
+				for (int i = 0; i < count; i++) {
+					final int dr = cr - (r[i] & 0xff), dg = cg - (g[i] & 0xff), db = cb - (b[i] & 0xff);
+					final int distance = dr * dr + dg * dg + db * db;
+					if (distance < nearestDistance) {
+						nearest = i;
+						nearestDistance = distance;
+					}
+				}
+				table[color] = (byte) nearest;
+			}
+		}
+		
+		static Palette build(int[] base) {
+			
+			final int[] popularity = new int[1 << 15];
+			for (int shade = 0; shade <= 255; shade += 16) {
+				final int alpha = LightMapRenderer.getShade(shade / 255d) >>> 24;
+				for (int i = 0; i < base.length; i += SAMPLE_STRIDE)
+					popularity[reduce(LightMapComposite.shade(base[i], alpha))]++;
+			}
+			
+			final Integer[] order = new Integer[popularity.length];
+			Arrays.setAll(order, i -> i);
+			Arrays.sort(order, (c1, c2) -> Integer.compare(popularity[c2], popularity[c1]));
+			
+			final int[] colors = new int[SIZE];
+			int count = 0;
+			while (count < SIZE && popularity[order[count]] > 0) {
+				final int color = order[count];
+				colors[count++] = (expand(color >> 10) << 16) | (expand(color >> 5) << 8) | expand(color);
+			}
+			
+			return new Palette(colors, max(1, count));
+		}
+		
+		IndexColorModel getColorModel() {
+			
+			return colorModel;
+		}
+		
+		/**
+		 * @param rgb
+		 * @return the index of the palette color nearest the given color
+		 */
+		byte indexOf(int rgb) {
+			
+			return table[reduce(rgb)];
+		}
+		
+		private static int reduce(int rgb) {
+			
+			return ((rgb >> 9) & 0x7c00) | ((rgb >> 6) & 0x03e0) | ((rgb >> 3) & 0x001f);
+		}
+		
+		private static int expand(int channel) {
+			
+			final int c = channel & 0x1f;
+			return (c << 3) | (c >> 2);
+		}
+	}
+	
+	private interface FrameWriter extends AutoCloseable {
+		
+		void write(Object frame) throws IOException;
+		
+		@Override
+		void close() throws IOException;
+	}
+	
+	private static class GifWriter implements FrameWriter {
+		
+		private final ImageOutputStream stream;
+		private final ImageWriter writer;
+		private final ImageWriteParam param;
+		private final IIOMetadata metadata;
+		
+		GifWriter(File output, Palette palette, int frameDelay) throws IOException {
+			
+			final Iterator<ImageWriter> writers = ImageIO.getImageWritersBySuffix("gif");
+			if (!writers.hasNext())
+				throw new IOException("Cannot write GIFs: no ImageWriter is available.");
+			
+			writer = writers.next();
+			param = writer.getDefaultWriteParam();
+			
+			final ImageTypeSpecifier type = new ImageTypeSpecifier(
+					new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_INDEXED, palette.getColorModel()));
+			metadata = writer.getDefaultImageMetadata(type, param);
+			
+			final String format = metadata.getNativeMetadataFormatName();
+			final IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+			
+			final IIOMetadataNode control = getNode(root, "GraphicControlExtension");
+			control.setAttribute("disposalMethod", "none");
+			control.setAttribute("userInputFlag", "FALSE");
+			control.setAttribute("transparentColorFlag", "FALSE");
+			control.setAttribute("delayTime", Integer.toString(max(1, frameDelay / 10)));
+			control.setAttribute("transparentColorIndex", "0");
+			
+			//
+			// The "NETSCAPE2.0" extension makes the animation loop (forever).
+			//
+			final IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+			loop.setAttribute("applicationID", "NETSCAPE");
+			loop.setAttribute("authenticationCode", "2.0");
+			loop.setUserObject(new byte[] { 1, 0, 0 });
+			getNode(root, "ApplicationExtensions").appendChild(loop);
+			
+			metadata.setFromTree(format, root);
+			
+			Files.deleteIfExists(output.toPath());
+			stream = ImageIO.createImageOutputStream(output);
+			if (stream == null)
+				throw new IOException("Cannot write to [" + output + "]");
+			writer.setOutput(stream);
+			writer.prepareWriteSequence(null);
+		}
+		
+		private static IIOMetadataNode getNode(IIOMetadataNode root, String name) {
+			
+			for (int i = 0; i < root.getLength(); i++)
+				if (root.item(i).getNodeName().equalsIgnoreCase(name))
+					return (IIOMetadataNode) root.item(i);
+			
+			final IIOMetadataNode node = new IIOMetadataNode(name);
+			root.appendChild(node);
+			return node;
+		}
+		
+		@Override
+		public void write(Object frame) throws IOException {
+			
+			writer.writeToSequence(new IIOImage((BufferedImage) frame, null, metadata), param);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			
+			try {
+				writer.endWriteSequence();
+			} catch (IllegalStateException e) {
+				
+			} finally {
+				writer.dispose();
+				stream.close();
+			}
+		}
+	}
+	
+	private static class PngSequenceWriter implements FrameWriter {
+		
+		private final File directory;
+		private final String prefix, numberFormat;
+		private int next = 0;
+		
+		PngSequenceWriter(File output, int frameCount) {
+			
+			directory = output.getAbsoluteFile().getParentFile();
+			
+			final String name = output.getName();
+			prefix = name.toLowerCase().endsWith(".png") ? name.substring(0, name.length() - 4) : name;
+			numberFormat = "%0" + max(4, Integer.toString(frameCount - 1).length()) + "d";
+		}
+		
+		@Override
+		public void write(Object frame) throws IOException {
+			
+			final File file = new File(directory, prefix + "-" + String.format(numberFormat, next++) + ".png");
+			Files.write(file.toPath(), (byte[]) frame);
+		}
+		
+		@Override
+		public void close() {
+			
+		}
+	}
+	
+	/**
+	 * How a time-lapse export went.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class Result {
+		
+		private final int frames;
+		private final long nanos;
+		
+		public Result(int frames, long nanos) {
+			
+			this.frames = frames;
+			this.nanos = nanos;
+		}
+		
+		public int getFrames() {
+			
+			return frames;
+		}
+		
+		/**
+		 * @return the time taken, start to finish, in nanoseconds
+		 */
+		public long getNanos() {
+			
+			return nanos;
+		}
+		
+		public double getFramesPerSecond() {
+			
+			return (nanos <= 0) ? 0d : (double) frames / ((double) nanos / 1e9);
+		}
+	}
+}
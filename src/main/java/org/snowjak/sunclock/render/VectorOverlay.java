@@ -0,0 +1,382 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Viewport;
+
+/**
+ * Lines of latitude and longitude (the graticule) and coastlines, to be drawn
+ * over the map.
+ * <p>
+ * Lines are split where they cross the antimeridian once, when they're
+ * created. They're projected -- in batches, through
+ * {@link Projection#forward(double[], double[], double[], double[], int, int)}
+ * -- only when {@link #render(Projection, Viewport, int, int) rendered} into a
+ * transparent layer, which is meant to be kept and drawn over each frame with
+ * a single blit.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class VectorOverlay {
+	
+	/**
+	 * The coastlines drawn unless another file is named. These are traced from
+	 * the bundled base map, and so are only as detailed as it is.
+	 */
+	public static final String COASTLINES_RESOURCE = "overlay/coastlines.txt";
+	
+	/**
+	 * Degrees between successive lines of the graticule.
+	 */
+	public static final double GRATICULE_SPACING = 15d;
+	
+	/**
+	 * Degrees between successive points along each line of the graticule -- so
+	 * that it curves where the projection does.
+	 */
+	private static final double GRATICULE_STEP = 1d;
+	
+	private static final Color GRATICULE_COLOR = new Color(0xff, 0xff, 0xff, 0x40);
+	private static final Color COASTLINE_COLOR = new Color(0xff, 0xff, 0xff, 0xa0);
+	
+	private final List<Line> graticule;
+	private final List<Line> coastlines;
+	
+	/**
+	 * @param graticule
+	 *            if {@code true}, draw lines of latitude and longitude every
+	 *            {@link #GRATICULE_SPACING} degrees
+	 * @param coastlines
+	 *            the coastlines to draw (see {@link #readCoastlines(Reader)}), or
+	 *            {@code null} for none
+	 */
+	public VectorOverlay(boolean graticule, List<Line> coastlines) {
+		
+		this.graticule = graticule ? createGraticule(GRATICULE_SPACING) : Collections.emptyList();
+		this.coastlines = (coastlines == null) ? Collections.emptyList() : coastlines;
+	}
+	
+	/**
+	 * @return {@code true} if there's nothing to draw
+	 */
+	public boolean isEmpty() {
+		
+		return graticule.isEmpty() && coastlines.isEmpty();
+	}
+	
+	/**
+	 * @return the number of points in all this overlay's lines
+	 */
+	public int getPointCount() {
+		
+		return graticule.stream().mapToInt(Line::size).sum() + coastlines.stream().mapToInt(Line::size).sum();
+	}
+	
+	/**
+	 * Draw this overlay, as projected by the given projection, into a new
+	 * transparent image.
+	 * 
+	 * @param projection
+	 * @param viewport
+	 *            the region of the map the image covers
+	 * @param width
+	 * @param height
+	 * @return an image of type {@link BufferedImage#TYPE_INT_ARGB_PRE} (which is
+	 *         quickest to draw over an opaque image)
+	 */
+	public BufferedImage render(Projection projection, Viewport viewport, int width, int height) {
+		
+		final BufferedImage layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		final Graphics2D g = layer.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+			g.setStroke(new BasicStroke(1f));
+			
+			g.setColor(GRATICULE_COLOR);
+			g.draw(getPath(graticule, projection, viewport, width, height));
+			
+			g.setColor(COASTLINE_COLOR);
+			g.draw(getPath(coastlines, projection, viewport, width, height));
+		} finally {
+			g.dispose();
+		}
+		
+		return layer;
+	}
+	
+	/**
+	 * Project the given lines onto an image of the given size.
+	 * <p>
+	 * Each line is broken wherever it leaves the projection's domain, and
+	 * wherever it would jump more than half-way across the map.
+	 * </p>
+	 * 
+	 * @param lines
+	 * @param projection
+	 * @param viewport
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	static Path2D getPath(List<Line> lines, Projection projection, Viewport viewport, int width, int height) {
+		
+		final Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO,
+				max(16, lines.stream().mapToInt(Line::size).sum()));
+		
+		double[] x = new double[0], y = new double[0];
+		for (Line line : lines) {
+			final int size = line.size();
+			if (x.length < size) {
+				x = new double[size];
+				y = new double[size];
+			}
+			
+			projection.forward(line.latitude, line.longitude, x, y, 0, size);
+			
+			boolean drawing = false;
+			double previousX = 0d;
+			for (int i = 0; i < size; i++) {
+				if (!projection.isInDomain(line.latitude[i], line.longitude[i]) || !Double.isFinite(x[i])
+						|| !Double.isFinite(y[i])) {
+					drawing = false;
+					continue;
+				}
+				
+				final double px = viewport.toViewportX(x[i]) * (double) width,
+						py = (1d - viewport.toViewportY(y[i])) * (double) height;
+				
+				if (drawing && abs(x[i] - previousX) <= 0.5d)
+					path.lineTo(px, py);
+				else
+					path.moveTo(px, py);
+				
+				drawing = true;
+				previousX = x[i];
+			}
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * Read coastlines from the given text -- as written by (e.g.) GMT's
+	 * {@code pscoast -M}: one point per line, as {@code longitude latitude}
+	 * (separated by whitespace or a comma), with each coastline separated from
+	 * the next by a line starting with {@code >} (or a blank line). Lines
+	 * starting with {@code #} are ignored.
+	 * 
+	 * @param reader
+	 * @return the coastlines, split at the antimeridian
+	 * @throws IOException
+	 *             if the text cannot be read, or a point cannot be parsed
+	 */
+	public static List<Line> readCoastlines(Reader reader) throws IOException {
+		
+		final List<Line> lines = new ArrayList<>();
+		final BufferedReader buffered = new BufferedReader(reader);
+		
+		double[] latitude = new double[256], longitude = new double[256];
+		int size = 0, lineNumber = 0;
+		
+		String text;
+		while ((text = buffered.readLine()) != null) {
+			lineNumber++;
+			text = text.trim();
+			
+			if (text.startsWith("#"))
+				continue;
+			
+			if (text.isEmpty() || text.startsWith(">")) {
+				lines.addAll(splitAtAntimeridian(latitude, longitude, size));
+				size = 0;
+				continue;
+			}
+			
+			final String[] fields = text.split("[\\s,]+");
+			if (fields.length < 2)
+				throw new IOException("Line " + lineNumber + ": expected \"longitude latitude\" but got \"" + text
+						+ "\"");
+			
+			if (size == latitude.length) {
+				latitude = Arrays.copyOf(latitude, size * 2);
+				longitude = Arrays.copyOf(longitude, size * 2);
+			}
+			
+			try {
+				longitude[size] = Double.parseDouble(fields[0]);
+				latitude[size] = Double.parseDouble(fields[1]);
+			} catch (NumberFormatException e) {
+				throw new IOException("Line " + lineNumber + ": cannot parse \"" + text + "\"", e);
+			}
+			size++;
+		}
+		
+		lines.addAll(splitAtAntimeridian(latitude, longitude, size));
+		return lines;
+	}
+	
+	/**
+	 * Read the bundled {@link #COASTLINES_RESOURCE coastlines}.
+	 * 
+	 * @return the coastlines, split at the antimeridian
+	 * @throws IOException
+	 *             if the resource cannot be found or read
+	 * @see #readCoastlines(Reader)
+	 */
+	public static List<Line> readBundledCoastlines() throws IOException {
+		
+		try (InputStream stream = VectorOverlay.class.getClassLoader().getResourceAsStream(COASTLINES_RESOURCE)) {
+			if (stream == null)
+				throw new IOException("Cannot find coastlines resource [" + COASTLINES_RESOURCE + "]");
+			
+			return readCoastlines(new InputStreamReader(stream, StandardCharsets.US_ASCII));
+		}
+	}
+	
+	/**
+	 * Split the given line wherever it crosses the antimeridian -- i.e., wherever
+	 * the longitude between successive points changes by more than 180 degrees --
+	 * ending one line on the near side of the antimeridian and starting the next
+	 * on the far side, at the latitude where it crosses.
+	 * 
+	 * @param latitude
+	 * @param longitude
+	 * @param size
+	 *            the number of points in the line
+	 * @return the pieces of the line (omitting any with fewer than 2 points)
+	 */
+	public static List<Line> splitAtAntimeridian(double[] latitude, double[] longitude, int size) {
+		
+		final List<Line> lines = new ArrayList<>(1);
+		
+		final double[] lat = new double[size * 2], lon = new double[size * 2];
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (i > 0 && abs(longitude[i] - longitude[i - 1]) > 180d) {
+				//
+				// Unwrap the next longitude to the previous one's side, to find
+				// where the segment between them meets the antimeridian.
+				//
+				final double edge = (longitude[i - 1] >= 0d) ? 180d : -180d;
+				final double unwrapped = longitude[i] + 2d * edge;
+				final double t = (edge - longitude[i - 1]) / (unwrapped - longitude[i - 1]);
+				final double crossing = latitude[i - 1] + t * (latitude[i] - latitude[i - 1]);
+				
+				lat[count] = crossing;
+				lon[count] = edge;
+				count++;
+				add(lines, lat, lon, count);
+				
+				lat[0] = crossing;
+				lon[0] = -edge;
+				count = 1;
+			}
+			
+			lat[count] = latitude[i];
+			lon[count] = longitude[i];
+			count++;
+		}
+		add(lines, lat, lon, count);
+		
+		return lines;
+	}
+	
+	private static void add(List<Line> lines, double[] latitude, double[] longitude, int size) {
+		
+		if (size >= 2)
+			lines.add(new Line(Arrays.copyOf(latitude, size), Arrays.copyOf(longitude, size)));
+	}
+	
+	/**
+	 * @param spacing
+	 *            degrees between lines
+	 * @return meridians and parallels every {@code spacing} degrees (omitting
+	 *         the poles)
+	 */
+	static List<Line> createGraticule(double spacing) {
+		
+		final List<Line> lines = new ArrayList<>();
+		
+		final int meridianPoints = (int) (180d / GRATICULE_STEP) + 1;
+		for (double longitude = -180d; longitude < 180d; longitude += spacing) {
+			final double[] lat = new double[meridianPoints], lon = new double[meridianPoints];
+			for (int i = 0; i < meridianPoints; i++) {
+				lat[i] = -90d + i * GRATICULE_STEP;
+				lon[i] = longitude;
+			}
+			lines.add(new Line(lat, lon));
+		}
+		
+		final int parallelPoints = (int) (360d / GRATICULE_STEP) + 1;
+		for (double latitude = -90d + spacing; latitude < 90d; latitude += spacing) {
+			final double[] lat = new double[parallelPoints], lon = new double[parallelPoints];
+			for (int i = 0; i < parallelPoints; i++) {
+				lat[i] = latitude;
+				lon[i] = -180d + i * GRATICULE_STEP;
+			}
+			lines.add(new Line(lat, lon));
+		}
+		
+		return lines;
+	}
+	
+	/**
+	 * A line on the globe, as a series of points.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static final class Line {
+		
+		private final double[] latitude, longitude;
+		
+		public Line(double[] latitude, double[] longitude) {
+			
+			if (latitude.length != longitude.length)
+				throw new IllegalArgumentException("Latitudes and longitudes must be paired.");
+			
+			this.latitude = latitude;
+			this.longitude = longitude;
+		}
+		
+		public int size() {
+			
+			return latitude.length;
+		}
+		
+		public double getLatitude(int i) {
+			
+			return latitude[i];
+		}
+		
+		public double getLongitude(int i) {
+			
+			return longitude[i];
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.snowjak.sunclock.render.BaseMapLoader.BaseMap;
+
+/**
+ * An on-disk cache of decoded base maps and the last rendered frames, so that
+ * the application can show something useful as soon as it starts.
+ * <p>
+ * Images are stored raw: a fixed-size header followed by {@code width * height}
+ * big-endian 32-bit RGB pixels, so they can be memory-mapped straight back
+ * into an image without decoding. Files are written to a temporary file and
+ * then moved into place, so an interrupted write never leaves a truncated
+ * entry behind.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class WarmStartCache {
+	
+	private static final Logger LOG = LogManager.getLogger(WarmStartCache.class);
+	
+	/**
+	 * Magic number ("SCRI") identifying a raw cached image.
+	 */
+	public static final int MAGIC = 0x53435249;
+	public static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 4 + 4 + 4;
+	
+	private final File directory;
+	
+	/**
+	 * @param directory
+	 *            the directory to hold cached images (created as needed)
+	 */
+	public WarmStartCache(File directory) {
+		
+		this.directory = directory;
+	}
+	
+	public File getDirectory() {
+		
+		return directory;
+	}
+	
+	/**
+	 * Read the cached copy of the given base-map image, if it was decoded with
+	 * enough pixels for the given target size.
+	 * 
+	 * @param imageName
+	 * @param targetWidth
+	 * @param targetHeight
+	 * @return the cached base map, or {@code null} if there is none suitable
+	 */
+	public BaseMap readBaseMap(String imageName, int targetWidth, int targetHeight) {
+		
+		final CachedImage cached = read(getBaseMapFile(imageName));
+		if (cached == null)
+			return null;
+		
+		if (cached.getSubsampling() < 1 || cached.getSubsampling() > BaseMapLoader
+				.calculateSubsampling(cached.getSourceWidth(), cached.getSourceHeight(), targetWidth, targetHeight))
+			return null;
+		
+		return new BaseMap(cached.getImage(), cached.getSourceWidth(), cached.getSourceHeight(),
+				cached.getSubsampling());
+	}
+	
+	/**
+	 * Cache the given (decoded) base-map image.
+	 * 
+	 * @param imageName
+	 * @param baseMap
+	 */
+	public void writeBaseMap(String imageName, BaseMap baseMap) {
+		
+		if (baseMap.isPlaceholder())
+			return;
+		
+		write(getBaseMapFile(imageName), baseMap.getImage(), System.currentTimeMillis(), baseMap.getSourceWidth(),
+				baseMap.getSourceHeight(), baseMap.getSubsampling());
+	}
+	
+	/**
+	 * Read the last frame rendered under the given key.
+	 * 
+	 * @param key
+	 * @return the cached frame, or {@code null} if there is none
+	 */
+	public CachedImage readFrame(String key) {
+		
+		return read(getFrameFile(key));
+	}
+	
+	/**
+	 * Cache a rendered frame under the given key.
+	 * 
+	 * @param key
+	 * @param frame
+	 * @param timestamp
+	 *            the time (in milliseconds since the epoch) the frame depicts
+	 */
+	public void writeFrame(String key, BufferedImage frame, long timestamp) {
+		
+		write(getFrameFile(key), frame, timestamp, frame.getWidth(), frame.getHeight(), 1);
+	}
+	
+	private File getBaseMapFile(String imageName) {
+		
+		return new File(directory, "basemap-" + sanitize(imageName) + ".raw");
+	}
+	
+	private File getFrameFile(String key) {
+		
+		return new File(directory, "frame-" + sanitize(key) + ".raw");
+	}
+	
+	private static String sanitize(String name) {
+		
+		return name.replaceAll("[^A-Za-z0-9.-]", "_");
+	}
+	
+	private CachedImage read(File file) {
+		
+		if (!file.isFile())
+			return null;
+		
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			
+			final ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				LOG.warn("Ignoring unrecognized cache-file [{}]", file.getPath());
+				return null;
+			}
+			
+			final int width = buffer.getInt(), height = buffer.getInt();
+			final long timestamp = buffer.getLong();
+			final int sourceWidth = buffer.getInt(), sourceHeight = buffer.getInt(), subsampling = buffer.getInt();
+			
+			final IntBuffer pixels = buffer.asIntBuffer();
+			if (width <= 0 || height <= 0 || pixels.remaining() < width * height) {
+				LOG.warn("Ignoring truncated cache-file [{}]", file.getPath());
+				return null;
+			}
+			
+			final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels.get(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0, width * height);
+			
+			return new CachedImage(image, timestamp, sourceWidth, sourceHeight, subsampling);
+			
+		} catch (IOException e) {
+			LOG.warn("Cannot read cache-file [" + file.getPath() + "]", e);
+			return null;
+		}
+	}
+	
+	private void write(File file, BufferedImage image, long timestamp, int sourceWidth, int sourceHeight,
+			int subsampling) {
+		
+		final int width = image.getWidth(), height = image.getHeight();
+		
+		try {
+			Files.createDirectories(directory.toPath());
+			
+			final File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+			try {
+				//
+				// Written through an ordinary channel (rather than mapped) so that no
+				// mapping is left holding the file open when it's moved into place.
+				//
+				try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+					
+					final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+					header.putInt(MAGIC);
+					header.putInt(VERSION);
+					header.putInt(width);
+					header.putInt(height);
+					header.putLong(timestamp);
+					header.putInt(sourceWidth);
+					header.putInt(sourceHeight);
+					header.putInt(subsampling);
+					header.flip();
+					writeFully(channel, header);
+					
+					final ByteBuffer rowBuffer = ByteBuffer.allocateDirect(4 * width);
+					final IntBuffer rowPixels = rowBuffer.asIntBuffer();
+					final int[] row = new int[width];
+					for (int y = 0; y < height; y++) {
+						image.getRGB(0, y, width, 1, row, 0, width);
+						for (int x = 0; x < width; x++)
+							row[x] &= 0xffffff;
+						
+						rowPixels.clear();
+						rowPixels.put(row);
+						rowBuffer.clear();
+						writeFully(channel, rowBuffer);
+					}
+					
+					channel.force(false);
+				}
+				
+				Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				
+			} finally {
+				temporary.delete();
+			}
+			
+		} catch (IOException e) {
+			LOG.warn("Cannot write cache-file [" + file.getPath() + "]", e);
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+	
+	/**
+	 * An image read back from the cache.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public static class CachedImage {
+		
+		private final BufferedImage image;
+		private final long timestamp;
+		private final int sourceWidth, sourceHeight, subsampling;
+		
+		public CachedImage(BufferedImage image, long timestamp, int sourceWidth, int sourceHeight, int subsampling) {
+			
+			this.image = image;
+			this.timestamp = timestamp;
+			this.sourceWidth = sourceWidth;
+			this.sourceHeight = sourceHeight;
+			this.subsampling = subsampling;
+		}
+		
+		public BufferedImage getImage() {
+			
+			return image;
+		}
+		
+		/**
+		 * @return the time (in milliseconds since the epoch) associated with this
+		 *         image when it was cached
+		 */
+		public long getTimestamp() {
+			
+			return timestamp;
+		}
+		
+		public int getSourceWidth() {
+			
+			return sourceWidth;
+		}
+		
+		public int getSourceHeight() {
+			
+			return sourceHeight;
+		}
+		
+		public int getSubsampling() {
+			
+			return subsampling;
+		}
+	}
+}
@@ -0,0 +1,266 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.solar;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A global latitude/longitude grid of total insolation values (in
+ * kWh/m<sup>2</sup>), as produced by the {@link InsolationIntegrator}.
+ * <p>
+ * Cells are stored row-major, starting at the north-west corner (i.e., row 0
+ * is the northernmost row, column 0 the westernmost column).
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class InsolationGrid {
+	
+	/**
+	 * Magic number ("SCIG") identifying a binary insolation-grid file.
+	 */
+	public static final int MAGIC = 0x53434947;
+	public static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8 + 8 + 4;
+	
+	private static final int[] COLOR_RAMP = { 0x000004, 0x57106e, 0xbc3754, 0xf98e09, 0xfcffa4 };
+	
+	private final int width, height;
+	private final double cellSize;
+	private final LocalDate firstDay;
+	private final int days;
+	private final float[] values;
+	
+	/**
+	 * Create a new, empty insolation grid.
+	 * 
+	 * @param cellSize
+	 *            size of each (square) cell, in degrees
+	 * @param firstDay
+	 *            the first day of the integrated period
+	 * @param days
+	 *            the number of days in the integrated period
+	 */
+	public InsolationGrid(double cellSize, LocalDate firstDay, int days) {
+		
+		this((int) Math.round(360d / cellSize), (int) Math.round(180d / cellSize), cellSize, firstDay, days,
+				new float[(int) Math.round(360d / cellSize) * (int) Math.round(180d / cellSize)]);
+	}
+	
+	private InsolationGrid(int width, int height, double cellSize, LocalDate firstDay, int days, float[] values) {
+		
+		assert (values.length == width * height);
+		
+		this.width = width;
+		this.height = height;
+		this.cellSize = cellSize;
+		this.firstDay = firstDay;
+		this.days = days;
+		this.values = values;
+	}
+	
+	public int getWidth() {
+		
+		return width;
+	}
+	
+	public int getHeight() {
+		
+		return height;
+	}
+	
+	public double getCellSize() {
+		
+		return cellSize;
+	}
+	
+	public LocalDate getFirstDay() {
+		
+		return firstDay;
+	}
+	
+	public int getDays() {
+		
+		return days;
+	}
+	
+	/**
+	 * @param row
+	 * @return the latitude (in degrees) at the center of the given row
+	 */
+	public double getLatitude(int row) {
+		
+		return 90d - ((double) row + 0.5d) * cellSize;
+	}
+	
+	/**
+	 * @param column
+	 * @return the longitude (in degrees) at the center of the given column
+	 */
+	public double getLongitude(int column) {
+		
+		return -180d + ((double) column + 0.5d) * cellSize;
+	}
+	
+	/**
+	 * @param column
+	 * @param row
+	 * @return the total insolation (in kWh/m<sup>2</sup>) for the given cell
+	 */
+	public float getValue(int column, int row) {
+		
+		return values[row * width + column];
+	}
+	
+	public void setValue(int column, int row, float value) {
+		
+		values[row * width + column] = value;
+	}
+	
+	/**
+	 * Set every cell in the given row to the given value.
+	 * 
+	 * @param row
+	 * @param value
+	 */
+	public void fillRow(int row, float value) {
+		
+		final int offset = row * width;
+		for (int i = 0; i < width; i++)
+			values[offset + i] = value;
+	}
+	
+	/**
+	 * @return the greatest value found in this grid
+	 */
+	public float getMaximum() {
+		
+		float max = 0f;
+		for (float v : values)
+			if (v > max)
+				max = v;
+		return max;
+	}
+	
+	/**
+	 * Render this grid as an image (1 pixel per cell), scaling values in
+	 * [0,{@link #getMaximum() maximum}] onto a false-color ramp.
+	 * 
+	 * @return
+	 */
+	public BufferedImage toImage() {
+		
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final float max = getMaximum();
+		final int[] row = new int[width];
+		
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++)
+				row[x] = rampColor((max <= 0f) ? 0d : values[y * width + x] / max);
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Write this grid as a PNG image.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 * @see #toImage()
+	 */
+	public void writeImage(File file) throws IOException {
+		
+		ImageIO.write(toImage(), "png", file);
+	}
+	
+	/**
+	 * Write this grid to a raw binary file: a fixed-size header followed by
+	 * {@code width * height} big-endian 32-bit floats. This format can be read
+	 * back via {@link #readBinary(File)}, or memory-mapped directly by other
+	 * tools.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void writeBinary(File file) throws IOException {
+		
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeDouble(cellSize);
+			out.writeLong(firstDay.toEpochDay());
+			out.writeInt(days);
+			for (float v : values)
+				out.writeFloat(v);
+		}
+	}
+	
+	/**
+	 * Read a grid previously written by {@link #writeBinary(File)}.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 *             if the file cannot be read, or is not an insolation-grid file
+	 */
+	public static InsolationGrid readBinary(File file) throws IOException {
+		
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			
+			final ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+				throw new IOException("[" + file.getPath() + "] is not an insolation-grid file.");
+			if (buffer.getInt() != VERSION)
+				throw new IOException("[" + file.getPath() + "] has an unsupported version.");
+			
+			final int width = buffer.getInt(), height = buffer.getInt();
+			final double cellSize = buffer.getDouble();
+			final LocalDate firstDay = LocalDate.ofEpochDay(buffer.getLong());
+			final int days = buffer.getInt();
+			
+			final FloatBuffer floats = buffer.asFloatBuffer();
+			if (floats.remaining() < width * height)
+				throw new IOException("[" + file.getPath() + "] is truncated.");
+			
+			final float[] values = new float[width * height];
+			floats.get(values);
+			
+			return new InsolationGrid(width, height, cellSize, firstDay, days, values);
+		}
+	}
+	
+	private static int rampColor(double v) {
+		
+		final double scaled = Math.max(0d, Math.min(1d, v)) * (COLOR_RAMP.length - 1);
+		final int i = Math.min((int) scaled, COLOR_RAMP.length - 2);
+		final double f = scaled - i;
+		
+		final int from = COLOR_RAMP[i], to = COLOR_RAMP[i + 1];
+		final int r = (int) (((from >> 16) & 0xff) * (1d - f) + ((to >> 16) & 0xff) * f);
+		final int g = (int) (((from >> 8) & 0xff) * (1d - f) + ((to >> 8) & 0xff) * f);
+		final int b = (int) ((from & 0xff) * (1d - f) + (to & 0xff) * f);
+		
+		return (r << 16) | (g << 8) | b;
+	}
+}
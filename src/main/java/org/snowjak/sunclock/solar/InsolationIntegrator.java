@@ -0,0 +1,301 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.solar;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleUnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Integrates {@link Solar#calculateHorizontalIrradiance(double) horizontal
+ * irradiance} over one or more days, for every cell of a global
+ * latitude/longitude grid.
+ * <p>
+ * Each day is integrated (by adaptive Simpson quadrature) only between local
+ * sunrise and sunset. Within a local day the solar model depends only on
+ * latitude and local solar time, so every cell in a grid-row shares the same
+ * daily integral: each row is integrated once and filled across, and rows are
+ * integrated in parallel.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class InsolationIntegrator {
+	
+	private static final Logger LOG = LogManager.getLogger(InsolationIntegrator.class);
+	
+	/**
+	 * Default quadrature tolerance, in Wh/m<sup>2</sup> per day.
+	 */
+	public static final double DEFAULT_TOLERANCE = 0.1d;
+	
+	private static final int MAX_DEPTH = 24;
+	private static final double HOURS_PER_DAY = 24d;
+	
+	private final double cellSize;
+	private final double tolerance;
+	
+	/**
+	 * @param cellSize
+	 *            grid cell size, in degrees
+	 */
+	public InsolationIntegrator(double cellSize) {
+		
+		this(cellSize, DEFAULT_TOLERANCE);
+	}
+	
+	/**
+	 * @param cellSize
+	 *            grid cell size, in degrees
+	 * @param tolerance
+	 *            quadrature tolerance, in Wh/m<sup>2</sup> per day
+	 */
+	public InsolationIntegrator(double cellSize, double tolerance) {
+		
+		if (cellSize <= 0d || cellSize > 90d)
+			throw new IllegalArgumentException("Cell size must be in (0,90] degrees.");
+		if (tolerance <= 0d)
+			throw new IllegalArgumentException("Tolerance must be positive.");
+		
+		this.cellSize = cellSize;
+		this.tolerance = tolerance;
+	}
+	
+	/**
+	 * Compute total insolation over the given calendar month.
+	 * 
+	 * @param month
+	 * @param executor
+	 * @return
+	 * @throws InterruptedException
+	 * @see #integrate(LocalDate, int, ListeningExecutorService)
+	 */
+	public InsolationGrid integrate(YearMonth month, ListeningExecutorService executor)
+			throws InterruptedException {
+		
+		return integrate(month.atDay(1), month.lengthOfMonth(), executor);
+	}
+	
+	/**
+	 * Compute total insolation (in kWh/m<sup>2</sup>) over the given span of local
+	 * days, for every cell of the grid.
+	 * 
+	 * @param firstDay
+	 * @param days
+	 * @param executor
+	 *            used to integrate grid-rows in parallel
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public InsolationGrid integrate(LocalDate firstDay, int days, ListeningExecutorService executor)
+			throws InterruptedException {
+		
+		if (days < 1)
+			throw new IllegalArgumentException("Must integrate over at least 1 day.");
+		
+		final InsolationGrid grid = new InsolationGrid(cellSize, firstDay, days);
+		
+		final int[] daysOfYear = new int[days];
+		for (int d = 0; d < days; d++)
+			daysOfYear[d] = firstDay.plusDays(d).getDayOfYear();
+		
+		final List<ListenableFuture<?>> rowFutures = new ArrayList<>(grid.getHeight());
+		for (int row = 0; row < grid.getHeight(); row++) {
+			final int r = row;
+			rowFutures.add(executor.submit(() -> {
+				
+				final double latitude = degreesToRadians(grid.getLatitude(r));
+				
+				double total = 0d;
+				for (int dayOfYear : daysOfYear)
+					total += integrateDay(latitude, dayOfYear, tolerance);
+				
+				grid.fillRow(r, (float) (total / 1000d));
+			}));
+		}
+		
+		try {
+			Futures.allAsList(rowFutures).get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Could not integrate insolation grid.", e.getCause());
+		}
+		
+		return grid;
+	}
+	
+	/**
+	 * Integrate horizontal irradiance between sunrise and sunset on the given
+	 * local day.
+	 * 
+	 * @param latitude
+	 *            in radians
+	 * @param dayOfYear
+	 *            (1-based) local day-of-year
+	 * @param tolerance
+	 *            quadrature tolerance, in Wh/m<sup>2</sup>
+	 * @return total insolation, in Wh/m<sup>2</sup>
+	 */
+	public static double integrateDay(double latitude, int dayOfYear, double tolerance) {
+		
+		final double solarDeclination = Solar.calculateSolarDeclination(dayOfYear);
+		final double sunriseHourAngle = Solar.calculateSunriseHourAngle(latitude, solarDeclination);
+		
+		if (sunriseHourAngle <= 0d)
+			return 0d;
+		
+		//
+		// The hour-angle is 0 at local solar noon and changes by 2*PI per day.
+		//
+		final double solarNoon = dayOfYear + 0.5d
+				- 2d * Solar.calculateEquationOfTime(dayOfYear + 0.5d) / Solar.MINUTES_PER_DAY;
+		final double halfDay = sunriseHourAngle / (2d * PI);
+		
+		final double sunrise = (sunriseHourAngle >= PI) ? dayOfYear : max(dayOfYear, solarNoon - halfDay);
+		final double sunset = (sunriseHourAngle >= PI) ? dayOfYear + 1d : min(dayOfYear + 1d, solarNoon + halfDay);
+		
+		final DoubleUnaryOperator irradiance = (t) -> Solar.calculateHorizontalIrradiance(Solar
+				.calculateSinSolarAltitude(latitude, solarDeclination, Solar.calculateSolarHourAngle(t)));
+		
+		// W/m^2 * days --> Wh/m^2
+		return HOURS_PER_DAY * integrate(irradiance, sunrise, sunset, tolerance / HOURS_PER_DAY);
+	}
+	
+	/**
+	 * Integrate the given function over [a,b] by adaptive Simpson quadrature.
+	 * 
+	 * @param f
+	 * @param a
+	 * @param b
+	 * @param tolerance
+	 *            absolute error tolerance
+	 * @return
+	 */
+	public static double integrate(DoubleUnaryOperator f, double a, double b, double tolerance) {
+		
+		if (b <= a)
+			return 0d;
+		
+		//
+		// Start from 4 panels, so that a narrow peak can't slip entirely between the
+		// initial sample-points.
+		//
+		final int panels = 4;
+		final double width = (b - a) / panels;
+		
+		double total = 0d;
+		double x0 = a, f0 = f.applyAsDouble(a);
+		for (int i = 1; i <= panels; i++) {
+			final double x1 = (i == panels) ? b : a + i * width;
+			final double xm = (x0 + x1) / 2d;
+			final double fm = f.applyAsDouble(xm), f1 = f.applyAsDouble(x1);
+			
+			total += integrate(f, x0, x1, f0, fm, f1, simpson(x0, x1, f0, fm, f1), tolerance / panels, MAX_DEPTH);
+			
+			x0 = x1;
+			f0 = f1;
+		}
+		
+		return total;
+	}
+	
+	private static double integrate(DoubleUnaryOperator f, double a, double b, double fa, double fm, double fb,
+			double whole, double tolerance, int depth) {
+		
+		final double m = (a + b) / 2d;
+		final double lm = (a + m) / 2d, rm = (m + b) / 2d;
+		final double flm = f.applyAsDouble(lm), frm = f.applyAsDouble(rm);
+		
+		final double left = simpson(a, m, fa, flm, fm), right = simpson(m, b, fm, frm, fb);
+		final double delta = left + right - whole;
+		
+		if (depth <= 0 || abs(delta) <= 15d * tolerance)
+			return left + right + delta / 15d;
+		
+		return integrate(f, a, m, fa, flm, fm, left, tolerance / 2d, depth - 1)
+				+ integrate(f, m, b, fm, frm, fb, right, tolerance / 2d, depth - 1);
+	}
+	
+	private static double simpson(double a, double b, double fa, double fm, double fb) {
+		
+		return (b - a) / 6d * (fa + 4d * fm + fb);
+	}
+	
+	/**
+	 * Command-line entry point:
+	 * 
+	 * <pre>
+	 * InsolationIntegrator [cell-size] [yyyy-MM-dd | yyyy-MM] [output-prefix]
+	 * </pre>
+	 * 
+	 * Writes {@code [output-prefix].png} and {@code [output-prefix].bin}, and
+	 * logs the time taken by each step.
+	 * 
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		
+		final double cellSize = (args.length > 0) ? Double.parseDouble(args[0]) : 0.1d;
+		final String period = (args.length > 1) ? args[1] : YearMonth.now().toString();
+		final String outputPrefix = (args.length > 2) ? args[2] : "insolation";
+		
+		LocalDate firstDay;
+		int days;
+		try {
+			firstDay = LocalDate.parse(period);
+			days = 1;
+		} catch (DateTimeParseException e) {
+			final YearMonth month = YearMonth.parse(period);
+			firstDay = month.atDay(1);
+			days = month.lengthOfMonth();
+		}
+		
+		final ListeningExecutorService executor = MoreExecutors
+				.listeningDecorator(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+		try {
+			final InsolationIntegrator integrator = new InsolationIntegrator(cellSize);
+			
+			long start = System.nanoTime();
+			final InsolationGrid grid = integrator.integrate(firstDay, days, executor);
+			LOG.info("Integrated {}x{} grid ({} degree cells) over {} day(s) from {} in {} ms", grid.getWidth(),
+					grid.getHeight(), cellSize, days, firstDay, (System.nanoTime() - start) / 1000000L);
+			
+			start = System.nanoTime();
+			grid.writeImage(new File(outputPrefix + ".png"));
+			LOG.info("Wrote {}.png in {} ms", outputPrefix, (System.nanoTime() - start) / 1000000L);
+			
+			start = System.nanoTime();
+			grid.writeBinary(new File(outputPrefix + ".bin"));
+			LOG.info("Wrote {}.bin in {} ms", outputPrefix, (System.nanoTime() - start) / 1000000L);
+			
+		} catch (InterruptedException e) {
+			LOG.warn("Interrupted while integrating insolation.");
+		} catch (IOException e) {
+			LOG.error("Cannot write insolation output.", e);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,394 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.solar;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.acos;
+import static java.lang.Math.asin;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.pow;
+import static java.lang.Math.sin;
+import static org.snowjak.sunclock.Util.clamp;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+import static org.snowjak.sunclock.Util.window;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoField;
+
+import org.snowjak.sunclock.DoublePair;
+import org.snowjak.sunclock.pool.Pools;
+
+/**
+ * The solar model used throughout the application.
+ * <p>
+ * Time is expressed as a fractional day-of-year (i.e., {@code 1.5} is noon on
+ * January 1st). "Local" time is simply UTC time offset by longitude, and so is
+ * local mean time rather than civil time. All angles are in radians unless
+ * otherwise noted.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class Solar {
+	
+	public static final double SECONDS_PER_DAY = 60d * 60d * 24d;
+	public static final double MINUTES_PER_DAY = 60d * 24d;
+	
+	/**
+	 * Extraterrestrial solar irradiance, in W/m<sup>2</sup>.
+	 */
+	public static final double SOLAR_CONSTANT = 1353d;
+	
+	private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+	private static final ZoneId UTC = ZoneId.of("UTC");
+	
+	/**
+	 * Calculate the current exposure to the sun (i.e., the cosine of the angle of
+	 * incidence on a horizontal surface) at the given location and time, in [0,1].
+	 * 
+	 * @param latLong
+	 *            latitude/longitude, in degrees
+	 * @param now
+	 * @return
+	 */
+	public static double calculateSunExposure(DoublePair latLong, ZonedDateTime now) {
+		
+		final double sinSolarAltitude = calculateSinSolarAltitude(latLong, now);
+		return (sinSolarAltitude < 0d) ? 0d : sinSolarAltitude;
+	}
+	
+	/**
+	 * Calculate the direct irradiance (in W/m<sup>2</sup>) falling on a horizontal
+	 * surface at the given location and time.
+	 * 
+	 * @param latLong
+	 *            latitude/longitude, in degrees
+	 * @param now
+	 * @return
+	 * @see #calculateHorizontalIrradiance(double)
+	 */
+	public static double calculateIrradiance(DoublePair latLong, ZonedDateTime now) {
+		
+		return calculateHorizontalIrradiance(calculateSinSolarAltitude(latLong, now));
+	}
+	
+	/**
+	 * Calculate the sine of the sun's altitude above the horizon at the given
+	 * location and time.
+	 * 
+	 * @param latLong
+	 *            latitude/longitude, in degrees
+	 * @param now
+	 * @return
+	 */
+	public static double calculateSinSolarAltitude(DoublePair latLong, ZonedDateTime now) {
+		
+		final double latitude = degreesToRadians(window(latLong.getX(), -90d, +90d));
+		final double longitude = degreesToRadians(window(latLong.getY(), -180d, +180d));
+		
+		return calculateSinSolarAltitudeUTC(latitude, longitude, getFractionalDayOfYear(now));
+	}
+	
+	/**
+	 * Calculate the sine of the sun's altitude above the horizon at the given
+	 * location and (UTC) time.
+	 * 
+	 * @param latitude
+	 *            in radians
+	 * @param longitude
+	 *            in radians
+	 * @param nowUTC
+	 *            fractional day-of-year, in UTC
+	 * @return
+	 */
+	public static double calculateSinSolarAltitudeUTC(double latitude, double longitude, double nowUTC) {
+		
+		final double nowLocal = getLocalTime(nowUTC, longitude);
+		final double solarDeclination = calculateSolarDeclination(floor(nowLocal));
+		final double solarHourAngle = calculateSolarHourAngle(nowLocal);
+		
+		return calculateSinSolarAltitude(latitude, solarDeclination, solarHourAngle);
+	}
+	
+	/**
+	 * Calculate the sine of the sun's altitude above the horizon, given the
+	 * observer's latitude and the sun's declination and hour-angle.
+	 * 
+	 * @param latitude
+	 * @param solarDeclination
+	 * @param solarHourAngle
+	 * @return
+	 */
+	public static double calculateSinSolarAltitude(double latitude, double solarDeclination,
+			double solarHourAngle) {
+		
+		return cos(latitude) * cos(solarDeclination) * cos(solarHourAngle) + sin(latitude) * sin(solarDeclination);
+	}
+	
+	/**
+	 * Calculate the sub-solar point -- the location at which the sun is directly
+	 * overhead -- at the given time.
+	 * <p>
+	 * Because the solar declination changes at local midnight, the sun's altitude
+	 * elsewhere is only approximately the angular distance from this point (to
+	 * within about half a degree).
+	 * </p>
+	 * 
+	 * @param nowUTC
+	 *            fractional day-of-year, in UTC
+	 * @return latitude/longitude of the sub-solar point, in degrees
+	 */
+	public static DoublePair calculateSubsolarPoint(double nowUTC) {
+		
+		//
+		// The hour-angle at longitude L is (Ls - L) for some Ls, which depends on the
+		// equation of time at Ls -- so refine Ls once.
+		//
+		final double fractionalUTC = nowUTC - floor(nowUTC);
+		double longitude = window(PI - 2d * PI * fractionalUTC, -PI, +PI);
+		longitude = window(PI - 2d * PI * fractionalUTC
+				- 4d * PI * calculateEquationOfTime(getLocalTime(nowUTC, longitude)) / MINUTES_PER_DAY, -PI, +PI);
+		
+		final double nowLocal = getLocalTime(nowUTC, longitude);
+		final double solarDeclination = calculateSolarDeclination(floor(nowLocal));
+		
+		final DoublePair result = Pools.getPool(DoublePair.class).getInstance();
+		result.set(radiansToDegrees(solarDeclination), radiansToDegrees(longitude));
+		return result;
+	}
+	
+	/**
+	 * Convert the given date/time to a fractional day-of-year, in UTC.
+	 * 
+	 * @param now
+	 * @return
+	 */
+	public static double getFractionalDayOfYear(ZonedDateTime now) {
+		
+		final ZonedDateTime utc = now.withZoneSameInstant(UTC);
+		return (double) utc.getLong(ChronoField.DAY_OF_YEAR)
+				+ (double) utc.getLong(ChronoField.SECOND_OF_DAY) / SECONDS_PER_DAY;
+	}
+	
+	/**
+	 * Offset the given UTC time by the given longitude.
+	 * 
+	 * @param nowUTC
+	 *            fractional day-of-year, in UTC
+	 * @param longitude
+	 *            in radians
+	 * @return fractional day-of-year, in local (mean) time
+	 */
+	public static double getLocalTime(double nowUTC, double longitude) {
+		
+		return nowUTC + (longitude / (2d * PI));
+	}
+	
+	/**
+	 * Calculate the sun's declination on the given (local) day-of-year.
+	 * 
+	 * @param localDay
+	 *            (integral) day-of-year
+	 * @return
+	 */
+	public static double calculateSolarDeclination(double localDay) {
+		
+		return degreesToRadians(23.45d) * sin(degreesToRadians(360d / 365d * (localDay - 81d)));
+	}
+	
+	/**
+	 * Calculate the equation of time, in minutes.
+	 * 
+	 * @param nowLocal
+	 *            fractional day-of-year, in local time
+	 * @return
+	 */
+	public static double calculateEquationOfTime(double nowLocal) {
+		
+		final double longitudeCorrection = degreesToRadians((360d / 364d) * (nowLocal - 81d));
+		return 9.87d * sin(2d * longitudeCorrection) - 7.53d * cos(longitudeCorrection)
+				- 1.5d * sin(longitudeCorrection);
+	}
+	
+	/**
+	 * Calculate the sun's hour-angle -- positive before local solar noon, negative
+	 * after.
+	 * 
+	 * @param nowLocal
+	 *            fractional day-of-year, in local time
+	 * @return
+	 */
+	public static double calculateSolarHourAngle(double nowLocal) {
+		
+		return calculateSolarHourAngle(nowLocal, calculateEquationOfTime(nowLocal));
+	}
+	
+	/**
+	 * Calculate the sun's hour-angle, given a precomputed equation of time.
+	 * 
+	 * @param nowLocal
+	 *            fractional day-of-year, in local time
+	 * @param equationOfTime
+	 *            in minutes
+	 * @return
+	 * @see #calculateSolarHourAngle(double)
+	 */
+	public static double calculateSolarHourAngle(double nowLocal, double equationOfTime) {
+		
+		final double localSolarNoonFractional = ((MINUTES_PER_DAY / 2d) - equationOfTime) / MINUTES_PER_DAY;
+		final double localSolarNoon = floor(nowLocal) + localSolarNoonFractional;
+		final double localSolarTime = (nowLocal * MINUTES_PER_DAY + equationOfTime) / MINUTES_PER_DAY;
+		final double localTilSolarNoon = localSolarNoon - localSolarTime;
+		
+		return 2d * PI * localTilSolarNoon;
+	}
+	
+	/**
+	 * Calculate the hour-angle at which the sun crosses the horizon, for the given
+	 * latitude and solar declination. This is {@code 0} if the sun does not rise
+	 * at all (polar night), and {@code PI} if it does not set (polar day).
+	 * 
+	 * @param latitude
+	 * @param solarDeclination
+	 * @return an hour-angle in [0,PI]
+	 */
+	public static double calculateSunriseHourAngle(double latitude, double solarDeclination) {
+		
+		return calculateHourAngleAtAltitude(latitude, solarDeclination, 0d);
+	}
+	
+	/**
+	 * Calculate the hour-angle at which the sun crosses the given altitude, for the
+	 * given latitude and solar declination. This is {@code 0} if the sun never
+	 * rises as high as that altitude, and {@code PI} if it never sinks as low.
+	 * 
+	 * @param latitude
+	 * @param solarDeclination
+	 * @param altitude
+	 * @return an hour-angle in [0,PI]
+	 */
+	public static double calculateHourAngleAtAltitude(double latitude, double solarDeclination, double altitude) {
+		
+		final double cosHourAngle = (sin(altitude) - sin(latitude) * sin(solarDeclination))
+				/ (cos(latitude) * cos(solarDeclination));
+		return acos(clamp(cosHourAngle, -1d, +1d));
+	}
+	
+	/**
+	 * Find the next instant, strictly after the given time, at which the sun
+	 * crosses the given altitude at the given location.
+	 * 
+	 * @param latitude
+	 *            in radians
+	 * @param longitude
+	 *            in radians
+	 * @param altitude
+	 *            in radians (e.g., {@code 0} for sunrise/sunset)
+	 * @param rising
+	 *            {@code true} to find the sun's next rising through the given
+	 *            altitude, {@code false} to find its next setting
+	 * @param after
+	 *            epoch milliseconds
+	 * @return the crossing-instant, in epoch milliseconds, or
+	 *         {@link Long#MAX_VALUE} if the sun does not cross that altitude
+	 *         within the next year
+	 */
+	public static long calculateNextCrossing(double latitude, double longitude, double altitude, boolean rising,
+			long after) {
+		
+		final LocalDate firstDay = LocalDate.ofEpochDay(Math.floorDiv(after, MILLIS_PER_DAY)).minusDays(1);
+		
+		for (int i = 0; i <= 367; i++) {
+			final LocalDate day = firstDay.plusDays(i);
+			final int localDay = day.getDayOfYear();
+			
+			final double hourAngle = calculateHourAngleAtAltitude(latitude, calculateSolarDeclination(localDay),
+					altitude);
+			if (hourAngle <= 0d || hourAngle >= PI)
+				continue;
+			
+			//
+			// Solve H = 2*PI*(day + 0.5 - t - 2*EoT(t)/MINUTES_PER_DAY) for t. The
+			// equation of time changes so slowly that fixed-point iteration converges
+			// almost immediately.
+			//
+			final double dayFraction = (rising ? hourAngle : -hourAngle) / (2d * PI);
+			double nowLocal = localDay + 0.5d - dayFraction;
+			for (int j = 0; j < 3; j++)
+				nowLocal = localDay + 0.5d - 2d * calculateEquationOfTime(nowLocal) / MINUTES_PER_DAY - dayFraction;
+			
+			if (floor(nowLocal) != localDay)
+				continue;
+			
+			final double nowUTC = nowLocal - longitude / (2d * PI);
+			final long crossing = Math.round((double) (day.toEpochDay() - localDay) * MILLIS_PER_DAY
+					+ nowUTC * MILLIS_PER_DAY);
+			if (crossing > after)
+				return crossing;
+		}
+		
+		return Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Calculate the air-mass ratio -- the length of the sun's path through the
+	 * atmosphere, relative to its path when directly overhead -- using the
+	 * Kasten-Young formula. Unlike the simpler {@code 1/sin(altitude)}, this
+	 * remains finite at the horizon.
+	 * 
+	 * @param sinSolarAltitude
+	 * @return the air-mass ratio, or {@link Double#POSITIVE_INFINITY} if the sun
+	 *         is below the horizon
+	 */
+	public static double calculateAirMassRatio(double sinSolarAltitude) {
+		
+		if (sinSolarAltitude < 0d)
+			return Double.POSITIVE_INFINITY;
+		
+		final double zenithDegrees = 90d - radiansToDegrees(asin(sinSolarAltitude));
+		return 1d / (sinSolarAltitude + 0.50572d * pow(96.07995d - zenithDegrees, -1.6364d));
+	}
+	
+	/**
+	 * Calculate the direct irradiance (in W/m<sup>2</sup>) falling on a surface
+	 * normal to the sun's rays, attenuated by the atmosphere (after Meinel &amp;
+	 * Meinel).
+	 * 
+	 * @param sinSolarAltitude
+	 * @return
+	 */
+	public static double calculateDirectIrradiance(double sinSolarAltitude) {
+		
+		if (sinSolarAltitude <= 0d)
+			return 0d;
+		
+		return SOLAR_CONSTANT * pow(0.7d, pow(calculateAirMassRatio(sinSolarAltitude), 0.678d));
+	}
+	
+	/**
+	 * Calculate the direct irradiance (in W/m<sup>2</sup>) falling on a horizontal
+	 * surface -- i.e., {@link #calculateDirectIrradiance(double) direct
+	 * irradiance} scaled by the cosine of the angle of incidence (which, for a
+	 * horizontal surface, is the sine of the solar altitude).
+	 * 
+	 * @param sinSolarAltitude
+	 * @return
+	 */
+	public static double calculateHorizontalIrradiance(double sinSolarAltitude) {
+		
+		if (sinSolarAltitude <= 0d)
+			return 0d;
+		
+		return calculateDirectIrradiance(sinSolarAltitude) * sinSolarAltitude;
+	}
+	
+	private Solar() {
+		
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.solar;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.sin;
+
+import java.time.LocalDate;
+
+/**
+ * Caches those {@link Solar} terms which vary only from day to day, so that
+ * large batches of samples can be evaluated without recomputing them.
+ * <p>
+ * Solar declination is tabulated exactly for every local day-of-year the model
+ * can produce (including the day before January 1st and the day after December
+ * 31st, which appear at the extreme longitudes). The equation of time is
+ * tabulated at each day boundary and linearly interpolated in between, which is
+ * accurate to well under a second.
+ * </p>
+ * <p>
+ * Instances also cache the current UTC day, so converting a time-ordered
+ * sequence of epoch-millisecond timestamps to {@link Solar} time is cheap. For
+ * this reason, instances are <strong>not</strong> thread-safe.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class SolarDayTable {
+	
+	private static final long MILLIS_PER_DAY = 24L * 60L * 60L * 1000L;
+	
+	/**
+	 * Local days-of-year range over [0,367]. Tables are offset by 1, so that
+	 * {@code table[day + 1]} is the entry for {@code day}.
+	 */
+	private static final int FIRST_DAY = -1, LAST_DAY = 368;
+	
+	private static final double[] SIN_DECLINATION, COS_DECLINATION, EQUATION_OF_TIME;
+	
+	static {
+		final int size = LAST_DAY - FIRST_DAY + 1;
+		SIN_DECLINATION = new double[size];
+		COS_DECLINATION = new double[size];
+		EQUATION_OF_TIME = new double[size];
+		
+		for (int i = 0; i < size; i++) {
+			final int day = i + FIRST_DAY;
+			final double declination = Solar.calculateSolarDeclination(day);
+			SIN_DECLINATION[i] = sin(declination);
+			COS_DECLINATION[i] = cos(declination);
+			EQUATION_OF_TIME[i] = Solar.calculateEquationOfTime(day);
+		}
+	}
+	
+	private long currentDayStart = Long.MIN_VALUE, currentDayEnd = Long.MIN_VALUE;
+	private int currentDayOfYear;
+	
+	/**
+	 * Convert the given epoch-millisecond timestamp to a fractional day-of-year,
+	 * in UTC.
+	 * 
+	 * @param epochMillis
+	 * @return
+	 * @see Solar#getFractionalDayOfYear(java.time.ZonedDateTime)
+	 */
+	public double getFractionalDayOfYear(long epochMillis) {
+		
+		if (epochMillis < currentDayStart || epochMillis >= currentDayEnd) {
+			final long epochDay = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+			currentDayStart = epochDay * MILLIS_PER_DAY;
+			currentDayEnd = currentDayStart + MILLIS_PER_DAY;
+			currentDayOfYear = LocalDate.ofEpochDay(epochDay).getDayOfYear();
+		}
+		
+		return (double) currentDayOfYear + (double) (epochMillis - currentDayStart) / (double) MILLIS_PER_DAY;
+	}
+	
+	/**
+	 * Calculate the sine of the sun's altitude above the horizon.
+	 * 
+	 * @param sinLatitude
+	 * @param cosLatitude
+	 * @param nowLocal
+	 *            fractional day-of-year, in local time
+	 * @return
+	 * @see Solar#calculateSinSolarAltitudeUTC(double, double, double)
+	 */
+	public static double calculateSinSolarAltitude(double sinLatitude, double cosLatitude, double nowLocal) {
+		
+		final double localDay = floor(nowLocal);
+		final int i = (int) localDay - FIRST_DAY;
+		
+		final double fraction = nowLocal - localDay;
+		final double equationOfTime = EQUATION_OF_TIME[i] + (EQUATION_OF_TIME[i + 1] - EQUATION_OF_TIME[i]) * fraction;
+		
+		final double solarHourAngle = Solar.calculateSolarHourAngle(nowLocal, equationOfTime);
+		
+		return cosLatitude * COS_DECLINATION[i] * cos(solarHourAngle) + sinLatitude * SIN_DECLINATION[i];
+	}
+	
+	/**
+	 * @param nowLocal
+	 *            fractional day-of-year, in local time
+	 * @return the sine of the solar declination on the given local day
+	 */
+	public static double getSinSolarDeclination(double nowLocal) {
+		
+		return SIN_DECLINATION[(int) floor(nowLocal) - FIRST_DAY];
+	}
+	
+	/**
+	 * @param nowLocal
+	 *            fractional day-of-year, in local time
+	 * @return the cosine of the solar declination on the given local day
+	 */
+	public static double getCosSolarDeclination(double nowLocal) {
+		
+		return COS_DECLINATION[(int) floor(nowLocal) - FIRST_DAY];
+	}
+}
@@ -0,0 +1,325 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock.solar;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.abs;
+import static java.lang.Math.acos;
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static org.snowjak.sunclock.Util.clamp;
+import static org.snowjak.sunclock.Util.degreesToRadians;
+import static org.snowjak.sunclock.Util.radiansToDegrees;
+
+/**
+ * Analyzes a time-ordered track of position reports (e.g., from an aircraft or
+ * vessel), reporting the sun's exposure and altitude at each report, and the
+ * exact instants at which the track crosses the terminator.
+ * <p>
+ * Samples are streamed in one at a time via {@link #accept(long, double, double)}
+ * (or in bulk via {@link #analyze(long[], double[], double[], double[], double[], int, int)}).
+ * Between consecutive samples, the observer is assumed to move along the
+ * great-circle between the two positions at constant speed. Where the solar
+ * altitude changes sign between two samples, the crossing is located by
+ * root-finding (Illinois false-position) to within the configured tolerance.
+ * Note that, if a track enters and leaves daylight between two consecutive
+ * samples, neither crossing will be detected.
+ * </p>
+ * <p>
+ * Per-day solar terms come from a {@link SolarDayTable}, so each sample costs
+ * only a handful of floating-point operations. Instances are <strong>not</strong>
+ * thread-safe; use one per track.
+ * </p>
+ * 
+ * @author snowjak88
+ *
+ */
+public class TrajectoryAnalyzer {
+	
+	/**
+	 * Default tolerance used when locating terminator-crossings, in milliseconds.
+	 */
+	public static final long DEFAULT_TOLERANCE = 1000L;
+	
+	private static final int MAX_ITERATIONS = 64;
+	
+	private final Listener listener;
+	private final long tolerance;
+	private final SolarDayTable dayTable = new SolarDayTable();
+	
+	private boolean hasPrevious = false;
+	private long previousTime;
+	private double previousLatitude, previousLongitude, previousSinAltitude;
+	
+	private long sampleCount = 0, crossingCount = 0;
+	
+	/**
+	 * @param listener
+	 *            receives per-sample results and terminator-crossings
+	 */
+	public TrajectoryAnalyzer(Listener listener) {
+		
+		this(listener, DEFAULT_TOLERANCE);
+	}
+	
+	/**
+	 * @param listener
+	 *            receives per-sample results and terminator-crossings
+	 * @param tolerance
+	 *            maximum error in reported crossing-instants, in milliseconds
+	 */
+	public TrajectoryAnalyzer(Listener listener, long tolerance) {
+		
+		if (tolerance < 1)
+			throw new IllegalArgumentException("Tolerance must be at least 1 millisecond.");
+		
+		this.listener = listener;
+		this.tolerance = tolerance;
+	}
+	
+	/**
+	 * Accept the next position report in this track.
+	 * 
+	 * @param time
+	 *            epoch milliseconds; must not be earlier than the previous report
+	 * @param latitude
+	 *            in degrees
+	 * @param longitude
+	 *            in degrees
+	 * @throws IllegalArgumentException
+	 *             if this report is earlier than the previous one
+	 */
+	public void accept(long time, double latitude, double longitude) {
+		
+		final double sinAltitude = calculateSinSolarAltitude(time, latitude, longitude);
+		
+		process(time, latitude, longitude, sinAltitude);
+		
+		if (listener != null)
+			listener.onSample(time, latitude, longitude, (sinAltitude < 0d) ? 0d : sinAltitude,
+					radiansToDegrees(fastAsin(clamp(sinAltitude, -1d, +1d))));
+	}
+	
+	/**
+	 * Analyze a batch of position reports, writing per-sample results into the
+	 * given arrays instead of notifying the {@link Listener} of each sample.
+	 * Terminator-crossings are still reported to the Listener.
+	 * 
+	 * @param times
+	 *            epoch milliseconds, in non-decreasing order
+	 * @param latitudes
+	 *            in degrees
+	 * @param longitudes
+	 *            in degrees
+	 * @param exposures
+	 *            receives the sun-exposure at each sample (may be {@code null})
+	 * @param altitudes
+	 *            receives the solar altitude (in degrees) at each sample (may be
+	 *            {@code null})
+	 * @param offset
+	 * @param length
+	 */
+	public void analyze(long[] times, double[] latitudes, double[] longitudes, double[] exposures,
+			double[] altitudes, int offset, int length) {
+		
+		for (int i = offset; i < offset + length; i++) {
+			final double sinAltitude = calculateSinSolarAltitude(times[i], latitudes[i], longitudes[i]);
+			
+			process(times[i], latitudes[i], longitudes[i], sinAltitude);
+			
+			if (exposures != null)
+				exposures[i] = (sinAltitude < 0d) ? 0d : sinAltitude;
+			if (altitudes != null)
+				altitudes[i] = radiansToDegrees(fastAsin(clamp(sinAltitude, -1d, +1d)));
+		}
+	}
+	
+	/**
+	 * Forget the previous position report, so that the next report begins a new
+	 * track.
+	 */
+	public void reset() {
+		
+		hasPrevious = false;
+	}
+	
+	public long getSampleCount() {
+		
+		return sampleCount;
+	}
+	
+	public long getCrossingCount() {
+		
+		return crossingCount;
+	}
+	
+	private void process(long time, double latitude, double longitude, double sinAltitude) {
+		
+		if (hasPrevious) {
+			if (time < previousTime)
+				throw new IllegalArgumentException("Position reports must be in time order.");
+			
+			if ((previousSinAltitude < 0d) != (sinAltitude < 0d))
+				findCrossing(previousTime, previousLatitude, previousLongitude, previousSinAltitude, time, latitude,
+						longitude, sinAltitude);
+		}
+		
+		hasPrevious = true;
+		previousTime = time;
+		previousLatitude = latitude;
+		previousLongitude = longitude;
+		previousSinAltitude = sinAltitude;
+		sampleCount++;
+	}
+	
+	private void findCrossing(long t0, double lat0, double lng0, double f0, long t1, double lat1, double lng1,
+			double f1) {
+		
+		//
+		// Unit vectors for the two endpoints, so we can interpolate along the
+		// great-circle between them.
+		//
+		final double phi0 = degreesToRadians(lat0), lambda0 = degreesToRadians(lng0);
+		final double phi1 = degreesToRadians(lat1), lambda1 = degreesToRadians(lng1);
+		final double x0 = cos(phi0) * cos(lambda0), y0 = cos(phi0) * sin(lambda0), z0 = sin(phi0);
+		final double x1 = cos(phi1) * cos(lambda1), y1 = cos(phi1) * sin(lambda1), z1 = sin(phi1);
+		final double omega = acos(clamp(x0 * x1 + y0 * y1 + z0 * z1, -1d, +1d));
+		final double sinOmega = sin(omega);
+		
+		final boolean sunrise = (f1 >= 0d);
+		final double[] position = new double[2];
+		
+		//
+		// Illinois false-position over s in [0,1].
+		//
+		double a = 0d, fa = f0, b = 1d, fb = f1;
+		int side = 0;
+		double s = 0d;
+		long time = t0;
+		
+		for (int i = 0; i < MAX_ITERATIONS; i++) {
+			s = (a * fb - b * fa) / (fb - fa);
+			time = t0 + Math.round(s * (double) (t1 - t0));
+			
+			interpolate(s, omega, sinOmega, x0, y0, z0, x1, y1, z1, position);
+			final double fs = calculateSinSolarAltitude(time, position[0], position[1]);
+			
+			if ((b - a) * (double) (t1 - t0) <= tolerance || fs == 0d)
+				break;
+			
+			if ((fs < 0d) == (fb < 0d)) {
+				b = s;
+				fb = fs;
+				if (side == -1)
+					fa /= 2d;
+				side = -1;
+			} else {
+				a = s;
+				fa = fs;
+				if (side == +1)
+					fb /= 2d;
+				side = +1;
+			}
+		}
+		
+		crossingCount++;
+		if (listener != null)
+			listener.onTerminatorCrossing(time, position[0], position[1], sunrise);
+	}
+	
+	private static void interpolate(double s, double omega, double sinOmega, double x0, double y0, double z0,
+			double x1, double y1, double z1, double[] latLong) {
+		
+		final double w0, w1;
+		if (sinOmega < 1e-9) {
+			w0 = 1d - s;
+			w1 = s;
+		} else {
+			w0 = sin((1d - s) * omega) / sinOmega;
+			w1 = sin(s * omega) / sinOmega;
+		}
+		
+		final double x = w0 * x0 + w1 * x1, y = w0 * y0 + w1 * y1, z = w0 * z0 + w1 * z1;
+		
+		latLong[0] = radiansToDegrees(atan2(z, sqrt(x * x + y * y)));
+		latLong[1] = radiansToDegrees(atan2(y, x));
+	}
+	
+	private double calculateSinSolarAltitude(long time, double latitude, double longitude) {
+		
+		final double phi = degreesToRadians(latitude);
+		final double nowLocal = Solar.getLocalTime(dayTable.getFractionalDayOfYear(time),
+				degreesToRadians(wrapLongitude(longitude)));
+		
+		return SolarDayTable.calculateSinSolarAltitude(sin(phi), cos(phi), nowLocal);
+	}
+	
+	/**
+	 * Approximate {@code asin(x)} to within 2e-8 radians (Abramowitz &amp; Stegun
+	 * 4.4.46). {@link Math#asin(double)} is not intrinsified, and otherwise
+	 * dominates the cost of each sample.
+	 * 
+	 * @param x
+	 *            in [-1,1]
+	 * @return
+	 */
+	private static double fastAsin(double x) {
+		
+		final double ax = abs(x);
+		final double p = 1.5707963050d + ax * (-0.2145988016d + ax * (0.0889789874d + ax * (-0.0501743046d
+				+ ax * (0.0308918810d + ax * (-0.0170881256d + ax * (0.0066700901d + ax * -0.0012624911d))))));
+		final double result = PI / 2d - sqrt(1d - ax) * p;
+		
+		return (x < 0d) ? -result : result;
+	}
+	
+	private static double wrapLongitude(double longitude) {
+		
+		if (longitude >= -180d && longitude <= 180d)
+			return longitude;
+		
+		final double wrapped = (longitude + 180d) % 360d;
+		return ((wrapped < 0d) ? wrapped + 360d : wrapped) - 180d;
+	}
+	
+	/**
+	 * Receives the results of a {@link TrajectoryAnalyzer}.
+	 * 
+	 * @author snowjak88
+	 *
+	 */
+	public interface Listener {
+		
+		/**
+		 * Called for each position report.
+		 * 
+		 * @param time
+		 *            epoch milliseconds
+		 * @param latitude
+		 * @param longitude
+		 * @param exposure
+		 *            sun exposure, in [0,1]
+		 * @param solarAltitude
+		 *            in degrees
+		 */
+		public void onSample(long time, double latitude, double longitude, double exposure, double solarAltitude);
+		
+		/**
+		 * Called when the track crosses the terminator.
+		 * 
+		 * @param time
+		 *            epoch milliseconds
+		 * @param latitude
+		 *            interpolated latitude at the crossing
+		 * @param longitude
+		 *            interpolated longitude at the crossing
+		 * @param sunrise
+		 *            {@code true} if the track is passing into daylight,
+		 *            {@code false} if into darkness
+		 */
+		public void onTerminatorCrossing(long time, double latitude, double longitude, boolean sunrise);
+	}
+}
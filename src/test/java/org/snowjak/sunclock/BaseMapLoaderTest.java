@@ -0,0 +1,154 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.render.BaseMapLoader;
+import org.snowjak.sunclock.render.BaseMapLoader.BaseMap;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class BaseMapLoaderTest {
+	
+	private static final String IMAGE_NAME = "projections/equirectangular.jpg";
+	
+	@Test
+	public void calculateSubsampling() {
+		
+		assertEquals("Full resolution when no target given", 1, BaseMapLoader.calculateSubsampling(2000, 1000, 0, 0));
+		assertEquals("Full resolution when target is larger", 1,
+				BaseMapLoader.calculateSubsampling(2000, 1000, 4000, 2000));
+		assertEquals("Limited by the tighter dimension", 2, BaseMapLoader.calculateSubsampling(2000, 1000, 500, 400));
+	}
+	
+	@Test
+	public void decode_subsamplesToTarget() throws Exception {
+		
+		final List<BaseMap> placeholders = new ArrayList<>();
+		
+		final BaseMap baseMap;
+		try (InputStream stream = BaseMapLoaderTest.class.getClassLoader().getResourceAsStream(IMAGE_NAME)) {
+			baseMap = BaseMapLoader.decode(stream, 500, 250, placeholders::add);
+		}
+		
+		assertEquals("One placeholder", 1, placeholders.size());
+		assertTrue("Placeholder", placeholders.get(0).isPlaceholder());
+		assertEquals("Placeholder aspect-ratio", (double) baseMap.getSourceWidth() / baseMap.getSourceHeight(),
+				(double) placeholders.get(0).getImage().getWidth() / placeholders.get(0).getImage().getHeight(),
+				0.05);
+		
+		assertFalse("Decoded image", baseMap.isPlaceholder());
+		assertEquals("Subsampling", 4, baseMap.getSubsampling());
+		assertTrue("Decoded width should cover the target", baseMap.getImage().getWidth() >= 500);
+		assertTrue("Decoded height should cover the target", baseMap.getImage().getHeight() >= 250);
+		assertTrue("Should be too small for a larger target", baseMap.isTooSmallFor(1000, 500));
+		assertFalse("Should not be too small for the target", baseMap.isTooSmallFor(500, 250));
+	}
+	
+	@Test
+	public void load_reprojectsToCanvasSize() throws Exception {
+		
+		final BaseMapLoader loader = new BaseMapLoader();
+		try {
+			final List<BaseMap> placeholders = new ArrayList<>();
+			final BaseMap baseMap = loader.load(StandardProjection.CASSINI, 400, 300, placeholders::add).get();
+			
+			assertTrue("Reprojected", baseMap.isReprojected());
+			assertEquals("Width fits the projection's aspect-ratio", 150, baseMap.getImage().getWidth());
+			assertEquals("Height fills the canvas", 300, baseMap.getImage().getHeight());
+			assertEquals("One placeholder", 1, placeholders.size());
+			assertFalse("Suitable for its own size", baseMap.isUnsuitableFor(150, 300));
+			assertTrue("Unsuitable for any other size", baseMap.isUnsuitableFor(140, 280));
+		} finally {
+			loader.dispose();
+		}
+	}
+	
+	@Test
+	public void loadNightMap_defaultsToBundledImage() throws Exception {
+		
+		final BaseMapLoader loader = new BaseMapLoader();
+		try {
+			final BufferedImage nightMap = loader.loadNightMap(null, StandardProjection.EQUIRECTANGULAR, 400, 300)
+					.get();
+			final BufferedImage dayMap = loader.load(StandardProjection.EQUIRECTANGULAR, 400, 300, null).get()
+					.getImage();
+			
+			assertEquals("Width fills the canvas", 400, nightMap.getWidth());
+			assertEquals("Height fits the projection's aspect-ratio", 200, nightMap.getHeight());
+			
+			//
+			// Mostly dark, but with some lights.
+			//
+			final double night = getMeanBrightness(nightMap), day = getMeanBrightness(dayMap);
+			assertTrue("Night (" + night + ") darker than day (" + day + ")", night < day / 3d);
+			
+			int brightest = 0;
+			for (int y = 0; y < nightMap.getHeight(); y++)
+				for (int x = 0; x < nightMap.getWidth(); x++)
+					brightest = Math.max(brightest, (nightMap.getRGB(x, y) >> 16) & 0xff);
+			assertTrue("Some lights", brightest > 128);
+		} finally {
+			loader.dispose();
+		}
+	}
+	
+	@Test
+	public void loadNightMap_decodesAgainWhenTooSmall() throws Exception {
+		
+		//
+		// Fine stripes, which survive only if the image is decoded in full.
+		//
+		final BufferedImage striped = new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < striped.getHeight(); y++)
+			for (int x = 0; x < striped.getWidth(); x++)
+				striped.setRGB(x, y, (x % 5 < 2) ? 0xffffff : 0x000000);
+		
+		final File file = File.createTempFile("night-map", ".png");
+		file.deleteOnExit();
+		ImageIO.write(striped, "png", file);
+		
+		final BaseMapLoader loader = new BaseMapLoader();
+		try {
+			final BufferedImage small = loader
+					.loadNightMap(file.getPath(), StandardProjection.EQUIRECTANGULAR, 200, 100).get();
+			assertEquals("Subsampled onto the stripes", 0xffffff, small.getRGB(100, 50) & 0xffffff);
+			
+			final BufferedImage large = loader
+					.loadNightMap(file.getPath(), StandardProjection.EQUIRECTANGULAR, 2000, 1000).get();
+			int darkest = 0xff;
+			for (int x = 0; x < large.getWidth(); x++)
+				darkest = Math.min(darkest, large.getRGB(x, 500) & 0xff);
+			assertTrue("Stripes show once decoded in full", darkest < 0x40);
+		} finally {
+			loader.dispose();
+		}
+	}
+	
+	private static double getMeanBrightness(BufferedImage image) {
+		
+		double total = 0d;
+		for (int y = 0; y < image.getHeight(); y++)
+			for (int x = 0; x < image.getWidth(); x++) {
+				final int rgb = image.getRGB(x, y);
+				total += ((rgb >> 16) & 0xff) + ((rgb >> 8) & 0xff) + (rgb & 0xff);
+			}
+		return total / (3d * image.getWidth() * image.getHeight());
+	}
+}
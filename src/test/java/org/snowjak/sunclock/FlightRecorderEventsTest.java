@@ -0,0 +1,68 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.snowjak.sunclock.Options.DefinedOption;
+import org.snowjak.sunclock.metrics.OptionChangeEvent;
+import org.snowjak.sunclock.metrics.RenderEvent;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class FlightRecorderEventsTest {
+	
+	@Test
+	public void events_disabledByDefault() {
+		
+		assertFalse("Render events are disabled", new RenderEvent().isEnabled());
+		assertFalse("Option-change events are disabled", new OptionChangeEvent().isEnabled());
+	}
+	
+	@Test
+	public void optionChange_recordedWithBundledSettings() throws Exception {
+		
+		final Configuration configuration = Configuration.create(Paths.get("src", "dist", "sun-clock.jfc"));
+		
+		final File file = File.createTempFile("sun-clock", ".jfr");
+		file.deleteOnExit();
+		
+		final Integer original = Options.getValue(DefinedOption.METRICS_LOG_INTERVAL);
+		try (Recording recording = new Recording(configuration)) {
+			recording.start();
+			
+			assertTrue("Option-change events are enabled while recording", new OptionChangeEvent().isEnabled());
+			Options.setValue(DefinedOption.METRICS_LOG_INTERVAL, 60);
+			
+			recording.stop();
+			recording.dump(file.toPath());
+		} finally {
+			Options.setValue(DefinedOption.METRICS_LOG_INTERVAL, original);
+		}
+		
+		final List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath()).stream()
+				.filter(e -> e.getEventType().getName().equals("org.snowjak.sunclock.OptionChange"))
+				.collect(Collectors.toList());
+		
+		assertEquals("One option-change recorded", 1, events.size());
+		assertEquals("Option", "METRICS_LOG_INTERVAL", events.get(0).getString("option"));
+		assertEquals("Old value", String.valueOf(original), events.get(0).getString("oldValue"));
+		assertEquals("New value", "60", events.get(0).getString("newValue"));
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+import org.snowjak.sunclock.render.FrameCompositor;
+import org.snowjak.sunclock.render.LightMapComposite;
+import org.snowjak.sunclock.render.LightMapRenderer;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class FrameCompositorTest {
+	
+	@Test
+	public void publish_compositesLightMapOverScaledBaseMap() {
+		
+		final BufferedImage baseMap = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < baseMap.getHeight(); y++)
+			for (int x = 0; x < baseMap.getWidth(); x++)
+				baseMap.setRGB(x, y, 0xffffff);
+		
+		final BufferedImage lightMap = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+		lightMap.setRGB(5, 5, 0xff000000);
+		
+		final FrameCompositor compositor = new FrameCompositor(() -> null);
+		assertNull("No frame before the first publish", compositor.getFrame());
+		
+		compositor.setBaseMap(baseMap);
+		compositor.publish(lightMap, null);
+		
+		final BufferedImage frame = compositor.getFrame();
+		assertEquals("Frame width", 20, frame.getWidth());
+		assertEquals("Frame height", 10, frame.getHeight());
+		assertEquals("Transparent light-map pixel", 0xffffff, frame.getRGB(0, 0) & 0xffffff);
+		assertEquals("Opaque light-map pixel", 0x000000, frame.getRGB(5, 5) & 0xffffff);
+	}
+	
+	@Test
+	public void publish_shadesWithAlphaOnlyLightMap() {
+		
+		final BufferedImage baseMap = new BufferedImage(256, 4, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage lightMap = LightMapRenderer.createLightMap(256, 4);
+		final BufferedImage argbLightMap = new BufferedImage(256, 4, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < 4; y++)
+			for (int x = 0; x < 256; x++) {
+				baseMap.setRGB(x, y, 0x3080f0 + y * 0x101010);
+				lightMap.getRaster().setSample(x, y, 0, x);
+				argbLightMap.setRGB(x, y, lightMap.getRGB(x, y));
+			}
+		
+		final FrameCompositor compositor = new FrameCompositor(() -> null);
+		compositor.setBaseMap(baseMap);
+		compositor.publish(lightMap, null);
+		final BufferedImage frame = compositor.getFrame();
+		
+		compositor.publish(argbLightMap, null);
+		final BufferedImage argbFrame = compositor.getFrame();
+		
+		for (int y = 0; y < 4; y++)
+			for (int x = 0; x < 256; x++) {
+				final int actual = frame.getRGB(x, y) & 0xffffff;
+				assertEquals("Pixel [" + x + "," + y + "]", LightMapComposite.shade(baseMap.getRGB(x, y), x), actual);
+			
+				final int expected = argbFrame.getRGB(x, y) & 0xffffff;
+				for (int shift = 0; shift <= 16; shift += 8)
+					assertEquals("As ARGB [" + x + "," + y + "]", (expected >> shift) & 0xff, (actual >> shift) & 0xff,
+							1);
+			}
+	}
+	
+	@Test
+	public void publish_blendsNightMapByExposure() {
+		
+		final int day = 0xc08040, night = 0x203060;
+		final BufferedImage baseMap = new BufferedImage(64, 14, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage nightMap = new BufferedImage(64, 14, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 14; y++)
+			for (int x = 0; x < 64; x++) {
+				baseMap.setRGB(x, y, day);
+				nightMap.setRGB(x, y, night);
+			}
+		
+		final int darkest = LightMapRenderer.getShade(0d) >>> 24;
+		final BufferedImage lightMap = LightMapRenderer.createLightMap(256, 7);
+		for (int y = 0; y < 7; y++)
+			for (int x = 0; x < 256; x++)
+				lightMap.getRaster().setSample(x, y, 0, x);
+		
+		final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(3));
+		try {
+			final FrameCompositor compositor = new FrameCompositor(() -> null, executor, 3);
+			compositor.setBaseMap(baseMap);
+			compositor.setNightMap(nightMap);
+			compositor.publish(lightMap, null);
+			final BufferedImage frame = compositor.getFrame();
+			
+			for (int y = 0; y < 7; y++) {
+				assertEquals("Full sun [" + y + "]", day, frame.getRGB(0, y) & 0xffffff);
+				assertEquals("Full night [" + y + "]", night, frame.getRGB(darkest, y) & 0xffffff);
+				assertEquals("Past full night [" + y + "]", night, frame.getRGB(255, y) & 0xffffff);
+				
+				final int twilight = frame.getRGB(darkest / 2, y);
+				for (int shift = 0; shift <= 16; shift += 8)
+					assertEquals("Twilight [" + y + "]", (((day >> shift) & 0xff) + ((night >> shift) & 0xff)) / 2,
+							(twilight >> shift) & 0xff, 2);
+			}
+			
+			compositor.setNightMap(null);
+			compositor.publish(lightMap, null);
+			assertEquals("Without night-map, shaded as usual", LightMapComposite.shade(day, darkest),
+					compositor.getFrame().getRGB(darkest, 0) & 0xffffff);
+			
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void publish_replacesRatherThanModifiesFrame() {
+		
+		final BufferedImage lightMap = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+		final FrameCompositor compositor = new FrameCompositor(() -> null);
+		
+		compositor.publish(lightMap, null);
+		final BufferedImage first = compositor.getFrame();
+		
+		compositor.publish(lightMap, (g) -> {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, 8, 8);
+		});
+		final BufferedImage second = compositor.getFrame();
+		
+		assertNotSame("Each publish should produce a new frame", first, second);
+		assertEquals("Without a base map, frame should be black", 0x000000, first.getRGB(0, 0) & 0xffffff);
+		assertEquals("Overlay should be drawn", 0xffffff, second.getRGB(0, 0) & 0xffffff);
+	}
+	
+	@Test
+	public void publish_neverDrawsIntoAcquiredFrame() {
+		
+		final BufferedImage lightMap = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+		final FrameCompositor compositor = new FrameCompositor(() -> null);
+		final Consumer<Graphics2D> white = (g) -> {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, 8, 8);
+		};
+		
+		compositor.publish(lightMap, null);
+		compositor.publish(lightMap, null);
+		final BufferedImage held = compositor.acquireFrame();
+		
+		compositor.publish(lightMap, white);
+		compositor.publish(lightMap, white);
+		
+		assertNotSame("Held frame should be replaced", held, compositor.getFrame());
+		assertEquals("Held frame should be unchanged", 0x000000, held.getRGB(0, 0) & 0xffffff);
+		compositor.releaseFrame(held);
+		
+		//
+		// Once released, a frame may be re-used.
+		//
+		final BufferedImage released = compositor.acquireFrame();
+		compositor.publish(lightMap, null);
+		compositor.releaseFrame(released);
+		compositor.publish(lightMap, null);
+		
+		assertSame("Released frame should be re-used", released, compositor.getFrame());
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.snowjak.sunclock.render.FrameTimer;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class FrameTimerTest {
+	
+	@Test
+	public void record_keepsStatisticsOverWindow() {
+		
+		final FrameTimer timer = new FrameTimer(4);
+		assertEquals("Mean with no frames", 0d, timer.getMeanFrameTime(), 0d);
+		
+		timer.record(0, 100);
+		timer.record(1000, 1300);
+		timer.record(2000, 2200);
+		
+		assertEquals("Frame count", 3, timer.getFrameCount());
+		assertEquals("Last frame time", 200, timer.getLastFrameTime());
+		assertEquals("Last frame interval", 1000, timer.getLastFrameInterval());
+		assertEquals("Mean frame time", 200d, timer.getMeanFrameTime(), 1e-9);
+		assertEquals("Max frame time", 300, timer.getMaxFrameTime());
+		
+		//
+		// Push the 300ns frame out of the window.
+		//
+		timer.record(3000, 3100);
+		timer.record(4000, 4100);
+		timer.record(5000, 5100);
+		
+		assertEquals("Frame count", 6, timer.getFrameCount());
+		assertEquals("Max frame time, after window has moved", 200, timer.getMaxFrameTime());
+		assertEquals("Mean frame time, after window has moved", 125d, timer.getMeanFrameTime(), 1e-9);
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+import org.snowjak.sunclock.render.GlobeRenderer;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class GlobeRendererTest {
+	
+	private static final int INSET = 2;
+	
+	@Test
+	public void render_centersOnGivenPoint() throws Exception {
+		
+		final GlobeRenderer renderer = new GlobeRenderer(createSource(), INSET,
+				MoreExecutors.newDirectExecutorService(), 1);
+		
+		for (double[] center : new double[][] { { 0d, 0d }, { 40d, -100d }, { -65d, 150d } }) {
+			final BufferedImage image = renderer.render(101, 101, center[0], center[1], null);
+			
+			final int rgb = image.getRGB(50, 50);
+			assertEquals("Latitude at center of " + center[0] + "," + center[1], center[0],
+					((rgb >> 8) & 0xff) / 255d * 180d - 90d, 2d);
+			assertEquals("Longitude at center of " + center[0] + "," + center[1], center[1],
+					((rgb >> 16) & 0xff) / 255d * 360d - 180d, 3d);
+		}
+	}
+	
+	@Test
+	public void render_northIsUp() throws Exception {
+		
+		final GlobeRenderer renderer = new GlobeRenderer(createSource(), INSET,
+				MoreExecutors.newDirectExecutorService(), 1);
+		final BufferedImage image = renderer.render(101, 101, 0d, 0d, null);
+		
+		final double top = ((image.getRGB(50, 20) >> 8) & 0xff) / 255d * 180d - 90d,
+				bottom = ((image.getRGB(50, 80) >> 8) & 0xff) / 255d * 180d - 90d;
+		final double left = ((image.getRGB(20, 50) >> 16) & 0xff) / 255d * 360d - 180d,
+				right = ((image.getRGB(80, 50) >> 16) & 0xff) / 255d * 360d - 180d;
+		
+		assertTrue("North above south", top > 0d && bottom < 0d);
+		assertTrue("East to the right", right > 0d && left < 0d);
+	}
+	
+	@Test
+	public void render_outsideDiscIsBlack() throws Exception {
+		
+		final GlobeRenderer renderer = new GlobeRenderer(createSource(), INSET,
+				MoreExecutors.newDirectExecutorService(), 1);
+		final BufferedImage image = renderer.render(160, 100, 0d, 0d, null);
+		
+		assertEquals("Corner", 0, image.getRGB(0, 0) & 0xffffff);
+		assertEquals("Beside the disc", 0, image.getRGB(20, 50) & 0xffffff);
+		assertTrue("Within the disc", (image.getRGB(80, 50) & 0xff) == 0xff);
+	}
+	
+	@Test
+	public void render_shadesAwayFromSun() throws Exception {
+		
+		final GlobeRenderer renderer = new GlobeRenderer(createSource(), INSET,
+				MoreExecutors.newDirectExecutorService(), 1);
+		
+		final DoublePair sun = new DoublePair(0d, 0d);
+		final BufferedImage image = renderer.render(101, 101, 0d, 0d, sun);
+		assertEquals("Directly under the sun", 0xff, image.getRGB(50, 50) & 0xff);
+		
+		final DoublePair antiSun = new DoublePair(0d, 180d);
+		final BufferedImage night = renderer.render(101, 101, 0d, 0d, antiSun);
+		assertTrue("Night-side should be dark", (night.getRGB(50, 50) & 0xff) < 0x40);
+	}
+	
+	@Test
+	public void render_isDoubleBuffered() throws Exception {
+		
+		final GlobeRenderer renderer = new GlobeRenderer(createSource(), INSET,
+				MoreExecutors.newDirectExecutorService(), 1);
+		
+		final BufferedImage first = renderer.render(50, 50, 0d, 0d, null);
+		final BufferedImage second = renderer.render(50, 50, 10d, 10d, null);
+		assertNotSame("Consecutive frames", first, second);
+		assertSame("Buffers are re-used", first, renderer.render(50, 50, 20d, 20d, null));
+	}
+	
+	/**
+	 * @return an equirectangular image, with a bright frame, whose red channel
+	 *         encodes longitude, green channel encodes latitude, and blue channel
+	 *         is fully bright
+	 */
+	private static BufferedImage createSource() {
+		
+		final int width = 360 + 2 * INSET, height = 180 + 2 * INSET;
+		final BufferedImage source = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++) {
+				if (x < INSET || y < INSET || x >= width - INSET || y >= height - INSET) {
+					source.setRGB(x, y, 0x000000);
+					continue;
+				}
+			
+				final double longitude = (x - INSET + 0.5d) - 180d, latitude = 90d - (y - INSET + 0.5d);
+				final int r = (int) Math.round((longitude + 180d) / 360d * 255d);
+				final int g = (int) Math.round((latitude + 90d) / 180d * 255d);
+				source.setRGB(x, y, (r << 16) | (g << 8) | 0xff);
+			}
+		
+		return source;
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.snowjak.sunclock.render.ImageFormats;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class ImageFormatsTest {
+	
+	@Test
+	public void formats_discoveredOnce() {
+		
+		final ImageFormats formats = ImageFormats.forType(BufferedImage.TYPE_INT_RGB);
+		
+		assertSame("Cached", formats, ImageFormats.forType(BufferedImage.TYPE_INT_RGB));
+		assertTrue("PNG", formats.getSuffixes().contains("png"));
+		assertTrue("JPEG (opaque images only)", formats.getSuffixes().contains("jpg"));
+		assertFalse("No JPEG with alpha",
+				ImageFormats.forType(BufferedImage.TYPE_INT_ARGB).getSuffixes().contains("jpg"));
+	}
+	
+	@Test
+	public void withSuffix_keepsKnownSuffix() {
+		
+		final ImageFormats formats = ImageFormats.forType(BufferedImage.TYPE_INT_RGB);
+		
+		assertEquals("Known", new File("map.JPG"), formats.withSuffix(new File("map.JPG")));
+		assertEquals("Missing", new File("map.png"), formats.withSuffix(new File("map")));
+		assertEquals("Unknown", new File("map.v2.png"), formats.withSuffix(new File("map.v2")));
+	}
+	
+	@Test
+	public void write_reportsProgress() throws Exception {
+		
+		final BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(10, 20, 0x123456);
+		
+		final File file = File.createTempFile("image-formats", ".png");
+		file.deleteOnExit();
+		
+		final List<Integer> progress = new ArrayList<>();
+		ImageFormats.forType(BufferedImage.TYPE_INT_RGB).write(image, file, progress::add);
+		
+		assertFalse("Progress reported", progress.isEmpty());
+		assertEquals("Finished", Integer.valueOf(100), progress.get(progress.size() - 1));
+		assertEquals("Written", 0x123456, ImageIO.read(file).getRGB(10, 20) & 0xffffff);
+	}
+	
+	@Test
+	public void write_abortsWhenInterrupted() throws Exception {
+		
+		final BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+		final File file = File.createTempFile("image-formats", ".png");
+		file.deleteOnExit();
+		
+		Thread.currentThread().interrupt();
+		try {
+			ImageFormats.forType(BufferedImage.TYPE_INT_RGB).write(image, file, null);
+			fail("Writing should be interrupted");
+		} catch (InterruptedException e) {
+			assertFalse("Partial file deleted", file.exists());
+		} finally {
+			Thread.interrupted();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.snowjak.sunclock.solar.InsolationGrid;
+import org.snowjak.sunclock.solar.InsolationIntegrator;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class InsolationIntegratorTest {
+	
+	@Test
+	public void integrate_sine() {
+		
+		final double result = InsolationIntegrator.integrate(Math::sin, 0, Math.PI, 1e-9);
+		
+		assertEquals("Integral of sin(x) over [0,PI]", 2d, result, 1e-8);
+	}
+	
+	@Test
+	public void integrateDay_polarNight() {
+		
+		final double result = InsolationIntegrator.integrateDay(Util.degreesToRadians(85), 355, 0.1);
+		
+		assertEquals("North pole at December solstice should receive nothing", 0d, result, 1e-9);
+	}
+	
+	@Test
+	public void integrateDay_equatorAtEquinox() {
+		
+		final double result = InsolationIntegrator.integrateDay(0, 80, 0.1) / 1000d;
+		
+		assertTrue("Equator at equinox should receive 6-9 kWh/m^2 (was " + result + ")", result > 6d && result < 9d);
+	}
+	
+	@Test
+	public void integrateDay_polarDayExceedsEquator() {
+		
+		final double pole = InsolationIntegrator.integrateDay(Util.degreesToRadians(80), 172, 0.1);
+		final double equator = InsolationIntegrator.integrateDay(0, 172, 0.1);
+		
+		assertTrue("Under polar day, 80N should receive more than the equator at June solstice", pole > equator);
+	}
+	
+	@Test
+	public void grid_binaryRoundTrip() throws Exception {
+		
+		final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2));
+		try {
+			final InsolationGrid grid = new InsolationIntegrator(10).integrate(LocalDate.of(2020, 3, 20), 1,
+					executor);
+			
+			assertEquals("Grid width", 36, grid.getWidth());
+			assertEquals("Grid height", 18, grid.getHeight());
+			assertEquals("Cells in the same row should be equal", grid.getValue(0, 9), grid.getValue(20, 9), 1e-9);
+			
+			final File file = File.createTempFile("insolation", ".bin");
+			file.deleteOnExit();
+			grid.writeBinary(file);
+			
+			final InsolationGrid read = InsolationGrid.readBinary(file);
+			assertEquals("Read grid width", grid.getWidth(), read.getWidth());
+			assertEquals("Read grid height", grid.getHeight(), read.getHeight());
+			assertEquals("Read grid first day", grid.getFirstDay(), read.getFirstDay());
+			for (int row = 0; row < grid.getHeight(); row++)
+				assertEquals("Read grid value", grid.getValue(5, row), read.getValue(5, row), 0f);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
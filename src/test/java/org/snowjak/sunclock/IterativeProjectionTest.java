@@ -0,0 +1,122 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.IterativeProjection;
+import org.snowjak.sunclock.projection.MollweideProjection;
+import org.snowjak.sunclock.projection.RobinsonProjection;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class IterativeProjectionTest {
+	
+	@Test
+	public void mollweide_forward() {
+		
+		final double[] latitude = { 0d, 0d, 90d, -90d }, longitude = { 0d, 180d, 0d, 0d };
+		final double[] x = new double[4], y = new double[4];
+		
+		new MollweideProjection().forward(latitude, longitude, x, y, 0, 4);
+		
+		assertEquals("Center X", 0.5d, x[0], 1e-9);
+		assertEquals("Center Y", 0.5d, y[0], 1e-9);
+		assertEquals("Antimeridian at the equator X", 1d, x[1], 1e-9);
+		assertEquals("North pole Y", 1d, y[2], 1e-9);
+		assertEquals("South pole Y", 0d, y[3], 1e-9);
+	}
+	
+	@Test
+	public void robinson_forward() {
+		
+		final double[] latitude = { 45d, -90d }, longitude = { 180d, 180d };
+		final double[] x = new double[2], y = new double[2];
+		
+		new RobinsonProjection().forward(latitude, longitude, x, y, 0, 2);
+		
+		assertEquals("45N Y (from the table)", 0.5d + 0.5571d / 2d, y[0], 1e-9);
+		assertEquals("45N antimeridian X (from the table)", 0.5d + 0.8962d / 2d, x[0], 1e-9);
+		assertEquals("South pole Y", 0d, y[1], 1e-9);
+		assertEquals("South pole antimeridian X", 0.5d + 0.5322d / 2d, x[1], 1e-9);
+	}
+	
+	@Test
+	public void roundTrip() {
+		
+		for (IterativeProjection projection : new IterativeProjection[] { new MollweideProjection(),
+				new RobinsonProjection() }) {
+			
+			final int count = 181;
+			final double[] latitude = new double[count], longitude = new double[count];
+			for (int i = 0; i < count; i++) {
+				latitude[i] = -89.5d + 179d * i / (count - 1);
+				longitude[i] = -179.5d + 359d * ((i * 37) % count) / (count - 1);
+			}
+			
+			final double[] x = new double[count], y = new double[count];
+			final double[] rtLatitude = new double[count], rtLongitude = new double[count];
+			projection.forward(latitude, longitude, x, y, 0, count);
+			projection.inverse(x, y, rtLatitude, rtLongitude, 0, count);
+			
+			for (int i = 0; i < count; i++) {
+				assertEquals(projection.getName() + " latitude", latitude[i], rtLatitude[i], 1e-6);
+				assertEquals(projection.getName() + " longitude", longitude[i], rtLongitude[i], 1e-6);
+			}
+			
+			assertEquals(projection.getName() + " should converge", 0, projection.getStatistics().getUnconverged());
+		}
+	}
+	
+	@Test
+	public void inverse_outsideOutlineIsNaN() {
+		
+		for (IterativeProjection projection : new IterativeProjection[] { new MollweideProjection(),
+				new RobinsonProjection() }) {
+			
+			final double[] x = { 0.01d, 0.5d }, y = { 0.99d, 0.5d };
+			final double[] latitude = new double[2], longitude = new double[2];
+			projection.inverse(x, y, latitude, longitude, 0, 2);
+			
+			assertTrue(projection.getName() + " corner", Double.isNaN(latitude[0]) && Double.isNaN(longitude[0]));
+			assertEquals(projection.getName() + " center", 0d, latitude[1], 1e-9);
+		}
+	}
+	
+	@Test
+	public void warmStart_alongScanline() {
+		
+		final MollweideProjection projection = new MollweideProjection();
+		
+		final int count = 1000;
+		final double[] latitude = new double[count], longitude = new double[count];
+		for (int i = 0; i < count; i++) {
+			latitude[i] = 37.25d;
+			longitude[i] = -180d + 360d * i / count;
+		}
+		
+		projection.forward(latitude, longitude, new double[count], new double[count], 0, count);
+		
+		assertEquals("Solves", count, projection.getStatistics().getSolves());
+		assertTrue("Warm-started points should converge immediately (" + projection.getStatistics() + ")",
+				projection.getStatistics().getMeanIterations() < 1.1d);
+	}
+	
+	@Test
+	public void iterationCap() {
+		
+		final MollweideProjection projection = new MollweideProjection(2, 1e-15);
+		
+		final double[] latitude = { 10d, 80d, -60d }, longitude = new double[3];
+		projection.forward(latitude, longitude, new double[3], new double[3], 0, 3);
+		
+		assertEquals("Solves", 3, projection.getStatistics().getSolves());
+		assertEquals("Every solve capped at 2 iterations", 6, projection.getStatistics().getIterations());
+		assertTrue("Some solves should not converge", projection.getStatistics().getUnconverged() > 0);
+	}
+}
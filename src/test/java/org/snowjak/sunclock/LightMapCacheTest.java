@@ -0,0 +1,178 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.LightMapCache;
+import org.snowjak.sunclock.render.LightMapRenderer;
+import org.snowjak.sunclock.solar.Solar;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class LightMapCacheTest {
+	
+	private static final long HOUR = 60L * 60L * 1000L;
+	
+	@Test
+	public void bucket_holdsInstantAndRendersAtMidpoint() {
+		
+		final Instant instant = Instant.parse("2020-06-21T12:34:56Z");
+		final long bucket = LightMapCache.getBucket(instant, HOUR);
+		
+		assertEquals("Bucket", instant.toEpochMilli() / HOUR, bucket);
+		assertEquals("Midpoint", Instant.parse("2020-06-21T12:30:00Z"), LightMapCache.getBucketMidpoint(bucket, HOUR));
+		assertEquals("Before the epoch", -1L, LightMapCache.getBucket(Instant.ofEpochMilli(-1L), HOUR));
+	}
+	
+	@Test
+	public void key_identifiesLightMap() {
+		
+		final Projection projection = StandardProjection.EQUIRECTANGULAR;
+		final LightMapCache.Key key = new LightMapCache.Key(projection, Viewport.FULL, 200, 100, 4, HOUR, 10L);
+		
+		assertEquals("Same light-map", key, new LightMapCache.Key(projection, Viewport.FULL, 200, 100, 4, HOUR, 10L));
+		assertEquals("Same hash", key.hashCode(),
+				new LightMapCache.Key(projection, Viewport.FULL, 200, 100, 4, HOUR, 10L).hashCode());
+		assertEquals("Offset", key, key.offsetBy(+1).offsetBy(-1));
+		assertNotEquals("Next bucket", key, key.offsetBy(+1));
+		assertNotEquals("Other viewport", key, new LightMapCache.Key(projection, Viewport.FULL.zoomAbout(2d, 0.5d, 0.5d),
+				200, 100, 4, HOUR, 10L));
+		assertEquals("Instant", Instant.ofEpochMilli(11L * HOUR + HOUR / 2L), key.offsetBy(+1).getInstant());
+	}
+	
+	@Test
+	public void cache_rendersConcurrentRequestsOnce() throws Exception {
+		
+		final LightMapCache cache = new LightMapCache();
+		final LightMapCache.Key key = new LightMapCache.Key(StandardProjection.EQUIRECTANGULAR, Viewport.FULL, 20,
+				10, 1, HOUR, 0L);
+		
+		final AtomicInteger renders = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<BufferedImage>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++)
+				results.add(executor.submit(() -> {
+					start.await();
+					return cache.get(key, () -> {
+						renders.incrementAndGet();
+						Thread.sleep(50);
+						return new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+					});
+				}));
+			start.countDown();
+			
+			final BufferedImage first = results.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<BufferedImage> result : results)
+				assertSame("Same light-map", first, result.get(5, TimeUnit.SECONDS));
+			assertEquals("Rendered once", 1, renders.get());
+			assertSame("Cached", first, cache.getIfPresent(key));
+			
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void cache_evictsBeyondLimit() throws Exception {
+		
+		final LightMapCache cache = new LightMapCache(4 * 100 * 100 * 2);
+		final LightMapCache.Key key = new LightMapCache.Key(StandardProjection.EQUIRECTANGULAR, Viewport.FULL, 100,
+				100, 1, HOUR, 0L);
+		
+		for (int i = 0; i < 10; i++)
+			cache.get(key.offsetBy(i), () -> new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+		
+		assertEquals("Size", 2L, cache.size());
+		assertNull("Oldest evicted", cache.getIfPresent(key));
+		assertNotNull("Newest kept", cache.getIfPresent(key.offsetBy(9)));
+	}
+	
+	@Test
+	public void cache_holdsMoreAlphaOnlyLightMaps() throws Exception {
+		
+		final LightMapCache cache = new LightMapCache(4 * 100 * 100 * 2);
+		final LightMapCache.Key key = new LightMapCache.Key(StandardProjection.EQUIRECTANGULAR, Viewport.FULL, 100,
+				100, 1, HOUR, 0L);
+		
+		for (int i = 0; i < 10; i++)
+			cache.get(key.offsetBy(i), () -> LightMapRenderer.createLightMap(100, 100));
+		
+		assertEquals("Size", 8L, cache.size());
+	}
+	
+	@Test
+	public void renderer_shadesEachCell() throws Exception {
+		
+		final Projection projection = StandardProjection.EQUIRECTANGULAR;
+		final ZonedDateTime instant = ZonedDateTime.of(2020, 6, 21, 12, 0, 0, 0, ZoneOffset.UTC);
+		final int cellSize = 4;
+		
+		final BufferedImage lightMap = new BufferedImage(90, 45, BufferedImage.TYPE_INT_ARGB);
+		final long samples = new LightMapRenderer(MoreExecutors.newDirectExecutorService()).render(lightMap,
+				projection, Viewport.FULL, cellSize, instant);
+		
+		assertEquals("Samples", LightMapRenderer.getTileCount(90, 45, cellSize), samples);
+		
+		for (int y = 0; y < 45; y += 7)
+			for (int x = 0; x < 90; x += 7) {
+				final int left = x / cellSize * cellSize, top = y / cellSize * cellSize;
+				final DoublePair xy = new DoublePair((left + cellSize / 2d) / 90d, 1d - (top + cellSize / 2d) / 45d);
+				final DoublePair latLong = projection.transformXY_LatLong(xy);
+				assertEquals("Shade at [" + x + "," + y + "]",
+						LightMapRenderer.getShade(Solar.calculateSunExposure(latLong, instant)), lightMap.getRGB(x, y));
+			}
+	}
+	
+	@Test
+	public void renderer_alphaOnlyMatchesARGB() throws Exception {
+		
+		final LightMapRenderer renderer = new LightMapRenderer(MoreExecutors.newDirectExecutorService());
+		final ZonedDateTime instant = ZonedDateTime.of(2020, 3, 20, 18, 0, 0, 0, ZoneOffset.UTC);
+		
+		final BufferedImage argb = new BufferedImage(90, 45, BufferedImage.TYPE_INT_ARGB);
+		final BufferedImage alphaOnly = LightMapRenderer.createLightMap(90, 45);
+		renderer.render(argb, StandardProjection.EQUIRECTANGULAR, Viewport.FULL, 3, instant);
+		renderer.render(alphaOnly, StandardProjection.EQUIRECTANGULAR, Viewport.FULL, 3, instant);
+		
+		assertEquals("One byte per pixel", 90 * 45, alphaOnly.getRaster().getDataBuffer().getSize());
+		for (int y = 0; y < 45; y++)
+			for (int x = 0; x < 90; x++)
+				assertEquals("Pixel [" + x + "," + y + "]", argb.getRGB(x, y), alphaOnly.getRGB(x, y));
+	}
+	
+	@Test
+	public void renderer_shadeDoesNotWrap() {
+		
+		assertEquals("Full sun is clear", 0, LightMapRenderer.getShade(1d) >>> 24);
+		assertEquals("Night is darkest", 255 - 25, LightMapRenderer.getShade(0d) >>> 24);
+	}
+}
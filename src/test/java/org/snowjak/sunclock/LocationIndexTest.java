@@ -0,0 +1,129 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.snowjak.sunclock.location.Location;
+import org.snowjak.sunclock.location.LocationIndex;
+import org.snowjak.sunclock.solar.Solar;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class LocationIndexTest {
+	
+	private static final double MINUTE = 1d / (24d * 60d);
+	
+	@Test
+	public void subsolarPoint_sunIsOverhead() {
+		
+		final ZonedDateTime now = ZonedDateTime.of(2020, 11, 14, 21, 34, 0, 0, ZoneId.of("UTC"));
+		final DoublePair subsolarPoint = Solar.calculateSubsolarPoint(Solar.getFractionalDayOfYear(now));
+		
+		assertEquals("Sun should be overhead at the sub-solar point", 1d,
+				Solar.calculateSinSolarAltitude(subsolarPoint, now), 1e-6);
+	}
+	
+	@Test
+	public void update_matchesSolarModel() {
+		
+		final List<Location> locations = randomLocations(10000);
+		final LocationIndex index = new LocationIndex(locations);
+		
+		final double start = Solar.getFractionalDayOfYear(ZonedDateTime.of(2020, 6, 6, 8, 23, 0, 0, ZoneId.of("UTC")));
+		
+		for (double now : new double[] { start, start + MINUTE, start + 30 * MINUTE, start + 0.5, start - 2 }) {
+			index.update(now);
+			
+			int litCount = 0;
+			for (int i = 0; i < index.size(); i++) {
+				final Location location = index.getLocation(i);
+				final boolean expected = Solar.calculateSinSolarAltitudeUTC(
+						Util.degreesToRadians(location.getLatitude()), Util.degreesToRadians(location.getLongitude()),
+						now) > 0d;
+				assertEquals("Location " + location + " at " + now, expected, index.isLit(i));
+				if (expected)
+					litCount++;
+			}
+			assertEquals("Lit count at " + now, litCount, index.getLitCount());
+			assertEquals("Lit locations at " + now, litCount, index.getLitLocations().size());
+		}
+	}
+	
+	@Test
+	public void update_onlyReclassifiesNearTerminator() {
+		
+		final LocationIndex index = new LocationIndex(randomLocations(10000));
+		
+		final double start = Solar.getFractionalDayOfYear(ZonedDateTime.of(2020, 6, 6, 8, 23, 0, 0, ZoneId.of("UTC")));
+		final int initial = index.update(start);
+		final int next = index.update(start + MINUTE);
+		
+		assertTrue("One minute later, far fewer buckets should need reclassifying (" + next + " of " + initial + ")",
+				next * 5 < initial);
+	}
+	
+	@Test
+	public void findNearest() {
+		
+		final List<Location> locations = randomLocations(5000);
+		final LocationIndex index = new LocationIndex(locations);
+		
+		final Random rnd = new Random(99);
+		for (int t = 0; t < 50; t++) {
+			final double lat = rnd.nextDouble() * 180d - 90d, lng = rnd.nextDouble() * 360d - 180d;
+			
+			Location expected = null;
+			double expectedDistance = Double.POSITIVE_INFINITY;
+			for (Location l : locations) {
+				final double d = distance(lat, lng, l.getLatitude(), l.getLongitude());
+				if (d < expectedDistance) {
+					expected = l;
+					expectedDistance = d;
+				}
+			}
+			
+			assertEquals("Nearest to [" + lat + "," + lng + "]", expected, index.getLocation(index.findNearest(lat, lng)));
+		}
+	}
+	
+	@Test
+	public void readFromCsv() throws Exception {
+		
+		final List<Location> locations = LocationIndex.readFromCsv(new StringReader(
+				"# comment\n\nLas Cruces, NM,32.28,-106.75\nbogus\nNowhere,100,0\nLondon,51.5,-0.13\n"));
+		
+		assertEquals("Valid lines", 2, locations.size());
+		assertEquals("Name may contain commas", "Las Cruces, NM", locations.get(0).getName());
+		assertEquals("Latitude", 51.5, locations.get(1).getLatitude(), 1e-9);
+	}
+	
+	private static List<Location> randomLocations(int count) {
+		
+		final Random rnd = new Random(1234);
+		final List<Location> locations = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			locations.add(new Location("site-" + i, Util.radiansToDegrees(Math.asin(rnd.nextDouble() * 2d - 1d)),
+					rnd.nextDouble() * 360d - 180d));
+		return locations;
+	}
+	
+	private static double distance(double lat1, double lng1, double lat2, double lng2) {
+		
+		final double p1 = Util.degreesToRadians(lat1), p2 = Util.degreesToRadians(lat2);
+		final double dl = Util.degreesToRadians(lng2 - lng1);
+		return Math.acos(Util.clamp(Math.sin(p1) * Math.sin(p2) + Math.cos(p1) * Math.cos(p2) * Math.cos(dl), -1, 1));
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.snowjak.sunclock.render.MipmapPyramid;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class MipmapPyramidTest {
+	
+	@Test
+	public void getLevel_averagesEachBlock() throws Exception {
+		
+		final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2));
+		try {
+			//
+			// Alternating black and white columns average out to mid-gray.
+			//
+			final BufferedImage base = new BufferedImage(64, 32, BufferedImage.TYPE_3BYTE_BGR);
+			for (int y = 0; y < base.getHeight(); y++)
+				for (int x = 0; x < base.getWidth(); x++)
+					base.setRGB(x, y, (x % 2 == 0) ? 0xffffff : 0x000000);
+			
+			final MipmapPyramid pyramid = new MipmapPyramid(base, executor, 2);
+			assertEquals("Level count", 6, pyramid.getLevelCount());
+			assertEquals("Nothing built yet", 0L, pyramid.getBuiltSize());
+			
+			final BufferedImage level = pyramid.getLevel(2);
+			assertEquals("Level 2 width", 16, level.getWidth());
+			assertEquals("Level 2 height", 8, level.getHeight());
+			assertEquals("Levels 1 and 2 built", 4L * (32 * 16 + 16 * 8), pyramid.getBuiltSize());
+			
+			for (int y = 0; y < level.getHeight(); y++)
+				for (int x = 0; x < level.getWidth(); x++)
+					assertEquals("Gray at [" + x + "," + y + "]", 0x808080, level.getRGB(x, y) & 0xffffff);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void getLevelFor_picksSmallestSufficientLevel() throws Exception {
+		
+		final MipmapPyramid pyramid = new MipmapPyramid(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB),
+				MoreExecutors.newDirectExecutorService(), 1);
+		
+		assertEquals("For 300x150", 500, pyramid.getLevelFor(300, 150).getWidth());
+		assertEquals("For 250x125", 250, pyramid.getLevelFor(250, 125).getWidth());
+		assertEquals("For 240x125", 250, pyramid.getLevelFor(240, 125).getWidth());
+		assertSame("Larger than the base", pyramid.getBase(), pyramid.getLevelFor(2000, 1000));
+		assertEquals("Smallest", 1, pyramid.getLevelFor(0, 0).getHeight());
+	}
+}
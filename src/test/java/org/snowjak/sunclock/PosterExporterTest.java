@@ -0,0 +1,151 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.LightMapRenderer;
+import org.snowjak.sunclock.render.PosterExporter;
+import org.snowjak.sunclock.render.StreamingPngWriter;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class PosterExporterTest {
+	
+	@Test
+	public void pngWriter_writesBandsLosslessly() throws Exception {
+		
+		final int width = 37, height = 23;
+		final int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++)
+			pixels[i] = (int) (i * 2654435761L) & 0xffffff;
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (StreamingPngWriter writer = new StreamingPngWriter(bytes, width, height, 6)) {
+			for (int row = 0; row < height; row += 5)
+				writer.writeRows(pixels, row * width, Math.min(5, height - row));
+		}
+		
+		final BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals("Width", width, image.getWidth());
+		assertEquals("Height", height, image.getHeight());
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				assertEquals("Pixel [" + x + "," + y + "]", pixels[y * width + x], image.getRGB(x, y) & 0xffffff);
+	}
+	
+	@Test
+	public void pngWriter_refusesIncompleteImage() throws Exception {
+		
+		final StreamingPngWriter writer = new StreamingPngWriter(new ByteArrayOutputStream(), 4, 4, 6);
+		writer.writeRows(new int[8], 0, 2);
+		try {
+			writer.close();
+			fail("Closing an incomplete image should fail");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("2 of 4"));
+		}
+	}
+	
+	@Test
+	public void poster_matchesWholeImage() throws Exception {
+		
+		final BufferedImage source = new BufferedImage(360, 180, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 180; y++)
+			for (int x = 0; x < 360; x++)
+				source.setRGB(x, y, (x * 255 / 359) << 16 | (y * 255 / 179) << 8 | 0x40);
+		
+		final Reprojector reprojector = new Reprojector(source, 0, MoreExecutors.newDirectExecutorService(), 3);
+		final Projection projection = StandardProjection.EQUIRECTANGULAR;
+		final ZonedDateTime instant = ZonedDateTime.of(2020, 12, 21, 6, 0, 0, 0, ZoneOffset.UTC);
+		
+		//
+		// Tall enough to need several bands -- which mustn't show any seams.
+		//
+		final int width = 2048, height = 3 * PosterExporter.getBandHeight(2048, Integer.MAX_VALUE) + 17;
+		final int cellSize = 7;
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new PosterExporter(MoreExecutors.newDirectExecutorService()).export(reprojector, projection, Viewport.FULL,
+				width, height, cellSize, instant, bytes, null);
+		final BufferedImage poster = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+		
+		final BufferedImage base = reprojector.reproject(projection, width, height);
+		final BufferedImage lightMap = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		new LightMapRenderer(MoreExecutors.newDirectExecutorService()).render(lightMap, projection, Viewport.FULL,
+				cellSize, instant);
+		
+		for (int y = 0; y < height; y += 13)
+			for (int x = 0; x < width; x += 61) {
+				final int expected = blend(base.getRGB(x, y), lightMap.getRGB(x, y));
+				final int actual = poster.getRGB(x, y) & 0xffffff;
+				for (int shift = 0; shift <= 16; shift += 8)
+					assertEquals("Pixel [" + x + "," + y + "]", (expected >> shift) & 0xff, (actual >> shift) & 0xff,
+							1);
+			}
+	}
+	
+	@Test
+	public void render_matchesPosterInViewport() throws Exception {
+		
+		final BufferedImage source = new BufferedImage(360, 180, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 180; y++)
+			for (int x = 0; x < 360; x++)
+				source.setRGB(x, y, (x * 255 / 359) << 16 | (y * 255 / 179) << 8 | 0x40);
+		
+		final Reprojector reprojector = new Reprojector(source, 0, MoreExecutors.newDirectExecutorService(), 2);
+		final Projection projection = StandardProjection.EQUIRECTANGULAR;
+		final Viewport viewport = Viewport.FULL.zoomAbout(4d, 0.3d, 0.6d);
+		final ZonedDateTime instant = ZonedDateTime.of(2020, 12, 21, 6, 0, 0, 0, ZoneOffset.UTC);
+		final int width = 1500, height = 1600;
+		
+		final PosterExporter exporter = new PosterExporter(MoreExecutors.newDirectExecutorService());
+		final List<Integer> progress = new ArrayList<>();
+		final BufferedImage image = exporter.render(reprojector, projection, viewport, width, height, 5, instant,
+				progress::add);
+		
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		exporter.export(reprojector, projection, viewport, width, height, 5, instant, bytes, null);
+		final BufferedImage poster = ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+		
+		assertTrue("Rendered in bands", progress.size() > 1);
+		assertEquals("Every row rendered", Integer.valueOf(height), progress.get(progress.size() - 1));
+		for (int y = 0; y < height; y += 7)
+			for (int x = 0; x < width; x += 11)
+				assertEquals("Pixel [" + x + "," + y + "]", poster.getRGB(x, y), image.getRGB(x, y));
+	}
+	
+	private static int blend(int rgb, int argb) {
+		
+		final double alpha = (double) (argb >>> 24) / 255d;
+		int result = 0;
+		for (int shift = 0; shift <= 16; shift += 8) {
+			final double under = (rgb >> shift) & 0xff, over = (argb >> shift) & 0xff;
+			result |= ((int) Math.round(under * (1d - alpha) + over * alpha)) << shift;
+		}
+		return result;
+	}
+}
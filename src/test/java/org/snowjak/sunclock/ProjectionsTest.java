@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.snowjak.sunclock.pool.Pools;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Projections;
+import org.snowjak.sunclock.projection.StandardProjection;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class ProjectionsTest {
+	
+	@Test
+	public void getAll_includesStandardProjections() {
+		
+		final List<Projection> projections = Projections.getAll();
+		
+		assertTrue("At least the standard projections", projections.size() >= StandardProjection.values().length);
+		for (int i = 0; i < StandardProjection.values().length; i++)
+			assertSame("Standard projections come first, in order", StandardProjection.values()[i],
+					projections.get(i));
+	}
+	
+	@Test
+	public void get_byId() {
+		
+		for (Projection projection : Projections.getAll())
+			assertSame("Projection [" + projection.getId() + "]", projection, Projections.get(projection.getId()));
+		
+		assertNull("Unknown ID", Projections.get("no-such-projection"));
+	}
+	
+	@Test
+	public void inverse_matchesPointTransform() {
+		
+		final int count = 64;
+		final double[] x = new double[count + 2], y = new double[count + 2];
+		final double[] latitude = new double[count + 2], longitude = new double[count + 2];
+		for (int i = 1; i <= count; i++) {
+			x[i] = (double) (i * 7 % count) / (double) count;
+			y[i] = (double) i / (double) count;
+		}
+		
+		for (Projection projection : Projections.getAll()) {
+			latitude[0] = latitude[count + 1] = -1d;
+			projection.inverse(x, y, latitude, longitude, 1, count);
+			
+			assertEquals("Before offset untouched", -1d, latitude[0], 0d);
+			assertEquals("After length untouched", -1d, latitude[count + 1], 0d);
+			
+			for (int i = 1; i <= count; i++) {
+				final DoublePair xy = Pools.getPool(DoublePair.class).getInstance();
+				xy.set(x[i], y[i]);
+				final DoublePair latLong = projection.transformXY_LatLong(xy);
+				
+				assertEquals(projection.getName() + " latitude", latLong.getX(), latitude[i], 1e-9);
+				assertEquals(projection.getName() + " longitude", latLong.getY(), longitude[i], 1e-9);
+				
+				Pools.getPool(DoublePair.class).retireInstance(xy);
+				Pools.getPool(DoublePair.class).retireInstance(latLong);
+			}
+		}
+	}
+	
+	@Test
+	public void forward_inverse_roundTrip() {
+		
+		final double[] latitude = { -60d, -30d, 0d, 30d, 60d }, longitude = { -150d, -45d, 0d, 45d, 150d };
+		final double[] x = new double[5], y = new double[5], rtLatitude = new double[5], rtLongitude = new double[5];
+		
+		for (Projection projection : Projections.getAll()) {
+			projection.forward(latitude, longitude, x, y, 0, 5);
+			projection.inverse(x, y, rtLatitude, rtLongitude, 0, 5);
+			
+			for (int i = 0; i < 5; i++) {
+				assertEquals(projection.getName() + " latitude", latitude[i], rtLatitude[i], 1e-6);
+				assertEquals(projection.getName() + " longitude", longitude[i], rtLongitude[i], 1e-6);
+			}
+		}
+	}
+	
+	@Test
+	public void isInDomain_rejectsOutOfBounds() {
+		
+		final Projection projection = StandardProjection.WEB_MERCATOR;
+		
+		assertTrue("Equator", projection.isInDomain(0d, 0d));
+		assertFalse("Beyond max latitude", projection.isInDomain(89d, 0d));
+		assertFalse("Beyond min latitude", projection.isInDomain(-89d, 0d));
+		assertFalse("Not a number", projection.isInDomain(Double.NaN, Double.NaN));
+	}
+}
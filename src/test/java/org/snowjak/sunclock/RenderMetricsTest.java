@@ -0,0 +1,104 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+import org.snowjak.sunclock.metrics.LatencyHistogram;
+import org.snowjak.sunclock.metrics.RenderMetrics;
+import org.snowjak.sunclock.metrics.RenderMetrics.Phase;
+import org.snowjak.sunclock.pool.Pool;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class RenderMetricsTest {
+	
+	@Test
+	public void histogram_percentilesWithinPrecision() {
+		
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 10000; i++)
+			histogram.record(i * 1000L);
+		
+		assertEquals("Count", 10000L, histogram.getCount());
+		assertEquals("Min", 1000L, histogram.getMin());
+		assertEquals("Max", 10000000L, histogram.getMax());
+		assertEquals("Mean", 5000500d, histogram.getMean(), 1d);
+		
+		for (double percentile : new double[] { 1d, 50d, 90d, 99d, 99.9d }) {
+			final double expected = percentile * 100000d;
+			final long actual = histogram.getValueAtPercentile(percentile);
+			assertTrue("p" + percentile + " (was " + actual + ")",
+					actual >= expected && actual <= expected * 1.01d);
+		}
+		assertEquals("p100", 10000000L, histogram.getValueAtPercentile(100d));
+		
+		histogram.reset();
+		assertEquals("Count after reset", 0L, histogram.getCount());
+		assertEquals("p50 after reset", 0L, histogram.getValueAtPercentile(50d));
+	}
+	
+	@Test
+	public void histogram_smallValuesAreExact() {
+		
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5L);
+		histogram.record(3L);
+		histogram.record(100L);
+		
+		assertEquals("Negative recorded as 0", 0L, histogram.getValueAtPercentile(0d));
+		assertEquals("p50", 3L, histogram.getValueAtPercentile(50d));
+		assertEquals("p100", 100L, histogram.getValueAtPercentile(100d));
+	}
+	
+	@Test
+	public void metrics_exposedThroughJmx() throws Exception {
+		
+		final RenderMetrics metrics = RenderMetrics.get();
+		metrics.register();
+		metrics.register();
+		
+		metrics.reset();
+		metrics.record(Phase.RENDER, 2000000L);
+		metrics.record(Phase.RENDER, 4000000L);
+		metrics.addTiles(10);
+		
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final ObjectName name = new ObjectName(RenderMetrics.OBJECT_NAME);
+		
+		final CompositeData latency = (CompositeData) server.getAttribute(name, "RenderLatency");
+		assertEquals("Render count", 2L, latency.get("count"));
+		assertEquals("Render mean (ms)", 3d, (Double) latency.get("mean"), 1e-9);
+		assertEquals("Render max (ms)", 4d, (Double) latency.get("max"), 1e-9);
+		assertEquals("Tiles", 10L, server.getAttribute(name, "Tiles"));
+		
+		server.invoke(name, "reset", new Object[0], new String[0]);
+		assertEquals("Tiles after reset", 0L, metrics.getTiles());
+	}
+	
+	@Test
+	public void pool_countsHitsAndMisses() {
+		
+		final Pool<DoublePair> pool = new Pool<>(DoublePair::new);
+		
+		final DoublePair first = pool.getInstance();
+		pool.retireInstance(first);
+		pool.getInstance();
+		pool.getInstance();
+		
+		assertEquals("Hits", 1L, pool.getHits());
+		assertEquals("Misses", 2L, pool.getMisses());
+		assertEquals("Available", 0, pool.getAvailable());
+	}
+}
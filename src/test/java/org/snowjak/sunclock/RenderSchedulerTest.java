@@ -0,0 +1,83 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Projections;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.render.RenderScheduler;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class RenderSchedulerTest {
+	
+	@Test
+	public void calculateInterval_equirectangular() {
+		
+		//
+		// 10-pixel cells on a 1280-pixel-wide map span 2.8125 degrees of longitude,
+		// which the terminator crosses in 11.25 minutes.
+		//
+		final long interval = RenderScheduler.calculateInterval(StandardProjection.EQUIRECTANGULAR, 1280, 640, 10);
+		
+		assertEquals("Interval for 10-pixel cells", 675000L, interval, 1000L);
+	}
+	
+	@Test
+	public void calculateInterval_isClamped() {
+		
+		assertEquals("Interval for 1-pixel cells", RenderScheduler.MIN_INTERVAL,
+				RenderScheduler.calculateInterval(StandardProjection.EQUIRECTANGULAR, 100000, 50000, 1));
+		assertEquals("Interval for huge cells", RenderScheduler.MAX_INTERVAL,
+				RenderScheduler.calculateInterval(StandardProjection.EQUIRECTANGULAR, 640, 320, 320));
+	}
+	
+	@Test
+	public void calculateInterval_shrinksWithCellSize() {
+		
+		for (Projection projection : Projections.getAll()) {
+			final long coarse = RenderScheduler.calculateInterval(projection, 1024, 1024, 16);
+			final long fine = RenderScheduler.calculateInterval(projection, 1024, 1024, 4);
+			
+			assertTrue(projection.getName() + ": finer cells should be rendered more often", fine < coarse);
+		}
+	}
+	
+	@Test
+	public void scheduler_rendersOnlyWhileResumed() throws InterruptedException {
+		
+		final AtomicInteger renders = new AtomicInteger();
+		final CountDownLatch rendered = new CountDownLatch(2);
+		final RenderScheduler scheduler = new RenderScheduler(() -> {
+			renders.incrementAndGet();
+			rendered.countDown();
+		}, () -> 10L);
+		
+		try {
+			Thread.sleep(50);
+			assertEquals("Should not render until resumed", 0, renders.get());
+			
+			scheduler.resume();
+			assertTrue("Should render repeatedly once resumed", rendered.await(5, TimeUnit.SECONDS));
+			
+			scheduler.suspend();
+			Thread.sleep(50);
+			final int suspendedRenders = renders.get();
+			Thread.sleep(100);
+			assertEquals("Should not render while suspended", suspendedRenders, renders.get());
+		} finally {
+			scheduler.dispose();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.snowjak.sunclock.pool.Pools;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Projections;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class ReprojectorTest {
+	
+	private static final int INSET = 2;
+	
+	@Test
+	public void reproject_samplesAtInverseTransform() throws Exception {
+		
+		final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2));
+		try {
+			final Reprojector reprojector = new Reprojector(createSource(), INSET, executor, 2);
+			
+			for (Projection projection : Projections.getAll()) {
+				final BufferedImage image = reprojector.reproject(projection, 200, 150);
+				assertEquals("Width", 200, image.getWidth());
+				assertEquals("Height", 150, image.getHeight());
+				
+				for (int row = 5; row < 150; row += 20)
+					for (int column = 5; column < 200; column += 20) {
+						final DoublePair xy = new DoublePair((column + 0.5d) / 200d, 1d - (row + 0.5d) / 150d);
+						final DoublePair latLong = projection.transformXY_LatLong(xy);
+					
+						final int rgb = image.getRGB(column, row);
+						if (!projection.isInDomain(latLong.getX(), latLong.getY())) {
+							assertEquals(projection.getName() + ": outside the domain at [" + column + "," + row + "]",
+									0, rgb & 0xffffff);
+					
+						} else {
+							assertEquals(projection.getName() + ": latitude at [" + column + "," + row + "]",
+									latLong.getX(), ((rgb >> 8) & 0xff) / 255d * 180d - 90d, 2d);
+						
+							//
+							// Near the antimeridian, bilinear sampling blends both edges together.
+							//
+							if (Math.abs(latLong.getY()) < 170d)
+								assertEquals(projection.getName() + ": longitude at [" + column + "," + row + "]",
+										latLong.getY(), ((rgb >> 16) & 0xff) / 255d * 360d - 180d, 3d);
+						}
+					
+						Pools.getPool(DoublePair.class).retireInstance(latLong);
+					}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void reproject_isCachedByProjectionAndSize() throws Exception {
+		
+		final ListeningExecutorService executor = MoreExecutors.newDirectExecutorService();
+		final Reprojector reprojector = new Reprojector(createSource(), INSET, executor, 1);
+		
+		final BufferedImage first = reprojector.reproject(StandardProjection.CASSINI, 50, 100);
+		assertSame("Same projection and size", first, reprojector.reproject(StandardProjection.CASSINI, 50, 100));
+		assertEquals("Other size", 60, reprojector.reproject(StandardProjection.CASSINI, 60, 120).getWidth());
+	}
+	
+	@Test
+	public void reproject_viewportSamplesOnlyItsRegion() throws Exception {
+		
+		final ListeningExecutorService executor = MoreExecutors.newDirectExecutorService();
+		final Reprojector reprojector = new Reprojector(createSource(), INSET, executor, 1);
+		
+		//
+		// The north-east quarter of the world.
+		//
+		final Viewport viewport = new Viewport(2d, 0.75d, 0.75d);
+		final BufferedImage image = reprojector.reproject(StandardProjection.EQUIRECTANGULAR, viewport, 100, 50);
+		
+		for (int row = 5; row < 50; row += 10)
+			for (int column = 5; column < 100; column += 10) {
+				final double longitude = viewport.toPlaneX((column + 0.5d) / 100d) * 360d - 180d;
+				final double latitude = viewport.toPlaneY(1d - (row + 0.5d) / 50d) * 180d - 90d;
+			
+				final int rgb = image.getRGB(column, row);
+				assertEquals("Latitude at [" + column + "," + row + "]", latitude,
+						((rgb >> 8) & 0xff) / 255d * 180d - 90d, 2d);
+				assertEquals("Longitude at [" + column + "," + row + "]", longitude,
+						((rgb >> 16) & 0xff) / 255d * 360d - 180d, 3d);
+			}
+		
+		assertSame("Same viewport", image,
+				reprojector.reproject(StandardProjection.EQUIRECTANGULAR, new Viewport(2d, 0.75d, 0.75d), 100, 50));
+	}
+	
+	/**
+	 * @return an equirectangular image, with a bright frame, whose red channel
+	 *         encodes longitude and green channel encodes latitude
+	 */
+	private static BufferedImage createSource() {
+		
+		final int width = 360 + 2 * INSET, height = 180 + 2 * INSET;
+		final BufferedImage source = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++) {
+				if (x < INSET || y < INSET || x >= width - INSET || y >= height - INSET) {
+					source.setRGB(x, y, 0xffffff);
+					continue;
+				}
+			
+				final double longitude = (x - INSET + 0.5d) - 180d, latitude = 90d - (y - INSET + 0.5d);
+				final int r = (int) Math.round((longitude + 180d) / 360d * 255d);
+				final int g = (int) Math.round((latitude + 90d) / 180d * 255d);
+				source.setRGB(x, y, (r << 16) | (g << 8));
+			}
+		
+		return source;
+	}
+}
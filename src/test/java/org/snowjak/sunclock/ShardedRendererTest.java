@@ -0,0 +1,125 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.Projection;
+import org.snowjak.sunclock.projection.Reprojector;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.BaseMapLoader;
+import org.snowjak.sunclock.render.PosterExporter;
+import org.snowjak.sunclock.render.ShardedRenderer;
+import org.snowjak.sunclock.render.TimeLapseExporter;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class ShardedRendererTest {
+	
+	private static final ZonedDateTime INSTANT = ZonedDateTime.of(2020, 12, 21, 6, 0, 0, 0, ZoneOffset.UTC);
+	
+	@Test
+	public void poster_matchesInProcess() throws Exception {
+		
+		final Projection projection = StandardProjection.EQUIRECTANGULAR;
+		final Viewport viewport = Viewport.FULL.zoomAbout(2d, 0.4d, 0.6d);
+		final int width = 320, height = 161;
+		
+		final ByteArrayOutputStream sharded = new ByteArrayOutputStream();
+		final ShardedRenderer.Result result = new ShardedRenderer(3).exportPoster(projection, viewport, width,
+				height, 4, INSTANT, sharded, null);
+		
+		final Reprojector reprojector = new BaseMapLoader().loadReprojector().get();
+		final BufferedImage expected = new PosterExporter(MoreExecutors.newDirectExecutorService())
+				.render(reprojector, projection, viewport, width, height, 4, INSTANT, null);
+		final BufferedImage actual = ImageIO.read(new ByteArrayInputStream(sharded.toByteArray()));
+		
+		assertEquals("Workers", 3, result.getWorkers());
+		assertTrue("CPU utilization", result.getCpuUtilization() > 0d && result.getCpuUtilization() <= 1d);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				assertEquals("Pixel [" + x + "," + y + "]", expected.getRGB(x, y), actual.getRGB(x, y));
+	}
+	
+	@Test
+	public void timeLapse_matchesInProcess() throws Exception {
+		
+		final Projection projection = StandardProjection.EQUIRECTANGULAR;
+		final int width = 120, height = 60, frames = 5;
+		final Reprojector reprojector = new BaseMapLoader().loadReprojector().get();
+		final BufferedImage baseMap = reprojector.reproject(projection, width, height);
+		
+		final File directory = Files.createTempDirectory("sharded-time-lapse").toFile();
+		directory.deleteOnExit();
+		final File sharded = new File(directory, "sharded.png"), single = new File(directory, "single.png");
+		
+		final ShardedRenderer.Result result = new ShardedRenderer(2).exportTimeLapse(baseMap, projection, 3,
+				INSTANT, INSTANT.plusHours(12), frames, TimeLapseExporter.Format.PNG_SEQUENCE, 100, sharded, null);
+		new TimeLapseExporter(1).export(baseMap, projection, 3, INSTANT, INSTANT.plusHours(12), frames,
+				TimeLapseExporter.Format.PNG_SEQUENCE, 100, single, null);
+		
+		assertEquals("Workers", 2, result.getWorkers());
+		for (int i = 0; i < frames; i++) {
+			final File expected = new File(directory, String.format("single-%04d.png", i));
+			final File actual = new File(directory, String.format("sharded-%04d.png", i));
+			expected.deleteOnExit();
+			actual.deleteOnExit();
+			assertArrayEquals("Frame " + i, Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+		}
+	}
+	
+	@Test
+	public void result_reportsCpuUtilization() {
+		
+		final ShardedRenderer.Result balanced = new ShardedRenderer.Result(new long[] { 100, 100, 100, 100 },
+				new long[] { 100, 100, 100, 100 }, 1, 120);
+		assertEquals("Balanced", 1d, balanced.getCpuUtilization(), 1e-9);
+		
+		final ShardedRenderer.Result unbalanced = new ShardedRenderer.Result(new long[] { 200, 100 },
+				new long[] { 200, 100 }, 1, 220);
+		assertEquals("Unbalanced", 0.75d, unbalanced.getCpuUtilization(), 1e-9);
+		
+		//
+		// Workers sharing a single processor each take as long as all of them
+		// together -- but no more processor-time than they would have alone.
+		//
+		final ShardedRenderer.Result contended = new ShardedRenderer.Result(new long[] { 400, 400, 400, 400 },
+				new long[] { 100, 100, 100, 100 }, 1, 420);
+		assertEquals("Contended", 0.25d, contended.getCpuUtilization(), 1e-9);
+		
+		//
+		// Workers with several processors each can take more processor-time than
+		// elapsed time -- but never more than they were given.
+		//
+		final ShardedRenderer.Result threaded = new ShardedRenderer.Result(new long[] { 100, 100 },
+				new long[] { 150, 150 }, 2, 120);
+		assertEquals("Threaded", 0.75d, threaded.getCpuUtilization(), 1e-9);
+		
+		final ShardedRenderer.Result overcounted = new ShardedRenderer.Result(new long[] { 100, 100 },
+				new long[] { 250, 250 }, 2, 120);
+		assertEquals("At most 1", 1d, overcounted.getCpuUtilization(), 1e-9);
+		
+		final ShardedRenderer.Result unknown = new ShardedRenderer.Result(new long[] { 100, 50 },
+				new long[] { -1, -1 }, 1, 120);
+		assertEquals("Elapsed time in place of processor-time", 0.75d, unknown.getCpuUtilization(), 1e-9);
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.snowjak.sunclock.event.SolarEventScheduler;
+import org.snowjak.sunclock.event.SolarEventType;
+import org.snowjak.sunclock.event.TimingWheel;
+import org.snowjak.sunclock.solar.Solar;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class SolarEventSchedulerTest {
+	
+	private static final long HOUR = 60L * 60L * 1000L;
+	
+	@Test
+	public void timingWheel_expiresInOrder() {
+		
+		final long origin = 1_000_000L;
+		final TimingWheel wheel = new TimingWheel(origin, 10, 4);
+		
+		final Random rnd = new Random(42);
+		final long[] dueTimes = new long[5000];
+		for (int i = 0; i < dueTimes.length; i++) {
+			//
+			// Spread due-times across every level of the wheel.
+			//
+			dueTimes[i] = origin + (long) Math.pow(10, rnd.nextDouble() * 9);
+			wheel.schedule(i, dueTimes[i]);
+		}
+		
+		final List<Integer> expired = new ArrayList<>();
+		final long[] expiredAt = new long[dueTimes.length];
+		long now = origin;
+		while (wheel.size() > 0) {
+			now += 1L + rnd.nextInt(50000);
+			final long at = now;
+			wheel.advance(now, id -> {
+				expired.add(id);
+				expiredAt[id] = at;
+			});
+		}
+		
+		assertEquals("All IDs should expire", dueTimes.length, expired.size());
+		for (int i = 0; i < dueTimes.length; i++)
+			assertTrue("ID " + i + " should not expire early", expiredAt[i] >= dueTimes[i]);
+		for (int i = 1; i < expired.size(); i++)
+			assertTrue("IDs should expire in order (to within a tick)",
+					dueTimes[expired.get(i)] + 10 > dueTimes[expired.get(i - 1)]
+							|| expiredAt[expired.get(i)] > expiredAt[expired.get(i - 1)]);
+	}
+	
+	@Test
+	public void calculateNextCrossing_sunIsOnHorizon() {
+		
+		final long start = ZonedDateTime.of(2020, 6, 6, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+		final double lat = 32.28, lng = -106.75;
+		
+		for (boolean rising : new boolean[] { true, false }) {
+			final long crossing = Solar.calculateNextCrossing(Util.degreesToRadians(lat), Util.degreesToRadians(lng),
+					0d, rising, start);
+			
+			assertTrue("Crossing should be within a day", crossing > start && crossing < start + 24 * HOUR);
+			
+			final ZonedDateTime when = ZonedDateTime.ofInstant(Instant.ofEpochMilli(crossing), ZoneId.of("UTC"));
+			assertEquals("Sun should be on the horizon", 0d,
+					Solar.calculateSinSolarAltitude(new DoublePair(lat, lng), when), 1e-4);
+			
+			final ZonedDateTime later = when.plusMinutes(5);
+			assertEquals("Sun should be " + (rising ? "rising" : "setting"), rising,
+					Solar.calculateSinSolarAltitude(new DoublePair(lat, lng), later) > 0d);
+		}
+	}
+	
+	@Test
+	public void scheduler_firesSunriseAndSunsetDaily() {
+		
+		final long start = ZonedDateTime.of(2020, 3, 1, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+		final List<SolarEventType> events = new ArrayList<>();
+		final List<Long> jitters = new ArrayList<>();
+		
+		final SolarEventScheduler scheduler = new SolarEventScheduler((id, type, scheduled, fired) -> {
+			events.add(type);
+			jitters.add(fired - scheduled);
+		}, 1000L, start);
+		
+		scheduler.subscribe(51.5, -0.13, EnumSet.of(SolarEventType.SUNRISE, SolarEventType.SUNSET));
+		final int unsubscribed = scheduler.subscribe(-33.9, 151.2, EnumSet.of(SolarEventType.SUNRISE));
+		scheduler.unsubscribe(unsubscribed);
+		
+		for (long now = start; now <= start + 72 * HOUR; now += 1000L)
+			scheduler.advance(now);
+		
+		assertEquals("3 days of sunrises and sunsets", 6, events.size());
+		for (int i = 1; i < events.size(); i++)
+			assertTrue("Sunrise and sunset should alternate", events.get(i) != events.get(i - 1));
+		for (long jitter : jitters)
+			assertTrue("Jitter should be bounded by the tick (" + jitter + ")", jitter >= 0 && jitter <= 1000L);
+		assertEquals("Unsubscribed ID should be reused",
+				unsubscribed, scheduler.subscribe(0, 0, EnumSet.of(SolarEventType.SUNSET)));
+	}
+}
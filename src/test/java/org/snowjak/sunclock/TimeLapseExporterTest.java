@@ -0,0 +1,126 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.LightMapRenderer;
+import org.snowjak.sunclock.render.TimeLapseExporter;
+import org.snowjak.sunclock.render.TimeLapseExporter.Format;
+import org.snowjak.sunclock.render.TimeLapseExporter.Result;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class TimeLapseExporterTest {
+	
+	private static final ZonedDateTime START = ZonedDateTime.of(2020, 3, 20, 0, 0, 0, 0, ZoneOffset.UTC);
+	
+	@Test
+	public void gif_hasEveryFrame() throws Exception {
+		
+		final File directory = Files.createTempDirectory("time-lapse").toFile();
+		final File output = new File(directory, "day.gif");
+		final List<Integer> progress = new ArrayList<>();
+		
+		final Result result = new TimeLapseExporter(3).export(createBaseMap(), StandardProjection.EQUIRECTANGULAR, 4,
+				START, START.plusHours(24), 12, Format.GIF, 100, output, progress::add);
+		
+		assertEquals("Frames", 12, result.getFrames());
+		assertTrue("Frames/second", result.getFramesPerSecond() > 0d);
+		assertEquals("Progress", 12, progress.size());
+		assertEquals("Progress in order", Integer.valueOf(12), progress.get(11));
+		
+		try (ImageInputStream stream = ImageIO.createImageInputStream(output)) {
+			final ImageReader reader = ImageIO.getImageReaders(stream).next();
+			reader.setInput(stream);
+			assertEquals("GIF frames", 12, reader.getNumImages(true));
+			assertEquals("Width", 80, reader.getWidth(0));
+			assertEquals("Height", 40, reader.getHeight(0));
+			reader.dispose();
+		}
+		
+		output.delete();
+		directory.delete();
+	}
+	
+	@Test
+	public void pngSequence_framesInOrder() throws Exception {
+		
+		final File directory = Files.createTempDirectory("time-lapse").toFile();
+		final BufferedImage baseMap = createBaseMap();
+		
+		new TimeLapseExporter(2).export(baseMap, StandardProjection.EQUIRECTANGULAR, 4, START, START.plusHours(12), 5,
+				Format.PNG_SEQUENCE, 100, new File(directory, "day.png"), null);
+		
+		final List<String> names;
+		try (Stream<String> files = Stream.of(directory.list())) {
+			names = files.sorted().collect(Collectors.toList());
+		}
+		assertEquals("Files", List.of("day-0000.png", "day-0001.png", "day-0002.png", "day-0003.png", "day-0004.png"),
+				names);
+		
+		//
+		// The last frame shows the end of the time-span.
+		//
+		final BufferedImage lightMap = new BufferedImage(80, 40, BufferedImage.TYPE_INT_ARGB);
+		new LightMapRenderer(MoreExecutors.newDirectExecutorService()).render(lightMap,
+				StandardProjection.EQUIRECTANGULAR, Viewport.FULL, 4, START.plusHours(12));
+		final BufferedImage last = ImageIO.read(new File(directory, "day-0004.png"));
+		
+		for (int y = 0; y < 40; y += 3)
+			for (int x = 0; x < 80; x += 3) {
+				final int expected = blend(baseMap.getRGB(x, y), lightMap.getRGB(x, y));
+				final int actual = last.getRGB(x, y) & 0xffffff;
+				for (int shift = 0; shift <= 16; shift += 8)
+					assertEquals("Pixel [" + x + "," + y + "]", (expected >> shift) & 0xff, (actual >> shift) & 0xff,
+							1);
+			}
+		
+		for (String name : names)
+			new File(directory, name).delete();
+		directory.delete();
+	}
+	
+	private static int blend(int rgb, int argb) {
+		
+		final double alpha = (double) (argb >>> 24) / 255d;
+		int result = 0;
+		for (int shift = 0; shift <= 16; shift += 8) {
+			final double under = (rgb >> shift) & 0xff, over = (argb >> shift) & 0xff;
+			result |= ((int) Math.round(under * (1d - alpha) + over * alpha)) << shift;
+		}
+		return result;
+	}
+	
+	private static BufferedImage createBaseMap() {
+		
+		final BufferedImage baseMap = new BufferedImage(80, 40, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 40; y++)
+			for (int x = 0; x < 80; x++)
+				baseMap.setRGB(x, y, (x * 3) << 16 | (y * 6) << 8 | 0x80);
+		return baseMap;
+	}
+}
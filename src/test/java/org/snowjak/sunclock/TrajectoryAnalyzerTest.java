@@ -0,0 +1,99 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.snowjak.sunclock.solar.Solar;
+import org.snowjak.sunclock.solar.TrajectoryAnalyzer;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class TrajectoryAnalyzerTest {
+	
+	private static final long HOUR = 60L * 60L * 1000L;
+	
+	@Test
+	public void analyze_matchesSolarModel() {
+		
+		final Random rnd = new Random(1234);
+		final int count = 1000;
+		final long[] times = new long[count];
+		final double[] lats = new double[count], lngs = new double[count], exposures = new double[count],
+				altitudes = new double[count];
+		
+		long time = ZonedDateTime.of(2020, 12, 30, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+		for (int i = 0; i < count; i++) {
+			time += 1000L * rnd.nextInt(60 * 60);
+			times[i] = time;
+			lats[i] = rnd.nextDouble() * 180d - 90d;
+			lngs[i] = rnd.nextDouble() * 360d - 180d;
+		}
+		
+		new TrajectoryAnalyzer(null).analyze(times, lats, lngs, exposures, altitudes, 0, count);
+		
+		for (int i = 0; i < count; i++) {
+			final ZonedDateTime now = ZonedDateTime.ofInstant(Instant.ofEpochMilli(times[i]), ZoneId.of("UTC"));
+			final double expected = Solar.calculateSunExposure(new DoublePair(lats[i], lngs[i]), now);
+			assertEquals("Exposure at sample " + i, expected, exposures[i], 1e-5);
+			assertEquals("Altitude at sample " + i,
+					Util.radiansToDegrees(Math.asin(Solar.calculateSinSolarAltitude(new DoublePair(lats[i], lngs[i]), now))),
+					altitudes[i], 1e-3);
+		}
+	}
+	
+	@Test
+	public void accept_findsSunriseAndSunset() {
+		
+		final List<long[]> crossings = new ArrayList<>();
+		final List<Boolean> sunrises = new ArrayList<>();
+		final List<double[]> positions = new ArrayList<>();
+		
+		final TrajectoryAnalyzer analyzer = new TrajectoryAnalyzer(new TrajectoryAnalyzer.Listener() {
+			
+			@Override
+			public void onSample(long time, double latitude, double longitude, double exposure,
+					double solarAltitude) {
+				
+			}
+			
+			@Override
+			public void onTerminatorCrossing(long time, double latitude, double longitude, boolean sunrise) {
+				
+				crossings.add(new long[] { time });
+				sunrises.add(sunrise);
+				positions.add(new double[] { latitude, longitude });
+			}
+		});
+		
+		//
+		// A slow eastward track along 40N, reporting hourly.
+		//
+		final long start = ZonedDateTime.of(2020, 6, 6, 0, 0, 0, 0, ZoneId.of("UTC")).toInstant().toEpochMilli();
+		for (int h = 0; h <= 24; h++)
+			analyzer.accept(start + h * HOUR, 40d, -100d + h);
+		
+		assertEquals("Should cross the terminator twice in a day", 2, crossings.size());
+		assertNotEquals("Crossings should alternate", sunrises.get(0), sunrises.get(1));
+		
+		for (int i = 0; i < crossings.size(); i++) {
+			final ZonedDateTime when = ZonedDateTime.ofInstant(Instant.ofEpochMilli(crossings.get(i)[0]),
+					ZoneId.of("UTC"));
+			final double sinAltitude = Solar
+					.calculateSinSolarAltitude(new DoublePair(positions.get(i)[0], positions.get(i)[1]), when);
+			assertEquals("Sun should be on the horizon at crossing " + i, 0d, sinAltitude, 1e-3);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.StandardProjection;
+import org.snowjak.sunclock.projection.Viewport;
+import org.snowjak.sunclock.render.VectorOverlay;
+import org.snowjak.sunclock.render.VectorOverlay.Line;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class VectorOverlayTest {
+	
+	@Test
+	public void splitAtAntimeridian_splitsAtCrossing() {
+		
+		final List<Line> lines = VectorOverlay.splitAtAntimeridian(new double[] { 0d, 10d, 20d },
+				new double[] { 170d, -170d, -160d }, 3);
+		
+		assertEquals("Lines", 2, lines.size());
+		
+		final Line west = lines.get(0), east = lines.get(1);
+		assertEquals("First piece size", 2, west.size());
+		assertEquals("First piece ends at antimeridian", 180d, west.getLongitude(1), 1e-9);
+		assertEquals("First piece ends at crossing", 5d, west.getLatitude(1), 1e-9);
+		
+		assertEquals("Second piece size", 3, east.size());
+		assertEquals("Second piece starts at antimeridian", -180d, east.getLongitude(0), 1e-9);
+		assertEquals("Second piece starts at crossing", 5d, east.getLatitude(0), 1e-9);
+		assertEquals("Second piece ends where line ends", -160d, east.getLongitude(2), 1e-9);
+	}
+	
+	@Test
+	public void splitAtAntimeridian_leavesOtherLinesWhole() {
+		
+		final List<Line> lines = VectorOverlay.splitAtAntimeridian(new double[] { 0d, 10d, 20d },
+				new double[] { -170d, 0d, 170d }, 3);
+		
+		assertEquals("Lines", 1, lines.size());
+		assertEquals("Points", 3, lines.get(0).size());
+	}
+	
+	@Test
+	public void readCoastlines_readsSegments() throws IOException {
+		
+		final String text = "# comment\n" + "> first\n" + "10 20\n" + "11,21\n" + "12\t22\n" + ">\n" + "170 0\n"
+				+ "-170 10\n" + "\n" + "5 5\n";
+		
+		final List<Line> lines = VectorOverlay.readCoastlines(new StringReader(text));
+		
+		//
+		// The second segment is split at the antimeridian; the last, with only
+		// one point, is dropped.
+		//
+		assertEquals("Lines", 3, lines.size());
+		assertEquals("First line points", 3, lines.get(0).size());
+		assertEquals("Longitude", 11d, lines.get(0).getLongitude(1), 1e-9);
+		assertEquals("Latitude", 21d, lines.get(0).getLatitude(1), 1e-9);
+	}
+	
+	@Test
+	public void readBundledCoastlines_readsResource() throws IOException {
+		
+		final List<Line> lines = VectorOverlay.readBundledCoastlines();
+		
+		assertTrue("Lines", lines.size() > 20);
+		for (Line line : lines)
+			for (int i = 0; i < line.size(); i++) {
+				assertTrue("Latitude", line.getLatitude(i) >= -90d && line.getLatitude(i) <= 90d);
+				assertTrue("Longitude", line.getLongitude(i) >= -180d && line.getLongitude(i) <= 180d);
+			}
+	}
+	
+	@Test(expected = IOException.class)
+	public void readCoastlines_rejectsMalformedPoints() throws IOException {
+		
+		VectorOverlay.readCoastlines(new StringReader("10 north\n"));
+	}
+	
+	@Test
+	public void render_doesNotCrossMapAtAntimeridian() {
+		
+		final int width = 360, height = 180;
+		final List<Line> coastline = VectorOverlay.splitAtAntimeridian(new double[] { 0d, 0d },
+				new double[] { 170d, -170d }, 2);
+		final BufferedImage layer = new VectorOverlay(false, coastline).render(StandardProjection.EQUIRECTANGULAR,
+				Viewport.FULL, width, height);
+		
+		assertTrue("Drawn east of the antimeridian", (layer.getRGB(width - 5, height / 2) >>> 24) > 0);
+		assertTrue("Drawn west of the antimeridian", (layer.getRGB(5, height / 2) >>> 24) > 0);
+		for (int x = 20; x < width - 20; x++)
+			assertEquals("Nothing across the map [" + x + "]", 0, layer.getRGB(x, height / 2) >>> 24);
+	}
+	
+	@Test
+	public void render_drawsGraticule() {
+		
+		final int width = 360, height = 180;
+		final BufferedImage layer = new VectorOverlay(true, null).render(StandardProjection.EQUIRECTANGULAR,
+				Viewport.FULL, width, height);
+		
+		assertTrue("Prime meridian", (layer.getRGB(width / 2, 40) >>> 24) > 0);
+		assertTrue("Equator", (layer.getRGB(40, height / 2) >>> 24) > 0);
+		assertEquals("Between lines", 0, layer.getRGB(width / 2 + 7, height / 2 + 7) >>> 24);
+	}
+	
+	@Test
+	public void render_followsViewport() {
+		
+		final int width = 360, height = 180;
+		final List<Line> meridian = Arrays.asList(new Line(new double[] { -10d, 10d }, new double[] { 45d, 45d }));
+		
+		//
+		// Zoomed 2x about the middle of the map, 45 degrees east is 3/4 of the
+		// way across.
+		//
+		final BufferedImage layer = new VectorOverlay(false, meridian).render(StandardProjection.EQUIRECTANGULAR,
+				Viewport.FULL.zoomAbout(2d, 0.5d, 0.5d), width, height);
+		
+		assertTrue("Meridian, zoomed", (layer.getRGB(width * 3 / 4, height / 2) >>> 24) > 0);
+		assertEquals("Nowhere else", 0, layer.getRGB(width * 5 / 8, height / 2) >>> 24);
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.snowjak.sunclock.projection.Viewport;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class ViewportTest {
+	
+	@Test
+	public void zoomAbout_keepsPointFixed() {
+		
+		final Viewport zoomed = Viewport.FULL.zoomAbout(4d, 0.3d, 0.6d);
+		
+		assertEquals("Zoom", 4d, zoomed.getZoom(), 0d);
+		assertEquals("Point's X in viewport", 0.3d, zoomed.toViewportX(0.3d), 1e-9);
+		assertEquals("Point's Y in viewport", 0.6d, zoomed.toViewportY(0.6d), 1e-9);
+		assertEquals("Round-trip X", 0.3d, zoomed.toPlaneX(zoomed.toViewportX(0.3d)), 1e-9);
+		assertEquals("Round-trip Y", 0.6d, zoomed.toPlaneY(zoomed.toViewportY(0.6d)), 1e-9);
+	}
+	
+	@Test
+	public void zoomAbout_staysOnPlane() {
+		
+		final Viewport zoomed = Viewport.FULL.zoomAbout(2d, 0d, 1d);
+		
+		assertEquals("Min X", 0d, zoomed.getMinX(), 1e-9);
+		assertEquals("Max Y", 1d, zoomed.getMaxY(), 1e-9);
+		assertEquals("Size", 0.5d, zoomed.getSize(), 1e-9);
+		
+		assertEquals("Zoom is capped", Viewport.MAX_ZOOM, zoomed.zoomAbout(1000d, 0.5d, 0.5d).getZoom(), 0d);
+		assertTrue("Zooming out past the plane is full", zoomed.zoomAbout(0.1d, 0.5d, 0.5d).isFull());
+	}
+	
+	@Test
+	public void pan_staysOnPlane() {
+		
+		final Viewport zoomed = new Viewport(4d, 0.5d, 0.5d);
+		
+		final Viewport panned = zoomed.pan(0.1d, -0.1d);
+		assertEquals("Center X", 0.6d, panned.getCenterX(), 1e-9);
+		assertEquals("Center Y", 0.4d, panned.getCenterY(), 1e-9);
+		
+		final Viewport edge = zoomed.pan(10d, 10d);
+		assertEquals("Max X", 1d, edge.getMaxX(), 1e-9);
+		assertEquals("Max Y", 1d, edge.getMaxY(), 1e-9);
+		assertFalse("Still zoomed", edge.isFull());
+		
+		assertEquals("Full viewport can't pan", Viewport.FULL, Viewport.FULL.pan(0.2d, 0.2d));
+	}
+}
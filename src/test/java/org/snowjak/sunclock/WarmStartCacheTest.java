@@ -0,0 +1,101 @@
+/**
+ * 
+ */
+package org.snowjak.sunclock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.snowjak.sunclock.render.BaseMapLoader.BaseMap;
+import org.snowjak.sunclock.render.WarmStartCache;
+import org.snowjak.sunclock.render.WarmStartCache.CachedImage;
+
+/**
+ * @author snowjak88
+ *
+ */
+public class WarmStartCacheTest {
+	
+	@Test
+	public void frame_roundTrip() throws Exception {
+		
+		final WarmStartCache cache = new WarmStartCache(createCacheDirectory());
+		
+		final BufferedImage frame = createImage(30, 20, BufferedImage.TYPE_INT_RGB);
+		cache.writeFrame("EQUIRECTANGULAR", frame, 123456789L);
+		
+		final CachedImage read = cache.readFrame("EQUIRECTANGULAR");
+		assertNotNull("Cached frame", read);
+		assertEquals("Timestamp", 123456789L, read.getTimestamp());
+		assertImagesEqual(frame, read.getImage());
+		
+		assertNull("No frame under another key", cache.readFrame("CASSINI"));
+	}
+	
+	@Test
+	public void baseMap_onlyReadWhenFineEnough() throws Exception {
+		
+		final WarmStartCache cache = new WarmStartCache(createCacheDirectory());
+		
+		final BufferedImage image = createImage(50, 25, BufferedImage.TYPE_3BYTE_BGR);
+		cache.writeBaseMap("projections/test.jpg", new BaseMap(image, 200, 100, 4));
+		
+		final BaseMap read = cache.readBaseMap("projections/test.jpg", 50, 25);
+		assertNotNull("Cached base map", read);
+		assertEquals("Subsampling", 4, read.getSubsampling());
+		assertEquals("Source width", 200, read.getSourceWidth());
+		assertImagesEqual(image, read.getImage());
+		
+		assertNotNull("Cached base map is fine enough for a smaller target",
+				cache.readBaseMap("projections/test.jpg", 20, 10));
+		assertNull("Cached base map is too coarse for a larger target",
+				cache.readBaseMap("projections/test.jpg", 100, 50));
+	}
+	
+	@Test
+	public void corruptFile_isIgnored() throws Exception {
+		
+		final File directory = createCacheDirectory();
+		final WarmStartCache cache = new WarmStartCache(directory);
+		
+		cache.writeFrame("EQUIRECTANGULAR", createImage(30, 20, BufferedImage.TYPE_INT_RGB), 0L);
+		for (File file : directory.listFiles())
+			try (FileOutputStream out = new FileOutputStream(file)) {
+				out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+			}
+		
+		assertNull("Corrupt frame should be ignored", cache.readFrame("EQUIRECTANGULAR"));
+	}
+	
+	private static File createCacheDirectory() throws Exception {
+		
+		final File directory = Files.createTempDirectory("sun-clock-cache").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+	
+	private static BufferedImage createImage(int width, int height, int type) {
+		
+		final BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.setRGB(x, y, (x * 8) << 16 | (y * 8) << 8 | (x + y));
+		return image;
+	}
+	
+	private static void assertImagesEqual(BufferedImage expected, BufferedImage actual) {
+		
+		assertEquals("Width", expected.getWidth(), actual.getWidth());
+		assertEquals("Height", expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++)
+			for (int x = 0; x < expected.getWidth(); x++)
+				assertEquals("Pixel", expected.getRGB(x, y) & 0xffffff, actual.getRGB(x, y) & 0xffffff);
+	}
+}